@@ -0,0 +1,26 @@
+package dt.processor.kbta;
+
+import android.util.Log;
+
+/**
+ * Directs the messages logged by the engine to the Android log
+ */
+final class AndroidLogger implements dt.processor.kbta.util.Log.Logger{
+	@Override
+	public void log(int priority, String tag, String msg, Throwable t){
+		switch (priority){
+			case dt.processor.kbta.util.Log.DEBUG:
+				Log.d(tag, msg, t);
+				break;
+			case dt.processor.kbta.util.Log.INFO:
+				Log.i(tag, msg, t);
+				break;
+			case dt.processor.kbta.util.Log.WARN:
+				Log.w(tag, msg, t);
+				break;
+			default:
+				Log.e(tag, msg, t);
+				break;
+		}
+	}
+}
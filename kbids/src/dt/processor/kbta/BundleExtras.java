@@ -0,0 +1,56 @@
+package dt.processor.kbta;
+
+import android.os.Bundle;
+import dt.processor.kbta.util.Extras;
+
+/**
+ * Extras backed by an Android Bundle, as received from the feature extractors and sent
+ * to the TWU
+ */
+public final class BundleExtras extends Extras{
+	public static final Factory FACTORY = new Factory(){
+		@Override
+		public Extras create(){
+			return new BundleExtras(new Bundle());
+		}
+	};
+
+	private final Bundle _bundle;
+
+	public BundleExtras(Bundle bundle){
+		_bundle = bundle;
+	}
+
+	public Bundle getBundle(){
+		return _bundle;
+	}
+
+	@Override
+	public void putAll(Extras src){
+		_bundle.putAll(((BundleExtras)src)._bundle);
+	}
+
+	@Override
+	public boolean isEmpty(){
+		return _bundle.isEmpty();
+	}
+
+	@Override
+	public String toString(){
+		return _bundle.toString();
+	}
+
+	/**
+	 * @return The extras wrapping the given bundle, null if the bundle is null
+	 */
+	public static BundleExtras wrap(Bundle bundle){
+		return (bundle == null) ? null : new BundleExtras(bundle);
+	}
+
+	/**
+	 * @return The bundle of the given extras, null if the extras are null
+	 */
+	public static Bundle toBundle(Extras extras){
+		return (extras == null) ? null : ((BundleExtras)extras)._bundle;
+	}
+}
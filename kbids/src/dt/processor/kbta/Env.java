@@ -1,25 +1,53 @@
 package dt.processor.kbta;
 
+import org.xmlpull.v1.XmlPullParser;
+
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.loader.OntologyLoader;
+import dt.processor.kbta.settings.ModelAssetSource;
+import dt.processor.kbta.settings.ModelCache;
+import dt.processor.kbta.threats.ThreatAssessment;
 import dt.processor.kbta.threats.ThreatAssessmentLoader;
 import dt.processor.kbta.threats.ThreatAssessor;
+import dt.processor.kbta.util.Extras;
 
 public class Env{
 	public static final String TAG = "KBTA";
 	
 	public static final String SEND_ELEMENTS_TO_NETPROTECT = "send_elements_to_netprotect";
 
+	public static final String INCREMENTAL_EVALUATION = "incremental_evaluation";
+
+	public static final String QUEUE_OVERFLOW_POLICY = "queue_overflow_policy";
+
+	public static final String QUEUE_BATCHES_PER_PASS = "queue_batches_per_pass";
+
+	public static final String HISTORY_CAPACITY = "history_capacity";
+
+	public static final String ENGINE_CLOCK = "engine_clock";
+
+	public static final String RECORD_MONITORED_DATA = "record_monitored_data";
+
+	public static final String THREAT_COOL_DOWN = "threat_cool_down";
+
+	public static final String THREAT_CERTAINTY_THRESHOLD = "threat_certainty_threshold";
+
 	private static Ontology _ontology;
 
 	private static ThreatAssessor _threatAssessor;
 
 	private static SharedPreferences _sp;
 
+	static{
+		// Plugging the Android logging and extras into the (platform independent) engine
+		dt.processor.kbta.util.Log.setLogger(new AndroidLogger());
+		Extras.setFactory(BundleExtras.FACTORY);
+	}
+
 	public static void initialize(final Context context, final LoadingCallback callback,
 		boolean forceReload){
 		_sp = PreferenceManager.getDefaultSharedPreferences(context);
@@ -38,10 +66,9 @@ public class Env{
 
 			@Override
 			public void run(){
-				ThreatAssessmentLoader threatAssessmentLoader = new ThreatAssessmentLoader();
 				Log.i(TAG, "Started loading the threat assessments");
 				long start = System.currentTimeMillis();
-				_threatAssessor = threatAssessmentLoader.loadThreatAssessments(context);
+				_threatAssessor = readThreatAssessments(context);
 
 				long end = System.currentTimeMillis();
 				if (_threatAssessor == null){
@@ -74,7 +101,7 @@ public class Env{
 					return;
 				}
 				try{
-					_threatAssessor.setInitiallyMonitoredThreats(_ontology);					
+					setInitiallyMonitoredThreats();
 				}catch(Exception e){
 					Log.e(TAG, "Failed setting initially monitored threats", e);
 					if (callback != null){
@@ -94,10 +121,9 @@ public class Env{
 
 			@Override
 			public void run(){
-				OntologyLoader ontologyLoader = new OntologyLoader();
 				Log.i(TAG, "Started loading the ontology");
 				long start = System.currentTimeMillis();
-				Ontology ontology = ontologyLoader.loadOntology(context);
+				Ontology ontology = readOntology(context);
 				long end = System.currentTimeMillis();
 				synchronized (sync){
 					_ontology = ontology;
@@ -127,10 +153,9 @@ public class Env{
 
 			@Override
 			public void run(){
-				OntologyLoader ontologyLoader = new OntologyLoader();
 				Log.i(TAG, "Started loading the ontology");
 				long start = System.currentTimeMillis();
-				_ontology = ontologyLoader.loadOntology(context);
+				_ontology = readOntology(context);
 				long end = System.currentTimeMillis();
 
 				if (_ontology == null || _threatAssessor == null){
@@ -154,10 +179,9 @@ public class Env{
 
 			@Override
 			public void run(){
-				ThreatAssessmentLoader threatAssessmentLoader = new ThreatAssessmentLoader();
 				Log.i(TAG, "Started loading the threat assessments");
 				long start = System.currentTimeMillis();
-				_threatAssessor = threatAssessmentLoader.loadThreatAssessments(context);
+				_threatAssessor = readThreatAssessments(context);
 				long end = System.currentTimeMillis();
 
 				if (_threatAssessor == null || _ontology == null){
@@ -190,6 +214,49 @@ public class Env{
 		}, "Threat Assessment Loader Thread").start();
 	}
 
+	/**
+	 * Loads the ontology from its compiled form, or from its xml if it can't be compiled
+	 */
+	private static Ontology readOntology(Context context){
+		XmlPullParser xpp = new ModelCache(context).open(OntologyLoader.ONTOLOGY);
+		if (xpp != null){
+			return new OntologyLoader().loadOntology(xpp);
+		}
+		return new OntologyLoader().loadOntology(new ModelAssetSource(context));
+	}
+
+	/**
+	 * Loads the threat assessments from their compiled form, or from their xml if it
+	 * can't be compiled
+	 */
+	private static ThreatAssessor readThreatAssessments(Context context){
+		XmlPullParser xpp = new ModelCache(context)
+				.open(ThreatAssessmentLoader.THREAT_ASSESSMENTS);
+		if (xpp != null){
+			return new ThreatAssessmentLoader().loadThreatAssessments(xpp);
+		}
+		return new ThreatAssessmentLoader()
+				.loadThreatAssessments(new ModelAssetSource(context));
+	}
+
+	/**
+	 * Sets the initially monitored threats according to the persisted preferences and
+	 * persists the threats that are monitored by default
+	 * 
+	 * @throws IllegalStateException If a threat is generated from an undefined element
+	 */
+	public static void setInitiallyMonitoredThreats() throws IllegalStateException{
+		_threatAssessor.setInitiallyMonitoredThreats(_ontology, _sp.getAll());
+
+		SharedPreferences.Editor spe = _sp.edit();
+		for (ThreatAssessment ta : _threatAssessor.getThreatAssessments()){
+			if (ta.isMonitored()){
+				spe.putBoolean(ta.getTitle(), true);
+			}
+		}
+		spe.commit();
+	}
+
 	public static Ontology getOntology(){
 		return _ontology;
 	}
@@ -2,6 +2,10 @@ package dt.processor.kbta;
 
 import static dt.processor.kbta.Env.TAG;
 
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
@@ -10,45 +14,69 @@ import android.app.Service;
 import android.content.ComponentName;
 import android.content.Intent;
 import android.content.ServiceConnection;
+import android.content.SharedPreferences;
 import android.content.pm.PackageManager.NameNotFoundException;
 import android.os.Bundle;
 import android.os.IBinder;
+import android.os.Parcelable;
 import android.os.RemoteException;
+import android.preference.PreferenceManager;
 import android.util.Log;
 import dt.agent.twu.TWU;
 import dt.fe.MonitoredData;
 import dt.processor.Processor;
-import dt.processor.kbta.container.AllInstanceContainer;
-import dt.processor.kbta.ontology.Ontology;
-import dt.processor.kbta.ontology.defs.EventDef;
-import dt.processor.kbta.ontology.defs.PrimitiveDef;
-import dt.processor.kbta.ontology.defs.abstractions.state.StateDef;
-import dt.processor.kbta.ontology.defs.abstractions.trend.TrendDef;
-import dt.processor.kbta.ontology.defs.context.ContextDef;
-import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef;
+import dt.processor.kbta.container.ElementHistory;
+import dt.processor.kbta.engine.BatchRecorder;
+import dt.processor.kbta.engine.EngineClock;
+import dt.processor.kbta.engine.KBTAEngine;
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.threats.ThreatAssessment;
-import dt.processor.kbta.threats.ThreatAssessor;
+import dt.processor.kbta.threats.ThreatFilter;
+import dt.processor.kbta.util.Extras;
 import dt.processor.kbta.util.Pair;
 
+/**
+ * The Android adapter of the engine: receives the monitored data from the agent, feeds it
+ * to the engine and delivers the assessed threats to the TWU (and NetProtect)
+ */
+
 public final class KBTAProcessorService extends Service implements ServiceConnection{
 	private static final String AGENT_PACKAGE_NAME = "dt.agent";
 
 	public static final boolean DEBUG = false;
 
-	private static boolean _isRunning;
+	private static final int QUEUE_CAPACITY = 64;
 
-	private TWU _twu;
+	/** The file (in the files directory) the monitored data is recorded to */
+	public static final String RECORDING_FILE = "monitored_data.txt";
 
-	private Ontology _ontology;
+	private static boolean _isRunning;
 
-	private AllInstanceContainer _allInstances;
+	private volatile TWU _twu;
 
-	private ThreatAssessor _threatAssessor;
+	private volatile KBTAEngine _engine;
 
 	private NetProtectConnection _npc;
 
-	private int _iteration;
+	private boolean _incrementalEvaluation;
+
+	private int _historyCapacity;
+
+	private EngineClock.Mode _clockMode;
+
+	/** Confined to the engine thread, null when the monitored data isn't recorded */
+	private BatchRecorder _recorder;
+
+	private MonitoredDataQueue _queue;
+
+	private Thread _engineThread;
+
+	/** Confined to the engine thread */
+	private ThreatFilter _threatFilter;
+
+	private ThreatDelivery _threatDelivery;
+
+	private volatile boolean _stoppedMonitoring;
 
 	@Override
 	public void onCreate(){
@@ -62,13 +90,32 @@ public final class KBTAProcessorService extends Service implements ServiceConnec
 			Log.e(TAG, "Unable to obtain Agent context with package name: "
 					+ AGENT_PACKAGE_NAME, e);
 		}
-		_allInstances = new AllInstanceContainer();
-		_iteration = 0;
-
 		// Connecting to the TWU so we can send threat assessments
 		bindService(new Intent("dt.agent.action.BIND_SERVICE")
 				.addCategory("dt.agent.category.TWU_SERVICE"), this, BIND_AUTO_CREATE);
 
+		// Read before initializing as the callback may be invoked immediately
+		SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(this);
+		_incrementalEvaluation = sp.getBoolean(Env.INCREMENTAL_EVALUATION, false);
+		_historyCapacity = getIntPreference(sp, Env.HISTORY_CAPACITY,
+			ElementHistory.UNBOUNDED);
+		_clockMode = getClockMode(sp);
+		if (sp.getBoolean(Env.RECORD_MONITORED_DATA, false)){
+			try{
+				_recorder = new BatchRecorder(new FileWriter(new File(getFilesDir(),
+						RECORDING_FILE), true));
+			}catch(IOException e){
+				Log.e(TAG, "Unable to open the recording of the monitored data", e);
+			}
+		}
+
+		_threatFilter = new ThreatFilter(getIntPreference(sp,
+			Env.THREAT_CERTAINTY_THRESHOLD, 1), getLongPreference(sp, Env.THREAT_COOL_DOWN,
+			ThreatFilter.EVERY_BATCH));
+		_threatDelivery = new ThreatDelivery();
+		_threatDelivery.setTWU(_twu);
+		_threatDelivery.start();
+
 		Env.initialize(this, new Env.LoadingCallback(){
 
 			@Override
@@ -77,11 +124,95 @@ public final class KBTAProcessorService extends Service implements ServiceConnec
 
 			@Override
 			public void onSuccess(){
-				_threatAssessor = Env.getThreatAssessor();
-				_ontology = Env.getOntology();
+				_engine = new KBTAEngine(Env.getOntology(), Env.getThreatAssessor(),
+						_incrementalEvaluation, _historyCapacity, EngineClock
+								.create(_clockMode));
 			}
 
 		}, false);
+
+		// All of the processing is performed by a single thread (so the instances
+		// are confined to it) fed by the binder threads through the queue
+		_queue = new MonitoredDataQueue(QUEUE_CAPACITY, getIntPreference(sp,
+			Env.QUEUE_BATCHES_PER_PASS, 1), getOverflowPolicy(sp));
+		_stoppedMonitoring = false;
+		_engineThread = new Thread(new Runnable(){
+
+			@Override
+			public void run(){
+				while (true){
+					// Waiting for the next batch only until the engine's next deadline, so
+					// the elements expire on time even when no monitored data arrives.
+					// An event time clock only advances with the monitored data
+					KBTAEngine engine = _engine;
+					long nextDeadline = (engine == null
+							|| _clockMode != EngineClock.Mode.WALL_CLOCK) ? Long.MAX_VALUE
+							: engine.getNextDeadline();
+					List<MonitoredData> features;
+					try{
+						if (nextDeadline == Long.MAX_VALUE){
+							features = _queue.take();
+						}else{
+							// The deadline passes once the time is after it
+							long timeout = nextDeadline + 1
+									- engine.getClock().currentTime();
+							features = (timeout > 0) ? _queue.poll(timeout) : null;
+						}
+					}catch(InterruptedException e){
+						closeRecorder();
+						return;
+					}
+					if (features != null){
+						process(features);
+					}else{
+						expire(engine);
+					}
+				}
+			}
+		}, "KBTA Engine Thread");
+		_engineThread.start();
+	}
+
+	private static int getIntPreference(SharedPreferences sp, String key,
+		int defaultValue){
+		try{
+			return Integer.parseInt(sp.getString(key, String.valueOf(defaultValue)));
+		}catch(NumberFormatException e){
+			Log.w(TAG, "Invalid value for " + key + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	private static long getLongPreference(SharedPreferences sp, String key,
+		long defaultValue){
+		try{
+			return Long.parseLong(sp.getString(key, String.valueOf(defaultValue)));
+		}catch(NumberFormatException e){
+			Log.w(TAG, "Invalid value for " + key + ", using " + defaultValue);
+			return defaultValue;
+		}
+	}
+
+	private static MonitoredDataQueue.OverflowPolicy getOverflowPolicy(
+		SharedPreferences sp){
+		String policy = sp.getString(Env.QUEUE_OVERFLOW_POLICY,
+			MonitoredDataQueue.OverflowPolicy.BLOCK.name());
+		try{
+			return MonitoredDataQueue.OverflowPolicy.valueOf(policy);
+		}catch(IllegalArgumentException e){
+			Log.w(TAG, "Unknown queue overflow policy: " + policy);
+			return MonitoredDataQueue.OverflowPolicy.BLOCK;
+		}
+	}
+
+	private static EngineClock.Mode getClockMode(SharedPreferences sp){
+		String mode = sp.getString(Env.ENGINE_CLOCK, EngineClock.Mode.WALL_CLOCK.name());
+		try{
+			return EngineClock.Mode.valueOf(mode);
+		}catch(IllegalArgumentException e){
+			Log.w(TAG, "Unknown engine clock: " + mode);
+			return EngineClock.Mode.WALL_CLOCK;
+		}
 	}
 
 	/**
@@ -90,6 +221,22 @@ public final class KBTAProcessorService extends Service implements ServiceConnec
 	@Override
 	public void onDestroy(){
 		setIsRunning(false);
+		if (_engineThread != null){
+			_engineThread.interrupt();
+			_engineThread = null;
+		}
+		if (_queue != null){
+			// Releasing the binder threads waiting for room in the queue
+			_queue.close();
+		}
+		if (_threatDelivery != null){
+			_threatDelivery.stop();
+			_threatDelivery = null;
+		}
+		if (_npc != null){
+			_npc.close();
+			_npc = null;
+		}
 		if (_twu != null){ // Unbinding from the TWU if connected
 			unbindService(this);
 			_twu = null;
@@ -114,143 +261,84 @@ public final class KBTAProcessorService extends Service implements ServiceConnec
 			public void receiveMonitoredData(List<MonitoredData> features)
 					throws RemoteException{
 				try{
-					compute(features);
-
-					if (_threatAssessor == null){
-						return;
+					if (!_queue.put(features)){
+						Log.w(TAG, "The processor is stopped, discarding the monitored data");
 					}
-					Collection<Pair<ThreatAssessment, Element>> threats = _threatAssessor
-							.assess(_allInstances);
-					try{
-						if (_npc != null){
-							for (Pair<ThreatAssessment, Element> p : threats){
-								_npc.sendRelatedElementsOf(p.second);
-							}
-						}
-					}catch(Exception e){
-						Log.e(TAG, "Unable to send monitored elements to NetProtect", e);
-					}
-					if (_twu != null){
-						for (Pair<ThreatAssessment, Element> p : threats){
-							ThreatAssessment ta = p.first;
-							Element element = p.second;
-
-							if (DEBUG)
-								Log.d(TAG, ta.toString(element));
-
-							_twu.receiveThreatAssessment("dt.processor.kbta", ta
-									.getTitle(), ta.getDescription(), ta
-									.getCertainty(element), element.getExtras());
-						}
-					}
-
-					// Removing all patterns as they will be recreated if need be
-					_allInstances.getLinearPatterns().clear();
-				}catch(Throwable t){
-					System.err.println("This should've been caught sooner!!!");
-					t.printStackTrace();
-					Log.e(TAG, "This should've been caught sooner!!!", t);
+				}catch(InterruptedException e){
+					Log.w(TAG, "Interrupted while queuing the monitored data");
+					Thread.currentThread().interrupt();
 				}
-
 			}
 
 			@Override
 			public void stoppedMonitoring() throws RemoteException{
-				_ontology.resetLastCreated();
+				// Handled by the engine thread before the next computation
+				_stoppedMonitoring = true;
 			}
 		};
 	}
 
-	void compute(List<MonitoredData> features){
-		if (_ontology == null){
-			return;
-		}
-		++_iteration;
-		
-		if (DEBUG)
-			System.out.println("\n--------------- Global iteration #" + _iteration
-					+ "---------------\n");
-		createPrimitivesAndEvents(features);
-		// if (DEBUG)
-		// System.out.println("** Events: **\n" + _allInstances.getEvents());
-
-		// if (DEBUG)
-		// System.out.println("** Primitives: **\n" + _allInstances.getPrimitives());
-		int i = 1;
-		do{
-			if (DEBUG)
-				System.out.println("---- Inner iteration #" + i++ + "----");
-			destroyContexts();
-			_allInstances.getContexts().shiftBack();
-			createContexts();
-			_allInstances.getStates().shiftBack();
-			createStates();
-			_allInstances.getTrends().shiftBack();
-			createTrends();
-		}while (_allInstances.hasNew());
-
-		createPatterns();
-		_allInstances.shiftBackAll();
-		_allInstances.discardElementsNotWithinRange(_ontology.getElementTimeout());
-	}
-
-	private void destroyContexts(){
-		ContextDef[] contextDefs = _ontology.getContextDefs();
-		for (ContextDef cd : contextDefs){
-			cd.destroyContext(_allInstances, _iteration);
+	private void process(List<MonitoredData> features){
+		try{
+			KBTAEngine engine = _engine;
+			if (engine == null){
+				return;
+			}
+			if (_stoppedMonitoring){
+				_stoppedMonitoring = false;
+				engine.stoppedMonitoring();
+			}
+			addMonitoredData(engine, features);
 
+			if (DEBUG)
+				System.out.println("\n--------------- Global iteration #"
+						+ (engine.getIteration() + 1) + "---------------\n");
+			deliver(engine, engine.compute());
+		}catch(Throwable t){
+			System.err.println("This should've been caught sooner!!!");
+			t.printStackTrace();
+			Log.e(TAG, "This should've been caught sooner!!!", t);
 		}
-		// if (DEBUG)
-		// System.out.println("** Contexts: **\n" + _allInstances.getContexts());
-
 	}
 
-	private void createContexts(){
-		ContextDef[] contextDefs = _ontology.getContextDefs();
-		for (ContextDef cd : contextDefs){
-			if (cd.isMonitored()){
-				cd.createContext(_allInstances, _iteration);
-			}
+	private void expire(KBTAEngine engine){
+		try{
+			deliver(engine, engine.expire());
+		}catch(Throwable t){
+			Log.e(TAG, "Unable to expire the elements", t);
 		}
-		// if (DEBUG)
-		// System.out.println("** Contexts: **\n" + _allInstances.getContexts());
 	}
 
-	private void createStates(){
-		StateDef[] stateDefs = _ontology.getStateDefs();
-		for (StateDef sd : stateDefs){
-			if (sd.isMonitored()){
-				sd.createState(_allInstances, _iteration);
-			}
+	/**
+	 * Delivers the threats that aren't suppressed by the filter (repeated reports of the
+	 * same elements) to NetProtect and the TWU
+	 */
+	private void deliver(KBTAEngine engine,
+		Collection<Pair<ThreatAssessment, Element>> threats){
+		if (_threatDelivery.takeConnected()){
+			// The threats discarded while the TWU was disconnected are reported again
+			_threatFilter.reset();
 		}
-		// if (DEBUG)
-		// System.out.println("** States: **\n" + _allInstances.getStates());
-	}
-
-	private void createTrends(){
-		TrendDef[] trendDefs = _ontology.getTrendDefs();
-		for (TrendDef td : trendDefs){
-			if (td.isMonitored()){
-				td.createTrend(_allInstances, _iteration);
+		List<ThreatFilter.Report> reports = _threatFilter.filter(threats, engine.getClock()
+				.currentTime());
+		if (_npc != null && !reports.isEmpty()){
+			// The elements of all of the batch's threats are uploaded together
+			List<Element> elements = new ArrayList<Element>(reports.size());
+			for (ThreatFilter.Report report : reports){
+				elements.add(report.element);
 			}
+			_npc.sendRelatedElementsOf(elements);
 		}
-		// if (DEBUG)
-		// System.out.println("** Trends: **\n" + _allInstances.getTrends());
-	}
-
-	private void createPatterns(){
-		LinearPatternDef[] linearPatternDefs = _ontology.getLinearPatternDefs();
-		for (LinearPatternDef lpd : linearPatternDefs){
-			if (lpd.isMonitored()){
-				lpd.createPattern(_allInstances);
+		if (DEBUG){
+			for (ThreatFilter.Report report : reports){
+				Log.d(TAG, report.threat.toString(report.element));
 			}
-
 		}
-		// if (DEBUG)
-		// System.out.println("** Patterns: **\n" + _allInstances.getLinearPatterns());
+		_threatDelivery.post(reports);
 	}
 
-	private void createPrimitivesAndEvents(List<MonitoredData> features){
+	private void addMonitoredData(KBTAEngine engine, List<MonitoredData> features){
+		startRecordedBatch();
 		for (MonitoredData md : features){
 			// Extracting the properties of the feature
 			String name = md.getName();
@@ -262,20 +350,64 @@ public final class KBTAProcessorService extends Service implements ServiceConnec
 				continue;
 			}
 
+			long[] eventTimes = (extras == null) ? null : extras.getLongArray("Events");
+			record(name, end, value, eventTimes);
+
 			// Matching feature to a primitive
-			PrimitiveDef pd = _ontology.getPrimitiveDef(name);
-			if (pd != null && pd.isMonitored()){
-				pd.createPrimitive(end, value, extras, _allInstances);
-			}
+			engine.addPrimitive(name, end, value, BundleExtras.wrap(extras));
 
 			// Matching feature to an event
-			EventDef ed = _ontology.getEventDef(name);
-			if (ed != null && ed.isMonitored()){
-				ed.createEvents(extras, _allInstances);
+			if (eventTimes != null){
+				engine.addEvents(name, eventTimes, getEventAttributes(extras));
+			}
+		}
+	}
+
+	private void startRecordedBatch(){
+		if (_recorder != null){
+			try{
+				_recorder.startBatch();
+			}catch(IOException e){
+				Log.e(TAG, "Unable to record the monitored data", e);
+				closeRecorder();
+			}
+		}
+	}
+
+	private void record(String name, Date end, double value, long[] eventTimes){
+		if (_recorder != null){
+			try{
+				_recorder.record(name, end.getTime(), value, eventTimes);
+			}catch(IOException e){
+				Log.e(TAG, "Unable to record the monitored data", e);
+				closeRecorder();
+			}
+		}
+	}
+
+	private void closeRecorder(){
+		if (_recorder != null){
+			try{
+				_recorder.close();
+			}catch(IOException e){
+				Log.w(TAG, "Unable to close the recording of the monitored data", e);
 			}
+			_recorder = null;
 		}
 	}
 
+	private static Extras[] getEventAttributes(Bundle extras){
+		Parcelable[] attributes = extras.getParcelableArray("Attributes");
+		if (attributes == null){
+			return null;
+		}
+		Extras[] eventAttributes = new Extras[attributes.length];
+		for (int i = 0; i < attributes.length; ++i){
+			eventAttributes[i] = BundleExtras.wrap((Bundle)attributes[i]);
+		}
+		return eventAttributes;
+	}
+
 	@Override
 	public void onServiceConnected(ComponentName name, IBinder service){
 		if (service == null){
@@ -284,11 +416,19 @@ public final class KBTAProcessorService extends Service implements ServiceConnec
 			// Casting the service object to "TWU"
 			_twu = TWU.Stub.asInterface(service);
 		}
+		ThreatDelivery threatDelivery = _threatDelivery;
+		if (threatDelivery != null){
+			threatDelivery.setTWU(_twu);
+		}
 	}
 
 	@Override
 	public void onServiceDisconnected(ComponentName name){
 		// Nothing to do but wait until the agent's process revives
 		_twu = null;
+		ThreatDelivery threatDelivery = _threatDelivery;
+		if (threatDelivery != null){
+			threatDelivery.setTWU(null);
+		}
 	}
 }
@@ -0,0 +1,174 @@
+package dt.processor.kbta;
+
+import static dt.processor.kbta.Env.TAG;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+import android.util.Log;
+import dt.fe.MonitoredData;
+
+/**
+ * A bounded queue of monitored data batches between the binder threads delivering them
+ * (any number of producers) and the single thread computing them (the consumer)
+ */
+final class MonitoredDataQueue{
+	/**
+	 * What to do with a batch that arrives while the queue is full
+	 */
+	public enum OverflowPolicy{
+		/**
+		 * The delivering thread waits until there is room in the queue
+		 */
+		BLOCK,
+		/**
+		 * The oldest queued batch is discarded
+		 */
+		DROP_OLDEST,
+		/**
+		 * The batch is merged into the newest queued batch, replacing the queued features
+		 * of the same names
+		 */
+		COALESCE
+	}
+
+	private final LinkedList<List<MonitoredData>> _batches;
+
+	private final int _capacity;
+
+	private final int _maxBatchesPerPass;
+
+	private final OverflowPolicy _overflowPolicy;
+
+	private int _droppedBatches;
+
+	private boolean _closed;
+
+	/**
+	 * @param capacity The maximal number of queued batches
+	 * @param maxBatchesPerPass The maximal number of queued batches merged into a single
+	 *        computation pass
+	 * @param overflowPolicy What to do with a batch that arrives while the queue is full
+	 */
+	public MonitoredDataQueue(int capacity, int maxBatchesPerPass,
+		OverflowPolicy overflowPolicy){
+		_batches = new LinkedList<List<MonitoredData>>();
+		_capacity = Math.max(1, capacity);
+		_maxBatchesPerPass = Math.max(1, maxBatchesPerPass);
+		_overflowPolicy = overflowPolicy;
+		_droppedBatches = 0;
+		_closed = false;
+	}
+
+	/**
+	 * Queues a batch of monitored data, the batch is copied so the caller may reuse it
+	 *
+	 * @param features The batch
+	 * @return Whether the batch has been queued, false if the queue is (or has been while
+	 *         waiting for room in it) closed
+	 * @throws InterruptedException If interrupted while waiting for room in the queue
+	 */
+	public synchronized boolean put(List<MonitoredData> features)
+			throws InterruptedException{
+		if (features == null || features.isEmpty()){
+			return true;
+		}
+		while (_batches.size() >= _capacity){
+			if (_closed){
+				return false;
+			}
+			switch (_overflowPolicy){
+				case DROP_OLDEST:
+					_batches.removeFirst();
+					Log.w(TAG, "The monitored data queue is full, dropped the oldest batch ("
+							+ (++_droppedBatches) + " so far)");
+					break;
+				case COALESCE:
+					coalesce(_batches.getLast(), features);
+					notifyAll();
+					return true;
+				default:
+					wait();
+					break;
+			}
+		}
+		if (_closed){
+			return false;
+		}
+		_batches.addLast(new ArrayList<MonitoredData>(features));
+		notifyAll();
+		return true;
+	}
+
+	/**
+	 * Closes the queue (e.g. once the consumer has stopped), the threads waiting for room
+	 * in it are released and the batches arriving from now on are discarded
+	 */
+	public synchronized void close(){
+		_closed = true;
+		_batches.clear();
+		notifyAll();
+	}
+
+	/**
+	 * Waits for at least one batch to be queued and removes it along with the batches
+	 * queued after it (up to the maximal number of batches per pass). The batches are
+	 * merged in the order they have arrived
+	 *
+	 * @return The merged batch
+	 * @throws InterruptedException If interrupted while waiting for a batch
+	 */
+	public synchronized List<MonitoredData> take() throws InterruptedException{
+		while (_batches.isEmpty()){
+			wait();
+		}
+		return removeBatches();
+	}
+
+	/**
+	 * Waits up to the given time for at least one batch to be queued, and removes it as
+	 * {@link #take()} does
+	 *
+	 * @param timeout The maximal time to wait, in milliseconds
+	 * @return The merged batch, or null if none has been queued in time
+	 * @throws InterruptedException If interrupted while waiting for a batch
+	 */
+	public synchronized List<MonitoredData> poll(long timeout) throws InterruptedException{
+		long deadline = System.currentTimeMillis() + timeout;
+		while (_batches.isEmpty()){
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0){
+				return null;
+			}
+			wait(remaining);
+		}
+		return removeBatches();
+	}
+
+	private List<MonitoredData> removeBatches(){
+		List<MonitoredData> features = _batches.removeFirst();
+		for (int i = 1; i < _maxBatchesPerPass && !_batches.isEmpty(); ++i){
+			features.addAll(_batches.removeFirst());
+		}
+		// Waking up the threads waiting for room in the queue
+		notifyAll();
+		return features;
+	}
+
+	private static void coalesce(List<MonitoredData> queued, List<MonitoredData> features){
+		HashSet<String> names = new HashSet<String>();
+		for (MonitoredData md : features){
+			names.add(md.getName());
+		}
+		Iterator<MonitoredData> iter = queued.iterator();
+		while (iter.hasNext()){
+			if (names.contains(iter.next().getName())){
+				iter.remove();
+			}
+		}
+		queued.addAll(features);
+	}
+}
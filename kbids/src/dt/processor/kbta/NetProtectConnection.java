@@ -2,21 +2,32 @@ package dt.processor.kbta;
 
 import static dt.processor.kbta.Env.TAG;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-
-import org.kxmlrpc.XmlRpcClient;
+import java.io.File;
+import java.util.Collection;
 
+import android.content.BroadcastReceiver;
 import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.content.SharedPreferences;
+import android.content.SharedPreferences.OnSharedPreferenceChangeListener;
 import android.content.pm.PackageManager.NameNotFoundException;
+import android.net.NetworkInfo;
 import android.net.wifi.WifiManager;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import dt.processor.kbta.ontology.instances.Element;
-
-@SuppressWarnings("unchecked")
+import dt.processor.kbta.ontology.instances.LineageSerializer;
+import dt.processor.kbta.upload.ElementSpool;
+import dt.processor.kbta.upload.ElementUploader;
+import dt.processor.kbta.upload.NetProtectGateway;
+
+/**
+ * Sends the elements from which the threats are generated to NetProtect. The elements are
+ * spooled (in a file that survives restarts) and uploaded in batches by a worker thread
+ * while connected to Wi-Fi. The server's URL and the agent's credentials are cached (in
+ * the gateway) and refreshed when the preferences change
+ */
 public class NetProtectConnection{
 
 	private static final String AGENT_ID = "agent_id";
@@ -25,62 +36,116 @@ public class NetProtectConnection{
 
 	private static final String NETPROTECT_URL = "netprotect_url";
 
-	private final Context _agentContext;
+	/** The file (in the files directory) the elements waiting to be uploaded are kept in */
+	private static final String SPOOL_FILE = "netprotect_spool";
+
+	/** The maximal size of the spooled elements, in bytes */
+	private static final long SPOOL_CAPACITY = 2 * 1024 * 1024;
+
+	/** The maximal number of elements sent in a single call */
+	private static final int BATCH_SIZE = 200;
+
+	private final Context _context;
+
+	private final SharedPreferences _agentPrefs;
 
-	private XmlRpcClient _server;
+	private final SharedPreferences _kbtaPrefs;
 
-	private WifiManager _wm;
+	private final NetProtectGateway _gateway;
+
+	private final ElementUploader _uploader;
+
+	private volatile boolean _enabled;
+
+	// Kept as fields since the preferences reference the listeners weakly
+	private final OnSharedPreferenceChangeListener _preferenceListener = new OnSharedPreferenceChangeListener(){
+		@Override
+		public void onSharedPreferenceChanged(SharedPreferences sp, String key){
+			refreshPreferences();
+		}
+	};
+
+	private final BroadcastReceiver _wifiReceiver = new BroadcastReceiver(){
+		@Override
+		public void onReceive(Context context, Intent intent){
+			NetworkInfo info = intent.getParcelableExtra(WifiManager.EXTRA_NETWORK_INFO);
+			boolean connected = (info != null) && info.isConnected();
+			_gateway.setConnected(connected);
+			if (connected){
+				// Draining the spool now that the Wi-Fi has returned
+				_uploader.wake();
+			}
+		}
+	};
 
 	public NetProtectConnection(Context context, String agentPackageName)
 			throws NameNotFoundException{
-		_agentContext = context.createPackageContext(agentPackageName, 0);
-
-		_wm = (WifiManager)context.getSystemService(Context.WIFI_SERVICE);
+		Context agentContext = context.createPackageContext(agentPackageName, 0);
+		_context = context;
+		_gateway = new NetProtectGateway();
+		_agentPrefs = PreferenceManager.getDefaultSharedPreferences(agentContext);
+		_kbtaPrefs = PreferenceManager.getDefaultSharedPreferences(context);
+		_agentPrefs.registerOnSharedPreferenceChangeListener(_preferenceListener);
+		_kbtaPrefs.registerOnSharedPreferenceChangeListener(_preferenceListener);
+		refreshPreferences();
+
+		WifiManager wm = (WifiManager)context.getSystemService(Context.WIFI_SERVICE);
+		_gateway.setConnected((wm.getWifiState() == WifiManager.WIFI_STATE_ENABLED)
+				&& wm.getConnectionInfo().getNetworkId() != -1);
+
+		_uploader = new ElementUploader(_gateway, new ElementSpool(new File(context
+				.getFilesDir(), SPOOL_FILE), SPOOL_CAPACITY), BATCH_SIZE);
+		_uploader.start();
+		context.registerReceiver(_wifiReceiver, new IntentFilter(
+				WifiManager.NETWORK_STATE_CHANGED_ACTION));
 	}
 
-	public void sendRelatedElementsOf(Element e) throws Exception{
-		SharedPreferences agentPrefs = PreferenceManager
-				.getDefaultSharedPreferences(_agentContext);
-		SharedPreferences kbtaPrefs = Env.getSharedPreferences();
-
-		boolean connected = (_wm.getWifiState() == WifiManager.WIFI_STATE_ENABLED)
-				&& _wm.getConnectionInfo().getNetworkId() != -1;
-		if (!connected){
+	/**
+	 * Queues the related elements of the given elements to be sent to NetProtect (if
+	 * enabled), must be called from the thread the elements are confined to
+	 */
+	public void sendRelatedElementsOf(Collection<Element> elements){
+		if (!_enabled || elements.isEmpty()){
 			return;
 		}
+		// The elements the threats share (e.g. a context) are sent once
+		LineageSerializer related = new LineageSerializer();
+		for (Element e : elements){
+			related.add(e);
+		}
+		if (related.size() > 0){
+			_uploader.upload(related.toCompact());
+		}
+	}
 
-		if (kbtaPrefs.getBoolean(Env.SEND_ELEMENTS_TO_NETPROTECT, false)){
-			if (_server == null){
-				String serverURL = agentPrefs.getString(NETPROTECT_URL, null);
-				if (serverURL == null){
-					Log.w(TAG,
-						"Can't send elements to NetProtect, the server URL is not set");
-					return;
-				}
-
-				_server = new XmlRpcClient(serverURL);
-			}
+	/**
+	 * Stops uploading the elements, those not yet uploaded remain spooled for the next
+	 * connection
+	 */
+	public void close(){
+		_uploader.stop();
+		_context.unregisterReceiver(_wifiReceiver);
+		_agentPrefs.unregisterOnSharedPreferenceChangeListener(_preferenceListener);
+		_kbtaPrefs.unregisterOnSharedPreferenceChangeListener(_preferenceListener);
+	}
 
-			String agentId = agentPrefs.getString(AGENT_ID, null);
-			String secret = agentPrefs.getString(SECRET, null);
-			if (agentId == null || secret == null){
-				Log.w(TAG,
-					"Can't send elements to NetProtect, the agent is not registered");
-				return;
+	private void refreshPreferences(){
+		String serverURL = _agentPrefs.getString(NETPROTECT_URL, null);
+		String agentId = _agentPrefs.getString(AGENT_ID, null);
+		String secret = _agentPrefs.getString(SECRET, null);
+		boolean enabled = _kbtaPrefs.getBoolean(Env.SEND_ELEMENTS_TO_NETPROTECT, false);
+		if (enabled){
+			if (serverURL == null){
+				Log.w(TAG, "Can't send elements to NetProtect, the server URL is not set");
+			}else if (agentId == null || secret == null){
+				Log.w(TAG, "Can't send elements to NetProtect, the agent is not registered");
 			}
+		}
 
-			List<Map> elements = new ArrayList<Map>();
-			e.toNetProtectElement(elements);
-//			for (Map m : elements){
-//				System.out.println(m);
-//			}
-			if (!elements.isEmpty()){
-				_server
-						.execute(
-							"bgu.dt.netprotect.external.CalculatedDataGateway.sendCalculatedData",
-							agentId, secret, elements);
-			}
+		_gateway.setServer(serverURL, agentId, secret);
+		_enabled = enabled;
+		if (_uploader != null){
+			_uploader.wake();
 		}
 	}
-
 }
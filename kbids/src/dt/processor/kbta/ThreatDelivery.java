@@ -0,0 +1,175 @@
+package dt.processor.kbta;
+
+import static dt.processor.kbta.Env.TAG;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import android.os.Bundle;
+import android.os.RemoteException;
+import android.util.Log;
+import dt.agent.twu.TWU;
+import dt.processor.kbta.threats.ThreatFilter;
+
+/**
+ * Delivers the reported threats to the TWU from a worker thread, so the engine thread
+ * doesn't wait on the binder transactions. The TWU receives a single threat per
+ * transaction, so the reports are marshalled by the engine thread (the elements are
+ * confined to it) and the worker flushes all of the reports queued meanwhile at once
+ */
+final class ThreatDelivery implements Runnable{
+	private static final String PROCESSOR_NAME = "dt.processor.kbta";
+
+	/** The maximal number of queued reports, the oldest are dropped beyond it */
+	private static final int CAPACITY = 256;
+
+	private final LinkedList<Delivery> _pending;
+
+	private volatile TWU _twu;
+
+	private Thread _thread;
+
+	private int _droppedReports;
+
+	/** Whether the TWU has been connected since the last check, see {@link #takeConnected()} */
+	private boolean _connected;
+
+	public ThreatDelivery(){
+		_pending = new LinkedList<Delivery>();
+		_droppedReports = 0;
+		_connected = false;
+	}
+
+	public void start(){
+		_thread = new Thread(this, "KBTA Threat Delivery Thread");
+		_thread.start();
+	}
+
+	/**
+	 * Stops the worker, the reports not yet delivered are discarded
+	 */
+	public void stop(){
+		if (_thread != null){
+			_thread.interrupt();
+			_thread = null;
+		}
+	}
+
+	/**
+	 * @param twu The TWU the threats are delivered to, null while disconnected (the
+	 *        threats are then discarded)
+	 */
+	public void setTWU(TWU twu){
+		_twu = twu;
+		if (twu != null){
+			synchronized (this){
+				_connected = true;
+			}
+		}
+	}
+
+	/**
+	 * Checks whether the TWU has been (re)connected since the last check, the threats
+	 * discarded while it was disconnected (which the filter considers reported) are then
+	 * to be reported again
+	 */
+	public synchronized boolean takeConnected(){
+		boolean connected = _connected;
+		_connected = false;
+		return connected;
+	}
+
+	/**
+	 * Queues the reports of a batch, must be called from the thread the elements are
+	 * confined to
+	 */
+	public void post(List<ThreatFilter.Report> reports){
+		if (reports.isEmpty() || _twu == null){
+			return;
+		}
+		List<Delivery> deliveries = new ArrayList<Delivery>(reports.size());
+		for (ThreatFilter.Report report : reports){
+			deliveries.add(new Delivery(report.threat.getTitle(), report.threat
+					.getDescription(), report.certainty, BundleExtras.toBundle(report.element
+					.getExtras())));
+		}
+		synchronized (this){
+			_pending.addAll(deliveries);
+			while (_pending.size() > CAPACITY){
+				_pending.removeFirst();
+				++_droppedReports;
+			}
+			notifyAll();
+		}
+	}
+
+	@Override
+	public void run(){
+		List<Delivery> flush = new ArrayList<Delivery>();
+		while (true){
+			int dropped;
+			synchronized (this){
+				try{
+					while (_pending.isEmpty()){
+						wait();
+					}
+				}catch(InterruptedException e){
+					return;
+				}
+				flush.addAll(_pending);
+				_pending.clear();
+				dropped = _droppedReports;
+				_droppedReports = 0;
+			}
+			if (dropped > 0){
+				Log.w(TAG, "The TWU is lagging behind, dropped " + dropped + " threat reports");
+			}
+
+			TWU twu = _twu;
+			if (twu != null){
+				deliver(twu, flush);
+			}
+			flush.clear();
+		}
+	}
+
+	/**
+	 * Delivers each of the reports on its own, a report the TWU fails to receive is
+	 * dropped (and counted) without holding back the ones after it
+	 */
+	private static void deliver(TWU twu, List<Delivery> flush){
+		int failed = 0;
+		RemoteException failure = null;
+		for (Delivery d : flush){
+			try{
+				twu.receiveThreatAssessment(PROCESSOR_NAME, d._title, d._description,
+					d._certainty, d._extras);
+			}catch(RemoteException e){
+				++failed;
+				failure = e;
+			}
+		}
+		if (failed > 0){
+			Log.e(TAG, "Unable to deliver " + failed + " of " + flush.size()
+					+ " threat reports to the TWU, dropped them", failure);
+		}
+	}
+
+	private static final class Delivery{
+		private final String _title;
+
+		private final String _description;
+
+		private final int _certainty;
+
+		private final Bundle _extras;
+
+		Delivery(String title, String description, int certainty, Bundle extras){
+			_title = title;
+			_description = description;
+			_certainty = certainty;
+			_extras = extras;
+		}
+	}
+}
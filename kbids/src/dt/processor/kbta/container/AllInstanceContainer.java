@@ -1,5 +1,9 @@
 package dt.processor.kbta.container;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.instances.Context;
 import dt.processor.kbta.ontology.instances.Event;
 import dt.processor.kbta.ontology.instances.LinearPattern;
@@ -14,14 +18,40 @@ public class AllInstanceContainer {
 	private final ComplexContainer<State> _states;
 	private final ComplexContainer<Trend> _trends;
 	private final ComplexContainer<LinearPattern> _patterns;
+	private final WindowContainer _windows;
+
+	/**
+	 * The matches found by the latest evaluation of each pattern other than its current
+	 * pattern, null if there are none
+	 */
+	private final ArrayList<LinearPattern>[] _otherMatches;
 	
-	public AllInstanceContainer() {
-		_primitives = new PrimitiveContainer();
-		_events = new EventContainer();
-		_contexts = new ComplexContainer<Context>();
-		_states = new ComplexContainer<State>();
-		_trends = new ComplexContainer<Trend>();
-		_patterns = new ComplexContainer<LinearPattern>();
+	/**
+	 * @param ontology The ontology whose definitions' ids index the containers
+	 */
+	public AllInstanceContainer(Ontology ontology) {
+		this(ontology, ElementHistory.UNBOUNDED);
+	}
+
+	/**
+	 * @param ontology The ontology whose definitions' ids index the containers
+	 * @param historyCapacity The maximal number of old elements kept per definition, or
+	 *        {@link ElementHistory#UNBOUNDED}
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public AllInstanceContainer(Ontology ontology, int historyCapacity) {
+		_primitives = new PrimitiveContainer(ontology.getPrimitiveDefs());
+		_events = new EventContainer(ontology.getEventDefs().length, historyCapacity);
+		_contexts = new ComplexContainer<Context>(ontology.getContextDefs().length,
+				historyCapacity);
+		_states = new ComplexContainer<State>(ontology.getStateDefs().length,
+				historyCapacity);
+		_trends = new ComplexContainer<Trend>(ontology.getTrendDefs().length,
+				historyCapacity);
+		_patterns = new ComplexContainer<LinearPattern>(
+				ontology.getLinearPatternDefs().length, historyCapacity);
+		_windows = new WindowContainer(ontology, _primitives);
+		_otherMatches = new ArrayList[ontology.getLinearPatternDefs().length];
 	}
 	
 	public void addPrimitive(Primitive element){
@@ -72,6 +102,49 @@ public class AllInstanceContainer {
 		return _patterns;
 	}
 
+	public WindowContainer getWindows() {
+		return _windows;
+	}
+
+	/**
+	 * Sets the matches found by the latest evaluation of a pattern other than its current
+	 * pattern (for patterns reporting all of their matches, each match is set once)
+	 * 
+	 * @param id The id of the pattern's definition
+	 * @param matches The matches, null if there are none
+	 */
+	public void setOtherMatches(int id, ArrayList<LinearPattern> matches){
+		_otherMatches[id] = matches;
+	}
+
+	/**
+	 * @param id The id of the pattern's definition
+	 * @return The matches found by the latest evaluation of the pattern other than its
+	 *         current pattern, null if there are none
+	 */
+	public ArrayList<LinearPattern> getOtherMatches(int id){
+		return _otherMatches[id];
+	}
+
+	/**
+	 * Forgets the other matches of all of the patterns, once they have been assessed
+	 */
+	public void clearOtherMatches(){
+		Arrays.fill(_otherMatches, null);
+	}
+
+	/**
+	 * Evicts the samples that have left the windows of the statistics and the horizons
+	 * of the primitives' histories, on each tick of the engine's clock
+	 *
+	 * @param now The current time of the engine's clock
+	 */
+	public void evictSamples(long now){
+		// The windows read the samples they remove from the histories
+		_windows.evict(now);
+		_primitives.evictHistories(now);
+	}
+
 	public boolean hasNew() {
 		return (_contexts.hasNew() || _states.hasNew() || _trends.hasNew());
 	}
@@ -85,15 +158,17 @@ public class AllInstanceContainer {
 		_patterns.shiftBack();
 	}	
 	
-	public void discardElementsNotWithinRange(long time){
-		long current= System.currentTimeMillis();
-		long cutOffTime=current-time;
-		_primitives.discardOlderThan(cutOffTime);
-		_contexts.discardOlderThan(cutOffTime);
-		_events.discardOlderThan(cutOffTime);
-		_patterns.discardOlderThan(cutOffTime);
-		_states.discardOlderThan(cutOffTime);
-		_trends.discardOlderThan(cutOffTime);
+	/**
+	 * @param listener Notified of the definitions whose elements have changed when each
+	 *        of the containers is shifted back, may be null
+	 */
+	public void setShiftListener(ShiftListener listener){
+		_primitives.setShiftListener(listener);
+		_contexts.setShiftListener(listener);
+		_events.setShiftListener(listener);
+		_patterns.setShiftListener(listener);
+		_states.setShiftListener(listener);
+		_trends.setShiftListener(listener);
 	}
 	
 	
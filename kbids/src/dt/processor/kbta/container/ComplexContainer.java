@@ -1,91 +1,199 @@
 package dt.processor.kbta.container;
 
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.Arrays;
 
 import dt.processor.kbta.ontology.instances.Element;
 
+/**
+ * The new, current and old elements of each definition of a kind, indexed by the ids of
+ * the definitions. The ids of the definitions whose elements were added (or prolonged)
+ * since the last shift back are tracked so that shifting back only visits them
+ */
 public class ComplexContainer <T extends Element> implements ElementContainer{
-	private final HashMap<String, ArrayList<T>> _oldElements;
-	private final HashMap<String, T> _newElements;
-	private final HashMap<String, T> _currentElements; 
-	public ComplexContainer() {
-		_oldElements = new HashMap<String, ArrayList<T>>();
-		_newElements = new HashMap<String, T>();
-		_currentElements = new HashMap<String, T>();
+	private final ElementHistory<T>[] _oldElements;
+	private final T[] _newElements;
+	private final T[] _currentElements; 
+	private final int _historyCapacity;
+	private int _newCount;
+	/** The ids with new or prolonged elements since the last shift back */
+	private final int[] _touchedIds;
+	private final boolean[] _touched;
+	private int _touchedCount;
+	/** The ids whose new elements became the current ones by the last shift back */
+	private final int[] _shiftedIds;
+	private final boolean[] _shifted;
+	private int _shiftedCount;
+	private ShiftListener _listener;
+
+	/**
+	 * @param size The number of definitions of the kind in the ontology
+	 * @param historyCapacity The maximal number of old elements kept per definition, or
+	 *        {@link ElementHistory#UNBOUNDED}
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public ComplexContainer(int size, int historyCapacity) {
+		_oldElements = new ElementHistory[size];
+		_historyCapacity = historyCapacity;
+		_newElements = (T[])new Element[size];
+		_currentElements = (T[])new Element[size];
+		_newCount = 0;
+		_touchedIds = new int[size];
+		_touched = new boolean[size];
+		_touchedCount = 0;
+		_shiftedIds = new int[size];
+		_shifted = new boolean[size];
+		_shiftedCount = 0;
+	}
+
+	@Override
+	public void setShiftListener(ShiftListener listener){
+		_listener = listener;
 	}
 
 	public void addElement(T element){
-		String name = element.getName();
-		_newElements.put(name, element);
+		int id = element.getId();
+		if (_newElements[id] == null){
+			++_newCount;
+		}
+		_newElements[id] = element;
+		touch(id);
 	}
 
-	public ArrayList<T> getOldElements(String st){
-		return _oldElements.get(st);
+	/**
+	 * Marks the current element of the given definition as prolonged in place (its end
+	 * time has changed without it being replaced), so the shift listener is notified of
+	 * it on the next shift back. Removing and adding elements mark them implicitly
+	 */
+	public void markProlonged(int id){
+		touch(id);
 	}
 
-	public T getNewestElement(String st){
-		return _newElements.get(st);	 
+	private void touch(int id){
+		if (!_touched[id]){
+			_touched[id] = true;
+			_touchedIds[_touchedCount++] = id;
+		}
+	}
+
+	public ElementHistory<T> getOldElements(int id){
+		return _oldElements[id];
+	}
+
+	public T getNewestElement(int id){
+		return _newElements[id];	 
 	}
 	
-	public T getCurrentElement(String st){
-		return _currentElements.get(st);
+	public T getCurrentElement(int id){
+		return _currentElements[id];
+	}
+
+	/**
+	 * Returns the newest element of the given id if one has been created since the last
+	 * shift back, otherwise the current one
+	 */
+	public T getLatestElement(int id){
+		T element = _newElements[id];
+		return (element != null) ? element : _currentElements[id];
+	}
+
+	/**
+	 * Returns the current element of the given id if it was the newest one before the
+	 * last shift back (i.e. it was created in the previous iteration), otherwise null
+	 */
+	public T getShiftedElement(int id){
+		return _shifted[id] ? _currentElements[id] : null;
 	}
 	
 	public void setNewestElement(T t){
-		_newElements.put(t.getName(), t);
+		addElement(t);
 	}
 		
 	public void shiftBack(){
-
-		for (Map.Entry<String, T> newElement: _newElements.entrySet()){
-			String name=newElement.getKey();
-			T current=_currentElements.get(name);
-			if (current!=null){
-				addToOld(current, name);
+		for (int i = 0; i < _shiftedCount; ++i){
+			_shifted[_shiftedIds[i]] = false;
+		}
+		_shiftedCount = 0;
+		for (int i = 0; i < _touchedCount; ++i){
+			int id = _touchedIds[i];
+			_touched[id] = false;
+			T newElement = _newElements[id];
+			if (newElement != null){
+				T current = _currentElements[id];
+				if (current != null){
+					appendToOld(current, id);
+				}
+				_currentElements[id] = newElement;
+				_newElements[id] = null;
+				_shifted[id] = true;
+				_shiftedIds[_shiftedCount++] = id;
+			}
+			if (_listener != null){
+				_listener.shifted(this, id);
 			}
-			_currentElements.put(name, newElement.getValue());
 		}
-		_newElements.clear();
+		_touchedCount = 0;
+		_newCount = 0;
 	}
 
 	@Override
 	public void discardOlderThan(long time){
-		Iterator<Map.Entry<String, T>> iter=_currentElements.entrySet().iterator();
-		while(iter.hasNext()){
-			Map.Entry<String, T> currentElement = iter.next();
-			String name=currentElement.getKey();
-			if (currentElement.getValue().getTimeInterval().getEndTime()<time){
-				_oldElements.remove(name);
-				iter.remove();
+		for (int id = 0; id < _currentElements.length; ++id){
+			T currentElement = _currentElements[id];
+			if (currentElement != null
+					&& currentElement.getTimeInterval().getEndTime() < time){
+				_oldElements[id] = null;
+				_currentElements[id] = null;
 			}
 		}
-		for (Map.Entry<String, ArrayList<T>> oldElements: _oldElements.entrySet()){
-			Iterator<T> iterator=oldElements.getValue().iterator();
-			while(iterator.hasNext()){
-				T currentElement = iterator.next();
-				if (currentElement.getTimeInterval().getEndTime()<time){
-					iterator.remove();
-				}
-				else{
-					break;
-				}
+		for (ElementHistory<T> oldElements : _oldElements){
+			if (oldElements != null){
+				oldElements.discardOlderThan(time);
 			}
 		}
 	}
 
-	public void removeCurrentElement(String name){
-		_currentElements.remove(name);
-		
+	@Override
+	public void discardOlderThan(int id, long time){
+		T currentElement = _currentElements[id];
+		if (currentElement != null && currentElement.getTimeInterval().getEndTime() < time){
+			_oldElements[id] = null;
+			_currentElements[id] = null;
+		}
+		ElementHistory<T> oldElements = _oldElements[id];
+		if (oldElements != null){
+			oldElements.discardOlderThan(time);
+		}
+	}
+
+	@Override
+	public long getEarliestEndTime(int id){
+		long earliest = Long.MAX_VALUE;
+		T currentElement = _currentElements[id];
+		if (currentElement != null){
+			earliest = currentElement.getTimeInterval().getEndTime();
+		}
+		ElementHistory<T> oldElements = _oldElements[id];
+		if (oldElements != null && !oldElements.isEmpty()){
+			earliest = Math.min(earliest, oldElements.get(0).getTimeInterval().getEndTime());
+		}
+		return earliest;
+	}
+
+	public void removeCurrentElement(int id){
+		_currentElements[id] = null;
+		touch(id);
 	}
 	
-	public void addToOld(T oldElement, String name){
-		ArrayList<T> old=_oldElements.get(name);
-		if (old==null){
-			old=new ArrayList<T>();
-			_oldElements.put(name, old);
+	public void addToOld(T oldElement, int id){
+		appendToOld(oldElement, id);
+		touch(id);
+	}
+
+	private void appendToOld(T oldElement, int id){
+		ElementHistory<T> old = _oldElements[id];
+		if (old == null){
+			old = new ElementHistory<T>(_historyCapacity);
+			_oldElements[id] = old;
 		}
 		old.add(oldElement);
 	}
@@ -93,18 +201,23 @@ public class ComplexContainer <T extends Element> implements ElementContainer{
 	@Override
 	public String toString(){
 		return 
-		"New: "+_newElements.values()+"\n" +
-		"Current: "+_currentElements.values()+"\n" +
-		"Old:"+_oldElements.values();
+		"New: "+Slots.values(_newElements)+"\n" +
+		"Current: "+Slots.values(_currentElements)+"\n" +
+		"Old:"+Slots.values(_oldElements);
 	}
 
 	public boolean hasNew() {
-		return !_newElements.isEmpty();
+		return _newCount > 0;
 	}
 	
 	public void clear(){
-		_oldElements.clear();
-		_newElements.clear();
-		_currentElements.clear();
+		Arrays.fill(_oldElements, null);
+		Arrays.fill(_newElements, null);
+		Arrays.fill(_currentElements, null);
+		Arrays.fill(_touched, false);
+		_touchedCount = 0;
+		Arrays.fill(_shifted, false);
+		_shiftedCount = 0;
+		_newCount = 0;
 	}
 }
@@ -3,4 +3,23 @@ package dt.processor.kbta.container;
 public interface ElementContainer{
 	public void shiftBack();
 	public void discardOlderThan(long time);
+
+	/**
+	 * Discards the elements of a single definition that have ended before the given time,
+	 * the same as {@link #discardOlderThan(long)} does for all of the definitions
+	 */
+	public void discardOlderThan(int id, long time);
+
+	/**
+	 * @return The earliest end time of the elements of the given definition that
+	 *         {@link #discardOlderThan(int, long)} would check, Long.MAX_VALUE if there
+	 *         are none
+	 */
+	public long getEarliestEndTime(int id);
+
+	/**
+	 * @param listener Notified of the definitions whose elements have changed on each
+	 *        shift back, may be null
+	 */
+	public void setShiftListener(ShiftListener listener);
 }
@@ -0,0 +1,221 @@
+package dt.processor.kbta.container;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import dt.processor.kbta.ontology.instances.Element;
+
+/**
+ * The old elements of a single definition, kept in a circular buffer in the order they
+ * were added. As elements are added in order of time, both their start and end times are
+ * (non-strictly) ascending which allows evicting from the front and binary searching by
+ * time.<br>
+ * Appending is O(1) (amortized) and evicting k elements from the front is O(k). If the
+ * history is capped, appending to a full history evicts its oldest element.<br>
+ * Each appended element is given a sequence number (the number of elements appended
+ * before it), so the elements appended and evicted since a given time can be told apart
+ * without comparing the elements
+ */
+public final class ElementHistory<T extends Element> implements Iterable<T>{
+	/** The capacity of a history that isn't capped */
+	public static final int UNBOUNDED = 0;
+
+	private static final int INITIAL_SIZE = 8;
+
+	private final int _capacity;
+
+	private Element[] _elements;
+
+	/** The index of the oldest element in the buffer */
+	private int _head;
+
+	private int _size;
+
+	/** The number of elements ever appended */
+	private long _appended;
+
+	/**
+	 * @param capacity The maximal number of elements kept, or {@link #UNBOUNDED}
+	 */
+	public ElementHistory(int capacity){
+		_capacity = Math.max(UNBOUNDED, capacity);
+		_elements = new Element[(_capacity == UNBOUNDED) ? INITIAL_SIZE : Math.min(
+			INITIAL_SIZE, _capacity)];
+		_head = 0;
+		_size = 0;
+		_appended = 0;
+	}
+
+	/**
+	 * Appends the element as the newest in the history, evicting the oldest element if
+	 * the history is full
+	 */
+	public void add(T element){
+		++_appended;
+		if (_size == _elements.length){
+			if (_size == _capacity){
+				_elements[_head] = element;
+				_head = (_head + 1) % _elements.length;
+				return;
+			}
+			grow();
+		}
+		_elements[(_head + _size) % _elements.length] = element;
+		++_size;
+	}
+
+	/**
+	 * Appends the elements (in order) as the newest in the history
+	 */
+	public void addAll(Iterable<? extends T> elements){
+		for (T element : elements){
+			add(element);
+		}
+	}
+
+	/**
+	 * @param index The index of the element, 0 being the oldest
+	 */
+	@SuppressWarnings("unchecked")
+	public T get(int index){
+		if (index < 0 || index >= _size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+		}
+		return (T)_elements[(_head + index) % _elements.length];
+	}
+
+	public int size(){
+		return _size;
+	}
+
+	public boolean isEmpty(){
+		return _size == 0;
+	}
+
+	/**
+	 * @return The sequence number of the oldest element in the history (the element at
+	 *         index 0), equal to {@link #getEndSequence()} if the history is empty
+	 */
+	public long getFirstSequence(){
+		return _appended - _size;
+	}
+
+	/**
+	 * @return The sequence number the next appended element will be given
+	 */
+	public long getEndSequence(){
+		return _appended;
+	}
+
+	/**
+	 * Evicts the elements at the front of the history that have ended before the given
+	 * time, up to the first one that hasn't
+	 *
+	 * @param time The cut off time
+	 * @return The number of evicted elements
+	 */
+	public int discardOlderThan(long time){
+		int evicted = 0;
+		while (_size > 0
+				&& _elements[_head].getTimeInterval().getEndTime() < time){
+			_elements[_head] = null;
+			_head = (_head + 1) % _elements.length;
+			--_size;
+			++evicted;
+		}
+		return evicted;
+	}
+
+	/**
+	 * @return The index of the first element whose start time is at least the given
+	 *         time, or the size of the history if there is none
+	 */
+	public int lowerBoundByStartTime(long time){
+		int low = 0;
+		int high = _size;
+		while (low < high){
+			int mid = (low + high) >>> 1;
+			if (get(mid).getTimeInterval().getStartTime() < time){
+				low = mid + 1;
+			}else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * @return The index of the first element whose end time is at least the given time,
+	 *         or the size of the history if there is none
+	 */
+	public int lowerBoundByEndTime(long time){
+		int low = 0;
+		int high = _size;
+		while (low < high){
+			int mid = (low + high) >>> 1;
+			if (get(mid).getTimeInterval().getEndTime() < time){
+				low = mid + 1;
+			}else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	public void clear(){
+		Arrays.fill(_elements, null);
+		_head = 0;
+		_size = 0;
+	}
+
+	@Override
+	public Iterator<T> iterator(){
+		return new Iterator<T>(){
+			private int _index = 0;
+
+			@Override
+			public boolean hasNext(){
+				return _index < _size;
+			}
+
+			@Override
+			public T next(){
+				if (_index >= _size){
+					throw new NoSuchElementException();
+				}
+				return get(_index++);
+			}
+
+			@Override
+			public void remove(){
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private void grow(){
+		int newLength = _elements.length * 2;
+		if (_capacity != UNBOUNDED && newLength > _capacity){
+			newLength = _capacity;
+		}
+		Element[] elements = new Element[newLength];
+		for (int i = 0; i < _size; ++i){
+			elements[i] = _elements[(_head + i) % _elements.length];
+		}
+		_elements = elements;
+		_head = 0;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < _size; ++i){
+			if (i > 0){
+				sb.append(", ");
+			}
+			sb.append(get(i));
+		}
+		return sb.append("]").toString();
+	}
+}
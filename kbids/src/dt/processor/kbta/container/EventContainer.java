@@ -1,86 +1,161 @@
 package dt.processor.kbta.container;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
 
 import dt.processor.kbta.ontology.instances.Event;
 
+/**
+ * The current and previous events of each event definition, indexed by the ids of the
+ * definitions. The lists are kept and reused across iterations, and the ids of the
+ * definitions with current events are tracked so that shifting back only visits them
+ */
 public final class EventContainer implements ElementContainer{
-	private final HashMap<String, ArrayList<Event>> _oldElements;
+	private final ElementHistory<Event>[] _oldElements;
 
-	private final HashMap<String, ArrayList<Event>> _currentElements;
+	private final ArrayList<Event>[] _currentElements;
 
-	public EventContainer(){
-		_oldElements = new HashMap<String, ArrayList<Event>>();
-		_currentElements = new HashMap<String, ArrayList<Event>>();
+	private final int _historyCapacity;
+
+	/** The ids with current events, in the order their first event was added */
+	private final int[] _currentIds;
+
+	private final boolean[] _hasCurrent;
+
+	private int _currentCount;
+
+	private ShiftListener _listener;
+
+	/**
+	 * @param size The number of event definitions in the ontology
+	 * @param historyCapacity The maximal number of old events kept per definition, or
+	 *        {@link ElementHistory#UNBOUNDED}
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public EventContainer(int size, int historyCapacity){
+		_oldElements = new ElementHistory[size];
+		_currentElements = new ArrayList[size];
+		_historyCapacity = historyCapacity;
+		_currentIds = new int[size];
+		_hasCurrent = new boolean[size];
+		_currentCount = 0;
+	}
+
+	@Override
+	public void setShiftListener(ShiftListener listener){
+		_listener = listener;
 	}
 
 	public void addEvent(Event event){
-		String name = event.getName();
-		ArrayList<Event> events = _currentElements.get(name);
+		int id = event.getId();
+		ArrayList<Event> events = _currentElements[id];
 		if (events == null){
 			events = new ArrayList<Event>();
-			_currentElements.put(name, events);
+			_currentElements[id] = events;
+		}
+		if (!_hasCurrent[id]){
+			_hasCurrent[id] = true;
+			_currentIds[_currentCount++] = id;
 		}
 		events.add(event);
 	}
 
-	public ArrayList<Event> getCurrentEvents(String name){
-		return _currentElements.get(name);
+	/**
+	 * @return The events created since the last shift back, null if there are none
+	 */
+	public ArrayList<Event> getCurrentEvents(int id){
+		ArrayList<Event> events = _currentElements[id];
+		return (events == null || events.isEmpty()) ? null : events;
 	}
 
-	public ArrayList<Event> getOldEvents(String name){
-		return _oldElements.get(name);
+	public ElementHistory<Event> getOldEvents(int id){
+		return _oldElements[id];
 	}
 
 	public void shiftBack(){
-		for (Map.Entry<String, ArrayList<Event>> currentEvent : _currentElements
-				.entrySet()){
-			String name = currentEvent.getKey();
-			ArrayList<Event> old = _oldElements.get(name);
+		for (int i = 0; i < _currentCount; ++i){
+			int id = _currentIds[i];
+			_hasCurrent[id] = false;
+			ArrayList<Event> currentEvents = _currentElements[id];
+			if (currentEvents.isEmpty()){
+				// Discarded since they were added
+				continue;
+			}
+			ElementHistory<Event> old = _oldElements[id];
 			if (old == null){
-				old = new ArrayList<Event>();
-				_oldElements.put(name, old);
+				old = new ElementHistory<Event>(_historyCapacity);
+				_oldElements[id] = old;
+			}
+			old.addAll(currentEvents);
+			currentEvents.clear();
+			if (_listener != null){
+				_listener.shifted(this, id);
 			}
-			old.addAll((currentEvent.getValue()));
 		}
-		_currentElements.clear();
+		_currentCount = 0;
 	}
 
 	@Override
 	public void discardOlderThan(long time){
-		for (Map.Entry<String, ArrayList<Event>> currentEvents : _currentElements
-				.entrySet()){
-			Iterator<Event> iterator = currentEvents.getValue().iterator();
-			while (iterator.hasNext()){
-				Event currentEvent = iterator.next();
-				if (currentEvent.getTimeInterval().getEndTime() < time){
-					iterator.remove();
-				}else{
-					break;
-				}
+		for (ArrayList<Event> currentEvents : _currentElements){
+			if (currentEvents == null){
+				continue;
+			}
+			// The current events are few (only those of the last batch)
+			int discarded = 0;
+			while (discarded < currentEvents.size()
+					&& currentEvents.get(discarded).getTimeInterval().getEndTime() < time){
+				++discarded;
 			}
+			currentEvents.subList(0, discarded).clear();
 		}
-		for (Map.Entry<String, ArrayList<Event>> oldEvents : _oldElements.entrySet()){
-			Iterator<Event> iterator = oldEvents.getValue().iterator();
-			while (iterator.hasNext()){
-				Event currentEvent = iterator.next();
-				if (currentEvent.getTimeInterval().getEndTime() < time){
-					iterator.remove();
-				}else{
-					break;
-				}
+		for (ElementHistory<Event> oldEvents : _oldElements){
+			if (oldEvents != null){
+				oldEvents.discardOlderThan(time);
 			}
 		}
+	}
+
+	@Override
+	public void discardOlderThan(int id, long time){
+		ArrayList<Event> currentEvents = _currentElements[id];
+		if (currentEvents != null){
+			int discarded = 0;
+			while (discarded < currentEvents.size()
+					&& currentEvents.get(discarded).getTimeInterval().getEndTime() < time){
+				++discarded;
+			}
+			currentEvents.subList(0, discarded).clear();
+		}
+		ElementHistory<Event> oldEvents = _oldElements[id];
+		if (oldEvents != null){
+			oldEvents.discardOlderThan(time);
+		}
+	}
 
+	@Override
+	public long getEarliestEndTime(int id){
+		long earliest = Long.MAX_VALUE;
+		ArrayList<Event> currentEvents = _currentElements[id];
+		if (currentEvents != null && !currentEvents.isEmpty()){
+			earliest = currentEvents.get(0).getTimeInterval().getEndTime();
+		}
+		ElementHistory<Event> oldEvents = _oldElements[id];
+		if (oldEvents != null && !oldEvents.isEmpty()){
+			earliest = Math.min(earliest, oldEvents.get(0).getTimeInterval().getEndTime());
+		}
+		return earliest;
 	}
 
 	@Override
 	public String toString(){
-		return "Current: " + _currentElements.values() + "\n" + "Old:"
-				+ _oldElements.values();
+		ArrayList<ArrayList<Event>> current = new ArrayList<ArrayList<Event>>();
+		for (ArrayList<Event> currentEvents : _currentElements){
+			if (currentEvents != null && !currentEvents.isEmpty()){
+				current.add(currentEvents);
+			}
+		}
+		return "Current: " + current + "\n" + "Old:"
+				+ Slots.values(_oldElements);
 	}
 
 }
@@ -1,65 +1,155 @@
 package dt.processor.kbta.container;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
-
+import dt.processor.kbta.ontology.defs.PrimitiveDef;
 import dt.processor.kbta.ontology.instances.Primitive;
 
+/**
+ * The current and previous primitive of each primitive definition, indexed by the ids of
+ * the definitions. The samples of the definitions that have a history horizon are also
+ * kept in their {@link PrimitiveHistory}, regardless of the ontology's element timeout
+ * (the histories are evicted by their own horizons, see {@link #evictHistories(long)}).
+ * The ids of the definitions with current primitives are tracked so that shifting back
+ * only visits them
+ */
 public class PrimitiveContainer implements ElementContainer{
-	private final HashMap<String, Primitive> _oldElements;
-	private final HashMap<String, Primitive> _currentElements; 
+	private final Primitive[] _oldElements;
+	private final Primitive[] _currentElements; 
+	private final PrimitiveHistory[] _histories;
+	/** The ids with current primitives, in the order they were added */
+	private final int[] _currentIds;
+	private final boolean[] _hasCurrent;
+	private int _currentCount;
+	private ShiftListener _listener;
 
-	public PrimitiveContainer(){
-		_oldElements = new HashMap<String, Primitive>();
-		_currentElements = new HashMap<String, Primitive>();
+	/**
+	 * @param primitiveDefs The primitive definitions of the ontology
+	 */
+	public PrimitiveContainer(PrimitiveDef[] primitiveDefs){
+		int size = primitiveDefs.length;
+		_oldElements = new Primitive[size];
+		_currentElements = new Primitive[size];
+		_histories = new PrimitiveHistory[size];
+		_currentIds = new int[size];
+		_hasCurrent = new boolean[size];
+		_currentCount = 0;
+		for (PrimitiveDef pd : primitiveDefs){
+			if (pd.getHistoryHorizon() > PrimitiveDef.NO_HISTORY){
+				_histories[pd.getId()] = new PrimitiveHistory(pd.getHistoryHorizon());
+			}
+		}
+	}
+
+	@Override
+	public void setShiftListener(ShiftListener listener){
+		_listener = listener;
 	}
 
 	public void addPrimitive(Primitive p){
-		String name = p.getName();
-		_currentElements.put(name, p);
+		int id = p.getId();
+		if (!_hasCurrent[id]){
+			_hasCurrent[id] = true;
+			_currentIds[_currentCount++] = id;
+		}
+		_currentElements[id] = p;
+		PrimitiveHistory history = _histories[id];
+		if (history != null){
+			history.add(p.getTimeInterval().getEndTime(), p.getValue());
+		}
+	}
+
+	/**
+	 * @return The history of the samples of the given primitive definition, null if the
+	 *         definition has no history horizon
+	 */
+	public PrimitiveHistory getHistory(int id){
+		return _histories[id];
 	}
 
-	public Primitive getCurrentPrimitive(String st){
-		return _currentElements.get(st);	 
+	/**
+	 * Evicts the samples that have fallen out of the horizons of the histories, on each
+	 * tick of the engine's clock
+	 *
+	 * @param now The current time of the engine's clock
+	 */
+	public void evictHistories(long now){
+		for (PrimitiveHistory history : _histories){
+			if (history != null){
+				history.evict(now);
+			}
+		}
 	}
 
-	public Primitive getOldPrimitive(String st){
-		return _oldElements.get(st);	 
+	public Primitive getCurrentPrimitive(int id){
+		return _currentElements[id];	 
+	}
+
+	public Primitive getOldPrimitive(int id){
+		return _oldElements[id];	 
 	}
 	public void shiftBack(){
-		for (Map.Entry<String, Primitive> newPrimitive: _currentElements.entrySet()){
-			String name=newPrimitive.getKey();
-			_oldElements.put(name, newPrimitive.getValue());
+		for (int i = 0; i < _currentCount; ++i){
+			int id = _currentIds[i];
+			_hasCurrent[id] = false;
+			Primitive newPrimitive = _currentElements[id];
+			if (newPrimitive != null){
+				_oldElements[id] = newPrimitive;
+				_currentElements[id] = null;
+				if (_listener != null){
+					_listener.shifted(this, id);
+				}
+			}
 		}
-		_currentElements.clear();
+		_currentCount = 0;
 	}
 
 	@Override
 	public void discardOlderThan(long time){
-		Iterator<Map.Entry<String, Primitive>> currentIter=_currentElements.entrySet().iterator();
-		while(currentIter.hasNext()){
-			Map.Entry<String, Primitive> currentPrimitive = currentIter.next();
-			String name=currentPrimitive.getKey();
-			if (currentPrimitive.getValue().getTimeInterval().getEndTime()<time){
-				_oldElements.remove(name);
-				currentIter.remove();
+		for (int id = 0; id < _currentElements.length; ++id){
+			Primitive currentPrimitive = _currentElements[id];
+			if (currentPrimitive != null
+					&& currentPrimitive.getTimeInterval().getEndTime() < time){
+				_oldElements[id] = null;
+				_currentElements[id] = null;
+			}
+			Primitive oldPrimitive = _oldElements[id];
+			if (oldPrimitive != null && oldPrimitive.getTimeInterval().getEndTime() < time){
+				_oldElements[id] = null;
 			}
 		}
+	}
 
-		Iterator<Map.Entry<String, Primitive>> oldIter=_oldElements.entrySet().iterator();
-		while(oldIter.hasNext()){
-			Map.Entry<String, Primitive> oldPrimitive = oldIter.next();
-			if (oldPrimitive.getValue().getTimeInterval().getEndTime()<time){
-				oldIter.remove();
-			}
+	@Override
+	public void discardOlderThan(int id, long time){
+		Primitive currentPrimitive = _currentElements[id];
+		if (currentPrimitive != null
+				&& currentPrimitive.getTimeInterval().getEndTime() < time){
+			_oldElements[id] = null;
+			_currentElements[id] = null;
+		}
+		Primitive oldPrimitive = _oldElements[id];
+		if (oldPrimitive != null && oldPrimitive.getTimeInterval().getEndTime() < time){
+			_oldElements[id] = null;
+		}
+	}
+
+	@Override
+	public long getEarliestEndTime(int id){
+		long earliest = Long.MAX_VALUE;
+		Primitive currentPrimitive = _currentElements[id];
+		if (currentPrimitive != null){
+			earliest = currentPrimitive.getTimeInterval().getEndTime();
+		}
+		Primitive oldPrimitive = _oldElements[id];
+		if (oldPrimitive != null){
+			earliest = Math.min(earliest, oldPrimitive.getTimeInterval().getEndTime());
 		}
+		return earliest;
 	}
 
 	@Override
 	public String toString(){
 		return 
-		"Current: "+_currentElements.values()+"\n" +
-		"Old:"+_oldElements.values();
+		"Current: "+Slots.values(_currentElements)+"\n" +
+		"Old:"+Slots.values(_oldElements);
 	}
 }
@@ -0,0 +1,245 @@
+package dt.processor.kbta.container;
+
+/**
+ * The samples (times and values) of a single primitive definition over a horizon of
+ * time, kept column-wise in parallel circular arrays rather than as primitive instances.
+ * As samples are added in order of time the times are (non-strictly) ascending, which
+ * allows evicting from the front and binary searching by time.<br>
+ * Appending is O(1) (amortized). The samples that have fallen out of the horizon are
+ * evicted on the engine's clock tick (see {@link #evict(long)}) rather than as samples
+ * are appended, so the samples are kept for the horizon even when no new ones arrive,
+ * and the readers of the history (e.g. the windows of the statistics) see every sample
+ * before it's evicted. Evicting is O(1) per sample. The samples are read by index, by
+ * sequence number (which, unlike the index, doesn't change as older samples are
+ * evicted) or by a {@link Cursor}
+ */
+public final class PrimitiveHistory{
+	private static final int INITIAL_SIZE = 16;
+
+	private final long _horizon;
+
+	private long[] _times;
+
+	private double[] _values;
+
+	/** The index of the oldest sample in the arrays */
+	private int _head;
+
+	private int _size;
+
+	/** The number of samples evicted so far, the sequence number of the oldest sample */
+	private long _evicted;
+
+	/**
+	 * @param horizon How long the samples are kept for, relative to the engine's current
+	 *        time, in milliseconds
+	 */
+	public PrimitiveHistory(long horizon){
+		_horizon = horizon;
+		_times = new long[INITIAL_SIZE];
+		_values = new double[INITIAL_SIZE];
+		_head = 0;
+		_size = 0;
+		_evicted = 0;
+	}
+
+	/**
+	 * Appends the sample as the newest in the history
+	 */
+	public void add(long time, double value){
+		if (_size == _times.length){
+			grow();
+		}
+		int tail = (_head + _size) % _times.length;
+		_times[tail] = time;
+		_values[tail] = value;
+		++_size;
+	}
+
+	/**
+	 * Evicts the samples that are older than the horizon allows
+	 *
+	 * @param now The current time of the engine's clock
+	 */
+	public void evict(long now){
+		evictOlderThan(now - _horizon);
+	}
+
+	/**
+	 * Evicts the samples whose times are before the given time
+	 */
+	public void evictOlderThan(long time){
+		while (_size > 0 && _times[_head] < time){
+			_head = (_head + 1) % _times.length;
+			--_size;
+			++_evicted;
+		}
+	}
+
+	/**
+	 * @return The sequence number of the oldest sample, samples are numbered from 0 in
+	 *         the order they're added
+	 */
+	public long getFirstSequence(){
+		return _evicted;
+	}
+
+	/**
+	 * @return The sequence number the next sample will have
+	 */
+	public long getEndSequence(){
+		return _evicted + _size;
+	}
+
+	/**
+	 * @param sequence The sequence number of a sample still in the history
+	 * @return The index of the sample
+	 */
+	public int indexOf(long sequence){
+		return (int)(sequence - _evicted);
+	}
+
+	/**
+	 * @param index The index of the sample, 0 being the oldest
+	 */
+	public long getTime(int index){
+		return _times[slot(index)];
+	}
+
+	/**
+	 * @param index The index of the sample, 0 being the oldest
+	 */
+	public double getValue(int index){
+		return _values[slot(index)];
+	}
+
+	public int size(){
+		return _size;
+	}
+
+	public boolean isEmpty(){
+		return _size == 0;
+	}
+
+	public long getHorizon(){
+		return _horizon;
+	}
+
+	/**
+	 * @return The index of the first sample whose time is at least the given time, or
+	 *         the size of the history if there is none
+	 */
+	public int lowerBound(long time){
+		int low = 0;
+		int high = _size;
+		while (low < high){
+			int mid = (low + high) >>> 1;
+			if (_times[(_head + mid) % _times.length] < time){
+				low = mid + 1;
+			}else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Copies the times and values of the samples between the given times (inclusive)
+	 * into the given arrays, oldest first
+	 *
+	 * @return The number of samples copied, at most the length of the arrays
+	 */
+	public int copy(long from, long to, long[] times, double[] values){
+		int count = 0;
+		for (int i = lowerBound(from); i < _size && count < times.length; ++i){
+			int slot = (_head + i) % _times.length;
+			if (_times[slot] > to){
+				break;
+			}
+			times[count] = _times[slot];
+			values[count] = _values[slot];
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * @return A cursor over the samples from the given time on, oldest first
+	 */
+	public Cursor cursor(long from){
+		return new Cursor(lowerBound(from));
+	}
+
+	public void clear(){
+		_head = 0;
+		_evicted += _size;
+		_size = 0;
+	}
+
+	private int slot(int index){
+		if (index < 0 || index >= _size){
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + _size);
+		}
+		return (_head + index) % _times.length;
+	}
+
+	private void grow(){
+		int newLength = _times.length * 2;
+		long[] times = new long[newLength];
+		double[] values = new double[newLength];
+		for (int i = 0; i < _size; ++i){
+			int slot = (_head + i) % _times.length;
+			times[i] = _times[slot];
+			values[i] = _values[slot];
+		}
+		_times = times;
+		_values = values;
+		_head = 0;
+	}
+
+	@Override
+	public String toString(){
+		StringBuilder sb = new StringBuilder("[");
+		for (int i = 0; i < _size; ++i){
+			if (i > 0){
+				sb.append(", ");
+			}
+			sb.append(getTime(i)).append("=").append(getValue(i));
+		}
+		return sb.append("]").toString();
+	}
+
+	/**
+	 * A forward cursor over the samples of the history, which reads the arrays in place
+	 * (without creating an object per sample). The cursor is only valid until the next
+	 * sample is added to the history
+	 */
+	public final class Cursor{
+		private int _index;
+
+		private Cursor(int start){
+			// Positioned before the first sample
+			_index = start - 1;
+		}
+
+		/**
+		 * Advances to the next sample
+		 *
+		 * @return Whether there is such a sample
+		 */
+		public boolean next(){
+			if (_index < _size){
+				++_index;
+			}
+			return _index < _size;
+		}
+
+		public long getTime(){
+			return PrimitiveHistory.this.getTime(_index);
+		}
+
+		public double getValue(){
+			return PrimitiveHistory.this.getValue(_index);
+		}
+	}
+}
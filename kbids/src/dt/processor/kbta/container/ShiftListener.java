@@ -0,0 +1,15 @@
+package dt.processor.kbta.container;
+
+/**
+ * Notified of the definitions whose elements have changed when a container is shifted
+ * back, so that only those definitions are revisited (e.g. when scheduling the expiry of
+ * their elements) rather than all of the container's
+ */
+public interface ShiftListener{
+	/**
+	 * @param container The container that has been shifted back
+	 * @param id The id of a definition whose elements were added, replaced or prolonged
+	 *        since the previous shift back
+	 */
+	public void shifted(ElementContainer container, int id);
+}
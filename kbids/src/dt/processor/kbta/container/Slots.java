@@ -0,0 +1,25 @@
+package dt.processor.kbta.container;
+
+import java.util.ArrayList;
+
+/**
+ * Helpers for the arrays the containers keep their elements in, indexed by the ids of
+ * the element definitions
+ */
+final class Slots{
+	private Slots(){
+	}
+
+	/**
+	 * @return The non-null slots of the given array (for debugging)
+	 */
+	static <T> ArrayList<T> values(T[] slots){
+		ArrayList<T> values = new ArrayList<T>();
+		for (T t : slots){
+			if (t != null){
+				values.add(t);
+			}
+		}
+		return values;
+	}
+}
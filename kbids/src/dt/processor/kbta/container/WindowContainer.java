@@ -0,0 +1,47 @@
+package dt.processor.kbta.container;
+
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.SampleWindow;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef;
+
+/**
+ * The sample windows of the statistic definitions, indexed by the ids of the definitions
+ * (among the primitive definitions, so the slots of the other primitives are empty)
+ */
+public class WindowContainer{
+	private final SampleWindow[] _windows;
+
+	/**
+	 * @param ontology The ontology whose statistic definitions the windows are created for
+	 * @param primitives The primitives container whose histories the windows are over
+	 */
+	public WindowContainer(Ontology ontology, PrimitiveContainer primitives){
+		_windows = new SampleWindow[ontology.getPrimitiveDefs().length];
+		for (StatisticDef sd : ontology.getStatisticDefs()){
+			_windows[sd.getId()] = sd.createWindow(primitives);
+		}
+	}
+
+	public SampleWindow getWindow(int id){
+		return _windows[id];
+	}
+
+	/**
+	 * Removes the samples that have left the sliding windows from their aggregates, on
+	 * each tick of the engine's clock (before the histories evict them)
+	 *
+	 * @param now The current time of the engine's clock
+	 */
+	public void evict(long now){
+		for (SampleWindow window : _windows){
+			if (window != null){
+				window.evict(now);
+			}
+		}
+	}
+
+	@Override
+	public String toString(){
+		return "Windows: " + Slots.values(_windows);
+	}
+}
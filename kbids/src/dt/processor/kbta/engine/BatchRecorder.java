@@ -0,0 +1,74 @@
+package dt.processor.kbta.engine;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Records batches of monitored data as text so they can later be replayed through an
+ * engine (e.g. one with a candidate ontology), see {@link ReplayDriver}. Each batch
+ * starts with a line holding {@value #BATCH}, followed by a line per monitored data:
+ *
+ * <pre>
+ * name TAB end time TAB value [TAB event times separated by commas]
+ * </pre>
+ *
+ * The times are in milliseconds. The extras of the monitored data (and the attributes of
+ * the events) aren't recorded
+ */
+public final class BatchRecorder{
+	static final String BATCH = "batch";
+
+	static final char SEPARATOR = '\t';
+
+	static final char EVENT_SEPARATOR = ',';
+
+	private final Writer _writer;
+
+	/**
+	 * @param writer The writer the batches are appended to, it is buffered by the recorder
+	 */
+	public BatchRecorder(Writer writer){
+		_writer = new BufferedWriter(writer);
+	}
+
+	/**
+	 * Starts a new batch, the monitored data recorded from now on are a part of it
+	 */
+	public void startBatch() throws IOException{
+		_writer.write(BATCH);
+		_writer.write('\n');
+	}
+
+	/**
+	 * Records a monitored data in the current batch
+	 *
+	 * @param eventTimes The times of the feature's events, may be null
+	 */
+	public void record(String name, long end, double value, long[] eventTimes)
+			throws IOException{
+		_writer.write(name);
+		_writer.write(SEPARATOR);
+		_writer.write(Long.toString(end));
+		_writer.write(SEPARATOR);
+		_writer.write(Double.toString(value));
+		if (eventTimes != null && eventTimes.length > 0){
+			_writer.write(SEPARATOR);
+			for (int i = 0; i < eventTimes.length; ++i){
+				if (i > 0){
+					_writer.write(EVENT_SEPARATOR);
+				}
+				_writer.write(Long.toString(eventTimes[i]));
+			}
+		}
+		_writer.write('\n');
+	}
+
+	public void flush() throws IOException{
+		_writer.flush();
+	}
+
+	public void close() throws IOException{
+		_writer.close();
+	}
+}
@@ -0,0 +1,49 @@
+package dt.processor.kbta.engine;
+
+import dt.processor.kbta.container.ElementContainer;
+import dt.processor.kbta.ontology.defs.ElementDef;
+
+/**
+ * A timer of the engine's wheel. There is at most one deadline of each kind per
+ * definition, which is rescheduled (rather than recreated) as the definition's elements
+ * change
+ */
+final class Deadline extends TimerWheel.Timer{
+	/**
+	 * What passes at the deadline
+	 */
+	enum Kind{
+		/**
+		 * The earliest element of the definition's container slot times out (its end time
+		 * plus the ontology's element timeout)
+		 */
+		EVICTION,
+		/**
+		 * The current context of the definition ends
+		 */
+		CONTEXT_END,
+		/**
+		 * The current state or trend of the definition can no longer be interpolated (its
+		 * end time plus the maximal gap)
+		 */
+		INTERPOLATION_GAP
+	}
+
+	final Kind _kind;
+
+	/** The container of the definition's elements */
+	final ElementContainer _container;
+
+	final ElementDef _def;
+
+	Deadline(Kind kind, ElementContainer container, ElementDef def){
+		_kind = kind;
+		_container = container;
+		_def = def;
+	}
+
+	@Override
+	public String toString(){
+		return _kind + " of " + _def + " at " + getDeadline();
+	}
+}
@@ -0,0 +1,85 @@
+package dt.processor.kbta.engine;
+
+/**
+ * The engine's notion of the current time, against which the elements time out and their
+ * deadlines pass. The times of the elements themselves come from the monitored data, so
+ * when the data isn't live (e.g. when replaying a recording faster than real time) the
+ * time must advance with the data rather than with the wall clock
+ */
+public abstract class EngineClock{
+	/**
+	 * How the clock's time advances
+	 */
+	public enum Mode{
+		/**
+		 * The clock reads the system's wall clock
+		 */
+		WALL_CLOCK,
+		/**
+		 * The clock's time is the latest end time observed in the monitored data, it
+		 * doesn't advance while no data arrives
+		 */
+		EVENT_TIME
+	}
+
+	/**
+	 * @return A new clock of the given mode
+	 */
+	public static EngineClock create(Mode mode){
+		return (mode == Mode.EVENT_TIME) ? new EventTimeClock() : new WallClock();
+	}
+
+	/**
+	 * @return The current time, in milliseconds
+	 */
+	public abstract long currentTime();
+
+	/**
+	 * Called with the end time of each of the monitored data added to the engine
+	 *
+	 * @param time The end time, in milliseconds
+	 */
+	public void observe(long time){
+	}
+
+	public abstract Mode getMode();
+
+	@Override
+	public String toString(){
+		return getMode() + " clock at " + currentTime();
+	}
+
+	private static final class WallClock extends EngineClock{
+		@Override
+		public long currentTime(){
+			return System.currentTimeMillis();
+		}
+
+		@Override
+		public Mode getMode(){
+			return Mode.WALL_CLOCK;
+		}
+	}
+
+	private static final class EventTimeClock extends EngineClock{
+		/** The time before any data has been observed (times are never negative) */
+		private long _time = 0;
+
+		@Override
+		public long currentTime(){
+			return _time;
+		}
+
+		@Override
+		public void observe(long time){
+			if (time > _time){
+				_time = time;
+			}
+		}
+
+		@Override
+		public Mode getMode(){
+			return Mode.EVENT_TIME;
+		}
+	}
+}
@@ -0,0 +1,374 @@
+package dt.processor.kbta.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.IdentityHashMap;
+
+import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.container.ElementContainer;
+import dt.processor.kbta.container.ElementHistory;
+import dt.processor.kbta.container.ShiftListener;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.EventDef;
+import dt.processor.kbta.ontology.defs.PrimitiveDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef;
+import dt.processor.kbta.ontology.instances.Abstraction;
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.threats.ThreatAssessment;
+import dt.processor.kbta.threats.ThreatAssessor;
+import dt.processor.kbta.util.Extras;
+import dt.processor.kbta.util.Pair;
+
+/**
+ * The platform independent KBTA engine. The primitives and events of each batch of
+ * monitored data are added to the engine after which the batch is computed, creating the
+ * contexts, abstractions and patterns and assessing the threats.<br>
+ * The elements' deadlines (timing out, a context ending and a state or trend no longer
+ * being interpolated) are kept on a {@link TimerWheel}, scheduled as the definitions'
+ * elements change, so that the elements are evicted without scanning the containers and
+ * the engine can be driven by the deadlines between batches, see {@link #expire()}. The
+ * time is read from the engine's {@link EngineClock}.<br>
+ * The engine isn't thread safe, it must be confined to a single thread
+ */
+public final class KBTAEngine{
+	/** The time spanned by each slot of the timer wheel, in milliseconds */
+	private static final long TIMER_TICK = 1000;
+
+	/** The number of slots of the timer wheel (a round of about 8.5 minutes) */
+	private static final int TIMER_SLOTS = 512;
+
+	private final Ontology _ontology;
+
+	private final ThreatAssessor _threatAssessor;
+
+	private final AllInstanceContainer _allInstances;
+
+	private final boolean _incrementalEvaluation;
+
+	private final EngineClock _clock;
+
+	/** The definitions whose instances were created in the current batch */
+	private final ArrayList<ElementDef> _changed;
+
+	private final TimerWheel<Deadline> _timers;
+
+	/** The eviction deadlines of each container, indexed by the ids of the definitions */
+	private final IdentityHashMap<ElementContainer, Deadline[]> _evictions;
+
+	/** The context end and interpolation gap deadlines, by their containers */
+	private final IdentityHashMap<ElementContainer, Deadline[]> _ends;
+
+	private final ArrayList<Deadline> _fired;
+
+	/** The definitions whose current context, state or trend has expired */
+	private final ArrayList<ElementDef> _expired;
+
+	private int _iteration;
+
+	/**
+	 * @param ontology The ontology
+	 * @param threatAssessor The threat assessments (may be null in which case no threats
+	 *        are assessed)
+	 * @param incrementalEvaluation Whether only the definitions affected by the primitives
+	 *        and events of each batch are evaluated
+	 */
+	public KBTAEngine(Ontology ontology, ThreatAssessor threatAssessor,
+		boolean incrementalEvaluation){
+		this(ontology, threatAssessor, incrementalEvaluation, ElementHistory.UNBOUNDED);
+	}
+
+	/**
+	 * @param ontology The ontology
+	 * @param threatAssessor The threat assessments (may be null in which case no threats
+	 *        are assessed)
+	 * @param incrementalEvaluation Whether only the definitions affected by the primitives
+	 *        and events of each batch are evaluated
+	 * @param historyCapacity The maximal number of old elements kept per definition
+	 *        (regardless of the ontology's element timeout), or
+	 *        {@link ElementHistory#UNBOUNDED}
+	 */
+	public KBTAEngine(Ontology ontology, ThreatAssessor threatAssessor,
+		boolean incrementalEvaluation, int historyCapacity){
+		this(ontology, threatAssessor, incrementalEvaluation, historyCapacity, EngineClock
+				.create(EngineClock.Mode.WALL_CLOCK));
+	}
+
+	/**
+	 * @param ontology The ontology
+	 * @param threatAssessor The threat assessments (may be null in which case no threats
+	 *        are assessed)
+	 * @param incrementalEvaluation Whether only the definitions affected by the primitives
+	 *        and events of each batch are evaluated
+	 * @param historyCapacity The maximal number of old elements kept per definition
+	 *        (regardless of the ontology's element timeout), or
+	 *        {@link ElementHistory#UNBOUNDED}
+	 * @param clock The clock the elements time out by, not to be shared with other engines
+	 */
+	public KBTAEngine(Ontology ontology, ThreatAssessor threatAssessor,
+		boolean incrementalEvaluation, int historyCapacity, EngineClock clock){
+		_ontology = ontology;
+		_threatAssessor = threatAssessor;
+		if (threatAssessor != null){
+			// The assessor may have checked the threats against another engine's elements
+			threatAssessor.invalidate();
+		}
+		_incrementalEvaluation = incrementalEvaluation;
+		_clock = clock;
+		_allInstances = new AllInstanceContainer(ontology, historyCapacity);
+		_changed = new ArrayList<ElementDef>();
+		_iteration = 0;
+
+		_timers = new TimerWheel<Deadline>(TIMER_TICK, TIMER_SLOTS, clock.currentTime());
+		_evictions = new IdentityHashMap<ElementContainer, Deadline[]>();
+		_ends = new IdentityHashMap<ElementContainer, Deadline[]>();
+		_fired = new ArrayList<Deadline>();
+		_expired = new ArrayList<ElementDef>();
+		addDeadlines(_allInstances.getPrimitives(), ontology.getPrimitiveDefs(), null);
+		addDeadlines(_allInstances.getEvents(), ontology.getEventDefs(), null);
+		addDeadlines(_allInstances.getContexts(), ontology.getContextDefs(),
+			Deadline.Kind.CONTEXT_END);
+		addDeadlines(_allInstances.getStates(), ontology.getStateDefs(),
+			Deadline.Kind.INTERPOLATION_GAP);
+		addDeadlines(_allInstances.getTrends(), ontology.getTrendDefs(),
+			Deadline.Kind.INTERPOLATION_GAP);
+		addDeadlines(_allInstances.getLinearPatterns(), ontology.getLinearPatternDefs(),
+			null);
+		_allInstances.setShiftListener(new ShiftListener(){
+			@Override
+			public void shifted(ElementContainer container, int id){
+				scheduleDeadlines(container, id);
+				elementChanged(_evictions.get(container)[id]._def);
+			}
+		});
+	}
+
+	/**
+	 * @param endKind The kind of the deadlines of the current elements' ends, null if the
+	 *        container's elements have none
+	 */
+	private void addDeadlines(ElementContainer container, ElementDef[] defs,
+		Deadline.Kind endKind){
+		Deadline[] evictions = new Deadline[defs.length];
+		Deadline[] ends = (endKind == null) ? null : new Deadline[defs.length];
+		for (ElementDef ed : defs){
+			evictions[ed.getId()] = new Deadline(Deadline.Kind.EVICTION, container, ed);
+			if (ends != null){
+				ends[ed.getId()] = new Deadline(endKind, container, ed);
+			}
+		}
+		_evictions.put(container, evictions);
+		if (ends != null){
+			_ends.put(container, ends);
+		}
+	}
+
+	/**
+	 * Adds a primitive to the current batch, if a primitive of that name is monitored
+	 * (statistics are computed by the engine rather than added)
+	 */
+	public void addPrimitive(String name, Date end, double value, Extras extras){
+		_clock.observe(end.getTime());
+		PrimitiveDef pd = _ontology.getPrimitiveDef(name);
+		if (pd != null && pd.isMonitored() && !(pd instanceof StatisticDef)){
+			pd.createPrimitive(end, value, extras, _allInstances);
+			_changed.add(pd);
+		}
+	}
+
+	/**
+	 * Adds the events of a feature to the current batch, if an event of that name is
+	 * monitored
+	 * 
+	 * @see EventDef#createEvents(long[], Extras[], AllInstanceContainer)
+	 */
+	public void addEvents(String name, long[] eventTimes, Extras[] eventAttributes){
+		if (eventTimes != null){
+			for (long time : eventTimes){
+				_clock.observe(time);
+			}
+		}
+		EventDef ed = _ontology.getEventDef(name);
+		if (ed != null && ed.isMonitored()){
+			ed.createEvents(eventTimes, eventAttributes, _allInstances);
+			_changed.add(ed);
+		}
+	}
+
+	/**
+	 * Computes the current batch and assesses the threats
+	 * 
+	 * @return The assessed threats along with the elements they were assessed for
+	 */
+	public Collection<Pair<ThreatAssessment, Element>> compute(){
+		return compute(_clock.currentTime());
+	}
+
+	/**
+	 * Fires the deadlines that have passed by the clock's current time. The elements
+	 * that have timed out are evicted and, if a context has ended or a state or trend can
+	 * no longer be interpolated, the definitions derived from them are computed and the
+	 * threats are assessed as for a batch without monitored data (so the threats are
+	 * reported even when no data arrives). Meant to be called once
+	 * {@link #getNextDeadline()} passes without a batch arriving
+	 * 
+	 * @return The assessed threats along with the elements they were assessed for, empty
+	 *         if no context, state or trend has expired
+	 */
+	public Collection<Pair<ThreatAssessment, Element>> expire(){
+		long now = _clock.currentTime();
+		fireDeadlines(now);
+		if (_expired.isEmpty()){
+			return Collections.emptyList();
+		}
+		_changed.addAll(_expired);
+		_expired.clear();
+		return compute(now);
+	}
+
+	/**
+	 * @return The earliest deadline of the elements, which passes once the time is after
+	 *         it, or Long.MAX_VALUE if there is none
+	 */
+	public long getNextDeadline(){
+		return _timers.getNextDeadline();
+	}
+
+	private Collection<Pair<ThreatAssessment, Element>> compute(long now){
+		++_iteration;
+
+		// Removing the patterns of the previous batch as they will be recreated if need
+		// be (when evaluating incrementally, the patterns whose elements haven't changed
+		// are kept instead)
+		if (!_incrementalEvaluation){
+			_allInstances.getLinearPatterns().clear();
+			for (ElementDef lpd : _ontology.getLinearPatternDefs()){
+				elementChanged(lpd);
+			}
+		}
+
+		// Destroying and creating contexts, states, trends and patterns, each definition
+		// is evaluated once after all of the definitions it depends on
+		if (_incrementalEvaluation){
+			_ontology.getEvaluationPlan().evaluate(_allInstances, _iteration, _changed);
+		}else{
+			_ontology.getEvaluationPlan().evaluate(_allInstances, _iteration);
+		}
+		_changed.clear();
+
+		// Shifting back schedules the deadlines of the changed definitions, after which
+		// the elements that have timed out are evicted. The contexts, states and trends
+		// that have expired by now need not be computed again
+		_allInstances.shiftBackAll();
+		fireDeadlines(now);
+		_expired.clear();
+
+		Collection<Pair<ThreatAssessment, Element>> threats;
+		if (_threatAssessor == null){
+			threats = Collections.emptyList();
+		}else{
+			threats = _threatAssessor.assess(_allInstances);
+		}
+		// The other matches of the patterns are assessed only in the batch they're found
+		_allInstances.clearOtherMatches();
+		return threats;
+	}
+
+	/**
+	 * Schedules the deadlines of a definition whose elements have changed, unless they are
+	 * already scheduled for an earlier time (in which case they're rescheduled when fired)
+	 */
+	private void scheduleDeadlines(ElementContainer container, int id){
+		Deadline eviction = _evictions.get(container)[id];
+		scheduleEarlier(eviction, getEvictionDeadline(eviction));
+		Deadline[] ends = _ends.get(container);
+		if (ends != null){
+			scheduleEarlier(ends[id], getEndDeadline(ends[id]));
+		}
+	}
+
+	private void scheduleEarlier(Deadline deadline, long time){
+		if (time < deadline.getDeadline()){
+			_timers.schedule(deadline, time);
+		}
+	}
+
+	private void fireDeadlines(long now){
+		// The samples of the primitives' histories are evicted on every tick
+		_allInstances.evictSamples(now);
+		_timers.advance(now, _fired);
+		for (Deadline deadline : _fired){
+			if (deadline._kind == Deadline.Kind.EVICTION){
+				deadline._container.discardOlderThan(deadline._def.getId(), now
+						- _ontology.getElementTimeout());
+				// The current element may have been evicted as well
+				elementChanged(deadline._def);
+				scheduleEarlier(deadline, getEvictionDeadline(deadline));
+			}else{
+				// The current element may have been prolonged or replaced since
+				long time = getEndDeadline(deadline);
+				if (time < now){
+					_expired.add(deadline._def);
+				}else if (time != TimerWheel.NONE){
+					_timers.schedule(deadline, time);
+				}
+			}
+		}
+		_fired.clear();
+	}
+
+	/**
+	 * Publishes a change to the elements of the given definition to the threat assessor,
+	 * which only checks the threats generated from changed elements
+	 */
+	private void elementChanged(ElementDef ed){
+		if (_threatAssessor != null){
+			_threatAssessor.elementChanged(ed);
+		}
+	}
+
+	private long getEvictionDeadline(Deadline eviction){
+		long end = eviction._container.getEarliestEndTime(eviction._def.getId());
+		long timeout = _ontology.getElementTimeout();
+		return (end > TimerWheel.NONE - timeout) ? TimerWheel.NONE : end + timeout;
+	}
+
+	private static long getEndDeadline(Deadline end){
+		Element current = ((ComplexContainer<?>)end._container).getCurrentElement(end._def
+				.getId());
+		if (current == null){
+			return TimerWheel.NONE;
+		}
+		if (end._kind == Deadline.Kind.CONTEXT_END){
+			return current.getTimeInterval().getEndTime();
+		}
+		return ((AbstractionDef)end._def).getInterpolationDeadline((Abstraction)current);
+	}
+
+	/**
+	 * Should be called when the monitoring stops, before the next batch
+	 */
+	public void stoppedMonitoring(){
+		_ontology.resetLastCreated();
+	}
+
+	public EngineClock getClock(){
+		return _clock;
+	}
+
+	public Ontology getOntology(){
+		return _ontology;
+	}
+
+	public AllInstanceContainer getInstances(){
+		return _allInstances;
+	}
+
+	public int getIteration(){
+		return _iteration;
+	}
+}
@@ -0,0 +1,192 @@
+package dt.processor.kbta.engine;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+
+import dt.processor.kbta.container.ElementHistory;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef;
+import dt.processor.kbta.ontology.loader.OntologyLoader;
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.threats.ThreatAssessment;
+import dt.processor.kbta.threats.ThreatAssessmentLoader;
+import dt.processor.kbta.threats.ThreatAssessor;
+import dt.processor.kbta.util.FileAssetSource;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.Pair;
+
+/**
+ * Feeds the batches of a recording (see {@link BatchRecorder}) into an engine and
+ * computes each of them, one after the other as fast as possible. The engine is expected
+ * to use an {@link EngineClock.Mode#EVENT_TIME} clock, so the elements time out
+ * according to the recorded times rather than the time the recording is replayed at
+ */
+public final class ReplayDriver{
+	private static final String TAG = "ReplayDriver";
+
+	private final KBTAEngine _engine;
+
+	/**
+	 * @param engine The engine the recording is replayed through
+	 */
+	public ReplayDriver(KBTAEngine engine){
+		if (engine.getClock().getMode() != EngineClock.Mode.EVENT_TIME){
+			Log.w(TAG, "Replaying through an engine with a " + engine.getClock().getMode()
+					+ " clock, the elements will time out by it");
+		}
+		_engine = engine;
+	}
+
+	/**
+	 * Replays the recording, corrupt lines are skipped
+	 *
+	 * @param recording The recording, read up to its end (but not closed)
+	 * @param listener Notified of the threats assessed for each batch, may be null
+	 * @return The number of batches replayed
+	 * @throws IOException If the recording can not be read
+	 */
+	public int replay(Reader recording, Listener listener) throws IOException{
+		BufferedReader reader = new BufferedReader(recording);
+		int batches = 0;
+		boolean inBatch = false;
+		int lineNumber = 0;
+		String line;
+		while ((line = reader.readLine()) != null){
+			++lineNumber;
+			if (line.length() == 0){
+				continue;
+			}
+			if (line.equals(BatchRecorder.BATCH)){
+				if (inBatch){
+					compute(++batches, listener);
+				}
+				inBatch = true;
+			}else if (!inBatch || !addMonitoredData(line)){
+				Log.w(TAG, "Skipping corrupt line " + lineNumber + ": " + line);
+			}
+		}
+		if (inBatch){
+			compute(++batches, listener);
+		}
+		return batches;
+	}
+
+	private void compute(int batch, Listener listener){
+		Collection<Pair<ThreatAssessment, Element>> threats = _engine.compute();
+		if (listener != null){
+			listener.onThreats(batch, threats);
+		}
+	}
+
+	private boolean addMonitoredData(String line){
+		String[] fields = line.split(String.valueOf(BatchRecorder.SEPARATOR));
+		if (fields.length < 3 || fields.length > 4){
+			return false;
+		}
+		long end;
+		double value;
+		long[] eventTimes = null;
+		try{
+			end = Long.parseLong(fields[1]);
+			value = Double.parseDouble(fields[2]);
+			if (fields.length == 4){
+				String[] times = fields[3].split(String.valueOf(BatchRecorder.EVENT_SEPARATOR));
+				eventTimes = new long[times.length];
+				for (int i = 0; i < times.length; ++i){
+					eventTimes[i] = Long.parseLong(times[i]);
+				}
+			}
+		}catch(NumberFormatException e){
+			return false;
+		}
+
+		_engine.addPrimitive(fields[0], new Date(end), value, null);
+		if (eventTimes != null){
+			_engine.addEvents(fields[0], eventTimes, null);
+		}
+		return true;
+	}
+
+	/**
+	 * Notified of the threats assessed for each replayed batch
+	 */
+	public interface Listener{
+		/**
+		 * @param batch The number of the batch in the recording, starting at 1
+		 * @param threats The assessed threats along with the elements they were assessed
+		 *        for
+		 */
+		public void onThreats(int batch, Collection<Pair<ThreatAssessment, Element>> threats);
+	}
+
+	/**
+	 * Replays a recording through the models of a directory and prints the number of
+	 * times each threat was assessed. An XmlPull implementation is required on the class
+	 * path
+	 *
+	 * @param args The directory of the models (ontology.xml and threat_assessments.xml),
+	 *        the recording and optionally "incremental" for evaluating incrementally
+	 */
+	public static void main(String[] args) throws IOException{
+		if (args.length < 2){
+			System.err.println("Usage: ReplayDriver <models directory> <recording> "
+					+ "[incremental]");
+			System.exit(1);
+		}
+		FileAssetSource models = new FileAssetSource(new File(args[0]));
+		Ontology ontology = new OntologyLoader().loadOntology(models);
+		ThreatAssessor threatAssessor = new ThreatAssessmentLoader()
+				.loadThreatAssessments(models);
+		if (ontology == null || threatAssessor == null){
+			System.err.println("Unable to load the models from " + args[0]);
+			System.exit(1);
+		}
+		threatAssessor.setInitiallyMonitoredThreats(ontology, Collections
+				.<String, Object> emptyMap());
+
+		boolean incremental = args.length > 2 && "incremental".equalsIgnoreCase(args[2]);
+		KBTAEngine engine = new KBTAEngine(ontology, threatAssessor, incremental,
+				ElementHistory.UNBOUNDED, EngineClock.create(EngineClock.Mode.EVENT_TIME));
+
+		final TreeMap<String, Integer> counts = new TreeMap<String, Integer>();
+		long start = System.currentTimeMillis();
+		FileReader recording = new FileReader(args[1]);
+		int batches;
+		try{
+			batches = new ReplayDriver(engine).replay(recording, new Listener(){
+				@Override
+				public void onThreats(int batch,
+					Collection<Pair<ThreatAssessment, Element>> threats){
+					for (Pair<ThreatAssessment, Element> p : threats){
+						String title = p.first.getTitle();
+						Integer count = counts.get(title);
+						counts.put(title, (count == null) ? 1 : count + 1);
+					}
+				}
+			});
+		}finally{
+			recording.close();
+		}
+		long end = System.currentTimeMillis();
+
+		System.out.println("Replayed " + batches + " batches in " + (end - start)
+				+ " millis");
+		for (Map.Entry<String, Integer> entry : counts.entrySet()){
+			System.out.println(entry.getKey() + ": " + entry.getValue());
+		}
+		for (LinearPatternDef lpd : ontology.getLinearPatternDefs()){
+			if (lpd.getOverflowCount() > 0){
+				System.out.println(lpd.getName() + " reached its maximal number of matches "
+						+ lpd.getOverflowCount() + " times");
+			}
+		}
+	}
+}
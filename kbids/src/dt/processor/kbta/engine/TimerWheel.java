@@ -0,0 +1,199 @@
+package dt.processor.kbta.engine;
+
+import java.util.Collection;
+
+/**
+ * A hashed timer wheel: the timers are hashed by their deadlines into a fixed number of
+ * slots, each spanning a tick of time, so that scheduling, rescheduling and cancelling a
+ * timer is O(1) and advancing the wheel only visits the slots of the ticks that have
+ * passed (and the timers in them) rather than all of the timers.<br>
+ * The timers are intrusive (each timer is linked into its slot directly) so a timer can
+ * be scheduled at most once at a time, rescheduling it replaces its deadline. The wheel
+ * isn't thread safe
+ *
+ * @param <T> The type of the timers
+ */
+public final class TimerWheel<T extends TimerWheel.Timer>{
+	/** The deadline of a timer that isn't scheduled */
+	public static final long NONE = Long.MAX_VALUE;
+
+	private final long _tick;
+
+	private final Timer[] _slots;
+
+	private final int _mask;
+
+	/** The tick up to which (inclusive) the wheel has been advanced */
+	private long _currentTick;
+
+	private int _size;
+
+	/**
+	 * @param tick The time spanned by each slot, in milliseconds
+	 * @param slots The number of slots, rounded up to a power of 2
+	 * @param now The time the wheel starts at
+	 */
+	public TimerWheel(long tick, int slots, long now){
+		int length = 1;
+		while (length < slots){
+			length <<= 1;
+		}
+		_tick = Math.max(1, tick);
+		_slots = new Timer[length];
+		_mask = length - 1;
+		_currentTick = now / _tick;
+		_size = 0;
+	}
+
+	/**
+	 * Schedules the timer to expire once the given deadline has passed, replacing its
+	 * previous deadline if it is already scheduled. A deadline that has already passed
+	 * expires on the next advance
+	 *
+	 * @param timer The timer
+	 * @param deadline The deadline, or {@link #NONE} to cancel the timer
+	 */
+	public void schedule(T t, long deadline){
+		// The type variable hides the timer's fields
+		Timer timer = t;
+		if (timer._deadline != NONE){
+			unlink(timer);
+		}
+		if (deadline == NONE){
+			return;
+		}
+		timer._deadline = deadline;
+		// Deadlines in ticks that have already been advanced over are placed in the
+		// current tick's slot so they're visited by the next advance
+		long tick = Math.max(deadline / _tick, _currentTick);
+		int slot = (int)(tick & _mask);
+		Timer head = _slots[slot];
+		timer._slot = slot;
+		timer._prev = null;
+		timer._next = head;
+		if (head != null){
+			head._prev = timer;
+		}
+		_slots[slot] = timer;
+		++_size;
+	}
+
+	/**
+	 * Cancels the timer, if it is scheduled
+	 */
+	public void cancel(T timer){
+		if (timer.getDeadline() != NONE){
+			unlink(timer);
+		}
+	}
+
+	/**
+	 * Advances the wheel to the given time, removing the timers whose deadlines are
+	 * before it. Only the slots of the ticks since the previous advance are visited (each
+	 * slot at most once)
+	 *
+	 * @param now The time, which is expected to never go backwards
+	 * @param expired The collection to which the expired timers are added, in no
+	 *        particular order
+	 */
+	@SuppressWarnings("unchecked")
+	public void advance(long now, Collection<? super T> expired){
+		long nowTick = now / _tick;
+		long ticks = Math.min(nowTick - _currentTick, _mask);
+		for (long t = 0; t <= ticks && _size > 0; ++t){
+			int slot = (int)((_currentTick + t) & _mask);
+			Timer timer = _slots[slot];
+			while (timer != null){
+				Timer next = timer._next;
+				// Timers of later rounds of the wheel share the slot and stay in it
+				if (timer._deadline < now){
+					unlink(timer);
+					expired.add((T)timer);
+				}
+				timer = next;
+			}
+		}
+		_currentTick = Math.max(_currentTick, nowTick);
+	}
+
+	/**
+	 * @return The earliest deadline of the scheduled timers, or {@link #NONE} if there are
+	 *         none. The slots are visited from the current tick on, so the search ends at
+	 *         the first slot with a timer due in the current round of the wheel
+	 */
+	public long getNextDeadline(){
+		if (_size == 0){
+			return NONE;
+		}
+		for (int t = 0; t <= _mask; ++t){
+			long tick = _currentTick + t;
+			long earliest = NONE;
+			Timer timer = _slots[(int)(tick & _mask)];
+			for (; timer != null; timer = timer._next){
+				if (timer._deadline / _tick <= tick){
+					earliest = Math.min(earliest, timer._deadline);
+				}
+			}
+			if (earliest != NONE){
+				return earliest;
+			}
+		}
+
+		// All of the timers are due in later rounds
+		long earliest = NONE;
+		for (Timer head : _slots){
+			for (Timer timer = head; timer != null; timer = timer._next){
+				earliest = Math.min(earliest, timer._deadline);
+			}
+		}
+		return earliest;
+	}
+
+	/**
+	 * @return The number of scheduled timers
+	 */
+	public int size(){
+		return _size;
+	}
+
+	private void unlink(Timer timer){
+		if (timer._prev != null){
+			timer._prev._next = timer._next;
+		}else{
+			_slots[timer._slot] = timer._next;
+		}
+		if (timer._next != null){
+			timer._next._prev = timer._prev;
+		}
+		timer._prev = null;
+		timer._next = null;
+		timer._deadline = NONE;
+		--_size;
+	}
+
+	@Override
+	public String toString(){
+		return "TimerWheel: timers=" + _size + " tick=" + _currentTick;
+	}
+
+	/**
+	 * A timer that can be scheduled on a wheel
+	 */
+	public static class Timer{
+		private long _deadline = NONE;
+
+		private int _slot;
+
+		private Timer _prev;
+
+		private Timer _next;
+
+		/**
+		 * @return The deadline the timer is scheduled for, or {@link TimerWheel#NONE} if it
+		 *         isn't scheduled
+		 */
+		public final long getDeadline(){
+			return _deadline;
+		}
+	}
+}
@@ -0,0 +1,292 @@
+package dt.processor.kbta.ontology;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.ontology.defs.ElementDef.ElementVisitor;
+import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.context.ContextDef;
+import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef;
+import dt.processor.kbta.util.Log;
+
+/**
+ * The order in which the statistics, contexts, states, trends and patterns of an
+ * ontology are evaluated. The order is a topological sort of the dependency graph of the
+ * definitions so each definition is evaluated once per iteration, only after all of the definitions
+ * it is derived from have been evaluated (patterns are evaluated last as nothing is
+ * derived from them).<br>
+ * The plan also holds the reverse dependencies of the definitions so that an iteration
+ * can be evaluated incrementally, only for the definitions affected by the primitives and
+ * events that have actually arrived
+ */
+public final class EvaluationPlan{
+	private static final String TAG = "EvaluationPlan";
+
+	private static final int UNVISITED = 0, VISITING = 1, VISITED = 2;
+
+	private final ElementDef[] _plan;
+
+	/**
+	 * The indices (in the plan) of the definitions derived from each definition
+	 */
+	private final HashMap<ElementDef, int[]> _consumers;
+
+	/**
+	 * The definitions to be evaluated by the next incremental evaluation, marked by the
+	 * changes of definitions that follow them in the plan (the cyclic destructions)
+	 */
+	private boolean[] _carried;
+
+	/**
+	 * Compiles the evaluation plan of the given ontology
+	 * 
+	 * @param ontology The ontology
+	 * @throws IllegalStateException If the definitions depend on each other cyclically or
+	 *         a definition depends on an undefined element
+	 */
+	EvaluationPlan(Ontology ontology) throws IllegalStateException{
+		HashMap<ElementDef, Integer> marks = new HashMap<ElementDef, Integer>();
+		for (ElementDef ed : ontology.getStatisticDefs()){
+			marks.put(ed, UNVISITED);
+		}
+		for (ElementDef ed : ontology.getContextDefs()){
+			marks.put(ed, UNVISITED);
+		}
+		for (ElementDef ed : ontology.getStateDefs()){
+			marks.put(ed, UNVISITED);
+		}
+		for (ElementDef ed : ontology.getTrendDefs()){
+			marks.put(ed, UNVISITED);
+		}
+
+		// Keeping the order of the ontology for definitions that don't depend on each other
+		ArrayList<ElementDef> plan = new ArrayList<ElementDef>(marks.size());
+		ArrayList<ElementDef> path = new ArrayList<ElementDef>();
+		for (ElementDef ed : ontology.getStatisticDefs()){
+			visit(ontology, ed, marks, path, plan);
+		}
+		for (ElementDef ed : ontology.getContextDefs()){
+			visit(ontology, ed, marks, path, plan);
+		}
+		for (ElementDef ed : ontology.getStateDefs()){
+			visit(ontology, ed, marks, path, plan);
+		}
+		for (ElementDef ed : ontology.getTrendDefs()){
+			visit(ontology, ed, marks, path, plan);
+		}
+		for (LinearPatternDef lpd : ontology.getLinearPatternDefs()){
+			plan.add(lpd);
+		}
+		_plan = plan.toArray(new ElementDef[plan.size()]);
+		_consumers = indexConsumers(ontology, _plan);
+		_carried = new boolean[_plan.length];
+	}
+
+	/**
+	 * Maps each definition to the indices of the definitions in the plan that are derived
+	 * from it (including those that are only destroyed according to it)
+	 */
+	private static HashMap<ElementDef, int[]> indexConsumers(Ontology ontology,
+		ElementDef[] plan){
+		HashMap<ElementDef, ArrayList<Integer>> consumers = new HashMap<ElementDef, ArrayList<Integer>>();
+		for (int i = 0; i < plan.length; ++i){
+			ElementDef ed = plan[i];
+			ArrayList<ElementDef> dependencies = getDependencies(ontology, ed);
+			if (ed instanceof ContextDef){
+				dependencies.addAll(getDestructionDependencies(ontology, (ContextDef)ed));
+			}
+			for (ElementDef dependency : dependencies){
+				ArrayList<Integer> indices = consumers.get(dependency);
+				if (indices == null){
+					indices = new ArrayList<Integer>();
+					consumers.put(dependency, indices);
+				}
+				if (!indices.contains(i)){
+					indices.add(i);
+				}
+			}
+		}
+
+		HashMap<ElementDef, int[]> ans = new HashMap<ElementDef, int[]>();
+		for (Map.Entry<ElementDef, ArrayList<Integer>> entry : consumers.entrySet()){
+			ArrayList<Integer> indices = entry.getValue();
+			int[] array = new int[indices.size()];
+			for (int i = 0; i < array.length; ++i){
+				array[i] = indices.get(i);
+			}
+			ans.put(entry.getKey(), array);
+		}
+		return ans;
+	}
+
+	/**
+	 * Adds the given definition to the plan after (recursively) adding all of the
+	 * definitions it depends on
+	 */
+	private static void visit(Ontology ontology, ElementDef ed,
+		HashMap<ElementDef, Integer> marks, ArrayList<ElementDef> path,
+		ArrayList<ElementDef> plan){
+		Integer mark = marks.get(ed);
+		if (mark == null || mark.intValue() == VISITED){
+			// Either already in the plan or not a part of it (monitored primitives and events)
+			return;
+		}
+		if (mark.intValue() == VISITING){
+			throw new IllegalStateException("Cyclic dependency in the ontology: "
+					+ describeCycle(path, ed));
+		}
+		marks.put(ed, VISITING);
+		path.add(ed);
+
+		for (ElementDef dependency : getDependencies(ontology, ed)){
+			visit(ontology, dependency, marks, path, plan);
+		}
+
+		// A destruction only ends an existing context so in case it closes a cycle it is
+		// deferred, evaluated according to the elements of the previous iteration
+		// (whether the element destroying the context is visited before the context or
+		// after it)
+		if (ed instanceof ContextDef){
+			for (ElementDef dependency : getDestructionDependencies(ontology,
+				(ContextDef)ed)){
+				Integer dependencyMark = marks.get(dependency);
+				if ((dependencyMark != null && dependencyMark.intValue() == VISITING)
+						|| dependsOn(ontology, dependency, ed, new HashSet<ElementDef>())){
+					Log.w(TAG, "Deferring the cyclic destruction of " + ed + " by "
+							+ dependency);
+					((ContextDef)ed).deferDestructions(ontology, dependency);
+				}else{
+					visit(ontology, dependency, marks, path, plan);
+				}
+			}
+		}
+
+		path.remove(path.size() - 1);
+		marks.put(ed, VISITED);
+		plan.add(ed);
+	}
+
+	/**
+	 * @return Whether the definition is derived (directly or indirectly) from the other
+	 */
+	private static boolean dependsOn(Ontology ontology, ElementDef ed, ElementDef other,
+		HashSet<ElementDef> visited){
+		if (!visited.add(ed)){
+			return false;
+		}
+		for (ElementDef dependency : getDependencies(ontology, ed)){
+			if (dependency == other || dependsOn(ontology, dependency, other, visited)){
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static ArrayList<ElementDef> getDependencies(Ontology ontology, ElementDef ed){
+		final ArrayList<ElementDef> dependencies = new ArrayList<ElementDef>();
+		ed.visitDependencies(ontology, new ElementVisitor(){
+			@Override
+			public void visit(ElementDef dependency){
+				dependencies.add(dependency);
+			}
+		});
+		return dependencies;
+	}
+
+	private static ArrayList<ElementDef> getDestructionDependencies(Ontology ontology,
+		ContextDef cd){
+		final ArrayList<ElementDef> dependencies = new ArrayList<ElementDef>();
+		cd.visitDestructionDependencies(ontology, new ElementVisitor(){
+			@Override
+			public void visit(ElementDef dependency){
+				dependencies.add(dependency);
+			}
+		});
+		return dependencies;
+	}
+
+	private static String describeCycle(ArrayList<ElementDef> path, ElementDef ed){
+		StringBuilder sb = new StringBuilder();
+		for (int i = path.indexOf(ed); i < path.size(); ++i){
+			sb.append(path.get(i)).append(" <- ");
+		}
+		return sb.append(ed).toString();
+	}
+
+	/**
+	 * Evaluates each of the definitions once, in dependency order
+	 * 
+	 * @param instances The instances container
+	 * @param iteration The current (global) iteration
+	 */
+	public void evaluate(AllInstanceContainer instances, int iteration){
+		for (ElementDef ed : _plan){
+			ed.evaluate(instances, iteration);
+		}
+		// All of the definitions are evaluated on the next iteration as well
+		Arrays.fill(_carried, false);
+	}
+
+	/**
+	 * Evaluates, in dependency order, only the definitions derived (directly or
+	 * indirectly) from the given changed definitions. A definition is considered as
+	 * changed by its evaluation only if it has created new instances (see
+	 * {@link ElementDef#isChangedIn(int)}), otherwise the definitions derived from it are
+	 * left as is and keep the instances of the previous iterations.<br>
+	 * A change of a definition that is read by a cyclic destruction of an earlier
+	 * context is carried over, the context is evaluated by the next incremental
+	 * evaluation, according to the elements of this iteration (as in a full evaluation)
+	 * 
+	 * @param instances The instances container
+	 * @param iteration The current (global) iteration
+	 * @param changed The definitions whose instances were created in this iteration
+	 *        (usually the primitives and events of the monitored data)
+	 */
+	public void evaluate(AllInstanceContainer instances, int iteration,
+		Collection<? extends ElementDef> changed){
+		boolean[] dirty = _carried;
+		_carried = new boolean[_plan.length];
+		for (ElementDef ed : changed){
+			markConsumers(ed, -1, dirty);
+		}
+		for (int i = 0; i < _plan.length; ++i){
+			if (!dirty[i]){
+				continue;
+			}
+			ElementDef ed = _plan[i];
+			ed.evaluate(instances, iteration);
+			if (ed.isChangedIn(iteration)){
+				markConsumers(ed, i, dirty);
+			}
+		}
+	}
+
+	/**
+	 * Marks the consumers of the definition, those that precede the given index in the
+	 * plan (which the current evaluation has passed) are carried over to the next one
+	 */
+	private void markConsumers(ElementDef ed, int index, boolean[] dirty){
+		int[] consumers = _consumers.get(ed);
+		if (consumers != null){
+			for (int i : consumers){
+				if (i > index){
+					dirty[i] = true;
+				}else{
+					_carried[i] = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The definitions in the order they are evaluated
+	 */
+	public ElementDef[] getDefs(){
+		return _plan;
+	}
+}
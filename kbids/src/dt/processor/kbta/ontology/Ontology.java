@@ -8,7 +8,9 @@ import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.defs.EventDef;
 import dt.processor.kbta.ontology.defs.PrimitiveDef;
 import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef;
+import dt.processor.kbta.ontology.defs.patterns.PatternNetwork;
 import dt.processor.kbta.ontology.defs.abstractions.state.StateDef;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef;
 import dt.processor.kbta.ontology.defs.abstractions.trend.TrendDef;
 import dt.processor.kbta.ontology.defs.context.ContextDef;
 
@@ -17,6 +19,14 @@ public final class Ontology{
 
 	private final HashMap<String, EventDef> _events;
 
+	private final HashMap<String, StatisticDef> _statistics;
+
+	private final PrimitiveDef[] _primitiveDefs;
+
+	private final StatisticDef[] _statisticDefs;
+
+	private final EventDef[] _eventDefs;
+
 	private final ContextDef[] _contexts;
 
 	private final StateDef[] _states;
@@ -30,21 +40,76 @@ public final class Ontology{
 	private final String _ontologyName;
 
 	private final String _version;
+
+	private final EvaluationPlan _evaluationPlan;
+
+	private final PatternNetwork _patternNetwork;
 		
+	/**
+	 * @throws IllegalStateException If one of the definitions refers to an undefined
+	 *         element or if the statistics, contexts, states and trends can't be ordered
+	 *         into an evaluation plan, or if a statistic is named as a primitive
+	 */
 	public Ontology(HashMap<String, PrimitiveDef> primitives,
-		HashMap<String, EventDef> events, ArrayList<ContextDef> contexts,
+		HashMap<String, EventDef> events, HashMap<String, StatisticDef> statistics,
+		ArrayList<ContextDef> contexts,
 		ArrayList<StateDef> states,ArrayList<TrendDef> trends, 
 		ArrayList<LinearPatternDef> linearPatterns,	long elementTimeout, String ontologyName, String version){
 		_primitives = primitives;
 		_events = events;
+		_statistics = statistics;
 		_contexts = contexts.toArray(new ContextDef[contexts.size()]);
 		_states = states.toArray(new StateDef[states.size()]);
 		_trends = trends.toArray(new TrendDef[trends.size()]);		
 		_linearPatterns = linearPatterns.toArray(new LinearPatternDef[linearPatterns.size()]);
+		_statisticDefs = statistics.values().toArray(new StatisticDef[statistics.size()]);
+		for (StatisticDef sd : _statisticDefs){
+			if (primitives.containsKey(sd.getName())){
+				throw new IllegalStateException("A statistic is named as a primitive: "
+						+ sd.getName());
+			}
+		}
+		// The statistics are primitives as well, following the monitored ones
+		_primitiveDefs = new PrimitiveDef[primitives.size() + _statisticDefs.length];
+		primitives.values().toArray(_primitiveDefs);
+		System.arraycopy(_statisticDefs, 0, _primitiveDefs, primitives.size(),
+			_statisticDefs.length);
+		_eventDefs = events.values().toArray(new EventDef[events.size()]);
 		
 		_elementTimeout = elementTimeout;
 		_ontologyName = ontologyName;
 		_version = version;
+
+		// Each kind of element definitions is assigned dense ids so the instances can be
+		// stored in arrays rather than looked up by name
+		assignIds(_primitiveDefs);
+		assignIds(_eventDefs);
+		assignIds(_contexts);
+		assignIds(_states);
+		assignIds(_trends);
+		assignIds(_linearPatterns);
+		resolveIds(_statisticDefs);
+		resolveIds(_contexts);
+		resolveIds(_states);
+		resolveIds(_trends);
+		resolveIds(_linearPatterns);
+
+		// The sub-patterns common to several patterns are evaluated once for all of them
+		_patternNetwork = new PatternNetwork(_linearPatterns);
+
+		_evaluationPlan = new EvaluationPlan(this);
+	}
+	
+	private static void assignIds(ElementDef[] elementDefs){
+		for (int i = 0; i < elementDefs.length; ++i){
+			elementDefs[i].setId(i);
+		}
+	}
+
+	private void resolveIds(ElementDef[] elementDefs){
+		for (ElementDef ed : elementDefs){
+			ed.resolveIds(this);
+		}
 	}
 	
 	public long getElementTimeout(){
@@ -59,6 +124,26 @@ public final class Ontology{
 		return _version;
 	}
 	
+	public EvaluationPlan getEvaluationPlan(){
+		return _evaluationPlan;
+	}
+	
+	public PatternNetwork getPatternNetwork(){
+		return _patternNetwork;
+	}
+
+	public PrimitiveDef[] getPrimitiveDefs(){
+		return _primitiveDefs;
+	}
+
+	public EventDef[] getEventDefs(){
+		return _eventDefs;
+	}
+
+	public StatisticDef[] getStatisticDefs(){
+		return _statisticDefs;
+	}
+
 	public ContextDef[] getContextDefs(){
 		return _contexts;
 	}
@@ -75,8 +160,13 @@ public final class Ontology{
 		return _linearPatterns;
 	}	
 
+	/**
+	 * @return The definition of the primitive of the given name, either monitored or a
+	 *         statistic
+	 */
 	public PrimitiveDef getPrimitiveDef(String name){
-		return _primitives.get(name);
+		PrimitiveDef pd = _primitives.get(name);
+		return (pd != null) ? pd : _statistics.get(name);
 	}
 
 	public EventDef getEventDef(String name){
@@ -128,6 +218,9 @@ public final class Ontology{
 		for(EventDef ed : _events.values()){
 			st+=ed+"\n\n";
 		}
+		for(StatisticDef sd : _statisticDefs){
+			st+=sd+"\n\n";
+		}
 		st+=Arrays.toString(_contexts)+"\n\n";
 		st+=Arrays.toString(_states)+"\n\n";
 		st+=Arrays.toString(_trends)+"\n\n";
@@ -139,7 +232,7 @@ public final class Ontology{
 	 * Resetting all of the elements in the ontology
 	 */
 	public void resetOntology(){
-		for (ElementDef ed : _primitives.values()){
+		for (ElementDef ed : _primitiveDefs){
 			ed.resetElement();
 		}
 		for (ElementDef ed : _events.values()){
@@ -163,7 +256,7 @@ public final class Ontology{
 	 * Resetting the "last created iteation" property of all of the elements in the ontology
 	 */
 	public void resetLastCreated(){
-		for (ElementDef ed : _primitives.values()){
+		for (ElementDef ed : _primitiveDefs){
 			ed.resetLastCreated();
 		}
 		for (ElementDef ed : _events.values()){
@@ -3,6 +3,7 @@
  */
 package dt.processor.kbta.ontology.defs;
 
+import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 
 /**
@@ -11,6 +12,8 @@ import dt.processor.kbta.ontology.Ontology;
 public abstract class ElementDef{
 	protected final String _name;
 
+	private int _id;
+
 	private int _lastCreated;
 
 	private boolean _isMonitored;
@@ -19,9 +22,38 @@ public abstract class ElementDef{
 
 	public ElementDef(String name){
 		_name = name;
+		_id = -1;
 		resetElement();
 	}
 
+	/**
+	 * Assigns the id of the definition, this method must not be called other than by the
+	 * ontology during its construction!
+	 * 
+	 * @param id The index of the definition among the definitions of its kind
+	 */
+	public final void setId(int id){
+		_id = id;
+	}
+
+	/**
+	 * @return The index of the definition among the definitions of its kind in the
+	 *         ontology, by which its instances are stored in the instance containers
+	 */
+	public final int getId(){
+		return _id;
+	}
+
+	/**
+	 * Resolves the names of the element definitions this definition refers to into their
+	 * ids. Called by the ontology once all of the definitions have been assigned ids
+	 * 
+	 * @param ontology An Ontology reference (for locating the related definitions)
+	 * @throws IllegalStateException If one of the related definitions is undefined
+	 */
+	public void resolveIds(Ontology ontology){
+	}
+
 	/**
 	 * Performs the operation represented by the Visitor on the Element Definition object
 	 * and traverses the related element definitions (using the Ontology) and invoking
@@ -30,7 +62,37 @@ public abstract class ElementDef{
 	 * @param ontology An Ontology reference (for the traversal)
 	 * @param visitor The operation to be performed on the Element Definition
 	 */
-	public abstract void accept(Ontology ontology, ElementVisitor visitor);
+	public final void accept(final Ontology ontology, final ElementVisitor visitor){
+		visitor.visit(this);
+		visitDependencies(ontology, new ElementVisitor(){
+			@Override
+			public void visit(ElementDef ed){
+				ed.accept(ontology, visitor);
+			}
+		});
+	}
+
+	/**
+	 * Invokes the visitor on each of the element definitions this definition is directly
+	 * derived from, without traversing any further
+	 * 
+	 * @param ontology An Ontology reference (for locating the related definitions)
+	 * @param visitor The operation to be performed on each of the related definitions
+	 * @throws IllegalStateException If one of the related definitions is undefined
+	 */
+	public abstract void visitDependencies(Ontology ontology, ElementVisitor visitor);
+
+	/**
+	 * Evaluates the definition once as part of the ontology's evaluation plan, that is,
+	 * creates (or destroys) its instances according to the instances already in the
+	 * container. Definitions whose instances are created directly from the monitored data
+	 * are not part of the plan and do nothing
+	 * 
+	 * @param instances The instances container
+	 * @param iteration The current (global) iteration
+	 */
+	public void evaluate(AllInstanceContainer instances, int iteration){
+	}
 
 	public final void resetElement(){
 		_lastCreated = -1;
@@ -81,6 +143,18 @@ public abstract class ElementDef{
 		_lastCreated = iteration;
 	}
 
+	/**
+	 * Checks whether evaluating the definition in the given iteration might have changed
+	 * its instances, in which case the definitions derived from it need to be evaluated
+	 * as well
+	 * 
+	 * @param iteration The current (global) iteration
+	 * @return Whether an instance was created in the given iteration
+	 */
+	public boolean isChangedIn(int iteration){
+		return _lastCreated == iteration;
+	}
+
 	public interface ElementVisitor{
 		public void visit(ElementDef ed);
 	}
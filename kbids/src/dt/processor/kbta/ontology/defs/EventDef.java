@@ -1,10 +1,9 @@
 package dt.processor.kbta.ontology.defs;
 
-import android.os.Bundle;
-import android.os.Parcelable;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.instances.Event;
+import dt.processor.kbta.util.Extras;
 
 /**
  * @author
@@ -17,29 +16,27 @@ public class EventDef extends ElementDef{
 		_latestEventTime = 0;
 	}
 
-	public final void createEvents(Bundle extras, AllInstanceContainer allInstances){		
-		long[] eventTimes;
-
-		if (extras == null || (eventTimes = extras.getLongArray("Events")) == null
-				|| eventTimes.length == 0){
+	/**
+	 * Creates the events that have occurred after the latest event created so far
+	 * 
+	 * @param eventTimes The (ascending) times the events have occurred at
+	 * @param eventAttributes The attributes of each of the events (may be null or shorter
+	 *        than the event times)
+	 * @param allInstances The instances container
+	 */
+	public final void createEvents(long[] eventTimes, Extras[] eventAttributes,
+		AllInstanceContainer allInstances){
+		if (eventTimes == null || eventTimes.length == 0){
 			return;
 		}
-//		System.out.println("KBTA whole extras: " + extras);
-//		if (extras.containsKey("Attributes")){
-//			Bundle[] wtf = (Bundle[])extras.getParcelableArray("Attributes");
-//			System.out.println(wtf);
-//			
-//		}
-		Parcelable[] eventAttributes = extras.getParcelableArray("Attributes");
-//		System.out.println("KBTA: " + ((eventAttributes == null) ? "null" : Arrays.toString(eventAttributes)));
 		for (int i = 0; i < eventTimes.length; ++i){
 			long eventTime = eventTimes[i];
 			if (eventTime <= _latestEventTime){
 				continue;
 			}
-			Bundle attributes = (eventAttributes != null && i < eventAttributes.length) ? 
-					(Bundle)eventAttributes[i] : null;
-			Event event = new Event(_name, eventTime, eventTime, attributes);
+			Extras attributes = (eventAttributes != null && i < eventAttributes.length) ? 
+					eventAttributes[i] : null;
+			Event event = new Event(_name, getId(), eventTime, eventTime, attributes);
 			allInstances.addEvent(event);
 		}
 
@@ -47,9 +44,8 @@ public class EventDef extends ElementDef{
 	}
 	
 	@Override
-	public void accept(Ontology ontology, ElementVisitor visitor){
-		visitor.visit(this);
-		// No one to traverse :)		
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
+		// No one to traverse :)
 	}
 	
 	@Override
@@ -17,7 +17,43 @@ public final class NumericRange{
 		return ((_isMinE) ? value >= _minValue : value > _minValue) 
 			&& ((_isMaxE) ? value <= _maxValue : value < _maxValue);
 	}
+
+	/**
+	 * @return Whether all of the values strictly between the given ones are in the range,
+	 *         assuming neither edge of the range lies strictly between them
+	 */
+	public boolean isInRangeBetween(double low, double high){
+		return _minValue <= low && _maxValue >= high;
+	}
+
+	public double getMinValue(){
+		return _minValue;
+	}
+
+	public double getMaxValue(){
+		return _maxValue;
+	}
 	
+	@Override
+	public int hashCode(){
+		long minBits = Double.doubleToLongBits(_minValue);
+		long maxBits = Double.doubleToLongBits(_maxValue);
+		int hashCode = 31 * (int)(minBits ^ (minBits >>> 32))
+				+ (int)(maxBits ^ (maxBits >>> 32));
+		return 4 * hashCode + (_isMinE ? 2 : 0) + (_isMaxE ? 1 : 0);
+	}
+
+	@Override
+	public boolean equals(Object obj){
+		if (!(obj instanceof NumericRange)){
+			return false;
+		}
+		NumericRange other = (NumericRange)obj;
+		return Double.compare(_minValue, other._minValue) == 0
+				&& Double.compare(_maxValue, other._maxValue) == 0
+				&& _isMinE == other._isMinE && _isMaxE == other._isMaxE;
+	}
+
 	@Override
 	public String toString(){
 		StringBuilder sb = new StringBuilder("[");
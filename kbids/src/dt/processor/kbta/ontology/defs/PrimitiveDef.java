@@ -5,35 +5,66 @@ package dt.processor.kbta.ontology.defs;
 
 import java.util.Date;
 
-import android.os.Bundle;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.instances.Primitive;
+import dt.processor.kbta.util.Extras;
 
 /**
  * @author
  */
-public final class PrimitiveDef extends ElementDef{
+public class PrimitiveDef extends ElementDef{
+	/** The history horizon of a primitive whose samples aren't kept */
+	public static final long NO_HISTORY = 0;
+
 	private final NumericRange _range;
 
+	private long _historyHorizon;
+
 	public PrimitiveDef(String name, NumericRange range){
+		this(name, range, NO_HISTORY);
+	}
+
+	/**
+	 * @param historyHorizon How long the samples of the primitive are kept (in the
+	 *        columnar history of the primitives container) in milliseconds, or
+	 *        {@link #NO_HISTORY}
+	 */
+	public PrimitiveDef(String name, NumericRange range, long historyHorizon){
 		super(name);
 		_range = range;
+		_historyHorizon = historyHorizon;
+	}
+
+	public final long getHistoryHorizon(){
+		return _historyHorizon;
+	}
+
+	/**
+	 * Extends the history horizon of the primitive (if need be) so its samples are kept
+	 * for at least the given time, e.g. for the windows of the statistics computed from
+	 * it. Must be called before the instances containers are created
+	 *
+	 * @param horizon The minimal history horizon, in milliseconds
+	 */
+	public final void requireHistory(long horizon){
+		if (horizon > _historyHorizon){
+			_historyHorizon = horizon;
+		}
 	}
 
-	public void createPrimitive(Date end, double value, Bundle extras,
+	public void createPrimitive(Date end, double value, Extras extras,
 		AllInstanceContainer allInstances){
 		if (_range.isInRange(value)){
-			Primitive primitive = new Primitive(_name, value, end.getTime(), end
+			Primitive primitive = new Primitive(_name, getId(), value, end.getTime(), end
 					.getTime(), extras);
 			allInstances.addPrimitive(primitive);
 		}
 	}
 	
 	@Override
-	public void accept(Ontology ontology, ElementVisitor visitor){
-		visitor.visit(this);
-		// No one to traverse :)		
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
+		// No one to traverse :)
 	}
 	
 	@Override
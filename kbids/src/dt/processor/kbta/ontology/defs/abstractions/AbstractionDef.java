@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.instances.Abstraction;
 import dt.processor.kbta.ontology.instances.Context;
 import dt.processor.kbta.ontology.instances.Element;
 
@@ -17,37 +18,61 @@ import dt.processor.kbta.ontology.instances.Element;
 public abstract class AbstractionDef extends ElementDef{
 	protected final String[] _necessaryContexts;
 
+	private final int[] _necessaryContextIds;
+
 	public AbstractionDef(String name, ArrayList<String> necessaryContexts){
 		super(name);
 		_necessaryContexts = necessaryContexts.toArray(new String[necessaryContexts
 				.size()]);
+		_necessaryContextIds = new int[_necessaryContexts.length];
 	}
 		
+	/**
+	 * @return The symbolic values the instances of the abstraction may take
+	 */
+	public abstract SymbolicDomain getDomain();
+
+	/**
+	 * @param current The current instance of the abstraction
+	 * @return The time after which no further instance can be interpolated into the given
+	 *         one (its end time plus the maximal gap), Long.MAX_VALUE if there is no such
+	 *         time
+	 */
+	public abstract long getInterpolationDeadline(Abstraction current);
+
 	protected Element[] checkNecessaryContexts(AllInstanceContainer instances){
 		Element[] elements = new Element[_necessaryContexts.length];
 		int i = 0;
-		for (String st : _necessaryContexts){
-			Context context = instances.getContexts().getNewestElement(st);
-			if (context != null){
-				elements[i++] = context;
-			}else if ((context = instances.getContexts().getCurrentElement(st)) != null){
-				elements[i++] = context;
-			}else{
+		for (int id : _necessaryContextIds){
+			Context context = instances.getContexts().getLatestElement(id);
+			if (context == null){
 				return null;
 			}
+			elements[i++] = context;
 		}
 		return elements;
 	}
 	
 	@Override
-	public void accept(Ontology ontology, ElementVisitor visitor){
-		visitor.visit(this);
-		for(String contextName :_necessaryContexts){
-			ElementDef elementDef= ontology.getContextDef(contextName);
-			if (elementDef == null){
-				throw new IllegalStateException("Undefined element: type=Context name=" + contextName);
-			}
-			elementDef.accept(ontology, visitor);
+	public void resolveIds(Ontology ontology){
+		for (int i = 0; i < _necessaryContexts.length; ++i){
+			_necessaryContextIds[i] = getNecessaryContextDef(ontology, i).getId();
+		}
+	}
+
+	@Override
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
+		for (int i = 0; i < _necessaryContexts.length; ++i){
+			visitor.visit(getNecessaryContextDef(ontology, i));
+		}
+	}
+
+	private ElementDef getNecessaryContextDef(Ontology ontology, int i){
+		String contextName = _necessaryContexts[i];
+		ElementDef elementDef = ontology.getContextDef(contextName);
+		if (elementDef == null){
+			throw new IllegalStateException("Undefined element: type=Context name=" + contextName);
 		}
+		return elementDef;
 	}
 }
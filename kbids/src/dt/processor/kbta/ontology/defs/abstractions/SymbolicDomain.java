@@ -0,0 +1,73 @@
+package dt.processor.kbta.ontology.defs.abstractions;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The symbolic values an abstraction definition may take, in their declared order. The
+ * instances of the abstraction carry the ordinal of their value in the domain, so values
+ * are compared and looked up by ordinal rather than by name
+ */
+public final class SymbolicDomain{
+	private final String[] _values;
+
+	public SymbolicDomain(String... values){
+		_values = values;
+	}
+
+	/**
+	 * Creates the domain of the given values, in the order they first appear (values
+	 * differing only in case are considered the same)
+	 *
+	 * @param values The values, possibly with repetitions
+	 * @return The domain of the values
+	 */
+	public static SymbolicDomain of(ArrayList<String> values){
+		ArrayList<String> distinct = new ArrayList<String>();
+		for (String value : values){
+			if (indexOf(distinct, value) < 0){
+				distinct.add(value);
+			}
+		}
+		return new SymbolicDomain(distinct.toArray(new String[distinct.size()]));
+	}
+
+	public int size(){
+		return _values.length;
+	}
+
+	/**
+	 * @param ordinal The ordinal of a value in the domain
+	 * @return The value
+	 */
+	public String getValue(int ordinal){
+		return _values[ordinal];
+	}
+
+	/**
+	 * @param value A value (case insensitive)
+	 * @return The ordinal of the value in the domain, -1 if it isn't in the domain
+	 */
+	public int getOrdinal(String value){
+		for (int i = 0; i < _values.length; ++i){
+			if (_values[i].equalsIgnoreCase(value)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static int indexOf(ArrayList<String> values, String value){
+		for (int i = 0; i < values.size(); ++i){
+			if (values.get(i).equalsIgnoreCase(value)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String toString(){
+		return Arrays.toString(_values);
+	}
+}
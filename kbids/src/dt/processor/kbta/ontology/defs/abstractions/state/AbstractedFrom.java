@@ -11,10 +11,14 @@ public class AbstractedFrom{
 
 	private final int _hashCode;
 
+	private int _id;
+
 	public AbstractedFrom(int type, String name){
 		_type = type;
 		_name = name;
-		_hashCode = (_type + _name).hashCode();
+		// Must agree with Element.hashCode()
+		_hashCode = 31 * _type + _name.hashCode();
+		_id = -1;
 	}
 	
 	public String getName(){
@@ -25,6 +29,36 @@ public class AbstractedFrom{
 		return _type;
 	}
 
+	/**
+	 * @return The id of the definition of the element, see {@link #resolveId(Ontology)}
+	 */
+	public int getId(){
+		return _id;
+	}
+
+	/**
+	 * Resolves the id of the definition of the element
+	 * 
+	 * @param ontology An Ontology reference (for locating the definition)
+	 * @throws IllegalStateException If the element is undefined
+	 */
+	public void resolveId(Ontology ontology){
+		_id = getDefinedElementDef(ontology).getId();
+	}
+
+	/**
+	 * @param ontology An Ontology reference (for locating the definition)
+	 * @return The definition of the element
+	 * @throws IllegalStateException If the element is undefined
+	 */
+	public ElementDef getDefinedElementDef(Ontology ontology){
+		ElementDef elementDef = getElementDef(ontology);
+		if (elementDef == null){
+			throw new IllegalStateException("Undefined element:" + this);
+		}
+		return elementDef;
+	}
+
 	@Override
 	public String toString(){
 		return " type=" + Element.TYPES[_type] + " name=" + _name;
@@ -1,15 +1,32 @@
 package dt.processor.kbta.ontology.defs.abstractions.state;
 
+import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.Abstraction;
 import dt.processor.kbta.ontology.instances.Element;
 
 public final class AbstractionCondition extends ElementCondition{
 	private final String _value;
 
+	/** The ordinal of the value, -1 if it isn't in the abstraction's domain */
+	private int _ordinal;
+
 	public AbstractionCondition(String name, String value){
 		super(name);
 		_value = value;
+		_ordinal = -1;
+	}
 
+	/**
+	 * @return The ordinal of the value, -1 if it isn't in the abstraction's domain
+	 */
+	public int getOrdinal(){
+		return _ordinal;
+	}
+
+	@Override
+	public void resolveValue(ElementDef elementDef){
+		_ordinal = ((AbstractionDef)elementDef).getDomain().getOrdinal(_value);
 	}
 
 	@Override
@@ -18,7 +35,7 @@ public final class AbstractionCondition extends ElementCondition{
 			return false;
 		}
 		Abstraction abstraction = (Abstraction)element;
-		return _value.equalsIgnoreCase(abstraction.getValue());
+		return _ordinal == abstraction.getOrdinal();
 	}
 
 	@Override
@@ -1,5 +1,6 @@
 package dt.processor.kbta.ontology.defs.abstractions.state;
 
+import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.instances.Element;
 
 public abstract class ElementCondition {
@@ -14,5 +15,13 @@ public abstract class ElementCondition {
 	}
 	
 	public abstract boolean checkValue(Element element); 
+
+	/**
+	 * Resolves the value the condition refers to, if any
+	 * 
+	 * @param elementDef The definition of the element the condition is on
+	 */
+	public void resolveValue(ElementDef elementDef){
+	}
 	
 }
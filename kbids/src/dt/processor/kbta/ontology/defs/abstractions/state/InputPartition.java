@@ -0,0 +1,159 @@
+package dt.processor.kbta.ontology.defs.abstractions.state;
+
+import java.util.Arrays;
+
+import dt.processor.kbta.ontology.defs.NumericRange;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
+import dt.processor.kbta.ontology.instances.Abstraction;
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.ontology.instances.Primitive;
+
+/**
+ * A partition of the values of one of the abstracted-from elements of a state into
+ * cells, such that each of the entries of the mapping function either accepts all of the
+ * values of a cell or none of them. The entries accepting each cell are kept as bitsets
+ * (indexed by the entries' positions in the mapping function)
+ */
+abstract class InputPartition{
+	private final long[][] _cellEntries;
+
+	protected InputPartition(int cells, int words){
+		_cellEntries = new long[cells][words];
+	}
+
+	/**
+	 * @param element The abstracted-from element
+	 * @return The cell the value of the element falls in
+	 */
+	public abstract int getCell(Element element);
+
+	public final int getCellCount(){
+		return _cellEntries.length;
+	}
+
+	/**
+	 * @return The entries accepting the values of the cell, must not be modified
+	 */
+	public final long[] getEntries(int cell){
+		return _cellEntries[cell];
+	}
+
+	protected final void addEntry(int cell, int entry){
+		_cellEntries[cell][entry >>> 6] |= 1L << entry;
+	}
+
+	/**
+	 * Partitions the values of a primitive by the edges of the entries' numeric ranges
+	 *
+	 * @param conditions The condition of each entry on the primitive
+	 * @param words The number of words in the bitsets
+	 */
+	public static InputPartition createNumeric(ElementCondition[] conditions, int words){
+		NumericRange[] ranges = new NumericRange[conditions.length];
+		for (int i = 0; i < conditions.length; ++i){
+			ranges[i] = ((PrimitiveCondition)conditions[i]).getNumericRange();
+		}
+		return new Numeric(ranges, words);
+	}
+
+	/**
+	 * Partitions the values of an abstraction by their ordinals
+	 *
+	 * @param domain The domain of the abstraction
+	 * @param conditions The condition of each entry on the abstraction, resolved
+	 * @param words The number of words in the bitsets
+	 */
+	public static InputPartition createSymbolic(SymbolicDomain domain,
+		ElementCondition[] conditions, int words){
+		return new Symbolic(domain, conditions, words);
+	}
+
+	/**
+	 * The cells are the edges themselves and the open intervals between them, the values
+	 * are located by a binary search over the edges
+	 */
+	private static final class Numeric extends InputPartition{
+		/** The distinct edges of the ranges, in ascending order */
+		private final double[] _edges;
+
+		public Numeric(NumericRange[] ranges, int words){
+			// Cell 2k is the interval below the k-th edge, cell 2k+1 is the k-th edge and the
+			// last cell is that of NaN, which is never in range
+			this(edges(ranges), ranges, words);
+		}
+
+		private Numeric(double[] edges, NumericRange[] ranges, int words){
+			super(2 * edges.length + 2, words);
+			_edges = edges;
+			for (int entry = 0; entry < ranges.length; ++entry){
+				NumericRange range = ranges[entry];
+				for (int k = 0; k <= edges.length; ++k){
+					double low = (k == 0) ? Double.NEGATIVE_INFINITY : edges[k - 1];
+					double high = (k == edges.length) ? Double.POSITIVE_INFINITY : edges[k];
+					if (range.isInRangeBetween(low, high)){
+						addEntry(2 * k, entry);
+					}
+					if (k < edges.length && range.isInRange(edges[k])){
+						addEntry(2 * k + 1, entry);
+					}
+				}
+			}
+		}
+
+		@Override
+		public int getCell(Element element){
+			double value = ((Primitive)element).getValue();
+			if (Double.isNaN(value)){
+				return getCellCount() - 1;
+			}
+			// Adding 0 turns -0.0 into 0.0, which the binary search would tell apart
+			int i = Arrays.binarySearch(_edges, value + 0.0);
+			return (i >= 0) ? 2 * i + 1 : 2 * (-i - 1);
+		}
+
+		private static double[] edges(NumericRange[] ranges){
+			double[] edges = new double[2 * ranges.length];
+			int count = 0;
+			for (NumericRange range : ranges){
+				double min = range.getMinValue();
+				double max = range.getMaxValue();
+				if (!Double.isNaN(min)){
+					edges[count++] = min + 0.0;
+				}
+				if (!Double.isNaN(max)){
+					edges[count++] = max + 0.0;
+				}
+			}
+			Arrays.sort(edges, 0, count);
+			int distinct = 0;
+			for (int i = 0; i < count; ++i){
+				if (distinct == 0 || edges[i] != edges[distinct - 1]){
+					edges[distinct++] = edges[i];
+				}
+			}
+			double[] ans = new double[distinct];
+			System.arraycopy(edges, 0, ans, 0, distinct);
+			return ans;
+		}
+	}
+
+	/**
+	 * The cells are the values of the abstraction's domain
+	 */
+	private static final class Symbolic extends InputPartition{
+		public Symbolic(SymbolicDomain domain, ElementCondition[] conditions, int words){
+			super(domain.size(), words);
+			for (int entry = 0; entry < conditions.length; ++entry){
+				int ordinal = ((AbstractionCondition)conditions[entry]).getOrdinal();
+				if (ordinal >= 0){
+					addEntry(ordinal, entry);
+				}
+			}
+		}
+
+		@Override
+		public int getCell(Element element){
+			return ((Abstraction)element).getOrdinal();
+		}
+	}
+}
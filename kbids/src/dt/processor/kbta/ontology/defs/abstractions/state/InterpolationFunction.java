@@ -1,24 +1,32 @@
 package dt.processor.kbta.ontology.defs.abstractions.state;
 
-import java.util.HashMap;
-import java.util.Map;
-
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
 import dt.processor.kbta.ontology.instances.State;
 import dt.processor.kbta.util.TimeInterval;
 
 public class InterpolationFunction{
-	private final HashMap<String, Long> _interpolationFunction;
+	private final SymbolicDomain _domain;
+
+	/** The maximal gap for interpolating each value, by the value's ordinal */
+	private final long[] _maxGaps;
+
+	public InterpolationFunction(SymbolicDomain domain, long[] maxGaps){
+		_domain = domain;
+		_maxGaps = maxGaps;
+	}
 
-	public InterpolationFunction(HashMap<String, Long> interpolationFunction){
-		_interpolationFunction = interpolationFunction;
+	/**
+	 * @param value The ordinal of the value
+	 * @return The maximal gap for interpolating the value
+	 */
+	public long getMaxGap(int value){
+		return _maxGaps[value];
 	}
 
-	public boolean interpolate(State before, String valueAfter, TimeInterval timeIntervalAfter){
-		String valueBefore = before.getValue();
-		
-		if (valueBefore.equalsIgnoreCase(valueAfter)){
-			long maxGap = _interpolationFunction.get(valueAfter);
-			
+	public boolean interpolate(State before, int valueAfter, TimeInterval timeIntervalAfter){
+		if (before.getOrdinal() == valueAfter){
+			long maxGap = _maxGaps[valueAfter];
+
 			TimeInterval timeIntervalBefore = before.getTimeInterval();
 			if ((timeIntervalAfter.getStartTime() - timeIntervalBefore.getEndTime()) <= maxGap){
 				timeIntervalBefore.setEndTime(timeIntervalAfter.getEndTime());
@@ -32,10 +40,10 @@ public class InterpolationFunction{
 	@Override
 	public String toString(){
 		String st = "";
-		for (Map.Entry<String, Long> entry : _interpolationFunction.entrySet()){
-			st += "name=" + entry.getKey() + " " + entry.getValue() + "\n";
+		for (int i = 0; i < _maxGaps.length; ++i){
+			st += "name=" + _domain.getValue(i) + " " + _maxGaps[i] + "\n";
 		}
 		return st;
 	}
-	
+
 }
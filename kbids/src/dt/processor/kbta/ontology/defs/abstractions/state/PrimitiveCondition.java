@@ -12,6 +12,10 @@ public final class PrimitiveCondition extends ElementCondition{
 		_numericRange = numericRange;
 	}
 
+	public NumericRange getNumericRange(){
+		return _numericRange;
+	}
+
 	@Override
 	public String toString(){
 		return "name=" + _name + " " + _numericRange;
@@ -5,12 +5,12 @@ package dt.processor.kbta.ontology.defs.abstractions.state;
 
 import java.util.ArrayList;
 
-import android.os.Bundle;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
 import dt.processor.kbta.ontology.Ontology;
-import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
+import dt.processor.kbta.ontology.instances.Abstraction;
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.ontology.instances.State;
 import dt.processor.kbta.util.TimeInterval;
@@ -35,6 +35,25 @@ public final class StateDef extends AbstractionDef{
 		_interpolationFunction = interpolationFunction;
 	}
 
+	@Override
+	public SymbolicDomain getDomain(){
+		return _mappingFunction.getDomain();
+	}
+
+	@Override
+	public long getInterpolationDeadline(Abstraction current){
+		long end = current.getTimeInterval().getEndTime();
+		long maxGap = _interpolationFunction.getMaxGap(current.getOrdinal());
+		return (maxGap > Long.MAX_VALUE - end) ? Long.MAX_VALUE : end + maxGap;
+	}
+
+	@Override
+	public void evaluate(AllInstanceContainer instances, int iteration){
+		if (isMonitored()){
+			createState(instances, iteration);
+		}
+	}
+
 	public void createState(AllInstanceContainer instances, int iteration){
 		// Making sure that an instance of this abstraction wasn't already created
 		// in this iteration
@@ -70,41 +89,32 @@ public final class StateDef extends AbstractionDef{
 		}
 		
 		// Mapping the elements to a state value, if possible
-		String value = _mappingFunction.mapElements(elementsAf);
-		if (value == null){
+		int value = _mappingFunction.mapElements(elementsAf);
+		if (value < 0){
 			return;
 		}
 
-		// From this point on, we are certain that an abstraction can be created
-		// so we can sum up the extras of the abstracted-from elements and the
-		// contexts
-		Bundle newExtras = new Bundle();
-		for (Element element : elementsAf){
-			element.addInnerExtras(newExtras);
-		}
-		for (Element element : elementsContext){
-			element.addInnerExtras(newExtras);
-		}
-
 		// Attempting to interpolate the newly created state with
 		// an older state (which can only reside in the current elements)
 		ComplexContainer<State> states = instances.getStates();
-		State state = states.getCurrentElement(_name);
+		State state = states.getCurrentElement(getId());
 
 		if (state != null
 				&& _interpolationFunction.interpolate(state, value, timeInterval)){
 			// The interpolation has succeeded (and so the state's interval has already
 			// been internally modified) and so we only need to remove it from
 			// the current elements
-			states.removeCurrentElement(_name);
-			// Seeing as the abstraction has already existed, we only to its inner extras
-			state.addToInnerExtras(newExtras);
+			states.removeCurrentElement(getId());
 		}else{
 			// Either there is no previous state to interpolate with
 			// or the interpolation has failed, in either case we need
 			// to create a new state
-			state = new State(_name, value, timeInterval, newExtras);
+			state = new State(_name, getId(), getDomain(), value, timeInterval);
 		}
+		// The extras of the abstracted-from elements and the contexts are a part of the
+		// state's extras (they are merged only if they are needed)
+		state.addParents(elementsAf);
+		state.addParents(elementsContext);
 		// Setting the newly created / interpolated state as the newest state of it's name
 		states.setNewestElement(state);
 		// Marking that the state of this name has already been created during this
@@ -122,13 +132,15 @@ public final class StateDef extends AbstractionDef{
 		for (AbstractedFrom af : _abstractedFrom){
 			switch (af.getType()){
 				case Element.PRIMITIVE:
-					element = instances.getPrimitives().getCurrentPrimitive(af.getName());
+					element = instances.getPrimitives().getCurrentPrimitive(af.getId());
 					break;
+				// States and trends may have been created (or interpolated) earlier in
+				// this iteration, in which case they reside in the newest elements
 				case Element.STATE:
-					element = instances.getStates().getCurrentElement(af.getName());
+					element = instances.getStates().getLatestElement(af.getId());
 					break;
 				case Element.TREND:
-					element = instances.getTrends().getCurrentElement(af.getName());
+					element = instances.getTrends().getLatestElement(af.getId());
 					break;
 			}
 			if (element == null){
@@ -146,15 +158,21 @@ public final class StateDef extends AbstractionDef{
 	}
 
 	@Override
-	public void accept(Ontology ontology, ElementVisitor visitor){
-		super.accept(ontology, visitor); // For necessary contexts and self
+	public void resolveIds(Ontology ontology){
+		super.resolveIds(ontology); // For necessary contexts
 
 		for (AbstractedFrom af : _abstractedFrom){
-			ElementDef elementDef=af.getElementDef(ontology);
-			if (elementDef == null){
-				throw new IllegalStateException("Undefined element:" + af);
-			}
-			elementDef.accept(ontology, visitor);
+			af.resolveId(ontology);
+		}
+		_mappingFunction.compile(_abstractedFrom, ontology);
+	}
+
+	@Override
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
+		super.visitDependencies(ontology, visitor); // For necessary contexts
+
+		for (AbstractedFrom af : _abstractedFrom){
+			visitor.visit(af.getDefinedElementDef(ontology));
 		}
 	}
 }
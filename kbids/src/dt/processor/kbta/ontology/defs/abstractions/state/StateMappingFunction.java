@@ -2,28 +2,128 @@ package dt.processor.kbta.ontology.defs.abstractions.state;
 
 import java.util.ArrayList;
 
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
 import dt.processor.kbta.ontology.instances.Element;
 
+/**
+ * Maps the abstracted-from elements of a state to the value of the first entry whose
+ * conditions they all satisfy. The function is compiled into a decision table: the
+ * values of each abstracted-from element are partitioned into cells accepted by the
+ * same entries, so mapping only locates the cell of each element and intersects the
+ * entries accepting them
+ */
 public class StateMappingFunction{
 	private final StateMappingFunctionEntry[] _mappingFunction;
 
+	/** The values of the state, in the order they are declared in the function */
+	private final SymbolicDomain _domain;
+
+	/** The ordinal of the value mapped to by each entry */
+	private final int[] _mappedValues;
+
+	/** The partition of the values of each abstracted-from element */
+	private InputPartition[] _partitions;
+
+	/** The value mapped to by each cell, if there's a single abstracted-from element */
+	private int[] _cellValues;
+
+	/** The entries accepting all of the elements being mapped */
+	private long[] _entries;
+
 	public StateMappingFunction(ArrayList<StateMappingFunctionEntry> mappingFunction){
 		_mappingFunction = mappingFunction
 				.toArray(new StateMappingFunctionEntry[mappingFunction.size()]);
+		ArrayList<String> values = new ArrayList<String>();
+		for (StateMappingFunctionEntry mfe : _mappingFunction){
+			values.add(mfe.getMappedValue());
+		}
+		_domain = SymbolicDomain.of(values);
+		_mappedValues = new int[_mappingFunction.length];
+		for (int i = 0; i < _mappingFunction.length; ++i){
+			_mappedValues[i] = _domain.getOrdinal(_mappingFunction[i].getMappedValue());
+		}
 	}
 
-	public String mapElements(Element[] abstractedFrom){
-		// Checking for each possible mapped value (an entry in the function)
-		// whether the given elements can be abstracted into it
-		for (StateMappingFunctionEntry mfe : _mappingFunction){
-			String value = mfe.mapElements(abstractedFrom);
-			if (value != null){
-				// Stopping if a match was found
-				return value;
+	public SymbolicDomain getDomain(){
+		return _domain;
+	}
+
+	/**
+	 * @param abstractedFrom The abstracted-from elements, in the order the function was
+	 *            compiled for
+	 * @return The ordinal of the value the elements are mapped to, -1 if they can't be
+	 *         mapped to either of the values
+	 */
+	public int mapElements(Element[] abstractedFrom){
+		if (_cellValues != null){
+			return _cellValues[_partitions[0].getCell(abstractedFrom[0])];
+		}
+
+		// Intersecting the entries accepting each of the elements
+		long[] entries = _entries;
+		InputPartition partition = _partitions[0];
+		System.arraycopy(partition.getEntries(partition.getCell(abstractedFrom[0])), 0,
+			entries, 0, entries.length);
+		for (int i = 1; i < _partitions.length; ++i){
+			partition = _partitions[i];
+			long[] accepting = partition.getEntries(partition.getCell(abstractedFrom[i]));
+			for (int w = 0; w < entries.length; ++w){
+				entries[w] &= accepting[w];
+			}
+		}
+		return getFirstValue(entries);
+	}
+
+	/**
+	 * @return The value of the first of the entries, -1 if there are none
+	 */
+	private int getFirstValue(long[] entries){
+		for (int w = 0; w < entries.length; ++w){
+			if (entries[w] != 0){
+				return _mappedValues[(w << 6) + Long.numberOfTrailingZeros(entries[w])];
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Compiles the function into a decision table, resolving the values the conditions on
+	 * the abstracted-from abstractions refer to
+	 *
+	 * @param abstractedFrom The abstracted-from elements, in the order they'll be mapped
+	 * @param ontology An Ontology reference (for locating the definitions)
+	 * @throws IllegalStateException If one of the abstracted-from elements is undefined
+	 */
+	public void compile(AbstractedFrom[] abstractedFrom, Ontology ontology){
+		int words = (_mappingFunction.length + 63) >>> 6;
+		_partitions = new InputPartition[abstractedFrom.length];
+		for (int i = 0; i < abstractedFrom.length; ++i){
+			AbstractedFrom af = abstractedFrom[i];
+			ElementDef elementDef = af.getDefinedElementDef(ontology);
+			ElementCondition[] conditions = new ElementCondition[_mappingFunction.length];
+			for (int entry = 0; entry < conditions.length; ++entry){
+				conditions[entry] = _mappingFunction[entry].getCondition(af);
+				conditions[entry].resolveValue(elementDef);
+			}
+			_partitions[i] = (af.getType() == Element.PRIMITIVE) ? InputPartition
+					.createNumeric(conditions, words) : InputPartition.createSymbolic(
+				((AbstractionDef)elementDef).getDomain(), conditions, words);
+		}
+		_entries = new long[words];
+
+		// A single element is mapped directly from its cell
+		if (_partitions.length == 1){
+			InputPartition partition = _partitions[0];
+			_cellValues = new int[partition.getCellCount()];
+			for (int cell = 0; cell < _cellValues.length; ++cell){
+				_cellValues[cell] = getFirstValue(partition.getEntries(cell));
 			}
+		}else{
+			_cellValues = null;
 		}
-		// The elements couldn't be abstracted into either of the values
-		return null;
 	}
 
 	@Override
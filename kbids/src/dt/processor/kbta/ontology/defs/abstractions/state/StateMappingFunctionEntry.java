@@ -2,8 +2,6 @@ package dt.processor.kbta.ontology.defs.abstractions.state;
 
 import java.util.HashMap;
 
-import dt.processor.kbta.ontology.instances.Element;
-
 public class StateMappingFunctionEntry{
 	private final String _mappedValue;
 
@@ -15,22 +13,18 @@ public class StateMappingFunctionEntry{
 		_conditions = elementCondition;
 	}
 
-	public String mapElements(Element[] abstractedFrom){
-		// Checking that each of the elements passes it's matching condition
-		for (Element af : abstractedFrom){
-			// We assume that af is not null and it has a matching condition in the entry
-			ElementCondition elementCondition = _conditions.get(af);
-			if (!elementCondition.checkValue(af)){
-				// One of the elements' value doesn't match the condition
-				// so the mapping has failed
-				return null;
-			}
-		}
-
-		// All of the checks have passed so we return the mapped value
+	public String getMappedValue(){
 		return _mappedValue;
 	}
 
+	/**
+	 * @param af An abstracted-from element of the state
+	 * @return The condition of the entry on the element
+	 */
+	public ElementCondition getCondition(AbstractedFrom af){
+		return _conditions.get(af);
+	}
+
 	@Override
 	public String toString(){
 		String st = "value=" + _mappedValue + "\n";
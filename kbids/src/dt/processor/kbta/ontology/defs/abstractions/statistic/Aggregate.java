@@ -0,0 +1,530 @@
+package dt.processor.kbta.ontology.defs.abstractions.statistic;
+
+import java.util.Arrays;
+
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef.Function;
+
+/**
+ * A running aggregate of the values of a window, from which the statistic is computed
+ * without going over the values again
+ */
+abstract class Aggregate{
+	private static final int INITIAL_CAPACITY = 16;
+
+	/**
+	 * @param time The time of the value, values are added in chronological order
+	 */
+	public abstract void add(long time, double value);
+
+	/**
+	 * Removes the oldest value still in the aggregate, only called for sliding windows
+	 * (whose values leave in the order they were added)
+	 *
+	 * @param value The value, as it was added
+	 */
+	public abstract void removeOldest(double value);
+
+	public abstract void clear();
+
+	/**
+	 * @return The statistic of the values in the aggregate, which mustn't be empty
+	 */
+	public abstract double getValue();
+
+	/**
+	 * @param quantile The quantile for {@link Function#QUANTILE}, ignored otherwise
+	 * @param sliding Whether values are removed from the aggregate as well
+	 * @param length The length of the window, in milliseconds
+	 */
+	public static Aggregate create(Function function, double quantile, boolean sliding,
+		long length){
+		switch (function){
+			case MIN:
+				return new Extremum(false);
+			case MAX:
+				return new Extremum(true);
+			case QUANTILE:
+				// A sketch can't forget single values, so a sliding window's is split into
+				// periods of time that are forgotten whole
+				return new Sketch(quantile, sliding ? length / Sketch.PERIODS : Long.MAX_VALUE);
+			default:
+				return new Moments(function);
+		}
+	}
+
+	/**
+	 * The mean and the sum of squared differences from it, updated by Welford's method
+	 * (which is numerically stable, unlike summing the squares) both when adding and
+	 * removing values. The values are taken relative to the first one, so the rounding
+	 * errors of the updates are relative to the spread of the values rather than to
+	 * their magnitude
+	 */
+	private static final class Moments extends Aggregate{
+		private final Function _function;
+
+		private double _offset;
+
+		private int _n;
+
+		private double _mean;
+
+		private double _m2;
+
+		public Moments(Function function){
+			_function = function;
+		}
+
+		@Override
+		public void add(long time, double value){
+			if (_n == 0){
+				_offset = value;
+			}
+			value -= _offset;
+			++_n;
+			double delta = value - _mean;
+			_mean += delta / _n;
+			_m2 += delta * (value - _mean);
+		}
+
+		@Override
+		public void removeOldest(double value){
+			if (_n <= 1){
+				clear();
+				return;
+			}
+			value -= _offset;
+			double delta = value - _mean;
+			_mean -= delta / (_n - 1);
+			_m2 -= delta * (value - _mean);
+			--_n;
+			if (_m2 < 0){
+				// Rounding errors
+				_m2 = 0;
+			}
+		}
+
+		@Override
+		public void clear(){
+			_n = 0;
+			_mean = 0;
+			_m2 = 0;
+		}
+
+		@Override
+		public double getValue(){
+			if (_function == Function.MEAN){
+				return _offset + _mean;
+			}
+			double variance = (_n > 1) ? _m2 / (_n - 1) : 0;
+			return (_function == Function.VARIANCE) ? variance : Math.sqrt(variance);
+		}
+
+		@Override
+		public String toString(){
+			return "n=" + _n + " mean=" + (_offset + _mean) + " m2=" + _m2;
+		}
+	}
+
+	/**
+	 * A monotonic deque of the values that may still become the extremum, that is, of
+	 * the values not followed by a more extreme one. The extremum is at the head and
+	 * each value is pushed and popped once, so the updates take amortized constant time
+	 */
+	private static final class Extremum extends Aggregate{
+		private final boolean _max;
+
+		private double[] _deque;
+
+		private int _head;
+
+		private int _count;
+
+		public Extremum(boolean max){
+			_max = max;
+			_deque = new double[INITIAL_CAPACITY];
+		}
+
+		@Override
+		public void add(long time, double value){
+			// Values equal to the new one are kept so each is removed on its own
+			while (_count > 0 && isMoreExtreme(value, _deque[tail()])){
+				--_count;
+			}
+			if (_count == _deque.length){
+				grow();
+			}
+			_deque[(_head + _count) % _deque.length] = value;
+			++_count;
+		}
+
+		@Override
+		public void removeOldest(double value){
+			// Unless the value is the extremum, it has already been popped by a more
+			// extreme one
+			if (_count > 0 && _deque[_head] == value){
+				_head = (_head + 1) % _deque.length;
+				--_count;
+			}
+		}
+
+		@Override
+		public void clear(){
+			_head = 0;
+			_count = 0;
+		}
+
+		@Override
+		public double getValue(){
+			return _deque[_head];
+		}
+
+		private boolean isMoreExtreme(double value, double other){
+			return _max ? value > other : value < other;
+		}
+
+		private int tail(){
+			return (_head + _count - 1) % _deque.length;
+		}
+
+		private void grow(){
+			double[] deque = new double[2 * _deque.length];
+			for (int i = 0; i < _count; ++i){
+				deque[i] = _deque[(_head + i) % _deque.length];
+			}
+			_deque = deque;
+			_head = 0;
+		}
+
+		@Override
+		public String toString(){
+			return (_max ? "max" : "min") + " candidates=" + _count;
+		}
+	}
+
+	/**
+	 * An estimate of the quantile in fixed memory, by a P-square estimate (see
+	 * {@link Markers}) per period of time. A tumbling window has a single period, which is
+	 * cleared with the window. A sliding window is split into a fixed number of periods
+	 * of equal length, so values are forgotten a period at a time: the oldest period's
+	 * estimate is weighted by the number of its values still in the window, and dropped
+	 * once none are. The quantile is read off the estimates of the periods merged, which
+	 * takes time in the number of periods only (rather than in the number of values)
+	 */
+	private static final class Sketch extends Aggregate{
+		/** The number of periods a sliding window is split into */
+		static final int PERIODS = 16;
+
+		private final double _quantile;
+
+		/** The length of each period, Long.MAX_VALUE for a single one */
+		private final long _period;
+
+		/** The estimates of the periods, oldest first, in a circular buffer */
+		private Markers[] _periods;
+
+		/** The end time of the newest period */
+		private long _end;
+
+		/** The number of values of the oldest period no longer in the window */
+		private int _removed;
+
+		private int _head;
+
+		private int _count;
+
+		/** The number of values in the window */
+		private int _size;
+
+		/** The heights of the markers of the periods when merging them */
+		private double[] _points;
+
+		/**
+		 * @param period The length of each period, Long.MAX_VALUE for a single one
+		 */
+		public Sketch(double quantile, long period){
+			_quantile = quantile;
+			_period = Math.max(1, period);
+			_periods = new Markers[(period == Long.MAX_VALUE) ? 1 : PERIODS + 2];
+			_points = new double[Markers.MARKERS * _periods.length];
+		}
+
+		@Override
+		public void add(long time, double value){
+			if (_count == 0 || (_period != Long.MAX_VALUE && time >= _end)){
+				startPeriod(time);
+			}
+			get(_count - 1).add(value);
+			++_size;
+		}
+
+		private void startPeriod(long time){
+			if (_count == _periods.length){
+				grow();
+			}
+			int tail = (_head + _count) % _periods.length;
+			if (_periods[tail] == null){
+				_periods[tail] = new Markers(_quantile);
+			}else{
+				_periods[tail].clear();
+			}
+			++_count;
+			// The periods are aligned to multiples of their length
+			_end = (_period == Long.MAX_VALUE) ? Long.MAX_VALUE : time - time % _period
+					+ _period;
+		}
+
+		@Override
+		public void removeOldest(double value){
+			if (_count == 0){
+				return;
+			}
+			--_size;
+			if (++_removed < get(0).getCount()){
+				return;
+			}
+			_head = (_head + 1) % _periods.length;
+			--_count;
+			_removed = 0;
+		}
+
+		@Override
+		public void clear(){
+			_head = 0;
+			_count = 0;
+			_size = 0;
+			_removed = 0;
+		}
+
+		@Override
+		public double getValue(){
+			// The rank of the quantile among the values, so the quantile is interpolated
+			// linearly between the nearest values
+			double rank = 1 + _quantile * (_size - 1);
+			int n = 0;
+			for (int i = 0; i < _count; ++i){
+				n = get(i).copyHeights(_points, n);
+			}
+			Arrays.sort(_points, 0, n);
+
+			// The first height the (merged) rank of which reaches the quantile's
+			int low = 0;
+			int high = n - 1;
+			while (low < high){
+				int mid = (low + high) >>> 1;
+				if (rank(_points[mid]) < rank){
+					low = mid + 1;
+				}else{
+					high = mid;
+				}
+			}
+			if (low == 0){
+				return _points[0];
+			}
+			double before = _points[low - 1];
+			double after = _points[low];
+			double rankBefore = rank(before);
+			double rankAfter = rank(after);
+			if (rankAfter <= rankBefore){
+				return after;
+			}
+			return before + (rank - rankBefore) / (rankAfter - rankBefore) * (after - before);
+		}
+
+		/**
+		 * @return The estimated number of values in the window up to the given value
+		 */
+		private double rank(double value){
+			Markers oldest = get(0);
+			double rank = oldest.rank(value) * (oldest.getCount() - _removed)
+					/ oldest.getCount();
+			for (int i = 1; i < _count; ++i){
+				rank += get(i).rank(value);
+			}
+			return rank;
+		}
+
+		private Markers get(int i){
+			return _periods[(_head + i) % _periods.length];
+		}
+
+		private void grow(){
+			// Only if the values arrive out of order
+			Markers[] periods = new Markers[2 * _periods.length];
+			for (int i = 0; i < _count; ++i){
+				periods[i] = get(i);
+			}
+			_periods = periods;
+			_head = 0;
+			_points = new double[Markers.MARKERS * _periods.length];
+		}
+
+		@Override
+		public String toString(){
+			return "values=" + _size + " periods=" + _count;
+		}
+	}
+
+	/**
+	 * An estimate of the quantile in fixed memory by the P-square algorithm (Jain and
+	 * Chlamtac), which keeps five markers: the minimum, the maximum, the quantile and the
+	 * quantiles halfway between it and either extreme. The heights of the markers are
+	 * adjusted by a piecewise-parabolic interpolation as values arrive. Until there are
+	 * five values the quantile is exact
+	 */
+	private static final class Markers{
+		static final int MARKERS = 5;
+
+		private final double _quantile;
+
+		/** The heights of the markers */
+		private final double[] _heights;
+
+		/** The actual positions of the markers */
+		private final int[] _positions;
+
+		/** The desired positions of the markers */
+		private final double[] _desired;
+
+		/** The increments of the desired positions per value */
+		private final double[] _increments;
+
+		private int _count;
+
+		public Markers(double quantile){
+			_quantile = quantile;
+			_heights = new double[MARKERS];
+			_positions = new int[MARKERS];
+			_desired = new double[MARKERS];
+			_increments = new double[]{0, quantile / 2, quantile, (1 + quantile) / 2, 1};
+		}
+
+		public void add(double value){
+			if (_count < MARKERS){
+				// Keeping the first values in order, they become the markers' heights
+				int i = _count;
+				while (i > 0 && _heights[i - 1] > value){
+					_heights[i] = _heights[i - 1];
+					--i;
+				}
+				_heights[i] = value;
+				if (++_count == MARKERS){
+					for (int j = 0; j < MARKERS; ++j){
+						_positions[j] = j + 1;
+					}
+					double p = _quantile;
+					_desired[0] = 1;
+					_desired[1] = 1 + 2 * p;
+					_desired[2] = 1 + 4 * p;
+					_desired[3] = 3 + 2 * p;
+					_desired[4] = 5;
+				}
+				return;
+			}
+			++_count;
+
+			// Locating the cell of the value, extending the extremes if need be
+			int k;
+			if (value < _heights[0]){
+				_heights[0] = value;
+				k = 0;
+			}else if (value >= _heights[MARKERS - 1]){
+				_heights[MARKERS - 1] = value;
+				k = MARKERS - 2;
+			}else{
+				k = 0;
+				while (value >= _heights[k + 1]){
+					++k;
+				}
+			}
+			for (int i = k + 1; i < MARKERS; ++i){
+				++_positions[i];
+			}
+			for (int i = 0; i < MARKERS; ++i){
+				_desired[i] += _increments[i];
+			}
+
+			// Moving the middle markers towards their desired positions
+			for (int i = 1; i < MARKERS - 1; ++i){
+				double d = _desired[i] - _positions[i];
+				if ((d >= 1 && _positions[i + 1] - _positions[i] > 1)
+						|| (d <= -1 && _positions[i - 1] - _positions[i] < -1)){
+					int sign = (d > 0) ? 1 : -1;
+					double height = parabolic(i, sign);
+					if (_heights[i - 1] < height && height < _heights[i + 1]){
+						_heights[i] = height;
+					}else{
+						_heights[i] = linear(i, sign);
+					}
+					_positions[i] += sign;
+				}
+			}
+		}
+
+		private double parabolic(int i, int d){
+			double q = _heights[i];
+			int n = _positions[i];
+			int nBefore = _positions[i - 1];
+			int nAfter = _positions[i + 1];
+			return q + (double)d / (nAfter - nBefore)
+					* ((n - nBefore + d) * (_heights[i + 1] - q) / (nAfter - n)
+					+ (nAfter - n - d) * (q - _heights[i - 1]) / (n - nBefore));
+		}
+
+		private double linear(int i, int d){
+			return _heights[i] + d * (_heights[i + d] - _heights[i])
+					/ (_positions[i + d] - _positions[i]);
+		}
+
+		public void clear(){
+			_count = 0;
+		}
+
+		public int getCount(){
+			return _count;
+		}
+
+		/**
+		 * @return The estimated number of values up to the given value, interpolated
+		 *         linearly between the markers (each of which is at its position), or
+		 *         the exact number until there are five values
+		 */
+		public double rank(double value){
+			if (_count < MARKERS){
+				int rank = 0;
+				while (rank < _count && _heights[rank] <= value){
+					++rank;
+				}
+				return rank;
+			}
+			if (value < _heights[0]){
+				return 0;
+			}
+			if (value >= _heights[MARKERS - 1]){
+				return _count;
+			}
+			int i = 0;
+			while (value >= _heights[i + 1]){
+				++i;
+			}
+			return _positions[i] + (value - _heights[i]) / (_heights[i + 1] - _heights[i])
+					* (_positions[i + 1] - _positions[i]);
+		}
+
+		/**
+		 * Copies the heights of the markers
+		 *
+		 * @param offset The index the heights are copied to
+		 * @return The index following the copied heights
+		 */
+		public int copyHeights(double[] heights, int offset){
+			int markers = Math.min(_count, MARKERS);
+			System.arraycopy(_heights, 0, heights, offset, markers);
+			return offset + markers;
+		}
+
+		@Override
+		public String toString(){
+			return "values=" + _count + " markers=" + Arrays.toString(_heights);
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package dt.processor.kbta.ontology.defs.abstractions.statistic;
+
+import dt.processor.kbta.container.PrimitiveHistory;
+
+/**
+ * A statistic's window over the history of the samples of a primitive, along with the
+ * running aggregate of their values. The window reads the samples appended to the history
+ * since its previous update, and a sliding window removes the samples from the aggregate
+ * as they leave the window, reading their values back from the history (which keeps them
+ * for at least the window's length, see {@link StatisticDef#resolveIds}). A tumbling
+ * window only keeps the aggregate, which is cleared when the next period starts. Either
+ * way each sample is added (and removed) in amortized constant time, and the statistic
+ * is read off the aggregate rather than recomputed over the whole window.<br>
+ * The samples that leave a sliding window as time passes are removed on the engine's
+ * clock tick (see {@link #evict(long)}), before the history evicts them
+ */
+public final class SampleWindow{
+	private final PrimitiveHistory _history;
+
+	private final long _length;
+
+	private final boolean _sliding;
+
+	private final Aggregate _aggregate;
+
+	/**
+	 * The sequence number of the first sample in the aggregate, and of the sample
+	 * following the last one read from the history
+	 */
+	private long _first;
+
+	private long _end;
+
+	/** The number of samples in the current period of a tumbling window */
+	private int _count;
+
+	/** The start of the current period of a tumbling window */
+	private long _periodStart;
+
+	/** The times of the first and last samples in the current period */
+	private long _firstTime;
+
+	private long _lastTime;
+
+	private double _value;
+
+	private long _startTime;
+
+	private long _endTime;
+
+	/**
+	 * @param history The history of the samples, which must keep them for at least the
+	 *        length of a sliding window
+	 */
+	SampleWindow(PrimitiveHistory history, long length, boolean sliding,
+		Aggregate aggregate){
+		_history = history;
+		_length = length;
+		_sliding = sliding;
+		_aggregate = aggregate;
+		_first = history.getEndSequence();
+		_end = _first;
+	}
+
+	/**
+	 * Adds the samples appended to the history since the previous update to the window,
+	 * the samples are expected in chronological order
+	 *
+	 * @return Whether a statistic has been computed (a sliding window computes one for
+	 *         every sample, a tumbling window only when a period ends), see
+	 *         {@link #getValue()}
+	 */
+	public boolean update(){
+		if (_end < _history.getFirstSequence()){
+			// The window hasn't been updated for longer than the history keeps the
+			// samples, it starts over with the samples still kept
+			_aggregate.clear();
+			_count = 0;
+			_end = _history.getFirstSequence();
+			_first = _end;
+		}
+
+		boolean computed = false;
+		for (long end = _history.getEndSequence(); _end < end; ++_end){
+			int index = _history.indexOf(_end);
+			long time = _history.getTime(index);
+			double value = _history.getValue(index);
+			computed |= _sliding ? slide(time, value) : tumble(time, value);
+		}
+		return computed;
+	}
+
+	/**
+	 * Removes the samples that have left a sliding window by the given time from the
+	 * aggregate (without computing the statistic), as the history may evict them
+	 *
+	 * @param now The current time of the engine's clock
+	 */
+	public void evict(long now){
+		if (_sliding){
+			removeUpTo(now - _length);
+		}
+	}
+
+	private boolean slide(long time, double value){
+		// The window spans (time - length, time]
+		removeUpTo(time - _length);
+		// The sample is the one at _end, which follows the samples in the aggregate
+		_aggregate.add(time, value);
+
+		_value = _aggregate.getValue();
+		_startTime = _history.getTime(_history.indexOf(_first));
+		_endTime = time;
+		return true;
+	}
+
+	/**
+	 * Removes the samples whose times are up to the given time from the aggregate
+	 */
+	private void removeUpTo(long cutOff){
+		while (_first < _end){
+			int index = _history.indexOf(_first);
+			if (index < 0){
+				// Already evicted, so the rest of the removed samples can't be read
+				_aggregate.clear();
+				_first = _end;
+				break;
+			}
+			if (_history.getTime(index) > cutOff){
+				break;
+			}
+			_aggregate.removeOldest(_history.getValue(index));
+			++_first;
+		}
+	}
+
+	private boolean tumble(long time, double value){
+		boolean ended = false;
+		if (_count == 0){
+			_periodStart = time;
+		}else if (time - _periodStart >= _length){
+			_value = _aggregate.getValue();
+			_startTime = _firstTime;
+			_endTime = _lastTime;
+			ended = true;
+
+			_aggregate.clear();
+			_count = 0;
+			// The periods are aligned to the start of the first one
+			_periodStart = time - (time - _periodStart) % _length;
+		}
+
+		if (_count == 0){
+			_firstTime = time;
+		}
+		_lastTime = time;
+		++_count;
+		_aggregate.add(time, value);
+		return ended;
+	}
+
+	/**
+	 * @return The statistic last computed
+	 */
+	public double getValue(){
+		return _value;
+	}
+
+	/**
+	 * @return The time of the first sample the statistic was last computed over
+	 */
+	public long getStartTime(){
+		return _startTime;
+	}
+
+	/**
+	 * @return The time of the last sample the statistic was last computed over
+	 */
+	public long getEndTime(){
+		return _endTime;
+	}
+
+	@Override
+	public String toString(){
+		return "samples=" + (_sliding ? (int)(_end - _first) : _count) + " aggregate="
+				+ _aggregate;
+	}
+}
@@ -0,0 +1,169 @@
+package dt.processor.kbta.ontology.defs.abstractions.statistic;
+
+import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.container.PrimitiveContainer;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.NumericRange;
+import dt.processor.kbta.ontology.defs.PrimitiveDef;
+import dt.processor.kbta.ontology.instances.Primitive;
+
+/**
+ * A statistic of the values of a primitive over a window of time. The statistic is
+ * itself a primitive, derived from the abstracted-from primitive rather than monitored,
+ * so it can be abstracted from and referred to by patterns and contexts as any other
+ * primitive (by its name). Its instances span the samples of the window they were
+ * computed over.<br>
+ * The statistic is updated incrementally as each sample enters (and leaves) the window,
+ * see {@link SampleWindow}
+ */
+public final class StatisticDef extends PrimitiveDef{
+	/**
+	 * The statistic computed over the values of the window
+	 */
+	public enum Function{
+		/**
+		 * The mean of the values
+		 */
+		MEAN,
+		/**
+		 * The (sample) variance of the values, 0 for a single value
+		 */
+		VARIANCE,
+		/**
+		 * The (sample) standard deviation of the values, 0 for a single value
+		 */
+		STDDEV,
+		/**
+		 * The minimal value
+		 */
+		MIN,
+		/**
+		 * The maximal value
+		 */
+		MAX,
+		/**
+		 * The value at the given quantile (between 0 and 1) of the values, interpolated
+		 * between the nearest ones. Estimated in fixed memory
+		 */
+		QUANTILE
+	}
+
+	/**
+	 * How the window moves over the samples
+	 */
+	public enum WindowType{
+		/**
+		 * The window ends at each sample and spans the samples within its length before
+		 * it, a statistic is computed for every sample
+		 */
+		SLIDING,
+		/**
+		 * The windows are consecutive, non-overlapping periods of the window's length
+		 * (starting at the first sample), a statistic is computed for each period once
+		 * the first sample after it arrives
+		 */
+		TUMBLING
+	}
+
+	/** Statistics aren't restricted to a range, the values of their samples already are */
+	private static final NumericRange ALL_VALUES = new NumericRange(
+			Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY, true, true);
+
+	private final String _abstractedFrom;
+
+	private int _abstractedFromId;
+
+	private final Function _function;
+
+	private final double _quantile;
+
+	private final WindowType _windowType;
+
+	private final long _length;
+
+	/**
+	 * @param quantile The quantile for {@link Function#QUANTILE}, ignored otherwise
+	 * @param length The length of the window, in milliseconds
+	 */
+	public StatisticDef(String name, String abstractedFrom, Function function,
+		double quantile, WindowType windowType, long length){
+		super(name, ALL_VALUES);
+		_abstractedFrom = abstractedFrom;
+		_function = function;
+		_quantile = quantile;
+		_windowType = windowType;
+		_length = length;
+	}
+
+	/**
+	 * @param primitives The primitives container, which keeps the history of the samples
+	 *        of the abstracted-from primitive
+	 * @return A new empty window for computing the statistic, kept by the instances
+	 *         container
+	 */
+	public SampleWindow createWindow(PrimitiveContainer primitives){
+		boolean sliding = (_windowType == WindowType.SLIDING);
+		return new SampleWindow(primitives.getHistory(_abstractedFromId), _length, sliding,
+			Aggregate.create(_function, _quantile, sliding, _length));
+	}
+
+	@Override
+	public void evaluate(AllInstanceContainer instances, int iteration){
+		if (!isMonitored()){
+			return;
+		}
+
+		PrimitiveContainer primitives = instances.getPrimitives();
+		Primitive sample = primitives.getCurrentPrimitive(_abstractedFromId);
+		if (sample == null){
+			return;
+		}
+
+		SampleWindow window = instances.getWindows().getWindow(getId());
+		if (!window.update()){
+			return;
+		}
+
+		// Only the extras of the latest sample are a part of the statistic's, rather than
+		// those of the whole window
+		Primitive statistic = new Primitive(_name, getId(), window.getValue(), window
+				.getStartTime(), window.getEndTime(), null);
+		statistic.addParent(sample);
+		primitives.addPrimitive(statistic);
+		setLastCreated(iteration);
+	}
+
+	/**
+	 * Resolves the abstracted-from primitive, whose history must keep the samples of the
+	 * window: for the length of a sliding window, or until they're read by a tumbling
+	 * window (before the next tick of the clock, so any horizon will do)
+	 */
+	@Override
+	public void resolveIds(Ontology ontology){
+		PrimitiveDef abstractedFrom = getAbstractedFromDef(ontology);
+		_abstractedFromId = abstractedFrom.getId();
+		abstractedFrom.requireHistory((_windowType == WindowType.SLIDING) ? _length : 1);
+	}
+
+	@Override
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
+		visitor.visit(getAbstractedFromDef(ontology));
+	}
+
+	private PrimitiveDef getAbstractedFromDef(Ontology ontology){
+		PrimitiveDef primitiveDef = ontology.getPrimitiveDef(_abstractedFrom);
+		if (primitiveDef == null){
+			throw new IllegalStateException("Undefined element: type = primitive name = "
+					+ _abstractedFrom);
+		}
+		return primitiveDef;
+	}
+
+	@Override
+	public String toString(){
+		return "Statistic: " + _name + " " + _function
+				+ ((_function == Function.QUANTILE) ? "(" + _quantile + ")" : "")
+				+ " of " + _abstractedFrom + " over a " + _windowType + " window of "
+				+ _length + "ms";
+	}
+}
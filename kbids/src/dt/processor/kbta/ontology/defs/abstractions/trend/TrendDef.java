@@ -5,13 +5,14 @@ package dt.processor.kbta.ontology.defs.abstractions.trend;
 
 import java.util.ArrayList;
 
-import android.os.Bundle;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
 import dt.processor.kbta.container.PrimitiveContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
+import dt.processor.kbta.ontology.instances.Abstraction;
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.ontology.instances.Primitive;
 import dt.processor.kbta.ontology.instances.Trend;
@@ -23,6 +24,8 @@ import dt.processor.kbta.util.TimeInterval;
 public final class TrendDef extends AbstractionDef{
 	private final String _abstractedFrom;
 
+	private int _abstractedFromId;
+
 	private final TrendMappingFunction _mappingFunction;
 
 	public TrendDef(String name, String abstractedFrom,
@@ -32,6 +35,25 @@ public final class TrendDef extends AbstractionDef{
 		_mappingFunction = mappingFunction;
 	}
 
+	@Override
+	public SymbolicDomain getDomain(){
+		return Trend.DOMAIN;
+	}
+
+	@Override
+	public long getInterpolationDeadline(Abstraction current){
+		long end = current.getTimeInterval().getEndTime();
+		long maxGap = _mappingFunction.getMaxGap();
+		return (maxGap > Long.MAX_VALUE - end) ? Long.MAX_VALUE : end + maxGap;
+	}
+
+	@Override
+	public void evaluate(AllInstanceContainer instances, int iteration){
+		if (isMonitored()){
+			createTrend(instances, iteration);
+		}
+	}
+
 	public void createTrend(AllInstanceContainer instances, int iteration){
 		// Making sure that an instance of this abstraction wasn't already created
 		// in this iteration
@@ -42,7 +64,7 @@ public final class TrendDef extends AbstractionDef{
 		// Making sure the element we need for the abstraction
 		// are present
 		PrimitiveContainer primitives = instances.getPrimitives();
-		Primitive primitive = primitives.getCurrentPrimitive(_abstractedFrom);
+		Primitive primitive = primitives.getCurrentPrimitive(_abstractedFromId);
 		if (primitive == null){
 			return;
 		}
@@ -63,36 +85,29 @@ public final class TrendDef extends AbstractionDef{
 		}
 
 		ComplexContainer<Trend> trends = instances.getTrends();
-		Trend currentTrend = trends.getCurrentElement(_name);
-
-		// We can sum up the extras of the abstracted-from elements and the
-		// contexts as they'll be the extras of the new trend
-		Bundle newExtras = new Bundle();
-		primitive.addInnerExtras(newExtras);
-		for (Element element : elementsContext){
-			element.addInnerExtras(newExtras);
-		}
+		Trend currentTrend = trends.getCurrentElement(getId());
 
-		createTrend(iteration, primitives, primitive, trends, currentTrend, newExtras, elementsContext);
+		createTrend(iteration, primitives, primitive, trends, currentTrend, elementsContext);
 	}
 
 	private void createTrend(int iteration, PrimitiveContainer primitives,
 		Primitive primitive, ComplexContainer<Trend> trends, Trend currentTrend,
-		Bundle newExtras, Element[] elementsContext){
+		Element[] elementsContext){
 		TimeInterval tiPrimitive = primitive.getTimeInterval();
 
 		if (currentTrend == null){
 			// There isn't a current trend, so we check if an old primitive exists, if so
 			// we create a new trend between the old primitive and current primitive
-			Primitive old = primitives.getOldPrimitive(primitive.getName());
+			Primitive old = primitives.getOldPrimitive(primitive.getId());
 			if (old != null){
-				String value = _mappingFunction.mapValue(old, primitive);
+				int value = _mappingFunction.mapValue(old, primitive);
 				TimeInterval tiNew = new TimeInterval(old.getTimeInterval().getEndTime(),
 						tiPrimitive.getEndTime());
 
-				currentTrend = new Trend(_name, value, tiNew, newExtras, old, primitive);
+				currentTrend = new Trend(_name, getId(), value, tiNew, old, primitive);
+				_mappingFunction.start(currentTrend);
 
-				addCreatedTrend(iteration, trends, currentTrend);
+				addCreatedTrend(iteration, trends, currentTrend, primitive, elementsContext);
 			}
 		}else{
 			// A current trend exists so we check if we can add the new primitive to it
@@ -101,31 +116,26 @@ public final class TrendDef extends AbstractionDef{
 				if (_mappingFunction.isInIterpolationRange(currentTrend, primitive)){
 					// The current primitive is in interpolate range so we update
 					// the current trend according the the current primitive
-					currentTrend.setLast(primitive);
+					_mappingFunction.extend(currentTrend, primitive);
 					tiTrend.setEndTime(tiPrimitive.getEndTime());
 
-					currentTrend.setValue(_mappingFunction.mapValue(currentTrend
-							.getFirst(), primitive));
-
 					// The interpolation has succeeded and so we only need to remove the
 					// trend from the current elements
-					trends.removeCurrentElement(_name);
-					// Seeing as the abstraction has already existed, we only to its inner
-					// extras
-					currentTrend.addToInnerExtras(newExtras);
+					trends.removeCurrentElement(getId());
 				}else{
 					// The current primitive isn't in interpolation range so we need to
 					// create a new trend between the current primitive and the primitive
 					// in the end (namely last) of the current trend
 					Primitive last = currentTrend.getLast();
-					String value = _mappingFunction.mapValue(last, primitive);
+					int value = _mappingFunction.mapValue(last, primitive);
 					TimeInterval tiNew = new TimeInterval(tiTrend.getEndTime(),
 							tiPrimitive.getEndTime());
-					currentTrend = new Trend(_name, value, tiNew, newExtras, last,
+					currentTrend = new Trend(_name, getId(), value, tiNew, last,
 							primitive);
+					_mappingFunction.start(currentTrend);
 
 				}
-				addCreatedTrend(iteration, trends, currentTrend);
+				addCreatedTrend(iteration, trends, currentTrend, primitive, elementsContext);
 			}
 		}
 		
@@ -135,7 +145,11 @@ public final class TrendDef extends AbstractionDef{
 	}
 
 	private void addCreatedTrend(int iteration, ComplexContainer<Trend> trends,
-		Trend currentTrend){
+		Trend currentTrend, Primitive primitive, Element[] elementsContext){
+		// The extras of the abstracted-from primitive and the contexts are a part of the
+		// trend's extras (they are merged only if they are needed)
+		currentTrend.addParent(primitive);
+		currentTrend.addParents(elementsContext);
 		// Setting the newly created trend as the newest trend of it's name
 		trends.addElement(currentTrend);
 		// Marking that the trend of this name has already been created during
@@ -144,14 +158,25 @@ public final class TrendDef extends AbstractionDef{
 	}
 
 	@Override
-	public void accept(Ontology ontology, ElementVisitor visitor){
-		super.accept(ontology, visitor); // For necessary contexts and self
+	public void resolveIds(Ontology ontology){
+		super.resolveIds(ontology); // For necessary contexts
+
+		_abstractedFromId = getAbstractedFromDef(ontology).getId();
+	}
+
+	@Override
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
+		super.visitDependencies(ontology, visitor); // For necessary contexts
+
+		visitor.visit(getAbstractedFromDef(ontology));
+	}
 
+	private ElementDef getAbstractedFromDef(Ontology ontology){
 		ElementDef elementDef = ontology.getPrimitiveDef(_abstractedFrom);
 		if (elementDef == null){
 			throw new IllegalStateException("Undefined element: type = primitive name = " + _abstractedFrom);
 		}
-		elementDef.accept(ontology, visitor);
+		return elementDef;
 	}
 
 	@Override
@@ -5,16 +5,71 @@ import dt.processor.kbta.ontology.instances.Trend;
 import dt.processor.kbta.util.TimeInterval;
 
 public final class TrendMappingFunction{
+	/**
+	 * How the value of a trend is determined and whether a primitive continues it
+	 */
+	public enum Mode{
+		/**
+		 * The value is determined by the change rate between the trend's first and last
+		 * primitives, a primitive continues the trend if the angle it forms with the
+		 * trend's last segment is small enough
+		 */
+		ENDPOINTS,
+		/**
+		 * The value is determined by the slope of the least-squares line through the
+		 * trend's primitives, a primitive continues the trend as long as the value doesn't
+		 * change and (unless the value is "Same") the line still fits the primitives well
+		 * enough. The angle isn't used
+		 */
+		REGRESSION
+	}
+
 	private final double _threshold;
 
 	private final double _angle;
 
+	/** The cosine of the angle, compared against instead of computing angles */
+	private final double _cosAngle;
+
+	/** The square of the cosine, compared against instead of computing norms */
+	private final double _cosAngleSquared;
+
 	private final long _maxGap;
 
+	private final Mode _mode;
+
+	/** The minimal goodness-of-fit for continuing a trend in the regression mode */
+	private final double _minFit;
+
 	public TrendMappingFunction(double threshold, double angle, long maxGap){
+		this(threshold, angle, maxGap, Mode.ENDPOINTS, 0);
+	}
+
+	public TrendMappingFunction(double threshold, double angle, long maxGap, Mode mode,
+		double minFit){
 		_threshold = threshold;
 		_angle = angle;
 		_maxGap = maxGap;
+		_mode = mode;
+		_minFit = minFit;
+		if (!(angle >= 0)){
+			// No angle is smaller than a negative one
+			_cosAngle = Double.POSITIVE_INFINITY;
+		}else if (angle >= 180){
+			// Every angle is smaller
+			_cosAngle = Double.NEGATIVE_INFINITY;
+		}else{
+			_cosAngle = Math.cos(Math.toRadians(angle));
+		}
+		_cosAngleSquared = _cosAngle * _cosAngle;
+	}
+
+	public Mode getMode(){
+		return _mode;
+	}
+
+	public long getMaxGap(){
+		return _maxGap;
 	}
 
 	public boolean isGapSmallerThanMaxGap(TimeInterval t1, TimeInterval t2){
@@ -28,11 +83,24 @@ public final class TrendMappingFunction{
 	 * than the angle from the ontology).
 	 * 
 	 * The calculation is done according to the formula: <tr>cosAlpha=(V*U)/(|V|*|U|)</tr><br>
-	 * Note: V*U is the dot product
+	 * Note: V*U is the dot product<br>
+	 * The cosine is compared against the cosine of the angle from the ontology, computed
+	 * once, instead of taking the arccosine of each primitive, and by squares (along with
+	 * the sign of the dot product) so no square root is taken either
+	 * 
+	 * In the regression mode, checking whether the trend's value stays the same and the
+	 * line fits well enough with the primitive added instead
 	 * 
 	 * @return Whether the angle between U and V is smaller than the angle from the ontology
 	 */
 	public boolean isInIterpolationRange(Trend trend, Primitive primitive){
+		if (_mode == Mode.REGRESSION){
+			TrendRegression regression = trend.getRegression();
+			int value = mapChangeRate(regression.getSlope(primitive));
+			return value == trend.getOrdinal()
+					&& (value == Trend.SAME || regression.getFit(primitive) >= _minFit);
+		}
+
 		Primitive first = trend.getFirst();
 		Primitive last = trend.getLast();
 		long tLast = last.getTimeInterval().getEndTime();
@@ -47,12 +115,43 @@ public final class TrendMappingFunction{
 		double dvLF = vLast - vFirst;
 		double dvNL = vNew - vLast;
 
-		double cosAlpha = (dtLF * dtNL + dvLF * dvNL)
-				/ Math.sqrt((dtLF * dtLF + dvLF * dvLF) * (dtNL * dtNL + dvNL * dvNL));
-		double alpha = Math.toDegrees(Math.acos(cosAlpha));
-	
-		return alpha <= _angle;
+		double dot = dtLF * dtNL + dvLF * dvNL;
+		double norms = (dtLF * dtLF + dvLF * dvLF) * (dtNL * dtNL + dvNL * dvNL);
+		double dotSquared = dot * dot;
+
+		// Rounding may take the cosine of (nearly) collinear segments above 1, such a
+		// cosine is rejected as the angle would have been undefined. So is the cosine of
+		// a segment with no length
+		if (!(norms > 0) || (dot > 0 && dotSquared > norms)){
+			return false;
+		}
+		// cosAlpha >= cosAngle, where cosAlpha = dot / sqrt(norms)
+		if (_cosAngle >= 0){
+			return dot >= 0 && dotSquared >= _cosAngleSquared * norms;
+		}
+		return dot >= 0 || dotSquared <= _cosAngleSquared * norms;
+	}
 
+	/**
+	 * Adds the primitive to the trend, updating its value
+	 */
+	public void extend(Trend trend, Primitive primitive){
+		trend.setLast(primitive);
+		if (_mode == Mode.REGRESSION){
+			// The value doesn't change, see isInIterpolationRange
+			trend.getRegression().add(primitive);
+		}else{
+			trend.setValue(mapValue(trend.getFirst(), primitive));
+		}
+	}
+
+	/**
+	 * Prepares a newly created trend between two primitives
+	 */
+	public void start(Trend trend){
+		if (_mode == Mode.REGRESSION){
+			trend.setRegression(new TrendRegression(trend.getFirst(), trend.getLast()));
+		}
 	}
 
 	/**
@@ -60,8 +159,10 @@ public final class TrendMappingFunction{
 	 * if (changeRate > threshold) then the value is "Increasing"
 	 * if (changeRate < -threshold) then the value is "Decreasing"
 	 * else then the value is "Same"
+	 * 
+	 * @return The ordinal of the value, see {@link Trend#DOMAIN}
 	 */
-	public String mapValue(Primitive p1, Primitive p2){
+	public int mapValue(Primitive p1, Primitive p2){
 		double changeRate = ((p2.getValue() - p1.getValue())
 				/ (p2.getTimeInterval().getEndTime() - p1.getTimeInterval()
 						.getEndTime()))*1000;
@@ -69,18 +170,23 @@ public final class TrendMappingFunction{
 		
 //		System.out.println("changeRate= "+changeRate+" threshold= "+_threshold);
 		
+		return mapChangeRate(changeRate);
+	}
+
+	private int mapChangeRate(double changeRate){
 		if (changeRate > _threshold){
-			return "Increasing";
+			return Trend.INCREASING;
 		}else if (changeRate < -_threshold){
-			return "Decreasing";
+			return Trend.DECREASING;
 		}else{
-			return "Same";
+			return Trend.SAME;
 		}
 	}
 
 	@Override
 	public String toString(){
-		return "treshold= " + _threshold + " angle= " + _angle + " maxGap=" + _maxGap;
+		return "treshold= " + _threshold + " angle= " + _angle + " maxGap=" + _maxGap
+				+ " mode=" + _mode + ((_mode == Mode.REGRESSION) ? " minFit=" + _minFit : "");
 	}
 
 }
@@ -0,0 +1,96 @@
+package dt.processor.kbta.ontology.defs.abstractions.trend;
+
+import dt.processor.kbta.ontology.instances.Primitive;
+
+/**
+ * The running means and co-moments of the least-squares line through the primitives of a
+ * trend, so the line's slope and goodness-of-fit are updated in constant time per
+ * primitive. The times are in seconds relative to the trend's first primitive, and the
+ * co-moments are updated around the running means (as by Welford) rather than derived
+ * from raw sums of squares, which lose their precision to cancellation once the trend is
+ * long or its values are large
+ */
+public final class TrendRegression{
+	private final long _origin;
+
+	private int _n;
+
+	private double _meanT;
+
+	private double _meanV;
+
+	/** The sum of the squared deviations of the times from their mean */
+	private double _mTT;
+
+	/** The sum of the products of the deviations of the times and the values */
+	private double _mTV;
+
+	/** The sum of the squared deviations of the values from their mean */
+	private double _mVV;
+
+	public TrendRegression(Primitive first, Primitive second){
+		_origin = first.getTimeInterval().getEndTime();
+		add(first);
+		add(second);
+	}
+
+	public void add(Primitive primitive){
+		double t = time(primitive);
+		double v = primitive.getValue();
+		++_n;
+		double dt = t - _meanT;
+		double dv = v - _meanV;
+		_meanT += dt / _n;
+		_meanV += dv / _n;
+		_mTT += dt * (t - _meanT);
+		_mTV += dt * (v - _meanV);
+		_mVV += dv * (v - _meanV);
+	}
+
+	/**
+	 * @param extra A primitive to consider along with the trend's, null if none
+	 * @return The slope (the change rate of the value per second) of the line
+	 */
+	public double getSlope(Primitive extra){
+		if (extra == null){
+			return _mTV / _mTT;
+		}
+		double dt = time(extra) - _meanT;
+		double dv = extra.getValue() - _meanV;
+		double w = _n / (_n + 1.0);
+		return (_mTV + w * dt * dv) / (_mTT + w * dt * dt);
+	}
+
+	/**
+	 * @param extra A primitive to consider along with the trend's, null if none
+	 * @return The goodness-of-fit (the coefficient of determination, between 0 and 1) of
+	 *         the line, 1 if the values are all the same
+	 */
+	public double getFit(Primitive extra){
+		double mTT = _mTT;
+		double mTV = _mTV;
+		double mVV = _mVV;
+		if (extra != null){
+			// The co-moments with the primitive added, as add would update them
+			double dt = time(extra) - _meanT;
+			double dv = extra.getValue() - _meanV;
+			double w = _n / (_n + 1.0);
+			mTT += w * dt * dt;
+			mTV += w * dt * dv;
+			mVV += w * dv * dv;
+		}
+		if (mVV <= 0){
+			return 1;
+		}
+		return (mTV * mTV) / (mTT * mVV);
+	}
+
+	private double time(Primitive primitive){
+		return (primitive.getTimeInterval().getEndTime() - _origin) / 1000.0;
+	}
+
+	@Override
+	public String toString(){
+		return "n=" + _n + " slope=" + getSlope(null) + " fit=" + getFit(null);
+	}
+}
@@ -29,6 +29,14 @@ public final class ContextDef extends ElementDef{
 		}
 	}
 
+	@Override
+	public void evaluate(AllInstanceContainer instances, int iteration){
+		destroyContext(instances, iteration);
+		if (isMonitored()){
+			createContext(instances, iteration);
+		}
+	}
+
 	public void createContext(AllInstanceContainer aic, int iteration){
 		if (assertNotCreatedIn(iteration)){
 			for (Induction induction : _inductions){
@@ -42,7 +50,7 @@ public final class ContextDef extends ElementDef{
 
 	public void destroyContext(AllInstanceContainer aic, int iteration){
 		if (assertNotCreatedIn(iteration)){
-			if (aic.getContexts().getCurrentElement(_name) != null){
+			if (aic.getContexts().getCurrentElement(getId()) != null){
 				for (Destruction destruction : _destructions){
 					if (destruction.destroy(aic)){
 						setLastCreated(iteration);
@@ -54,18 +62,81 @@ public final class ContextDef extends ElementDef{
 	}
 
 	@Override
-	public void accept(Ontology ontology, ElementVisitor visitor){
-		visitor.visit(this);
+	public boolean isChangedIn(int iteration){
+		// An induction may prolong the current context without marking it as created
+		return true;
+	}
+
+	@Override
+	public void resolveIds(Ontology ontology){
 		for (Induction induction : _inductions){
-			ElementDef elementDef = induction.getElementDef(ontology);
-			if (elementDef == null){
-				throw new IllegalStateException("Undefined element:"
-						+ induction.getElementDefDescription());
+			induction.resolveIds(getId(), getElementDef(ontology, induction));
+		}
+		if (_destructions != null){
+			for (Destruction destruction : _destructions){
+				destruction.resolveIds(getId(), getElementDef(ontology, destruction));
 			}
-			elementDef.accept(ontology, visitor);
 		}
 	}
 
+	@Override
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
+		for (Induction induction : _inductions){
+			visitor.visit(getElementDef(ontology, induction));
+		}
+	}
+
+	/**
+	 * Invokes the visitor on each of the element definitions the destructions of this
+	 * context are based on. These are not traversed by accept as they are not needed in
+	 * order to create the context, but they are read when the context is evaluated
+	 * 
+	 * @param ontology An Ontology reference (for locating the related definitions)
+	 * @param visitor The operation to be performed on each of the related definitions
+	 * @throws IllegalStateException If one of the related definitions is undefined
+	 */
+	public void visitDestructionDependencies(Ontology ontology, ElementVisitor visitor){
+		if (_destructions == null){
+			return;
+		}
+		for (Destruction destruction : _destructions){
+			visitor.visit(getElementDef(ontology, destruction));
+		}
+	}
+
+	/**
+	 * Marks the destructions based on the given definition as deferred, as it is
+	 * evaluated after this context (see {@link Destruction#setDeferred()})
+	 * 
+	 * @param ontology An Ontology reference (for locating the related definitions)
+	 * @param elementDef The definition the deferred destructions are based on
+	 */
+	public void deferDestructions(Ontology ontology, ElementDef elementDef){
+		for (Destruction destruction : _destructions){
+			if (destruction.getElementDef(ontology) == elementDef){
+				destruction.setDeferred();
+			}
+		}
+	}
+
+	private static ElementDef getElementDef(Ontology ontology, Induction induction){
+		ElementDef elementDef = induction.getElementDef(ontology);
+		if (elementDef == null){
+			throw new IllegalStateException("Undefined element:"
+					+ induction.getElementDefDescription());
+		}
+		return elementDef;
+	}
+
+	private static ElementDef getElementDef(Ontology ontology, Destruction destruction){
+		ElementDef elementDef = destruction.getElementDef(ontology);
+		if (elementDef == null){
+			throw new IllegalStateException("Undefined element:"
+					+ destruction.getElementDefDescription());
+		}
+		return elementDef;
+	}
+
 	@Override
 	public String toString(){
 		return "Context: " + _name;
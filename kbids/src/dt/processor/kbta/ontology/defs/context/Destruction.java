@@ -4,6 +4,8 @@
 package dt.processor.kbta.ontology.defs.context;
 
 import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
 
 /**
  * @author 
@@ -14,6 +16,16 @@ public abstract class Destruction {
 
 	protected final String _elementName;
 
+	protected int _contextId;
+
+	protected int _elementId;
+
+	/**
+	 * Whether the element the destruction is based on is evaluated after the context (the
+	 * destruction closes a cycle), so the destruction reads the element created in the
+	 * previous iteration
+	 */
+	protected boolean _deferred;
 
 	public Destruction(String elementName, String contextName){
 		_elementName = elementName;
@@ -22,6 +34,27 @@ public abstract class Destruction {
 	}
 
 
+	/**
+	 * Sets the ids of the destroyed context and of the element the destruction is based
+	 * on, this method must not be called other than by the context definition during the
+	 * initialization!
+	 * 
+	 * @param contextId The id of the destroyed context
+	 * @param elementDef The definition of the element the destruction is based on
+	 */
+	public void resolveIds(int contextId, ElementDef elementDef){
+		_contextId = contextId;
+		_elementId = elementDef.getId();
+	}
+
+	/**
+	 * Marks the destruction as based on an element that is evaluated after the context,
+	 * this method must not be called other than by the evaluation plan
+	 */
+	public void setDeferred(){
+		_deferred = true;
+	}
+
 	public abstract boolean destroy(AllInstanceContainer container);
 
 	@Override
@@ -29,4 +62,8 @@ public abstract class Destruction {
 		return  "destruction of " + _contextName + "\nfrom " + _elementName;
 
 	}
+
+	public abstract ElementDef getElementDef(Ontology ontology);
+
+	public abstract String getElementDefDescription();
 }
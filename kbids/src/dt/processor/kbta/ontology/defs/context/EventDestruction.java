@@ -4,6 +4,8 @@ import java.util.ArrayList;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.instances.Context;
 import dt.processor.kbta.ontology.instances.Event;
 
@@ -16,21 +18,30 @@ public class EventDestruction extends Destruction{
 	@Override
 	public boolean destroy(AllInstanceContainer container){
 		ComplexContainer<Context> cc = container.getContexts();
-		Context c = cc.getCurrentElement(_contextName);
+		Context c = cc.getCurrentElement(_contextId);
 		if (c == null){
 			return false;
 		}
-		ArrayList<Event> events = container.getEvents().getCurrentEvents(_elementName);
+		ArrayList<Event> events = container.getEvents().getCurrentEvents(_elementId);
 		if (events != null){
 			Event e = events.get(0);
 			if (c != null){
 				c.getTimeInterval().setEndTime(e.getTimeInterval().getEndTime());
-				cc.removeCurrentElement(_contextName);
-				cc.addToOld(c, _contextName);
+				cc.removeCurrentElement(_contextId);
+				cc.addToOld(c, _contextId);
 				return true;
 			}
 		}
 		return false;
 	}
 
+	@Override
+	public ElementDef getElementDef(Ontology ontology){
+		return ontology.getEventDef(_elementName);
+	}
+
+	@Override
+	public String getElementDefDescription(){
+		return " type=Event " + "name=" + _elementName;
+	}
 }
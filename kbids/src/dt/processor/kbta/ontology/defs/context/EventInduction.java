@@ -15,7 +15,7 @@ public class EventInduction extends Induction{
 
 	@Override
 	public boolean induce(AllInstanceContainer container){
-		ArrayList<Event> events = container.getEvents().getCurrentEvents(_elementName);
+		ArrayList<Event> events = container.getEvents().getCurrentEvents(_elementId);
 		boolean createdContexts = false;
 		
 		if (events != null){
@@ -25,7 +25,7 @@ public class EventInduction extends Induction{
 				long start = e.getTimeInterval().getEndTime();
 				long end = getEndTime(start);
 				createdContexts = createdContexts
-						| createContext(container, start, end, null, e);
+						| createContext(container, start, end, e, false);
 			}
 		}
 		return createdContexts;
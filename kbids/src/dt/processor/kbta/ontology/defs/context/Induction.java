@@ -3,7 +3,6 @@
  */
 package dt.processor.kbta.ontology.defs.context;
 
-import android.os.Bundle;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
@@ -19,6 +18,10 @@ public abstract class Induction{
 
 	protected final String _elementName;
 
+	protected int _contextId;
+
+	protected int _elementId;
+
 	protected boolean _relativeToStart;
 
 	private long _gap;
@@ -55,6 +58,19 @@ public abstract class Induction{
 		return this;
 	}
 	
+	/**
+	 * Sets the ids of the induced context and of the element the induction is based on,
+	 * this method must not be called other than by the context definition during the
+	 * initialization!
+	 * 
+	 * @param contextId The id of the induced context
+	 * @param elementDef The definition of the element the induction is based on
+	 */
+	public void resolveIds(int contextId, ElementDef elementDef){
+		_contextId = contextId;
+		_elementId = elementDef.getId();
+	}
+
 	protected long getEndTime(long endTimeWithoutGap){
 		if (_gap == Long.MAX_VALUE){
 			return Long.MAX_VALUE;
@@ -65,17 +81,24 @@ public abstract class Induction{
 
 	public abstract boolean induce(AllInstanceContainer container);
 
-	protected boolean createContext(AllInstanceContainer container, long start, long end, Bundle extras, Element inducedFrom){
-		Context context = container.getContexts().getCurrentElement(_contextName);
+	/**
+	 * @param inheritsExtras Whether the extras of the inducing element are a part of the
+	 *        context's extras
+	 */
+	protected boolean createContext(AllInstanceContainer container, long start, long end, Element inducedFrom, boolean inheritsExtras){
+		Context context = container.getContexts().getCurrentElement(_contextId);
 		if (context != null){
 			long contextEnd = context.getTimeInterval().getEndTime();
 			if (contextEnd < start){
-				container.addContext(new Context(_contextName, new TimeInterval(start,
-						end), extras, inducedFrom));
+				container.addContext(new Context(_contextName, _contextId,
+						new TimeInterval(start, end), inducedFrom, inheritsExtras));
 				return true;
 			}else if (contextEnd < end){
 				context.getTimeInterval().setEndTime(end);
-				context.addToInnerExtras(extras);
+				container.getContexts().markProlonged(_contextId);
+				if (inheritsExtras){
+					context.addParent(inducedFrom);
+				}
 				return false;
 			}
 			return false;
@@ -83,7 +106,7 @@ public abstract class Induction{
 			//FIXME Before creating a new context we need to look
 			// in the new contexts in case we created a context in this iteration
 			// already and need to prolong it 
-			container.addContext(new Context(_contextName, new TimeInterval(start, end), extras, inducedFrom));
+			container.addContext(new Context(_contextName, _contextId, new TimeInterval(start, end), inducedFrom, inheritsExtras));
 			return true;
 		}
 	}
@@ -2,6 +2,8 @@ package dt.processor.kbta.ontology.defs.context;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.defs.NumericRange;
 import dt.processor.kbta.ontology.instances.Context;
 import dt.processor.kbta.ontology.instances.Primitive;
@@ -19,18 +21,27 @@ public class PrimitiveDestruction extends Destruction {
 
 	@Override
 	public boolean destroy(AllInstanceContainer container) {
-		Primitive primitive = container.getPrimitives().getCurrentPrimitive(_elementName);
+		Primitive primitive = container.getPrimitives().getCurrentPrimitive(_elementId);
 		if (primitive != null && _numericValues.isInRange(primitive.getValue())){
 			ComplexContainer<Context> cc=container.getContexts();
-			Context c=cc.getCurrentElement(_contextName);
+			Context c=cc.getCurrentElement(_contextId);
 			if (c!=null){
 				c.getTimeInterval().setEndTime(primitive.getTimeInterval().getEndTime());
-				cc.removeCurrentElement(_contextName);
-				cc.addToOld(c, _contextName);
+				cc.removeCurrentElement(_contextId);
+				cc.addToOld(c, _contextId);
 				return true;
 			}
 		}
 		return false;
 	}
 
+	@Override
+	public ElementDef getElementDef(Ontology ontology){
+		return ontology.getPrimitiveDef(_elementName);
+	}
+
+	@Override
+	public String getElementDefDescription(){
+		return " type=Primitive " + "name=" + _elementName;
+	}
 }
@@ -16,14 +16,14 @@ public class PrimitiveInduction extends Induction{
 
 	@Override
 	public boolean induce(AllInstanceContainer container){
-		Primitive p = container.getPrimitives().getCurrentPrimitive(_elementName);
+		Primitive p = container.getPrimitives().getCurrentPrimitive(_elementId);
 		if (p != null){
 			if (_numericValues.isInRange(p.getValue())){
 				// We use the fact that for primitives the start and end
 				// time is the same and avoid checking _relativeToStart
 				long start = p.getTimeInterval().getEndTime();
 				long end = getEndTime(start);
-				return createContext(container, start, end, p.getExtras(), p);
+				return createContext(container, start, end, p, true);
 			}
 		}
 		return false;
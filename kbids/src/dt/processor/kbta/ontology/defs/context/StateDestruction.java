@@ -2,33 +2,58 @@ package dt.processor.kbta.ontology.defs.context;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.Context;
 import dt.processor.kbta.ontology.instances.State;
 
 
 public class StateDestruction extends Destruction {
 	private final String _symbolicValue;
+
+	/** The ordinal of the value, -1 if it isn't in the state's domain */
+	private int _ordinal;
 	
 	public StateDestruction(String elementName, String contextName, String value){
 		super(elementName, contextName);
 		_symbolicValue=value;
+		_ordinal = -1;
 	}
 
 	
 
+	@Override
+	public void resolveIds(int contextId, ElementDef elementDef){
+		super.resolveIds(contextId, elementDef);
+		_ordinal = ((AbstractionDef)elementDef).getDomain().getOrdinal(_symbolicValue);
+	}
+
 	@Override
 	public boolean destroy(AllInstanceContainer container) {
-		State state = container.getStates().getNewestElement(_elementName);
-		if (state != null && _symbolicValue.equals(state.getValue())){
+		ComplexContainer<State> states = container.getStates();
+		State state = _deferred ? states.getShiftedElement(_elementId)
+				: states.getNewestElement(_elementId);
+		if (state != null && _ordinal == state.getOrdinal()){
 			ComplexContainer<Context> cc=container.getContexts();
-			Context c=cc.getCurrentElement(_contextName);
+			Context c=cc.getCurrentElement(_contextId);
 			if (c!=null){
 				c.getTimeInterval().setEndTime(state.getTimeInterval().getEndTime());
-				cc.removeCurrentElement(_contextName);
-				cc.addToOld(c, _contextName);
+				cc.removeCurrentElement(_contextId);
+				cc.addToOld(c, _contextId);
 				return true;
 			}
 		}
 		return false;
 	}
+
+	@Override
+	public ElementDef getElementDef(Ontology ontology){
+		return ontology.getStateDef(_elementName);
+	}
+
+	@Override
+	public String getElementDefDescription(){
+		return " type=State " + "name=" + _elementName;
+	}
 }
@@ -3,26 +3,37 @@ package dt.processor.kbta.ontology.defs.context;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.State;
 import dt.processor.kbta.util.TimeInterval;
 
 public class StateInduction extends Induction{
 	private final String _symbolicValue;
 
+	/** The ordinal of the value, -1 if it isn't in the state's domain */
+	private int _ordinal;
+
 	public StateInduction(String elementName, String contextName, String symbolicValue){
 		super(elementName, contextName);
 		_symbolicValue = symbolicValue;
+		_ordinal = -1;
+	}
+
+	@Override
+	public void resolveIds(int contextId, ElementDef elementDef){
+		super.resolveIds(contextId, elementDef);
+		_ordinal = ((AbstractionDef)elementDef).getDomain().getOrdinal(_symbolicValue);
 	}
 
 	@Override
 	public boolean induce(AllInstanceContainer container){
-		State s = container.getStates().getNewestElement(_elementName);
+		State s = container.getStates().getNewestElement(_elementId);
 		if (s != null){
-			if (_symbolicValue.equalsIgnoreCase(s.getValue())){
+			if (_ordinal == s.getOrdinal()){
 				TimeInterval ti = s.getTimeInterval();
 				long start = ti.getStartTime();
 				long end = getEndTime(_relativeToStart ? start : ti.getEndTime());
-				return createContext(container, start, end, s.getExtras(), s);
+				return createContext(container, start, end, s, true);
 			}
 		}
 		return false;
@@ -2,33 +2,58 @@ package dt.processor.kbta.ontology.defs.context;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.Context;
 import dt.processor.kbta.ontology.instances.Trend;
 
 
 public class TrendDestruction extends Destruction {
 private final String _symbolicValue;
+
+	/** The ordinal of the value, -1 if it isn't in the trend's domain */
+	private int _ordinal;
 	
 	public TrendDestruction(String elementName, String contextName, String value){
 		super(elementName, contextName);
 		_symbolicValue=value;
+		_ordinal = -1;
 	}
 
 	
 
+	@Override
+	public void resolveIds(int contextId, ElementDef elementDef){
+		super.resolveIds(contextId, elementDef);
+		_ordinal = ((AbstractionDef)elementDef).getDomain().getOrdinal(_symbolicValue);
+	}
+
 	@Override
 	public boolean destroy(AllInstanceContainer container) {
-		Trend trend = container.getTrends().getNewestElement(_elementName);
-		if (trend != null && _symbolicValue.equals(trend.getValue())){
+		ComplexContainer<Trend> trends = container.getTrends();
+		Trend trend = _deferred ? trends.getShiftedElement(_elementId)
+				: trends.getNewestElement(_elementId);
+		if (trend != null && _ordinal == trend.getOrdinal()){
 			ComplexContainer<Context> cc=container.getContexts();
-			Context c=cc.getCurrentElement(_contextName);
+			Context c=cc.getCurrentElement(_contextId);
 			if (c!=null){
 				c.getTimeInterval().setEndTime(trend.getTimeInterval().getEndTime());
-				cc.removeCurrentElement(_contextName);
-				cc.addToOld(c, _contextName);
+				cc.removeCurrentElement(_contextId);
+				cc.addToOld(c, _contextId);
 				return true;
 			}
 		}
 		return false;
 	}
+
+	@Override
+	public ElementDef getElementDef(Ontology ontology){
+		return ontology.getTrendDef(_elementName);
+	}
+
+	@Override
+	public String getElementDefDescription(){
+		return " type=Trend " + "name=" + _elementName;
+	}
 }
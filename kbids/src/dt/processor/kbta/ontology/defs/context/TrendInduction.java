@@ -3,26 +3,37 @@ package dt.processor.kbta.ontology.defs.context;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.Trend;
 import dt.processor.kbta.util.TimeInterval;
 
 public class TrendInduction extends Induction{
 	private final String _symbolicValue;
 
+	/** The ordinal of the value, -1 if it isn't in the trend's domain */
+	private int _ordinal;
+
 	public TrendInduction(String elementName, String contextName, String symbolicValue){
 		super(elementName, contextName);
 		_symbolicValue = symbolicValue;
+		_ordinal = -1;
+	}
+
+	@Override
+	public void resolveIds(int contextId, ElementDef elementDef){
+		super.resolveIds(contextId, elementDef);
+		_ordinal = ((AbstractionDef)elementDef).getDomain().getOrdinal(_symbolicValue);
 	}
 
 	@Override
 	public boolean induce(AllInstanceContainer container){
-		Trend t = container.getTrends().getNewestElement(_elementName);
+		Trend t = container.getTrends().getNewestElement(_elementId);
 		if (t != null){
-			if (_symbolicValue.equalsIgnoreCase(t.getValue())){
+			if (_ordinal == t.getOrdinal()){
 				TimeInterval ti = t.getTimeInterval();
 				long start = ti.getStartTime();
 				long end = getEndTime(_relativeToStart ? start : ti.getEndTime());
-				return createContext(container, start, end, t.getExtras(), t);
+				return createContext(container, start, end, t, true);
 			}
 		}
 		return false;
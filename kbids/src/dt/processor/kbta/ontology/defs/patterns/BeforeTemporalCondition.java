@@ -4,16 +4,52 @@ import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.threats.DurationCondition;
 
 public class BeforeTemporalCondition extends TemporalCondition{
-	private DurationCondition _duration;
+	private final DurationCondition _duration;
+
+	/** The bounds of the gap, resolved once rather than on every check */
+	private final long _minGap;
+
+	private final long _maxGap;
 
 	public BeforeTemporalCondition(DurationCondition duration){
 		_duration = duration;
+		_minGap = duration.getMinDuration();
+		_maxGap = duration.getMaxDuration();
 	}
 	
 	@Override
 	public boolean check(Element a, Element b){
-		return (_duration.check(
-				b.getTimeInterval().getStartTime()-a.getTimeInterval().getEndTime()));
+		long gap = b.getTimeInterval().getStartTime() - a.getTimeInterval().getEndTime();
+		return gap >= _minGap && gap <= _maxGap;
+	}
+
+	@Override
+	public int boundSecond(Element first, long[] bounds){
+		// The second element must start within the gap after the first one ends
+		long end = first.getTimeInterval().getEndTime();
+		bounds[0] = add(end, _minGap);
+		bounds[1] = add(end, _maxGap);
+		return START_TIME;
+	}
+
+	@Override
+	public int boundFirst(Element second, long[] bounds){
+		// The first element must end within the gap before the second one starts
+		long start = second.getTimeInterval().getStartTime();
+		bounds[0] = add(start, -_maxGap);
+		bounds[1] = add(start, -_minGap);
+		return END_TIME;
+	}
+
+	@Override
+	public int hashCode(){
+		return _duration.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj){
+		return (obj instanceof BeforeTemporalCondition)
+				&& _duration.equals(((BeforeTemporalCondition)obj)._duration);
 	}
 
 	@Override
@@ -0,0 +1,116 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.util.TimeInterval;
+
+/**
+ * A temporal index over the valid elements of a single pattern element, allowing to
+ * select only the candidates whose times can satisfy a pair-wise condition instead of
+ * checking every one of them. The old valid elements are appended in order of time, so
+ * they are binary searched in place (rather than sorted on every evaluation), and the few
+ * recent ones are checked one by one. The selected candidates are always returned in the
+ * order of the valid elements, so matching through the index yields the same partial
+ * patterns (in the same order) as checking all of the candidates
+ */
+final class CandidateIndex{
+	private final ElementNode _node;
+
+	private final long[] _bounds;
+
+	private int[] _selected;
+
+	public CandidateIndex(ElementNode node){
+		_node = node;
+		_bounds = new long[2];
+		_selected = new int[8];
+	}
+
+	/**
+	 * Selects the candidates that may satisfy the condition as the second element
+	 *
+	 * @return The number of selected candidates, see {@link #getSelected(int)}
+	 */
+	public int selectSeconds(TemporalCondition condition, Element first){
+		int kind = condition.boundSecond(first, _bounds);
+		return select(kind, _bounds[0], _bounds[1]);
+	}
+
+	/**
+	 * Selects the candidates that may satisfy the condition as the first element
+	 *
+	 * @return The number of selected candidates, see {@link #getSelected(int)}
+	 */
+	public int selectFirsts(TemporalCondition condition, Element second){
+		int kind = condition.boundFirst(second, _bounds);
+		return select(kind, _bounds[0], _bounds[1]);
+	}
+
+	/**
+	 * @param i The index of the selected candidate, less than the number of candidates
+	 *        last selected
+	 */
+	public Element getSelected(int i){
+		return _node.getElement(_selected[i]);
+	}
+
+	/**
+	 * @param i The index of the selected candidate, less than the number of candidates
+	 *        last selected
+	 * @return The position of the selected candidate among the valid elements
+	 */
+	public int getSelectedPosition(int i){
+		return _selected[i];
+	}
+
+	private int select(int kind, long lowTime, long highTime){
+		if (lowTime > highTime){
+			return 0;
+		}
+		if (_selected.length < _node.size()){
+			_selected = new int[Math.max(_node.size(), 2 * _selected.length)];
+		}
+		int first = _node.getFirstPosition();
+		int oldEnd = first + _node.getOldSize();
+		int count = 0;
+		int from = first;
+		if (_node.isOldSorted(kind)){
+			int low = lowerBound(kind, first, oldEnd, lowTime);
+			int high = (highTime == Long.MAX_VALUE) ? oldEnd : lowerBound(kind, low,
+				oldEnd, highTime + 1);
+			for (int position = low; position < high; ++position){
+				_selected[count++] = position;
+			}
+			from = oldEnd;
+		}
+		// The unsorted old elements (if any) and the recent ones are checked one by one
+		int end = _node.getEndPosition();
+		for (int position = from; position < end; ++position){
+			long time = getTime(_node.getElement(position), kind);
+			if (time >= lowTime && time <= highTime){
+				_selected[count++] = position;
+			}
+		}
+		return count;
+	}
+
+	private static long getTime(Element e, int kind){
+		TimeInterval ti = e.getTimeInterval();
+		return (kind == TemporalCondition.START_TIME) ? ti.getStartTime() : ti.getEndTime();
+	}
+
+	/**
+	 * @return The first position (between the given ones) whose time is at least the
+	 *         given time
+	 */
+	private int lowerBound(int kind, int low, int high, long time){
+		while (low < high){
+			int mid = (low + high) >>> 1;
+			if (getTime(_node.getElement(mid), kind) < time){
+				low = mid + 1;
+			}else{
+				high = mid;
+			}
+		}
+		return low;
+	}
+}
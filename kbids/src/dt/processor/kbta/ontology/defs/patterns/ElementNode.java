@@ -0,0 +1,432 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+
+import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.container.ElementHistory;
+import dt.processor.kbta.ontology.defs.patterns.patternElements.PatternElement;
+import dt.processor.kbta.ontology.instances.Abstraction;
+import dt.processor.kbta.ontology.instances.Element;
+
+/**
+ * The valid elements of a pattern element, shared by all of the equivalent pattern
+ * elements of the patterns. The valid elements are kept across evaluations and brought up
+ * to date once per evaluation (by the first pattern that needs them) from the changes
+ * since the previous update only:
+ * <ol>
+ * <li>The old elements are only appended to and evicted from the front (see
+ * {@link ElementHistory}) and don't change once old, so only the old elements appended or
+ * evicted since the previous update are visited
+ * <li>The recent elements (e.g. the current and newest ones) are few and are checked again
+ * on every update, as they may still be prolonged
+ * </ol>
+ * Each valid element has a position, ascending in the order of the valid elements (the
+ * old ones followed by the recent ones), and the version of the update in which it was
+ * last added or changed, so a pattern can tell the elements that have changed since its
+ * previous evaluation without visiting the rest
+ */
+final class ElementNode{
+	/** The positions are renumbered from 0 before reaching it */
+	private static final int MAX_POSITION = Integer.MAX_VALUE / 2;
+
+	private static final int INITIAL_SIZE = 8;
+
+	private final PatternElement _element;
+
+	private AllInstanceContainer _instances;
+
+	private int _iteration;
+
+	/** The number of updates so far */
+	private int _version;
+
+	/** The entries of the valid elements */
+	private final IdentityHashMap<Element, Entry> _entries;
+
+	/** The history the old valid elements are of */
+	private ElementHistory<? extends Element> _history;
+
+	/** The sequence number of the first element of the history not yet visited */
+	private long _historyEnd;
+
+	/** The old valid elements, in a circular buffer */
+	private Entry[] _old;
+
+	private int _oldHead;
+
+	private int _oldSize;
+
+	/** Whether the old valid elements are sorted by each kind of time */
+	private final boolean[] _oldSorted;
+
+	/** The recent valid elements */
+	private ArrayList<Entry> _recent;
+
+	private ArrayList<Entry> _previousRecent;
+
+	private final ArrayList<Element> _recentElements;
+
+	/** The position of the first valid element */
+	private int _firstPosition;
+
+	private final CandidateIndex _index;
+
+	public ElementNode(PatternElement element){
+		_element = element;
+		_entries = new IdentityHashMap<Element, Entry>();
+		_old = new Entry[INITIAL_SIZE];
+		_oldSorted = new boolean[2];
+		_recent = new ArrayList<Entry>();
+		_previousRecent = new ArrayList<Entry>();
+		_recentElements = new ArrayList<Element>();
+		_index = new CandidateIndex(this);
+		_instances = null;
+		_iteration = -1;
+		_version = 0;
+		clear();
+	}
+
+	public PatternElement getElement(){
+		return _element;
+	}
+
+	/**
+	 * Brings the valid elements up to date, once per iteration
+	 *
+	 * @param instances The instances the patterns are evaluated on
+	 * @param iteration The current iteration
+	 */
+	public void update(AllInstanceContainer instances, int iteration){
+		if (instances != _instances){
+			_instances = instances;
+			clear();
+		}else if (iteration == _iteration){
+			return;
+		}
+		_iteration = iteration;
+		++_version;
+
+		updateOld(_element.getOldElements(instances));
+		updateRecent(instances);
+		if (_firstPosition + size() > MAX_POSITION){
+			renumber();
+		}
+	}
+
+	/**
+	 * @return The number of the updates so far, elements added or changed by the latest
+	 *         update have it as their version
+	 */
+	public int getVersion(){
+		return _version;
+	}
+
+	public int size(){
+		return _oldSize + _recent.size();
+	}
+
+	public boolean isEmpty(){
+		return size() == 0;
+	}
+
+	/**
+	 * @return The position of the first valid element
+	 */
+	public int getFirstPosition(){
+		return _firstPosition;
+	}
+
+	/**
+	 * @return The position following the last valid element
+	 */
+	public int getEndPosition(){
+		return _firstPosition + size();
+	}
+
+	/**
+	 * @param position The position of a valid element
+	 */
+	public Element getElement(int position){
+		return getEntry(position)._element;
+	}
+
+	/**
+	 * @return The last of the valid elements, null if there are none
+	 */
+	public Element getLastElement(){
+		return isEmpty() ? null : getElement(getEndPosition() - 1);
+	}
+
+	/**
+	 * @return The position of the element, or -1 if it isn't valid
+	 */
+	public int getPosition(Element e){
+		Entry entry = _entries.get(e);
+		return (entry == null) ? -1 : entry._position;
+	}
+
+	/**
+	 * @param position The position of a valid element
+	 * @param version The version of a previous update
+	 * @return Whether the element has been added or changed since that update
+	 */
+	public boolean isChangedSince(int position, int version){
+		return getEntry(position)._changed > version;
+	}
+
+	/**
+	 * @param version The version of a previous update, or -1 for all of the elements
+	 * @return The positions of the valid elements added or changed since that update, in
+	 *         ascending order
+	 */
+	public int[] getChangedPositions(int version){
+		// The old elements don't change once appended, so only those appended since the
+		// update may have changed
+		int from = _oldSize;
+		while (from > 0 && getOld(from - 1)._appended > version){
+			--from;
+		}
+		int[] positions = new int[_oldSize - from + _recent.size()];
+		int count = 0;
+		for (int i = from; i < _oldSize; ++i){
+			Entry entry = getOld(i);
+			if (entry._changed > version){
+				positions[count++] = entry._position;
+			}
+		}
+		for (Entry entry : _recent){
+			if (entry._changed > version){
+				positions[count++] = entry._position;
+			}
+		}
+		if (count == positions.length){
+			return positions;
+		}
+		int[] ans = new int[count];
+		System.arraycopy(positions, 0, ans, 0, count);
+		return ans;
+	}
+
+	/**
+	 * @return The temporal index of the valid elements
+	 */
+	public CandidateIndex getIndex(){
+		return _index;
+	}
+
+	/**
+	 * @return The number of old valid elements, which precede the recent ones
+	 */
+	int getOldSize(){
+		return _oldSize;
+	}
+
+	/**
+	 * @return Whether the old valid elements are sorted by the given kind of time
+	 */
+	boolean isOldSorted(int kind){
+		return _oldSorted[kind];
+	}
+
+	private Entry getEntry(int position){
+		int index = position - _firstPosition;
+		return (index < _oldSize) ? getOld(index) : _recent.get(index - _oldSize);
+	}
+
+	private Entry getOld(int index){
+		return _old[(_oldHead + index) % _old.length];
+	}
+
+	private void updateOld(ElementHistory<? extends Element> history){
+		if (history != _history){
+			// The old elements have been discarded along with their history
+			clearOld();
+			_history = history;
+			_historyEnd = (history == null) ? 0 : history.getFirstSequence();
+		}
+		if (history == null){
+			return;
+		}
+
+		long first = history.getFirstSequence();
+		while (_oldSize > 0 && getOld(0)._sequence < first){
+			Entry entry = getOld(0);
+			_entries.remove(entry._element);
+			_old[_oldHead] = null;
+			_oldHead = (_oldHead + 1) % _old.length;
+			--_oldSize;
+			++_firstPosition;
+		}
+		if (_oldSize == 0){
+			_oldSorted[TemporalCondition.START_TIME] = true;
+			_oldSorted[TemporalCondition.END_TIME] = true;
+		}
+
+		long end = history.getEndSequence();
+		for (long sequence = Math.max(_historyEnd, first); sequence < end; ++sequence){
+			Element e = history.get((int)(sequence - first));
+			if (_element.isValid(e)){
+				appendOld(e, sequence);
+			}
+		}
+		_historyEnd = end;
+	}
+
+	private void appendOld(Element e, long sequence){
+		// A recent element that has become old keeps its entry
+		Entry entry = stamp(e);
+		entry._sequence = sequence;
+		entry._appended = _version;
+		if (_oldSize > 0){
+			Element last = getOld(_oldSize - 1)._element;
+			if (e.getTimeInterval().getStartTime() < last.getTimeInterval().getStartTime()){
+				_oldSorted[TemporalCondition.START_TIME] = false;
+			}
+			if (e.getTimeInterval().getEndTime() < last.getTimeInterval().getEndTime()){
+				_oldSorted[TemporalCondition.END_TIME] = false;
+			}
+		}
+		if (_oldSize == _old.length){
+			Entry[] old = new Entry[_old.length * 2];
+			for (int i = 0; i < _oldSize; ++i){
+				old[i] = getOld(i);
+			}
+			_old = old;
+			_oldHead = 0;
+		}
+		entry._position = _firstPosition + _oldSize;
+		_old[(_oldHead + _oldSize) % _old.length] = entry;
+		++_oldSize;
+	}
+
+	private void updateRecent(AllInstanceContainer instances){
+		ArrayList<Entry> previous = _recent;
+		_recent = _previousRecent;
+		_previousRecent = previous;
+
+		_recentElements.clear();
+		_element.addRecentElements(instances, _recentElements);
+		for (Element e : _recentElements){
+			if (_element.isValid(e)){
+				Entry entry = _entries.get(e);
+				if (entry != null && entry._sequence >= 0){
+					// Already one of the old elements
+					continue;
+				}
+				entry = stamp(e);
+				entry._position = _firstPosition + _oldSize + _recent.size();
+				_recent.add(entry);
+			}
+		}
+		_recentElements.clear();
+
+		// Forgetting the previously recent elements that are no longer valid
+		for (Entry entry : previous){
+			if (entry._seen != _version){
+				_entries.remove(entry._element);
+			}
+		}
+		previous.clear();
+	}
+
+	/**
+	 * @return The entry of the valid element, marked as changed if it's new or its end
+	 *         time or value differs from the ones previously seen
+	 */
+	private Entry stamp(Element e){
+		Entry entry = _entries.get(e);
+		if (entry == null){
+			entry = new Entry(e);
+			_entries.put(e, entry);
+			entry._changed = _version;
+		}else if (!entry.matches(e)){
+			entry.set(e);
+			entry._changed = _version;
+		}
+		entry._seen = _version;
+		return entry;
+	}
+
+	private void renumber(){
+		_firstPosition = 0;
+		for (int i = 0; i < _oldSize; ++i){
+			getOld(i)._position = i;
+		}
+		for (int i = 0; i < _recent.size(); ++i){
+			_recent.get(i)._position = _oldSize + i;
+		}
+	}
+
+	private void clearOld(){
+		for (int i = 0; i < _oldSize; ++i){
+			_entries.remove(getOld(i)._element);
+		}
+		// The recent elements follow the old ones
+		_firstPosition += _oldSize;
+		_old = new Entry[INITIAL_SIZE];
+		_oldHead = 0;
+		_oldSize = 0;
+		_oldSorted[TemporalCondition.START_TIME] = true;
+		_oldSorted[TemporalCondition.END_TIME] = true;
+	}
+
+	private void clear(){
+		_entries.clear();
+		_history = null;
+		_historyEnd = 0;
+		_old = new Entry[INITIAL_SIZE];
+		_oldHead = 0;
+		_oldSize = 0;
+		_oldSorted[TemporalCondition.START_TIME] = true;
+		_oldSorted[TemporalCondition.END_TIME] = true;
+		_recent.clear();
+		_previousRecent.clear();
+		_firstPosition = 0;
+	}
+
+	/**
+	 * A valid element along with its end time and value as last seen (as contexts,
+	 * states and trends are prolonged in place)
+	 */
+	private static final class Entry{
+		private final Element _element;
+
+		private long _endTime;
+
+		private int _value;
+
+		private int _position;
+
+		/** The sequence number of the element in the history, -1 if it's recent */
+		private long _sequence;
+
+		/** The version of the update in which the element was last added or changed */
+		private int _changed;
+
+		/** The version of the update in which the element was appended to the old ones */
+		private int _appended;
+
+		/** The version of the update in which the element was last seen */
+		private int _seen;
+
+		public Entry(Element e){
+			_element = e;
+			_sequence = -1;
+			set(e);
+		}
+
+		public void set(Element e){
+			_endTime = e.getTimeInterval().getEndTime();
+			_value = ordinal(e);
+		}
+
+		public boolean matches(Element e){
+			return e.getTimeInterval().getEndTime() == _endTime && ordinal(e) == _value;
+		}
+
+		private static int ordinal(Element e){
+			return (e instanceof Abstraction) ? ((Abstraction)e).getOrdinal() : -1;
+		}
+	}
+}
@@ -0,0 +1,112 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import java.util.IdentityHashMap;
+
+import dt.processor.kbta.ontology.instances.Element;
+
+/**
+ * A pair-wise condition between two element nodes, shared by all of the equivalent
+ * pair-wise conditions of the patterns. The valid elements satisfying the condition
+ * along with a given element are found once per update of the element nodes, by the
+ * first pattern that looks for them
+ */
+final class JoinNode{
+	private final PairWiseCondition _pwc;
+
+	private final ElementNode _first;
+
+	private final ElementNode _second;
+
+	/** The versions of the element nodes the found elements are of */
+	private int _firstVersion;
+
+	private int _secondVersion;
+
+	private final IdentityHashMap<Element, int[]> _firsts;
+
+	private final IdentityHashMap<Element, int[]> _seconds;
+
+	public JoinNode(PairWiseCondition pwc, ElementNode first, ElementNode second){
+		_pwc = pwc;
+		_first = first;
+		_second = second;
+		_firsts = new IdentityHashMap<Element, int[]>();
+		_seconds = new IdentityHashMap<Element, int[]>();
+		_firstVersion = -1;
+		_secondVersion = -1;
+	}
+
+	public PairWiseCondition getCondition(){
+		return _pwc;
+	}
+
+	public ElementNode getFirst(){
+		return _first;
+	}
+
+	public ElementNode getSecond(){
+		return _second;
+	}
+
+	/**
+	 * @param first The first element
+	 * @return The positions of the valid elements of the second node satisfying the
+	 *         condition along with the first element, in ascending order
+	 */
+	public int[] getSeconds(Element first){
+		validate();
+		int[] ans = _seconds.get(first);
+		if (ans == null){
+			CandidateIndex index = _second.getIndex();
+			int count = index.selectSeconds(_pwc.getTemporalCondition(), first);
+			ans = select(index, count, first, true);
+			_seconds.put(first, ans);
+		}
+		return ans;
+	}
+
+	/**
+	 * @param second The second element
+	 * @return The positions of the valid elements of the first node satisfying the
+	 *         condition along with the second element, in ascending order
+	 */
+	public int[] getFirsts(Element second){
+		validate();
+		int[] ans = _firsts.get(second);
+		if (ans == null){
+			CandidateIndex index = _first.getIndex();
+			int count = index.selectFirsts(_pwc.getTemporalCondition(), second);
+			ans = select(index, count, second, false);
+			_firsts.put(second, ans);
+		}
+		return ans;
+	}
+
+	private int[] select(CandidateIndex index, int count, Element given, boolean isFirst){
+		int[] positions = new int[count];
+		int size = 0;
+		for (int i = 0; i < count; ++i){
+			Element e = index.getSelected(i);
+			if (isFirst ? _pwc.check(given, e) : _pwc.check(e, given)){
+				positions[size++] = index.getSelectedPosition(i);
+			}
+		}
+		int[] ans = new int[size];
+		System.arraycopy(positions, 0, ans, 0, size);
+		return ans;
+	}
+
+	/**
+	 * Forgets the found elements once the valid elements of either node are updated
+	 */
+	private void validate(){
+		int firstVersion = _first.getVersion();
+		int secondVersion = _second.getVersion();
+		if (firstVersion != _firstVersion || secondVersion != _secondVersion){
+			_firstVersion = firstVersion;
+			_secondVersion = secondVersion;
+			_firsts.clear();
+			_seconds.clear();
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import java.util.Arrays;
+
+/**
+ * Chooses the order in which the elements of a pattern are joined, using the number of
+ * candidates of each element in the current evaluation and the selectivity of each
+ * pair-wise condition as observed in the previous evaluations.<br>
+ * Starting from the seed element, the element joined next is the connected one with the
+ * fewest expected matches (its candidates times the selectivities of its conditions with
+ * the elements already joined). The plans are cached as long as the statistics stay
+ * within the same orders of magnitude
+ */
+final class JoinPlanner{
+	/** The number of checks after which the statistics of a condition are halved */
+	private static final int DECAY_THRESHOLD = 1 << 16;
+
+	private final int[] _order;
+
+	private final PairWiseCondition[] _pwcs;
+
+	/** The indexes of the pair-wise conditions incident to each ordinal */
+	private final int[][] _incident;
+
+	/** The number of candidates each condition was checked on and passed */
+	private final int[] _checked;
+
+	private final int[] _passed;
+
+	/** The statistics the cached plans were built for */
+	private int[] _signature;
+
+	/** The cached plans, by seed ordinal (built on demand) */
+	private final Plan[] _plans;
+
+	/**
+	 * @param numOfElements The number of elements in the pattern
+	 * @param order The ordinals taking part in the pattern
+	 * @param pwcs The pair-wise conditions
+	 */
+	public JoinPlanner(int numOfElements, int[] order, PairWiseCondition[] pwcs){
+		_order = order;
+		_pwcs = pwcs;
+		_incident = new int[numOfElements][];
+		for (int ordinal = 0; ordinal < numOfElements; ++ordinal){
+			int count = 0;
+			for (PairWiseCondition pwc : pwcs){
+				if (pwc.getFirst() == ordinal || pwc.getSecond() == ordinal){
+					++count;
+				}
+			}
+			int[] incident = new int[count];
+			count = 0;
+			for (int i = 0; i < pwcs.length; ++i){
+				PairWiseCondition pwc = pwcs[i];
+				if (pwc.getFirst() == ordinal || pwc.getSecond() == ordinal){
+					incident[count++] = i;
+				}
+			}
+			_incident[ordinal] = incident;
+		}
+		_checked = new int[pwcs.length];
+		_passed = new int[pwcs.length];
+		_signature = null;
+		_plans = new Plan[numOfElements];
+	}
+
+	public PairWiseCondition getCondition(int pwc){
+		return _pwcs[pwc];
+	}
+
+	/**
+	 * Records the outcome of checking a condition over a number of candidates
+	 */
+	public void record(int pwc, int checked, int passed){
+		_checked[pwc] += checked;
+		_passed[pwc] += passed;
+		if (_checked[pwc] > DECAY_THRESHOLD){
+			_checked[pwc] >>= 1;
+			_passed[pwc] >>= 1;
+		}
+	}
+
+	/**
+	 * Invalidates the cached plans if the statistics of the current evaluation differ in
+	 * magnitude from the ones they were built for
+	 *
+	 * @param counts The number of candidates of each ordinal
+	 * @param unchangedCounts The number of unchanged candidates of each ordinal
+	 * @param ranks The rank of each ordinal in the seed order
+	 */
+	public void update(int[] counts, int[] unchangedCounts, int[] ranks){
+		int[] signature = new int[_order.length * 3 + _pwcs.length];
+		int i = 0;
+		for (int ordinal : _order){
+			signature[i++] = magnitude(counts[ordinal]);
+			signature[i++] = magnitude(unchangedCounts[ordinal]);
+			signature[i++] = ranks[ordinal];
+		}
+		for (int pwc = 0; pwc < _pwcs.length; ++pwc){
+			signature[i++] = Math.getExponent(getSelectivity(pwc));
+		}
+		if (!Arrays.equals(signature, _signature)){
+			_signature = signature;
+			Arrays.fill(_plans, null);
+		}
+	}
+
+	/**
+	 * @param seed The ordinal of the element the plan starts from
+	 * @param counts The number of candidates of each ordinal that may be joined
+	 * @return The plan for joining the rest of the elements to the seed element
+	 */
+	public Plan getPlan(int seed, int[] counts){
+		Plan plan = _plans[seed];
+		if (plan == null){
+			plan = createPlan(seed, counts);
+			_plans[seed] = plan;
+		}
+		return plan;
+	}
+
+	private Plan createPlan(int seed, int[] counts){
+		int size = _order.length;
+		int[] ordinals = new int[size];
+		int[] narrowing = new int[size];
+		int[][] checks = new int[size][];
+		boolean[] joined = new boolean[counts.length];
+		ordinals[0] = seed;
+		narrowing[0] = -1;
+		checks[0] = new int[0];
+		joined[seed] = true;
+		for (int step = 1; step < size; ++step){
+			int best = -1;
+			boolean bestConnected = false;
+			double bestCost = 0;
+			for (int ordinal : _order){
+				if (joined[ordinal]){
+					continue;
+				}
+				boolean connected = false;
+				double cost = counts[ordinal];
+				for (int pwc : _incident[ordinal]){
+					if (joined[other(_pwcs[pwc], ordinal)]){
+						connected = true;
+						cost *= getSelectivity(pwc);
+					}
+				}
+				// Elements not connected to the ones already joined are a cross product and
+				// are only joined once the connected component is exhausted
+				if (best < 0 || (connected && !bestConnected)
+						|| (connected == bestConnected && cost < bestCost)){
+					best = ordinal;
+					bestConnected = connected;
+					bestCost = cost;
+				}
+			}
+
+			// Narrowing down the candidates by the most selective condition, the rest are
+			// checked on the narrowed down candidates
+			int count = 0;
+			int mostSelective = -1;
+			for (int pwc : _incident[best]){
+				if (joined[other(_pwcs[pwc], best)]){
+					++count;
+					if (mostSelective < 0 || getSelectivity(pwc) < getSelectivity(mostSelective)){
+						mostSelective = pwc;
+					}
+				}
+			}
+			int[] stepChecks = new int[count];
+			if (count > 0){
+				stepChecks[0] = mostSelective;
+				count = 1;
+				for (int pwc : _incident[best]){
+					if (pwc != mostSelective && joined[other(_pwcs[pwc], best)]){
+						stepChecks[count++] = pwc;
+					}
+				}
+			}
+			ordinals[step] = best;
+			narrowing[step] = mostSelective;
+			checks[step] = stepChecks;
+			joined[best] = true;
+		}
+		return new Plan(ordinals, narrowing, checks);
+	}
+
+	/**
+	 * @return The (smoothed) fraction of the checks of the condition that passed
+	 */
+	private double getSelectivity(int pwc){
+		return (_passed[pwc] + 1.0) / (_checked[pwc] + 2.0);
+	}
+
+	private static int magnitude(int count){
+		return 32 - Integer.numberOfLeadingZeros(count);
+	}
+
+	static int other(PairWiseCondition pwc, int ordinal){
+		return (pwc.getFirst() == ordinal) ? pwc.getSecond() : pwc.getFirst();
+	}
+
+	/**
+	 * The order of joining the elements of a pattern to a seed element
+	 */
+	static final class Plan{
+		private final int[] _ordinals;
+
+		private final int[] _narrowing;
+
+		private final int[][] _checks;
+
+		private Plan(int[] ordinals, int[] narrowing, int[][] checks){
+			_ordinals = ordinals;
+			_narrowing = narrowing;
+			_checks = checks;
+		}
+
+		public int size(){
+			return _ordinals.length;
+		}
+
+		/**
+		 * @return The ordinal joined at the given step, the seed being the first
+		 */
+		public int getOrdinal(int step){
+			return _ordinals[step];
+		}
+
+		/**
+		 * @return The condition by which the candidates of the step are narrowed down, -1
+		 *         if the element isn't connected to the ones already joined
+		 */
+		public int getNarrowing(int step){
+			return _narrowing[step];
+		}
+
+		/**
+		 * @return The conditions with the elements already joined to be checked at the
+		 *         step, starting with the narrowing one
+		 */
+		public int[] getChecks(int step){
+			return _checks[step];
+		}
+	}
+}
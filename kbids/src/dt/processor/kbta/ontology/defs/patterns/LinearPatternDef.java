@@ -2,8 +2,6 @@ package dt.processor.kbta.ontology.defs.patterns;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
-import java.util.ListIterator;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
@@ -11,138 +9,205 @@ import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.defs.patterns.patternElements.PatternElement;
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.ontology.instances.LinearPattern;
+import dt.processor.kbta.util.Log;
 
 public final class LinearPatternDef extends ElementDef{
+	private static final String TAG = "LinearPatternDef";
+
+	/**
+	 * Which of the matches of a pattern are kept and turned into patterns
+	 */
+	public enum MatchSemantics{
+		/**
+		 * The pattern is created from the latest match
+		 */
+		MOST_RECENT,
+		/**
+		 * The pattern is created from the earliest match
+		 */
+		FIRST,
+		/**
+		 * The pattern is created from the latest match, and each of the other matches is
+		 * reported once as another match of the pattern (see
+		 * {@link AllInstanceContainer#getOtherMatches(int)}), as long as the maximal
+		 * number of matches isn't reached (the search stops once it is)
+		 */
+		ALL
+	}
+
+	/** The maximal number of matches kept by default */
+	public static final int DEFAULT_MAX_MATCHES = 10000;
+
 	private final PatternElement[] _elements;
 
+	/** The pair-wise conditions, in the order they are applied */
 	private final PairWiseCondition[] _pwcs;
 
-	private LinkedList<PartialPattern> _partialPatterns;
+	/** The nodes computing the valid elements of each ordinal */
+	private final ElementNode[] _elementNodes;
+
+	/** The shared nodes joining each pair-wise condition, if any */
+	private final JoinNode[] _joinNodes;
+
+	private final MatchSemantics _semantics;
+
+	private final int _maxMatches;
+
+	private final PatternMatcher _matcher;
+
+	/** Whether the previous evaluation has reached the maximal number of matches */
+	private boolean _overflowing;
 
 	public LinearPatternDef(String name, ArrayList<PairWiseCondition> pwcs,
 		HashMap<Integer, PatternElement> elements){
+		this(name, pwcs, elements, MatchSemantics.MOST_RECENT, DEFAULT_MAX_MATCHES);
+	}
+
+	/**
+	 * @param semantics Which of the matches are kept and turned into patterns
+	 * @param maxMatches The maximal number of matches kept, once reached the matches
+	 *        ranked worst by the semantics are skipped
+	 */
+	public LinearPatternDef(String name, ArrayList<PairWiseCondition> pwcs,
+		HashMap<Integer, PatternElement> elements, MatchSemantics semantics,
+		int maxMatches){
 		super(name);
 		_elements = new PatternElement[elements.size()];
 		for (PatternElement e : elements.values()){
 			_elements[e.getOrdinal()] = e;
 		}
-
 		_pwcs = rearrangePwcGraph(_elements.length, pwcs);
+		// Until shared by a pattern network, each element is evaluated on its own
+		_elementNodes = new ElementNode[_elements.length];
+		for (int i = 0; i < _elements.length; ++i){
+			_elementNodes[i] = new ElementNode(_elements[i]);
+		}
+		_joinNodes = new JoinNode[_pwcs.length];
+		_semantics = semantics;
+		_maxMatches = Math.max(1, maxMatches);
+
+		_matcher = new PatternMatcher(_elements.length, _pwcs, _elementNodes, _joinNodes,
+				_semantics, _maxMatches);
+		_overflowing = false;
+	}
+
+	public MatchSemantics getMatchSemantics(){
+		return _semantics;
+	}
+
+	public int getMaxMatches(){
+		return _maxMatches;
+	}
+
+	/**
+	 * @return The number of evaluations in which matches were skipped as the maximal
+	 *         number of matches was reached
+	 */
+	public int getOverflowCount(){
+		return _matcher.getOverflowCount();
+	}
+
+	@Override
+	public void evaluate(AllInstanceContainer instances, int iteration){
+		// The pattern of the previous evaluation (if any) is recreated if it still holds,
+		// the other matches are only those found by this evaluation
+		instances.getLinearPatterns().removeCurrentElement(getId());
+		instances.setOtherMatches(getId(), null);
+		if (isMonitored()){
+			createPattern(instances, iteration);
+		}else{
+			_matcher.reset();
+		}
 	}
 
-	@SuppressWarnings("unchecked")
-	public void createPattern(AllInstanceContainer aic){
-		ArrayList<Element>[] elements = new ArrayList[_elements.length];
+	public void createPattern(AllInstanceContainer aic, int iteration){
+		// The last valid element of each ordinal, filling the blanks of the match
+		Element[] lastValidElements = new Element[_elements.length];
 
 		for (PatternElement pe : _elements){
-			ArrayList<Element> e = pe.getValidElements(aic);
-			if (e == null){
+			ElementNode node = _elementNodes[pe.getOrdinal()];
+			node.update(aic, iteration);
+			if (node.isEmpty()){
 //				android.util.Log.d("PatternCreation", "Missing element [" + pe.getOrdinal() + "] " + pe);
+				// None of the matches can hold until the element is valid again
+				_matcher.reset();
 				return;
 			}
 
-			elements[pe.getOrdinal()] = e;
+			lastValidElements[pe.getOrdinal()] = node.getLastElement();
 		}
-		_partialPatterns = new LinkedList<PartialPattern>();
-		int initElementOrdinal = 0;
-		for (Element e : elements[initElementOrdinal]){
-			PartialPattern pp = new PartialPattern(elements.length, initElementOrdinal, e);
-			_partialPatterns.add(pp);
+
+		int overflowCount = _matcher.getOverflowCount();
+		// The matches other than the selected one are only reported for all-matches
+		ArrayList<Element[]> unreported = null;
+		if (_semantics == MatchSemantics.ALL){
+			unreported = new ArrayList<Element[]>();
 		}
-		for (PairWiseCondition pwc : _pwcs){
-			int first = pwc.getFirst();
-			int second = pwc.getSecond();
-
-			PartialPattern ppTemp = _partialPatterns.get(0);
-			if (ppTemp.getElement(first) == null){
-				if (ppTemp.getElement(second) == null){
-					bothElementsMissing(pwc, elements[first], elements[second]);
-				}else{
-					firstElementMissing(pwc, elements[first]);
-				}
-			}else if (ppTemp.getElement(second) == null){
-				secondElementMissing(pwc, elements[second]);
-			}else{
-				noElementsMissing(pwc);
-			}
-			if (_partialPatterns.isEmpty()){
-				return;
-			}
+		Element[] match = _matcher.match(unreported);
+		boolean overflowing = _matcher.getOverflowCount() != overflowCount;
+		if (overflowing && !_overflowing){
+			Log.w(TAG, "The pattern " + _name + " has reached " + _maxMatches
+					+ " matches, skipping the rest (" + _matcher.getOverflowCount()
+					+ " evaluations so far)");
 		}
+		_overflowing = overflowing;
 
-		PartialPattern last = _partialPatterns.get(_partialPatterns.size() - 1);
-		LinearPattern ans = last.toPattern(elements, _name);
-		aic.addPattern(ans);
-	}
-
-	private void noElementsMissing(PairWiseCondition pwc){
-		ListIterator<PartialPattern> lIter = _partialPatterns.listIterator();
-		while (lIter.hasNext()){
-			PartialPattern pp = lIter.next();
-			if (!pwc.check(pp.getElement(pwc.getFirst()), pp.getElement(pwc.getSecond()))){
-				lIter.remove();
+		if (unreported != null && !unreported.isEmpty()){
+			ArrayList<LinearPattern> otherMatches = new ArrayList<LinearPattern>(unreported
+					.size());
+			for (Element[] m : unreported){
+				otherMatches.add(new PartialPattern(m).toPattern(lastValidElements, _name,
+					getId()));
 			}
+			aic.setOtherMatches(getId(), otherMatches);
+		}
+		if (match != null){
+			LinearPattern ans = new PartialPattern(match).toPattern(lastValidElements, _name,
+				getId());
+			aic.addPattern(ans);
 		}
+	}
 
+	PatternElement[] getPatternElements(){
+		return _elements;
 	}
 
-	private void secondElementMissing(PairWiseCondition pwc,
-		ArrayList<Element> secondElements){
-		ListIterator<PartialPattern> lIter = _partialPatterns.listIterator();
-		while (lIter.hasNext()){
-			PartialPattern pp = lIter.next();
-			lIter.remove();
-			for (Element e : secondElements){
-				if (pwc.check(pp.getElement(pwc.getFirst()), e)){
-					lIter.add(pp.addElement(pwc.getSecond(), e));
-				}
-			}
+	PairWiseCondition[] getPairWiseConditions(){
+		return _pwcs;
+	}
 
-		}
+	ElementNode getElementNode(int ordinal){
+		return _elementNodes[ordinal];
 	}
 
-	private void firstElementMissing(PairWiseCondition pwc,
-		ArrayList<Element> firstElements){
-		ListIterator<PartialPattern> lIter = _partialPatterns.listIterator();
-		while (lIter.hasNext()){
-			PartialPattern pp = lIter.next();
-			lIter.remove();
-			for (Element e : firstElements){
-				if (pwc.check(e, pp.getElement(pwc.getSecond()))){
-					lIter.add(pp.addElement(pwc.getFirst(), e));
-				}
-			}
+	void setElementNode(int ordinal, ElementNode node){
+		_elementNodes[ordinal] = node;
+	}
 
-		}
+	void setJoinNode(int pwc, JoinNode node){
+		_joinNodes[pwc] = node;
 	}
 
-	private void bothElementsMissing(PairWiseCondition pwc,
-		ArrayList<Element> firstElements, ArrayList<Element> secondElements){
-		ListIterator<PartialPattern> lIter = _partialPatterns.listIterator();
-		while (lIter.hasNext()){
-			PartialPattern pp = lIter.next();
-			lIter.remove();
-			for (Element e1 : firstElements){
-				for (Element e2 : secondElements){
-					if (pwc.check(e1, e2)){
-						lIter.add(pp.addTwoElements(pwc.getFirst(), e1, pwc.getSecond(),
-							e2));
-					}
-				}
-			}
+	@Override
+	public void resolveIds(Ontology ontology){
+		for (PatternElement pe : _elements){
+			pe.resolveId(getElementDef(ontology, pe));
 		}
 	}
-	
+
 	@Override
-	public void accept(Ontology ontology, ElementVisitor visitor){
-		visitor.visit(this);
+	public void visitDependencies(Ontology ontology, ElementVisitor visitor){
 		for (PatternElement pe : _elements){
-			ElementDef elementDef = pe.getElementDef(ontology);
-			if (elementDef == null){
-				throw new IllegalStateException("Undefined element: " + pe);
-			}
-			elementDef.accept(ontology, visitor);
+			visitor.visit(getElementDef(ontology, pe));
+		}
+	}
+
+	private static ElementDef getElementDef(Ontology ontology, PatternElement pe){
+		ElementDef elementDef = pe.getElementDef(ontology);
+		if (elementDef == null){
+			throw new IllegalStateException("Undefined element: " + pe);
 		}
+		return elementDef;
 	}
 	
 	/**
@@ -6,28 +6,77 @@ import dt.processor.kbta.util.TimeInterval;
 
 public class OverlapTemporalCondition extends TemporalCondition{
 
-	private DurationCondition _durationLength;
+	private final DurationCondition _durationLength;
 
-	private DurationCondition _durationStartingDistance;
+	private final DurationCondition _durationStartingDistance;
+
+	/** The bounds of the durations, resolved once rather than on every check */
+	private final long _minLength;
+
+	private final long _maxLength;
+
+	private final long _minDistance;
+
+	private final long _maxDistance;
 
 	public OverlapTemporalCondition(DurationCondition durationLength,
 		DurationCondition durationStartingDistance){
 		super();
 		_durationLength = durationLength;
 		_durationStartingDistance = durationStartingDistance;
+		_minLength = durationLength.getMinDuration();
+		_maxLength = durationLength.getMaxDuration();
+		_minDistance = durationStartingDistance.getMinDuration();
+		_maxDistance = durationStartingDistance.getMaxDuration();
 	}
 
 	@Override
 	public boolean check(Element a, Element b){
 		TimeInterval ta = a.getTimeInterval();
 		TimeInterval tb = b.getTimeInterval();
-		TimeInterval o = ta.getOverlap(tb);
-		if (o == null){
+		long length = ta.getOverlapDuration(tb);
+		if (length < 0 || length < _minLength || length > _maxLength){
 			return false;
 		}
 		long sd = Math.abs(ta.getStartTime() - tb.getStartTime());
-		return (_durationLength.check(o.getDuration()) && _durationStartingDistance
-				.check(sd));
+		return sd >= _minDistance && sd <= _maxDistance;
+	}
+
+	@Override
+	public int boundSecond(Element first, long[] bounds){
+		return bound(first, bounds);
+	}
+
+	@Override
+	public int boundFirst(Element second, long[] bounds){
+		return bound(second, bounds);
+	}
+
+	/**
+	 * The condition is symmetric, the other element must start within the maximal
+	 * starting distance of the given one and no later than it ends
+	 */
+	private int bound(Element e, long[] bounds){
+		TimeInterval ti = e.getTimeInterval();
+		long start = ti.getStartTime();
+		bounds[0] = add(start, -_maxDistance);
+		bounds[1] = Math.min(add(start, _maxDistance), ti.getEndTime());
+		return START_TIME;
+	}
+
+	@Override
+	public int hashCode(){
+		return 31 * _durationLength.hashCode() + _durationStartingDistance.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj){
+		if (!(obj instanceof OverlapTemporalCondition)){
+			return false;
+		}
+		OverlapTemporalCondition other = (OverlapTemporalCondition)obj;
+		return _durationLength.equals(other._durationLength)
+				&& _durationStartingDistance.equals(other._durationStartingDistance);
 	}
 
 	@Override
@@ -11,17 +11,45 @@ public class PairWiseCondition {
 	public static final int BIGGER=3;
 	
 	
-	private int _first;
-	private int _second;
-	private int _value;
-	private TemporalCondition _temporal;
+	private final int _first;
+	private final int _second;
+	private final int _value;
+	private final TemporalCondition _temporal;
 
-	public PairWiseCondition(int first, int second, int valueCondition,
+	/** The value condition compiled for the compared type, null if it's DONTCARE */
+	private final ValueCondition _compiledValue;
+
+	/**
+	 * @param first The ordinal of the first element
+	 * @param second The ordinal of the second element
+	 * @param valueCondition The condition on the values of the elements
+	 * @param comparedType The type of the elements, if their values are compared
+	 * @param temporal The condition on the times of the elements
+	 */
+	public PairWiseCondition(int first, int second, int valueCondition, int comparedType,
 			TemporalCondition temporal) {
 		_first = first;
 		_second = second;
 		_value = valueCondition;
 		_temporal = temporal;
+		_compiledValue = compileValueCondition(valueCondition, comparedType);
+	}
+
+	private static ValueCondition compileValueCondition(int valueCondition, int comparedType){
+		if (valueCondition == DONTCARE){
+			return null;
+		}
+		// SMALLER, SAME and BIGGER require the comparison's sign to be -1, 0 and 1
+		int sign = valueCondition - SAME;
+		switch (comparedType){
+			case Element.PRIMITIVE:
+				return new PrimitiveValueCondition(sign);
+			case Element.STATE:
+				return new StateValueCondition(sign);
+			default:
+				throw new IllegalArgumentException("The values of elements of type "
+						+ comparedType + " can't be compared");
+		}
 	}
 
 	public int getFirst() {
@@ -34,6 +62,18 @@ public class PairWiseCondition {
 		return _second;
 	}
 
+	public TemporalCondition getTemporalCondition(){
+		return _temporal;
+	}
+
+
+	/**
+	 * @return Whether the conditions imposed on the elements are the same as the other
+	 *         pair-wise condition's, regardless of the elements' ordinals
+	 */
+	public boolean hasSameConditions(PairWiseCondition other){
+		return _value == other._value && _temporal.equals(other._temporal);
+	}
 
 	@Override
 	public String toString(){	
@@ -41,31 +81,7 @@ public class PairWiseCondition {
 	}
 
 	public boolean check(Element element1, Element element2) {
-		if (!_temporal.check(element1, element2)){
-			return false;
-		}
-		switch (_value) {
-			case DONTCARE:
-				return true;
-				
-			case SMALLER:
-				if (element1.compareTo(element2)<0){
-					return true;
-				}
-				break;
-			case SAME:
-				if (element1.compareTo(element2)==0){
-					return true;
-				}
-				break;
-			case BIGGER:
-				if (element1.compareTo(element2)>0){
-					return true;
-				}
-				break;
-			default:
-				break;
-			}
-			return false;
+		return _temporal.check(element1, element2)
+				&& (_compiledValue == null || _compiledValue.check(element1, element2));
 	}
 }
@@ -1,9 +1,5 @@
 package dt.processor.kbta.ontology.defs.patterns;
 
-import java.util.ArrayList;
-
-import android.os.Bundle;
-
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.ontology.instances.LinearPattern;
 import dt.processor.kbta.util.TimeInterval;
@@ -26,12 +22,12 @@ public class PartialPattern{
 	
 	/**
 	 * Creates an actual pattern from this partial pattern while filling the blanks using the given valid elements
-	 * @param validElements Used to fill the blanks (the elements that had no PWCs associated with them)
+	 * @param lastValidElements The last valid element of each ordinal, used to fill the blanks (the elements that had no PWCs associated with them)
 	 * @param name The name of the pattern to be created
+	 * @param id The id of the pattern's definition
 	 * @return The created pattern
 	 */
-	public LinearPattern toPattern(ArrayList<Element>[] validElements, String name){
-		Bundle newExtras = new Bundle();
+	public LinearPattern toPattern(Element[] lastValidElements, String name, int id){
 		long start = Long.MAX_VALUE;
 		long end = 0;
 
@@ -39,15 +35,11 @@ public class PartialPattern{
 			Element e;
 			// 1. Filling the blanks (the elements that had no PWCs associated with them)
 			if ((e = _elements[i]) == null){
-				ArrayList<Element> elements = validElements[i];
-				e = elements.get(elements.size() - 1);
+				e = lastValidElements[i];
 				_elements[i] = e;
 			}		
 
-			// 2. Collecting the extras from all of the pattern elements
-			_elements[i].addInnerExtras(newExtras);
-
-			// 3. Computing the time interval of the pattern
+			// 2. Computing the time interval of the pattern
 			TimeInterval eti = e.getTimeInterval();
 			long startTime = eti.getStartTime();
 			if (startTime < start){
@@ -58,7 +50,8 @@ public class PartialPattern{
 				end = endTime;
 			}
 		}
-		return new LinearPattern(name, new TimeInterval(start, end), newExtras, _elements);
+		// The pattern's extras are those of its elements, see LinearPattern
+		return new LinearPattern(name, id, new TimeInterval(start, end), _elements);
 	}	
 
 	/**
@@ -0,0 +1,599 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef.MatchSemantics;
+import dt.processor.kbta.ontology.instances.Element;
+
+/**
+ * An incremental matcher of a single linear pattern. The complete matches (the
+ * combinations of valid elements satisfying all of the pair-wise conditions) are kept
+ * across evaluations, so each evaluation only:
+ * <ol>
+ * <li>Drops the matches whose elements are no longer valid (e.g. discarded once out of the
+ * element timeout) or have changed since the previous evaluation
+ * <li>Adds the matches involving at least one new or changed element, found by joining
+ * the rest of the elements to each such element in the order chosen by a
+ * {@link JoinPlanner}
+ * </ol>
+ * Elements are considered changed if they have been added or their end time (or value,
+ * for abstractions) has changed since the previous evaluation, as contexts, states and
+ * trends are prolonged in place. The element nodes keep the valid elements and track
+ * their changes across evaluations (see {@link ElementNode}), so an evaluation visits only
+ * the changed elements, the kept matches and the elements joined to the changed ones,
+ * regardless of the number of valid elements.<br>
+ * Matches are ranked by the positions of their elements among the valid elements, in the
+ * order the pair-wise conditions introduce the elements: the latest match is the one a
+ * full evaluation would have created last. At most a given number of matches are kept,
+ * the ones ranked best by the match semantics; once the limit is reached, the search skips
+ * the matches that can't be ranked better than the ones already kept. If a kept match is
+ * dropped after others have been skipped, the matches are searched for from scratch
+ */
+final class PatternMatcher{
+	/** The ordinals taking part in the pattern, in the order they are introduced */
+	private final int[] _order;
+
+	private final JoinPlanner _planner;
+
+	/** The nodes computing the valid elements of each ordinal */
+	private final ElementNode[] _elementNodes;
+
+	/** The shared nodes joining each pair-wise condition, if any */
+	private final JoinNode[] _joinNodes;
+
+	private final int _numOfElements;
+
+	private final MatchSemantics _semantics;
+
+	private final int _maxMatches;
+
+	/** Orders the matches from the one ranked worst by the match semantics */
+	private final Comparator<Match> _worstFirst;
+
+	/** The kept matches, the one ranked worst at the head */
+	private PriorityQueue<Match> _matches;
+
+	/** Whether matches have been skipped since the last search from scratch */
+	private boolean _truncated;
+
+	/** The number of evaluations in which matches were skipped */
+	private int _overflowCount;
+
+	/**
+	 * The versions of the element nodes as of the previous evaluation, per ordinal (-1
+	 * before the first evaluation)
+	 */
+	private final int[] _versions;
+
+	// The state of the current evaluation
+	/** The versions the elements are considered changed since, per ordinal */
+	private int[] _since;
+
+	/** The positions of the changed elements, per ordinal */
+	private int[][] _changedPositions;
+
+	private int[] _counts;
+
+	private int[] _unchangedCounts;
+
+	/** The rank of each ordinal in the seed order */
+	private int[] _ranks;
+
+	/** The positions of the assigned elements among the valid elements, per ordinal */
+	private int[] _assignedPositions;
+
+	/** The matches reported before being dropped, to avoid reporting them again */
+	private HashSet<Match> _reported;
+
+	private boolean _overflowed;
+
+	private boolean _stopped;
+
+	/**
+	 * @param numOfElements The number of elements in the pattern
+	 * @param pwcs The pair-wise conditions, in the order a full evaluation applies them
+	 * @param elementNodes The nodes keeping the valid elements of each ordinal, which must
+	 *        be updated before each evaluation
+	 * @param joinNodes The shared nodes joining each pair-wise condition, if any
+	 * @param semantics Which of the matches are kept and selected
+	 * @param maxMatches The maximal number of matches kept
+	 */
+	public PatternMatcher(int numOfElements, PairWiseCondition[] pwcs,
+		ElementNode[] elementNodes, JoinNode[] joinNodes, MatchSemantics semantics,
+		int maxMatches){
+		_numOfElements = numOfElements;
+		_order = introductionOrder(numOfElements, pwcs);
+		_planner = new JoinPlanner(numOfElements, _order, pwcs);
+		_elementNodes = elementNodes;
+		_joinNodes = joinNodes;
+		_semantics = semantics;
+		_maxMatches = Math.max(1, maxMatches);
+		_worstFirst = (semantics == MatchSemantics.FIRST) ? new Comparator<Match>(){
+			@Override
+			public int compare(Match a, Match b){
+				return compareKeys(b._key, a._key);
+			}
+		} : new Comparator<Match>(){
+			@Override
+			public int compare(Match a, Match b){
+				return compareKeys(a._key, b._key);
+			}
+		};
+		_matches = new PriorityQueue<Match>(11, _worstFirst);
+		_truncated = false;
+		_overflowCount = 0;
+		_versions = new int[numOfElements];
+		Arrays.fill(_versions, -1);
+	}
+
+	/**
+	 * Forgets all of the matches, the next evaluation will start from scratch
+	 */
+	public void reset(){
+		_matches.clear();
+		_truncated = false;
+		Arrays.fill(_versions, -1);
+	}
+
+	/**
+	 * @return The number of evaluations in which matches were skipped as the maximal
+	 *         number of matches was reached
+	 */
+	public int getOverflowCount(){
+		return _overflowCount;
+	}
+
+	/**
+	 * Brings the matches up to date with the valid elements of the element nodes and
+	 * selects one of them
+	 *
+	 * @param unreported If not null, filled with the matches that haven't been reported
+	 *        in previous evaluations (other than the selected one), which are then
+	 *        considered reported along with the selected one
+	 * @return The selected match (with the ordinals that take no part in the pair-wise
+	 *         conditions left null), null if there is no match
+	 */
+	public Element[] match(ArrayList<Element[]> unreported){
+		_since = _versions.clone();
+		_changedPositions = new int[_numOfElements][];
+		_counts = new int[_numOfElements];
+		_unchangedCounts = new int[_numOfElements];
+		_assignedPositions = new int[_numOfElements];
+		_overflowed = false;
+		_stopped = false;
+
+		updateMatches();
+		for (int ordinal : _order){
+			ElementNode node = _elementNodes[ordinal];
+			_changedPositions[ordinal] = node.getChangedPositions(_since[ordinal]);
+			_counts[ordinal] = node.size();
+			_unchangedCounts[ordinal] = node.size() - _changedPositions[ordinal].length;
+		}
+
+		// Each match involving new or changed elements is found exactly once, from the
+		// first such element in the seed order. Seeding from the elements with the fewest
+		// changed candidates first, as the elements before the seed are restricted to
+		// their unchanged candidates
+		int[] seeds = seedOrder();
+		_planner.update(_counts, _unchangedCounts, _ranks);
+		Element[] assignment = new Element[_numOfElements];
+		int[] counts = new int[_numOfElements];
+		for (int seed : seeds){
+			if (_counts[seed] == _unchangedCounts[seed] || !joinableCounts(seed, counts)){
+				continue;
+			}
+			JoinPlanner.Plan plan = _planner.getPlan(seed, counts);
+			ElementNode seedNode = _elementNodes[seed];
+			int[] changed = _changedPositions[seed];
+			for (int i = 0; i < changed.length && !_stopped; ++i){
+				assignment[seed] = seedNode.getElement(changed[i]);
+				_assignedPositions[seed] = changed[i];
+				extend(plan, 1, seed, assignment);
+				assignment[seed] = null;
+			}
+		}
+		if (_overflowed){
+			_truncated = true;
+			++_overflowCount;
+		}
+
+		Match selected = select();
+		if (unreported != null){
+			report(selected, unreported);
+		}
+
+		for (int ordinal : _order){
+			_versions[ordinal] = _elementNodes[ordinal].getVersion();
+		}
+
+		// Not holding on to the elements beyond the evaluation
+		_since = null;
+		_changedPositions = null;
+		_counts = null;
+		_unchangedCounts = null;
+		_ranks = null;
+		_assignedPositions = null;
+		_reported = null;
+		return (selected == null) ? null : selected._elements.clone();
+	}
+
+	/**
+	 * Drops the matches with elements that are no longer valid or have changed (the
+	 * matches with changed elements that still hold are found again) and ranks the rest
+	 * by the current positions of their elements
+	 */
+	private void updateMatches(){
+		ArrayList<Match> kept = new ArrayList<Match>(_matches.size());
+		boolean dropped = false;
+		for (Match match : _matches){
+			if (rank(match)){
+				kept.add(match);
+			}else{
+				dropped = true;
+				if (match._reported){
+					getReported().add(match);
+				}
+			}
+		}
+
+		if (dropped && _truncated){
+			// The skipped matches may now be ranked among the best ones
+			for (Match match : kept){
+				if (match._reported){
+					getReported().add(match);
+				}
+			}
+			kept.clear();
+			// Considering all of the valid elements as changed
+			Arrays.fill(_since, -1);
+			_truncated = false;
+		}
+
+		_matches = new PriorityQueue<Match>(Math.max(11, kept.size()), _worstFirst);
+		_matches.addAll(kept);
+	}
+
+	/**
+	 * Sets the key of the match by the current positions of its elements
+	 *
+	 * @return Whether all of the elements of the match are still valid and unchanged
+	 */
+	private boolean rank(Match match){
+		Element[] elements = match._elements;
+		int[] key = match._key;
+		for (int k = 0; k < _order.length; ++k){
+			int ordinal = _order[k];
+			ElementNode node = _elementNodes[ordinal];
+			int position = node.getPosition(elements[ordinal]);
+			if (position < 0 || node.isChangedSince(position, _since[ordinal])){
+				return false;
+			}
+			key[k] = position;
+		}
+		return true;
+	}
+
+	/**
+	 * Orders the ordinals by their number of changed candidates (ascending), setting the
+	 * rank of each ordinal accordingly
+	 *
+	 * @return The ordinals in the seed order
+	 */
+	private int[] seedOrder(){
+		int[] seeds = _order.clone();
+		// An insertion sort, as patterns have only a handful of elements
+		for (int i = 1; i < seeds.length; ++i){
+			int seed = seeds[i];
+			int changed = _counts[seed] - _unchangedCounts[seed];
+			int j = i - 1;
+			for (; j >= 0 && _counts[seeds[j]] - _unchangedCounts[seeds[j]] > changed; --j){
+				seeds[j + 1] = seeds[j];
+			}
+			seeds[j + 1] = seed;
+		}
+		_ranks = new int[_numOfElements];
+		for (int i = 0; i < seeds.length; ++i){
+			_ranks[seeds[i]] = i;
+		}
+		return seeds;
+	}
+
+	/**
+	 * Sets the number of candidates of each ordinal that may be joined to the seed
+	 *
+	 * @return Whether all of the ordinals have such candidates
+	 */
+	private boolean joinableCounts(int seed, int[] counts){
+		for (int ordinal : _order){
+			int count = (_ranks[ordinal] < _ranks[seed]) ? _unchangedCounts[ordinal]
+					: _counts[ordinal];
+			if (count == 0){
+				return false;
+			}
+			counts[ordinal] = count;
+		}
+		return true;
+	}
+
+	/**
+	 * Joins the elements of the plan from the given step onwards, adding each assignment
+	 * satisfying all of the pair-wise conditions as a match
+	 *
+	 * @param plan The join plan
+	 * @param step The step of the plan to be joined
+	 * @param seed The ordinal assigned with a new or changed element, ordinals before it
+	 *        in the seed order may only be assigned with unchanged elements
+	 * @param assignment The elements assigned so far
+	 */
+	private void extend(JoinPlanner.Plan plan, int step, int seed, Element[] assignment){
+		if (_stopped || !canRankBetter(assignment)){
+			_overflowed = true;
+			return;
+		}
+		if (step == plan.size()){
+			addMatch(assignment);
+			return;
+		}
+		int ordinal = plan.getOrdinal(step);
+		boolean unchangedOnly = _ranks[ordinal] < _ranks[seed];
+		ElementNode node = _elementNodes[ordinal];
+		int since = _since[ordinal];
+		int narrowing = plan.getNarrowing(step);
+		if (narrowing < 0){
+			// Not connected to the elements already joined
+			int end = node.getEndPosition();
+			for (int position = node.getFirstPosition(); position < end; ++position){
+				if (!(unchangedOnly && node.isChangedSince(position, since))){
+					assignment[ordinal] = node.getElement(position);
+					_assignedPositions[ordinal] = position;
+					extend(plan, step + 1, seed, assignment);
+				}
+			}
+			assignment[ordinal] = null;
+			return;
+		}
+
+		PairWiseCondition pwc = _planner.getCondition(narrowing);
+		boolean isSecond = (pwc.getSecond() == ordinal);
+		Element other = assignment[isSecond ? pwc.getFirst() : pwc.getSecond()];
+		int joinable = unchangedOnly ? _unchangedCounts[ordinal] : _counts[ordinal];
+		int[] selected;
+		int checked = 0;
+		int from;
+		JoinNode joinNode = _joinNodes[narrowing];
+		if (joinNode != null){
+			// The candidates satisfying the narrowing condition are found once for all of
+			// the patterns sharing it
+			int[] found = isSecond ? joinNode.getSeconds(other) : joinNode.getFirsts(other);
+			selected = new int[found.length];
+			for (int position : found){
+				if (!(unchangedOnly && node.isChangedSince(position, since))){
+					selected[checked++] = position;
+				}
+			}
+			_planner.record(narrowing, joinable, checked);
+			from = 1;
+		}else{
+			// Only the candidates whose times can satisfy the narrowing condition are
+			// checked
+			CandidateIndex index = node.getIndex();
+			TemporalCondition temporal = pwc.getTemporalCondition();
+			int count = isSecond ? index.selectSeconds(temporal, other) : index
+					.selectFirsts(temporal, other);
+			// The selection is copied as the index is reused by the following steps
+			selected = new int[count];
+			for (int i = 0; i < count; ++i){
+				int position = index.getSelectedPosition(i);
+				if (!(unchangedOnly && node.isChangedSince(position, since))){
+					selected[checked++] = position;
+				}
+			}
+			// The candidates ruled out by the index count as having failed the condition
+			_planner.record(narrowing, joinable - checked, 0);
+			from = 0;
+		}
+
+		int[] checks = plan.getChecks(step);
+		for (int i = 0; i < checked; ++i){
+			Element e = node.getElement(selected[i]);
+			if (check(checks, from, ordinal, e, assignment)){
+				assignment[ordinal] = e;
+				_assignedPositions[ordinal] = selected[i];
+				extend(plan, step + 1, seed, assignment);
+			}
+		}
+		assignment[ordinal] = null;
+	}
+
+	/**
+	 * Checks the conditions (from the given one onwards) between the element and the ones
+	 * already assigned
+	 */
+	private boolean check(int[] checks, int from, int ordinal, Element e,
+		Element[] assignment){
+		for (int i = from; i < checks.length; ++i){
+			int pwc = checks[i];
+			PairWiseCondition condition = _planner.getCondition(pwc);
+			boolean passed = (condition.getFirst() == ordinal) ? condition.check(e,
+				assignment[condition.getSecond()]) : condition.check(
+				assignment[condition.getFirst()], e);
+			_planner.record(pwc, 1, passed ? 1 : 0);
+			if (!passed){
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return Whether a match completing the assignment may be ranked better than the
+	 *         worst kept match, always true while there is room for more matches
+	 */
+	private boolean canRankBetter(Element[] assignment){
+		if (_matches.size() < _maxMatches){
+			return true;
+		}
+		if (_semantics == MatchSemantics.ALL){
+			// All of the matches are equally wanted, so the search is over
+			_stopped = true;
+			return false;
+		}
+		int[] worst = _matches.peek()._key;
+		boolean latest = (_semantics == MatchSemantics.MOST_RECENT);
+		for (int k = 0; k < _order.length; ++k){
+			int ordinal = _order[k];
+			if (assignment[ordinal] == null){
+				// Undecided by the elements assigned so far
+				return true;
+			}
+			int position = _assignedPositions[ordinal];
+			if (position != worst[k]){
+				return (position > worst[k]) == latest;
+			}
+		}
+		return false;
+	}
+
+	private void addMatch(Element[] assignment){
+		Match match = new Match(assignment.clone(), new int[_order.length]);
+		for (int k = 0; k < _order.length; ++k){
+			match._key[k] = _assignedPositions[_order[k]];
+		}
+		if (_reported != null && _reported.contains(match)){
+			match._reported = true;
+		}
+		if (_matches.size() == _maxMatches){
+			// Only reached if the match is ranked better than the worst kept one
+			_matches.poll();
+			_overflowed = true;
+		}
+		_matches.add(match);
+	}
+
+	/**
+	 * @return The kept match ranked best by the match semantics, null if there is none
+	 */
+	private Match select(){
+		Match best = null;
+		for (Match match : _matches){
+			if (best == null || _worstFirst.compare(match, best) > 0){
+				best = match;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Collects the unreported matches other than the selected one (in the order of their
+	 * ranks) and marks them as reported, along with the selected one (which is reported
+	 * by itself, so it isn't reported again once another match is selected)
+	 */
+	private void report(Match selected, ArrayList<Element[]> unreported){
+		ArrayList<Match> matches = new ArrayList<Match>();
+		for (Match match : _matches){
+			if (!match._reported && match != selected){
+				match._reported = true;
+				matches.add(match);
+			}
+		}
+		if (selected != null){
+			selected._reported = true;
+		}
+		Collections.sort(matches, new Comparator<Match>(){
+			@Override
+			public int compare(Match a, Match b){
+				return compareKeys(a._key, b._key);
+			}
+		});
+		for (Match match : matches){
+			unreported.add(match._elements.clone());
+		}
+	}
+
+	private HashSet<Match> getReported(){
+		if (_reported == null){
+			_reported = new HashSet<Match>();
+		}
+		return _reported;
+	}
+
+	private static int compareKeys(int[] a, int[] b){
+		for (int i = 0; i < a.length; ++i){
+			if (a[i] != b[i]){
+				return (a[i] < b[i]) ? -1 : 1;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The order in which a full evaluation introduces the ordinals into the partial
+	 * patterns: the first ordinal, then the ordinals of each pair-wise condition (first
+	 * before second) that haven't been introduced yet
+	 */
+	private static int[] introductionOrder(int numOfElements, PairWiseCondition[] pwcs){
+		boolean[] introduced = new boolean[numOfElements];
+		int[] order = new int[numOfElements];
+		int size = 0;
+		order[size++] = 0;
+		introduced[0] = true;
+		for (PairWiseCondition pwc : pwcs){
+			for (int ordinal : new int[]{pwc.getFirst(), pwc.getSecond()}){
+				if (!introduced[ordinal]){
+					introduced[ordinal] = true;
+					order[size++] = ordinal;
+				}
+			}
+		}
+		int[] ans = new int[size];
+		System.arraycopy(order, 0, ans, 0, size);
+		return ans;
+	}
+
+	/**
+	 * A match along with its key: the positions of its elements among the valid elements,
+	 * in the introduction order. Matches are equal if they consist of the same element
+	 * instances
+	 */
+	private static final class Match{
+		private final Element[] _elements;
+
+		private final int[] _key;
+
+		private boolean _reported;
+
+		public Match(Element[] elements, int[] key){
+			_elements = elements;
+			_key = key;
+			_reported = false;
+		}
+
+		@Override
+		public int hashCode(){
+			int hashCode = 1;
+			for (Element e : _elements){
+				hashCode = 31 * hashCode + System.identityHashCode(e);
+			}
+			return hashCode;
+		}
+
+		@Override
+		public boolean equals(Object obj){
+			if (!(obj instanceof Match)){
+				return false;
+			}
+			Element[] elements = ((Match)obj)._elements;
+			for (int i = 0; i < _elements.length; ++i){
+				if (_elements[i] != elements[i]){
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+}
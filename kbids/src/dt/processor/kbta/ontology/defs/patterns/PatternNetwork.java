@@ -0,0 +1,129 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import java.util.ArrayList;
+
+import dt.processor.kbta.ontology.defs.patterns.patternElements.PatternElement;
+
+/**
+ * Shares the common sub-patterns of the linear patterns, so each is evaluated once per
+ * evaluation regardless of the number of patterns it's a part of:
+ * <ol>
+ * <li>Equivalent pattern elements share a single {@link ElementNode}, their valid
+ * elements and temporal index being computed once
+ * <li>Equivalent pair-wise conditions between shared element nodes share a single
+ * {@link JoinNode}, the elements satisfying them being found once
+ * </ol>
+ * Must be created once the ids of the patterns' elements are resolved
+ */
+public final class PatternNetwork{
+	private final ArrayList<ElementNode> _elementNodes;
+
+	private final ArrayList<JoinNode> _joinNodes;
+
+	private int _sharedElementNodes;
+
+	private int _sharedJoinNodes;
+
+	public PatternNetwork(LinearPatternDef[] patterns){
+		_elementNodes = new ArrayList<ElementNode>();
+		_joinNodes = new ArrayList<JoinNode>();
+		_sharedElementNodes = 0;
+		_sharedJoinNodes = 0;
+
+		ArrayList<int[]> elementUsers = new ArrayList<int[]>();
+		for (LinearPatternDef lpd : patterns){
+			PatternElement[] elements = lpd.getPatternElements();
+			for (int ordinal = 0; ordinal < elements.length; ++ordinal){
+				int node = findElementNode(elements[ordinal]);
+				if (node < 0){
+					node = _elementNodes.size();
+					_elementNodes.add(new ElementNode(elements[ordinal]));
+					elementUsers.add(new int[1]);
+				}
+				++elementUsers.get(node)[0];
+				lpd.setElementNode(ordinal, _elementNodes.get(node));
+			}
+		}
+		for (int[] users : elementUsers){
+			if (users[0] > 1){
+				++_sharedElementNodes;
+			}
+		}
+
+		// Only the pair-wise conditions shared by several patterns are joined through join
+		// nodes, keeping the elements found for an unshared condition would be a waste
+		ArrayList<ArrayList<JoinUser>> joinUsers = new ArrayList<ArrayList<JoinUser>>();
+		for (LinearPatternDef lpd : patterns){
+			PairWiseCondition[] pwcs = lpd.getPairWiseConditions();
+			for (int i = 0; i < pwcs.length; ++i){
+				PairWiseCondition pwc = pwcs[i];
+				ElementNode first = lpd.getElementNode(pwc.getFirst());
+				ElementNode second = lpd.getElementNode(pwc.getSecond());
+				int node = findJoinNode(pwc, first, second);
+				if (node < 0){
+					node = _joinNodes.size();
+					_joinNodes.add(new JoinNode(pwc, first, second));
+					joinUsers.add(new ArrayList<JoinUser>());
+				}
+				joinUsers.get(node).add(new JoinUser(lpd, i));
+			}
+		}
+		for (int node = 0; node < _joinNodes.size(); ++node){
+			ArrayList<JoinUser> users = joinUsers.get(node);
+			if (users.size() > 1){
+				++_sharedJoinNodes;
+				for (JoinUser user : users){
+					user._pattern.setJoinNode(user._pwc, _joinNodes.get(node));
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return The number of element nodes shared by more than one pattern element
+	 */
+	public int getSharedElementCount(){
+		return _sharedElementNodes;
+	}
+
+	/**
+	 * @return The number of join nodes shared by more than one pair-wise condition
+	 */
+	public int getSharedJoinCount(){
+		return _sharedJoinNodes;
+	}
+
+	private int findElementNode(PatternElement element){
+		for (int i = 0; i < _elementNodes.size(); ++i){
+			if (_elementNodes.get(i).getElement().isEquivalent(element)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private int findJoinNode(PairWiseCondition pwc, ElementNode first, ElementNode second){
+		for (int i = 0; i < _joinNodes.size(); ++i){
+			JoinNode node = _joinNodes.get(i);
+			if (node.getFirst() == first && node.getSecond() == second
+					&& node.getCondition().hasSameConditions(pwc)){
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * A pair-wise condition of a pattern
+	 */
+	private static final class JoinUser{
+		private final LinearPatternDef _pattern;
+
+		private final int _pwc;
+
+		public JoinUser(LinearPatternDef pattern, int pwc){
+			_pattern = pattern;
+			_pwc = pwc;
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.ontology.instances.Primitive;
+
+/**
+ * A value condition between two primitives, comparing their values directly
+ */
+public final class PrimitiveValueCondition extends ValueCondition{
+	/** The sign the comparison of the first value to the second must have */
+	private final int _sign;
+
+	public PrimitiveValueCondition(int sign){
+		_sign = sign;
+	}
+
+	@Override
+	public boolean check(Element a, Element b){
+		return ((Primitive)a).compareValues((Primitive)b) == _sign;
+	}
+
+	@Override
+	public String toString(){
+		return "PrimitiveValue sign=" + _sign;
+	}
+}
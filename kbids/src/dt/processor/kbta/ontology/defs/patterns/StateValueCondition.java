@@ -0,0 +1,26 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.ontology.instances.State;
+
+/**
+ * A value condition between two states, comparing the ranks of their values
+ */
+public final class StateValueCondition extends ValueCondition{
+	/** The sign the comparison of the first value to the second must have */
+	private final int _sign;
+
+	public StateValueCondition(int sign){
+		_sign = sign;
+	}
+
+	@Override
+	public boolean check(Element a, Element b){
+		return ((State)a).compareValues((State)b) == _sign;
+	}
+
+	@Override
+	public String toString(){
+		return "StateValue sign=" + _sign;
+	}
+}
@@ -3,10 +3,43 @@ package dt.processor.kbta.ontology.defs.patterns;
 import dt.processor.kbta.ontology.instances.Element;
 
 public abstract class TemporalCondition {
+	/** The kinds of times candidate elements can be bounded by */
+	public static final int START_TIME = 0, END_TIME = 1;
 	
 	public abstract boolean check(Element a, Element b);
 
+	/**
+	 * Bounds the times of the elements that may satisfy the condition as the second
+	 * element, given the first one. The bounds are necessary but not sufficient, the
+	 * candidates within them must still be checked
+	 * 
+	 * @param first The first element
+	 * @param bounds Filled with the (inclusive) lower and upper bounds
+	 * @return The kind of time bounded, {@link #START_TIME} or {@link #END_TIME}
+	 */
+	public abstract int boundSecond(Element first, long[] bounds);
+
+	/**
+	 * Bounds the times of the elements that may satisfy the condition as the first
+	 * element, given the second one. The bounds are necessary but not sufficient, the
+	 * candidates within them must still be checked
+	 * 
+	 * @param second The second element
+	 * @param bounds Filled with the (inclusive) lower and upper bounds
+	 * @return The kind of time bounded, {@link #START_TIME} or {@link #END_TIME}
+	 */
+	public abstract int boundFirst(Element second, long[] bounds);
 
 	public abstract String toString();
 
+	/**
+	 * @return The sum of the given times, saturated rather than overflowing
+	 */
+	protected static long add(long a, long b){
+		long sum = a + b;
+		if (((a ^ sum) & (b ^ sum)) < 0){
+			return (a < 0) ? Long.MIN_VALUE : Long.MAX_VALUE;
+		}
+		return sum;
+	}
 }
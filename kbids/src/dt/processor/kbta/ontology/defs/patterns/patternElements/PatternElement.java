@@ -3,6 +3,7 @@ package dt.processor.kbta.ontology.defs.patterns.patternElements;
 import java.util.ArrayList;
 
 import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.container.ElementHistory;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.instances.Element;
@@ -13,6 +14,8 @@ public abstract class PatternElement{
 
 	protected String _name;
 
+	protected int _elementId;
+
 	protected int _ordinal;
 
 	protected DurationCondition _duration;
@@ -29,11 +32,59 @@ public abstract class PatternElement{
 		return " type=" + Element.TYPES[_type] + " name=" + _name + " ordinal= " + _ordinal;
 	}
 
+	/**
+	 * Sets the id of the element definition this pattern element refers to, this method
+	 * must not be called other than by the pattern definition during the initialization!
+	 * 
+	 * @param elementDef The element definition
+	 */
+	public void resolveId(ElementDef elementDef){
+		_elementId = elementDef.getId();
+	}
+
+	/**
+	 * @return Whether the other pattern element has the same valid elements as this one
+	 *         (refers to the same element definition with the same conditions), regardless
+	 *         of their ordinals
+	 */
+	public boolean isEquivalent(PatternElement other){
+		if (getClass() != other.getClass() || _type != other._type
+				|| _elementId != other._elementId){
+			return false;
+		}
+		return (_duration == null) ? other._duration == null : _duration
+				.equals(other._duration);
+	}
+
 	public Integer getOrdinal(){
 		return _ordinal;
 	}
 
-	public abstract ArrayList<Element> getValidElements(AllInstanceContainer aic);
+	/**
+	 * The valid elements are the old elements followed by the recent ones, which satisfy
+	 * the conditions of the pattern element (see {@link #isValid(Element)})
+	 * 
+	 * @return The old elements of the referred definition, which are only appended to (as
+	 *         the recent elements become old) and evicted from the front, null if there
+	 *         are none. The old elements don't change once appended
+	 */
+	public ElementHistory<? extends Element> getOldElements(AllInstanceContainer aic){
+		return null;
+	}
+
+	/**
+	 * Adds the elements of the referred definition that aren't old yet (e.g. the current
+	 * and newest elements, which may still be prolonged), regardless of the conditions
+	 */
+	public abstract void addRecentElements(AllInstanceContainer aic,
+		ArrayList<Element> recent);
+
+	/**
+	 * @return Whether the element satisfies the conditions of the pattern element
+	 */
+	public final boolean isValid(Element e){
+		return check(e);
+	}
 
 	protected boolean check(Element e){		
 		return (_duration == null) ? true : _duration.check(e.getTimeInterval().getDuration());
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.container.ElementHistory;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.instances.Context;
@@ -18,31 +19,21 @@ public final class PatternElementContext extends PatternElement{
 	}
 
 	@Override
-	public ArrayList<Element> getValidElements(AllInstanceContainer aic){
-		ArrayList<Element> ans = new ArrayList<Element>();
+	public ElementHistory<Context> getOldElements(AllInstanceContainer aic){
+		return aic.getContexts().getOldElements(_elementId);
+	}
+
+	@Override
+	public void addRecentElements(AllInstanceContainer aic, ArrayList<Element> recent){
 		ComplexContainer<Context> ec = aic.getContexts();
-		Context e;
-		ArrayList<Context> eArray = ec.getOldElements(_name);
-		if (eArray != null){
-			for (Context e1 : eArray){
-				if (check(e1)){
-					ans.add(e1);
-				}
-
-			}
-		}
-		e = ec.getCurrentElement(_name);
-		if (e != null && check(e)){
-			ans.add(e);
-		}
-		e = ec.getNewestElement(_name);
-		if (e != null && check(e)){
-			ans.add(e);
+		Context e = ec.getCurrentElement(_elementId);
+		if (e != null){
+			recent.add(e);
 		}
-		if (ans.isEmpty()){
-			return null;
+		e = ec.getNewestElement(_elementId);
+		if (e != null){
+			recent.add(e);
 		}
-		return ans;
 	}
 
 	@Override
@@ -3,7 +3,7 @@ package dt.processor.kbta.ontology.defs.patterns.patternElements;
 import java.util.ArrayList;
 
 import dt.processor.kbta.container.AllInstanceContainer;
-import dt.processor.kbta.container.EventContainer;
+import dt.processor.kbta.container.ElementHistory;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.instances.Element;
@@ -17,26 +17,17 @@ public final class PatternElementEvent extends PatternElement{
 		super(type, name, ordinal, duration);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Override
-	public ArrayList<Element> getValidElements(AllInstanceContainer aic){
-		ArrayList<Element> ans = new ArrayList<Element>();
-		EventContainer ec = aic.getEvents();
-		ArrayList<Event>[] events = new ArrayList[]{ec.getOldEvents(_name), ec.getCurrentEvents(_name)};
-		for (ArrayList<Event> eArray : events){
-			if (eArray != null){
-				for (Event e : eArray){
-					if (check(e)){
-						ans.add(e);
-					}
-				}
-			}
-		}
+	public ElementHistory<Event> getOldElements(AllInstanceContainer aic){
+		return aic.getEvents().getOldEvents(_elementId);
+	}
 
-		if (ans.isEmpty()){
-			return null;
+	@Override
+	public void addRecentElements(AllInstanceContainer aic, ArrayList<Element> recent){
+		ArrayList<Event> events = aic.getEvents().getCurrentEvents(_elementId);
+		if (events != null){
+			recent.addAll(events);
 		}
-		return ans;
 	}
 
 	@Override
@@ -21,22 +21,16 @@ public final class PatternElementPrimitive extends PatternElement{
 	}
 
 	@Override
-	public ArrayList<Element> getValidElements(AllInstanceContainer aic){
-		ArrayList<Element> ans = new ArrayList<Element>();
+	public void addRecentElements(AllInstanceContainer aic, ArrayList<Element> recent){
 		PrimitiveContainer pc = aic.getPrimitives();
-		Element e;
-		e = pc.getOldPrimitive(_name);
-		if (e != null && check(e)){
-			ans.add(e);
+		Element e = pc.getOldPrimitive(_elementId);
+		if (e != null){
+			recent.add(e);
 		}
-		e = pc.getCurrentPrimitive(_name);
-		if (e != null && check(e)){
-			ans.add(e);
+		e = pc.getCurrentPrimitive(_elementId);
+		if (e != null){
+			recent.add(e);
 		}
-		if (ans.isEmpty()){
-			return null;
-		}
-		return ans;
 	}
 
 	@Override
@@ -44,6 +38,12 @@ public final class PatternElementPrimitive extends PatternElement{
 		return super.toString() + "  " + _numricRange;
 	}
 
+	@Override
+	public boolean isEquivalent(PatternElement other){
+		return super.isEquivalent(other)
+				&& _numricRange.equals(((PatternElementPrimitive)other)._numricRange);
+	}
+
 	@Override
 	protected boolean check(Element e){
 		return (super.check(e) && _numricRange.isInRange(((Primitive)e).getValue()));
@@ -4,8 +4,10 @@ import java.util.ArrayList;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.container.ElementHistory;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.Abstraction;
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.ontology.instances.State;
@@ -26,37 +28,39 @@ public final class PatternElementState extends PatternElement{
 		return super.toString() + "  " + _symbolicValueCondition;
 	}
 
+	@Override
+	public boolean isEquivalent(PatternElement other){
+		return super.isEquivalent(other)
+				&& _symbolicValueCondition.equals(((PatternElementState)other)._symbolicValueCondition);
+	}
+
+	@Override
+	public void resolveId(ElementDef elementDef){
+		super.resolveId(elementDef);
+		_symbolicValueCondition.resolveValues(((AbstractionDef)elementDef).getDomain());
+	}
+
 	@Override
 	protected boolean check(Element e){
-		return (super.check(e) && _symbolicValueCondition.check(((Abstraction)e)
-				.getValue()));
+		return (super.check(e) && _symbolicValueCondition.check((Abstraction)e));
 	}
 
 	@Override
-	public ArrayList<Element> getValidElements(AllInstanceContainer aic){
-		ArrayList<Element> ans = new ArrayList<Element>();
-		ComplexContainer<State> ec = aic.getStates();
+	public ElementHistory<State> getOldElements(AllInstanceContainer aic){
+		return aic.getStates().getOldElements(_elementId);
+	}
 
-		ArrayList<State> eArray = ec.getOldElements(_name);
-		if (eArray != null){
-			for (State e1 : eArray){
-				if (check(e1)){
-					ans.add(e1);
-				}
-			}
-		}
-		State e = ec.getCurrentElement(_name);
-		if (e != null && check(e)){
-			ans.add(e);
-		}
-		e = ec.getNewestElement(_name);
-		if (e != null && check(e)){
-			ans.add(e);
+	@Override
+	public void addRecentElements(AllInstanceContainer aic, ArrayList<Element> recent){
+		ComplexContainer<State> ec = aic.getStates();
+		State e = ec.getCurrentElement(_elementId);
+		if (e != null){
+			recent.add(e);
 		}
-		if (ans.isEmpty()){
-			return null;
+		e = ec.getNewestElement(_elementId);
+		if (e != null){
+			recent.add(e);
 		}
-		return ans;
 	}
 
 	@Override
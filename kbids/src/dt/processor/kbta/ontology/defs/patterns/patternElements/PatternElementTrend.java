@@ -4,8 +4,10 @@ import java.util.ArrayList;
 
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
+import dt.processor.kbta.container.ElementHistory;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.Abstraction;
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.ontology.instances.Trend;
@@ -27,39 +29,38 @@ public final class PatternElementTrend extends PatternElement{
 	}
 
 	@Override
-	protected boolean check(Element e){
-		return (super.check(e) && _symbolicValueCondition.check(((Abstraction)e)
-				.getValue()));
+	public boolean isEquivalent(PatternElement other){
+		return super.isEquivalent(other)
+				&& _symbolicValueCondition.equals(((PatternElementTrend)other)._symbolicValueCondition);
 	}
 
 	@Override
-	public ArrayList<Element> getValidElements(AllInstanceContainer aic){
-		ArrayList<Element> ans = new ArrayList<Element>();
-		ComplexContainer<Trend> ec = aic.getTrends();
-		Trend e;
-		ArrayList<Trend> eArray = ec.getOldElements(_name);
-		if (eArray != null){
-			for (Trend e1 : eArray){
-				if (check(e1)){
-					ans.add(e1);
-				}
-			}
-		}
+	public void resolveId(ElementDef elementDef){
+		super.resolveId(elementDef);
+		_symbolicValueCondition.resolveValues(((AbstractionDef)elementDef).getDomain());
+	}
 
-		e = ec.getCurrentElement(_name);
-		if (e != null && check(e)){
-			ans.add(e);
-		}
+	@Override
+	protected boolean check(Element e){
+		return (super.check(e) && _symbolicValueCondition.check((Abstraction)e));
+	}
 
-		e = ec.getNewestElement(_name);
-		if (e != null && check(e)){
-			ans.add(e);
-		}
+	@Override
+	public ElementHistory<Trend> getOldElements(AllInstanceContainer aic){
+		return aic.getTrends().getOldElements(_elementId);
+	}
 
-		if (ans.isEmpty()){
-			return null;
+	@Override
+	public void addRecentElements(AllInstanceContainer aic, ArrayList<Element> recent){
+		ComplexContainer<Trend> ec = aic.getTrends();
+		Trend e = ec.getCurrentElement(_elementId);
+		if (e != null){
+			recent.add(e);
+		}
+		e = ec.getNewestElement(_elementId);
+		if (e != null){
+			recent.add(e);
 		}
-		return ans;
 	}
 
 	@Override
@@ -3,30 +3,46 @@
  */
 package dt.processor.kbta.ontology.instances;
 
-import android.os.Bundle;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
 import dt.processor.kbta.util.TimeInterval;
 
 /**
  *
  */
 public abstract class Abstraction extends Element{
-	protected String _value;
+	private final SymbolicDomain _domain;
 
-	public Abstraction(int type, String name, String value, TimeInterval timeInterval, Bundle extras){
-		super(type, name, timeInterval, extras);
+	/** The ordinal of the value in the domain of the abstraction's definition */
+	protected int _value;
+
+	public Abstraction(int type, String name, int id, SymbolicDomain domain, int value,
+		TimeInterval timeInterval){
+		super(type, name, id, timeInterval, null);
+		_domain = domain;
 		_value = value;
 	}
 
 	public final String getValue(){
+		return _domain.getValue(_value);
+	}
+
+	/**
+	 * @return The ordinal of the value in the domain of the abstraction's definition
+	 */
+	public final int getOrdinal(){
 		return _value;
 	}
 
-	public void setValue(String value){
+	public final SymbolicDomain getDomain(){
+		return _domain;
+	}
+
+	public void setValue(int value){
 		_value = value;
 	}
 		
 	@Override
 	public String toString(){
-		return super.toString() + " value=" + _value;
+		return super.toString() + " value=" + getValue();
 	}
 }
@@ -4,17 +4,23 @@
 package dt.processor.kbta.ontology.instances;
 
 import java.util.List;
-import java.util.Map;
 
-import android.os.Bundle;
 import dt.processor.kbta.util.TimeInterval;
 
 public final class Context extends Element{
 	private final Element _inducedFrom;
 
-	public Context(String name, TimeInterval timeInterval, Bundle extras, Element inducedFrom){
-		super(CONTEXT, name, timeInterval, extras);
+	/**
+	 * @param inheritsExtras Whether the extras of the inducing element are a part of the
+	 *        context's extras
+	 */
+	public Context(String name, int id, TimeInterval timeInterval, Element inducedFrom,
+		boolean inheritsExtras){
+		super(CONTEXT, name, id, timeInterval, null);
 		_inducedFrom = inducedFrom;
+		if (inheritsExtras){
+			addParent(inducedFrom);
+		}
 	}
 
 	@Override
@@ -23,16 +29,17 @@ public final class Context extends Element{
 	}	
 	
 	@Override
-	protected Map toNetProtectElement(){
-		Map m = super.toNetProtectElement();
-		m.put(ELEMENT_TYPE, "CONTEXT");
-		m.put(ELEMENT_VALUE, "DEFAULT_SYMBOLIC_VALUE");
-		return m;
+	protected String getNetProtectType(){
+		return "CONTEXT";
+	}
+
+	@Override
+	protected Object getNetProtectValue(){
+		return "DEFAULT_SYMBOLIC_VALUE";
 	}
 	
 	@Override
-	public void toNetProtectElement(List<Map> elements){
-		elements.add(toNetProtectElement());
-		_inducedFrom.toNetProtectElement(elements);
+	protected void addNetProtectParents(List<Element> parents){
+		parents.add(_inducedFrom);
 	}
 }
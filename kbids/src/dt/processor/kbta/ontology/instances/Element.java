@@ -3,13 +3,13 @@
  */
 package dt.processor.kbta.ontology.instances;
 
-import java.util.Date;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.TreeMap;
 
-import android.os.Bundle;
+import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.defs.abstractions.state.AbstractedFrom;
+import dt.processor.kbta.util.Extras;
 import dt.processor.kbta.util.TimeInterval;
 
 /**
@@ -27,25 +27,51 @@ public abstract class Element implements Comparable<Element>{
 	protected static final String ELEMENT_START_TIME = "StartTime";
 	protected static final String ELEMENT_END_TIME = "EndTime";
 
+	/**
+	 * The number of parents an element keeps before merging their extras, see
+	 * {@link #addParent(Element)}
+	 */
+	private static final int MAX_LINEAGE = 16;
+
 	protected final String _name;
 
 	protected final int _type;
 
+	protected final int _id;
+
 	private final TimeInterval _timeInterval;
 
 	private final int _hashCode;
 
-	private final Bundle _extras;
+	/**
+	 * The extras of the element itself (e.g. those of a monitored element), or those
+	 * merged from its lineage the last time it was compacted
+	 */
+	private Extras _extras;
+
+	/**
+	 * The elements this element was derived from, whose extras are only merged into the
+	 * element's when they are actually needed (see {@link #getExtras()}), as most elements
+	 * never need them
+	 */
+	private Element[] _lineage;
+
+	private int _lineageSize;
 
-	public Element(int type, String name, long start, long end, Bundle extras){
-		this(type, name, new TimeInterval(start, end), extras);
+	public Element(int type, String name, int id, long start, long end, Extras extras){
+		this(type, name, id, new TimeInterval(start, end), extras);
 	}
 
-	public Element(int type, String name, TimeInterval timeInterval, Bundle extras){
+	/**
+	 * @param id The id of the element's definition, see {@link ElementDef#getId()}
+	 */
+	public Element(int type, String name, int id, TimeInterval timeInterval, Extras extras){
 		_name = name;
+		_id = id;
 		_timeInterval = timeInterval;
 		_type = type;
-		_hashCode = (_type + _name).hashCode();
+		// Must agree with AbstractedFrom.hashCode(), the name's hash is cached by the string
+		_hashCode = 31 * _type + _name.hashCode();
 		_extras = extras;
 	}
 
@@ -61,27 +87,84 @@ public abstract class Element implements Comparable<Element>{
 		return _type;
 	}
 
-	public final Bundle getExtras(){
-		return _extras;
+	/**
+	 * @return The id of the element's definition, see {@link ElementDef#getId()}
+	 */
+	public final int getId(){
+		return _id;
+	}
+
+	/**
+	 * Materializes the extras of the element, which are its own extras along with those of
+	 * the elements it was derived from (recursively), in the order they were added
+	 * 
+	 * @return The extras, null if the element has neither extras nor a lineage
+	 */
+	public final Extras getExtras(){
+		if (_lineageSize == 0){
+			return _extras;
+		}
+		Extras extras = Extras.create();
+		mergeExtras(extras, new IdentityHashMap<Element, Boolean>());
+		return extras;
 	}
 
-	public final void addInnerExtras(Bundle dest){
-		if (_extras != null && dest != null){
+	private void mergeExtras(Extras dest, IdentityHashMap<Element, Boolean> visited){
+		// The lineage may be cyclic (e.g. a context extended by a state that needs it) and
+		// may share ancestors, each element's extras are merged once
+		if (visited.put(this, Boolean.TRUE) != null){
+			return;
+		}
+		if (_extras != null){
 			dest.putAll(_extras);
 		}
+		for (int i = 0; i < _lineageSize; ++i){
+			_lineage[i].mergeExtras(dest, visited);
+		}
+	}
+
+	/**
+	 * Adds an element to the lineage of this element, so that its extras are a part of
+	 * this element's extras. Once the lineage is full, the extras of the elements in it
+	 * are merged (so long-lived elements don't keep all of their parents)
+	 */
+	public final void addParent(Element parent){
+		for (int i = 0; i < _lineageSize; ++i){
+			if (_lineage[i] == parent){
+				return;
+			}
+		}
+		if (_lineage == null){
+			_lineage = new Element[4];
+		}else if (_lineageSize == _lineage.length){
+			if (_lineageSize < MAX_LINEAGE){
+				_lineage = Arrays.copyOf(_lineage, 2 * _lineageSize);
+			}else{
+				compactLineage();
+			}
+		}
+		_lineage[_lineageSize++] = parent;
 	}
 
-	public final void addToInnerExtras(Bundle src){
-		if (_extras != null && src != null){
-			_extras.putAll(src);
+	public final void addParents(Element[] parents){
+		for (Element parent : parents){
+			addParent(parent);
 		}
 	}
 
+	private void compactLineage(){
+		Extras extras = Extras.create();
+		mergeExtras(extras, new IdentityHashMap<Element, Boolean>());
+		_extras = extras;
+		Arrays.fill(_lineage, null);
+		_lineageSize = 0;
+	}
+
 	@Override
 	public boolean equals(Object o){
 		if (o instanceof Element){
 			Element element = (Element)o;
-			return element.getName() == _name && element._type == _type
+			return element._id == _id && element._type == _type
 					&& element.getTimeInterval().equals(_timeInterval);
 		}else if (o instanceof AbstractedFrom){
 			AbstractedFrom af = (AbstractedFrom)o;
@@ -123,18 +206,44 @@ public abstract class Element implements Comparable<Element>{
 				;
 	}
 	
-	protected Map toNetProtectElement(){
-		Map m = new TreeMap();
-		m.put(ELEMENT_NAME, _name);
-		long startTime = _timeInterval.getStartTime();
-		m.put(ELEMENT_START_TIME, new Date(startTime));
+	/**
+	 * @return Whether the element is sent to NetProtect (along with its lineage)
+	 */
+	protected boolean isSentToNetProtect(){
+		return true;
+	}
+
+	/**
+	 * Adds the elements that are sent to NetProtect along with this one, see
+	 * {@link LineageSerializer}
+	 */
+	protected void addNetProtectParents(List<Element> parents){
+	}
+
+	/**
+	 * @return The name of the element in NetProtect
+	 */
+	protected String getNetProtectName(){
+		return _name;
+	}
+
+	/**
+	 * @return The type of the element in NetProtect
+	 */
+	protected abstract String getNetProtectType();
+
+	/**
+	 * @return The value of the element in NetProtect, either an integer or a string
+	 */
+	protected abstract Object getNetProtectValue();
+
+	/**
+	 * @return The end time of the element in NetProtect, an element that hasn't ended is
+	 *         sent as ending 10 minutes after its start
+	 */
+	protected final long getNetProtectEndTime(){
 		long endTime = _timeInterval.getEndTime();
-		if (endTime == Long.MAX_VALUE){
-			endTime = startTime + 10 * 60 * 1000;
-		}
-		m.put(ELEMENT_END_TIME, new Date(endTime));
-		return m;
+		return (endTime == Long.MAX_VALUE) ? _timeInterval.getStartTime() + 10 * 60 * 1000
+				: endTime;
 	}
-	
-	public abstract void toNetProtectElement(List<Map> elements);
 }
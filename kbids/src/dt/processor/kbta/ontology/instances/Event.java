@@ -1,14 +1,11 @@
 package dt.processor.kbta.ontology.instances;
 
-import java.util.List;
-import java.util.Map;
-
-import android.os.Bundle;
+import dt.processor.kbta.util.Extras;
 
 public final class Event extends Element{
 
-	public Event(String name, long start, long end, Bundle extras){
-		super(EVENT, name, start, end, extras);
+	public Event(String name, int id, long start, long end, Extras extras){
+		super(EVENT, name, id, start, end, extras);
 	}
 
 	@Override
@@ -17,16 +14,17 @@ public final class Event extends Element{
 	}
 
 	@Override
-	protected Map toNetProtectElement(){
-		Map m = super.toNetProtectElement();
-		m.put(ELEMENT_NAME, _name + "_Event");
-		m.put(ELEMENT_TYPE, "EVENT");
-		m.put(ELEMENT_VALUE, 1);
-		return m;
+	protected String getNetProtectName(){
+		return _name + "_Event";
 	}
-	
+
+	@Override
+	protected String getNetProtectType(){
+		return "EVENT";
+	}
+
 	@Override
-	public void toNetProtectElement(List<Map> elements){
-		elements.add(toNetProtectElement());
+	protected Object getNetProtectValue(){
+		return 1;
 	}
 }
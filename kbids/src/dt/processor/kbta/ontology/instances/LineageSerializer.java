@@ -0,0 +1,284 @@
+package dt.processor.kbta.ontology.instances;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Serializes elements along with their lineage (the contexts, abstracted-from elements
+ * and pattern members sent to NetProtect with them) as a graph: each element instance is
+ * assigned an id (its index in the serialized elements) and is serialized once, no matter
+ * how many of the added elements it is shared by, with references to its parents' ids.
+ * <br>
+ * The elements are serialized in a compact columnar encoding, read directly from their
+ * fields, which is decoded into the NetProtect element maps (with {@value #ELEMENT_ID}
+ * and {@value #ELEMENT_PARENTS} entries) just before they are sent, see
+ * {@link #toCompact()}
+ */
+public final class LineageSerializer{
+	public static final String ELEMENT_ID = "Id";
+
+	public static final String ELEMENT_PARENTS = "Parents";
+
+	private static final int COMPACT_VERSION = 1;
+
+	private final IdentityHashMap<Element, Integer> _ids;
+
+	/** The serialized elements, indexed by their ids */
+	private final ArrayList<Element> _elements;
+
+	/** The ids of the parents of each of the serialized elements */
+	private final ArrayList<int[]> _parents;
+
+	public LineageSerializer(){
+		_ids = new IdentityHashMap<Element, Integer>();
+		_elements = new ArrayList<Element>();
+		_parents = new ArrayList<int[]>();
+	}
+
+	/**
+	 * Adds the element and its lineage, the elements that have already been added are
+	 * skipped
+	 *
+	 * @return The id of the element, or -1 if it isn't sent to NetProtect
+	 */
+	public int add(Element element){
+		Integer id = _ids.get(element);
+		if (id != null){
+			return id;
+		}
+		if (!element.isSentToNetProtect()){
+			return -1;
+		}
+		int newId = _elements.size();
+		_ids.put(element, newId);
+		_elements.add(element);
+		_parents.add(null);
+
+		ArrayList<Element> parents = new ArrayList<Element>();
+		element.addNetProtectParents(parents);
+		int[] parentIds = new int[parents.size()];
+		int count = 0;
+		for (Element parent : parents){
+			int parentId = add(parent);
+			if (parentId >= 0){
+				parentIds[count++] = parentId;
+			}
+		}
+		_parents.set(newId, (count == parentIds.length) ? parentIds : Arrays.copyOf(
+			parentIds, count));
+		return newId;
+	}
+
+	/**
+	 * @return The number of serialized elements
+	 */
+	public int size(){
+		return _elements.size();
+	}
+
+	/**
+	 * Encodes the serialized elements in columns (the names, the types, the values, the
+	 * start times, the durations and the parents of all of the elements in turn). The
+	 * strings are written once to a table and referred to by their indexes, the start
+	 * times are written as the differences from the previous start time and the parents
+	 * as the differences from the element's id, all as variable length integers
+	 *
+	 * @return The encoding, see {@link #fromCompact(byte[], int)}
+	 */
+	public byte[] toCompact(){
+		int n = _elements.size();
+		HashMap<String, Integer> strings = new HashMap<String, Integer>();
+		ArrayList<String> table = new ArrayList<String>();
+		int[] names = new int[n];
+		int[] types = new int[n];
+		// The lowest bit tells an integer value from a string's index
+		long[] values = new long[n];
+		for (int i = 0; i < n; ++i){
+			Element e = _elements.get(i);
+			names[i] = intern(strings, table, e.getNetProtectName());
+			types[i] = intern(strings, table, e.getNetProtectType());
+			Object value = e.getNetProtectValue();
+			if (value instanceof Integer){
+				values[i] = (zigZag((Integer)value) << 1) | 1;
+			}else{
+				values[i] = (long)intern(strings, table, String.valueOf(value)) << 1;
+			}
+		}
+
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * n + 64);
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(COMPACT_VERSION);
+			writeVarInt(out, n);
+			writeVarInt(out, table.size());
+			for (String s : table){
+				out.writeUTF(s);
+			}
+			for (int name : names){
+				writeVarInt(out, name);
+			}
+			for (int type : types){
+				writeVarInt(out, type);
+			}
+			for (long value : values){
+				writeVarLong(out, value);
+			}
+			long previous = 0;
+			for (Element e : _elements){
+				long start = e.getTimeInterval().getStartTime();
+				writeVarLong(out, zigZag(start - previous));
+				previous = start;
+			}
+			for (Element e : _elements){
+				long start = e.getTimeInterval().getStartTime();
+				writeVarLong(out, zigZag(e.getNetProtectEndTime() - start));
+			}
+			for (int id = 0; id < n; ++id){
+				int[] parents = _parents.get(id);
+				writeVarInt(out, parents.length);
+				for (int parent : parents){
+					writeVarLong(out, zigZag(parent - id));
+				}
+			}
+			out.flush();
+			return bytes.toByteArray();
+		}catch(IOException e){
+			// Not thrown when writing to an array
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Decodes the compact encoding of elements
+	 *
+	 * @param firstId The id of the first of the elements, the ids are offset by it so
+	 *        several encodings can be sent together
+	 * @return The NetProtect maps of the elements, with their ids and parents
+	 * @throws IOException If the encoding is corrupt or of an unknown version
+	 */
+	public static List<Map<String, Object>> fromCompact(byte[] compact, int firstId)
+			throws IOException{
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(compact));
+		int version = in.readUnsignedByte();
+		if (version != COMPACT_VERSION){
+			throw new IOException("Unknown compact encoding version: " + version);
+		}
+		int n = readVarInt(in);
+		String[] table = new String[readVarInt(in)];
+		for (int i = 0; i < table.length; ++i){
+			table[i] = in.readUTF();
+		}
+		List<Map<String, Object>> maps = new ArrayList<Map<String, Object>>(n);
+		for (int i = 0; i < n; ++i){
+			Map<String, Object> m = new TreeMap<String, Object>();
+			m.put(Element.ELEMENT_NAME, string(table, readVarInt(in)));
+			maps.add(m);
+		}
+		for (Map<String, Object> m : maps){
+			m.put(Element.ELEMENT_TYPE, string(table, readVarInt(in)));
+		}
+		for (Map<String, Object> m : maps){
+			long value = readVarLong(in);
+			if ((value & 1) != 0){
+				m.put(Element.ELEMENT_VALUE, (int)unZigZag(value >>> 1));
+			}else{
+				m.put(Element.ELEMENT_VALUE, string(table, value >>> 1));
+			}
+		}
+		long previous = 0;
+		long[] starts = new long[n];
+		for (int i = 0; i < n; ++i){
+			starts[i] = previous + unZigZag(readVarLong(in));
+			previous = starts[i];
+			maps.get(i).put(Element.ELEMENT_START_TIME, new Date(starts[i]));
+		}
+		for (int i = 0; i < n; ++i){
+			maps.get(i).put(Element.ELEMENT_END_TIME, new Date(starts[i]
+					+ unZigZag(readVarLong(in))));
+		}
+		for (int id = 0; id < n; ++id){
+			int count = readVarInt(in);
+			List<Integer> parents = new ArrayList<Integer>(count);
+			for (int j = 0; j < count; ++j){
+				long parent = id + unZigZag(readVarLong(in));
+				if (parent < 0 || parent >= n){
+					throw new IOException("Corrupt compact encoding");
+				}
+				parents.add(firstId + (int)parent);
+			}
+			Map<String, Object> m = maps.get(id);
+			m.put(ELEMENT_ID, firstId + id);
+			m.put(ELEMENT_PARENTS, parents);
+		}
+		return maps;
+	}
+
+	private static String string(String[] table, long index) throws IOException{
+		if (index >= table.length){
+			throw new IOException("Corrupt compact encoding");
+		}
+		return table[(int)index];
+	}
+
+	private static int intern(HashMap<String, Integer> strings, ArrayList<String> table,
+		String s){
+		Integer index = strings.get(s);
+		if (index == null){
+			index = table.size();
+			strings.put(s, index);
+			table.add(s);
+		}
+		return index;
+	}
+
+	private static long zigZag(long value){
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value){
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	private static void writeVarInt(DataOutputStream out, int value) throws IOException{
+		writeVarLong(out, value & 0xffffffffL);
+	}
+
+	private static void writeVarLong(DataOutputStream out, long value) throws IOException{
+		while ((value & ~0x7fL) != 0){
+			out.writeByte((int)((value & 0x7f) | 0x80));
+			value >>>= 7;
+		}
+		out.writeByte((int)value);
+	}
+
+	private static int readVarInt(DataInputStream in) throws IOException{
+		long value = readVarLong(in);
+		if (value < 0 || value > Integer.MAX_VALUE){
+			throw new IOException("Corrupt compact encoding");
+		}
+		return (int)value;
+	}
+
+	private static long readVarLong(DataInputStream in) throws IOException{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7){
+			int b = in.readUnsignedByte();
+			value |= (long)(b & 0x7f) << shift;
+			if ((b & 0x80) == 0){
+				return value;
+			}
+		}
+		throw new IOException("Corrupt compact encoding");
+	}
+}
@@ -1,18 +1,19 @@
 package dt.processor.kbta.ontology.instances;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
-import android.os.Bundle;
+import dt.processor.kbta.util.Extras;
 import dt.processor.kbta.util.TimeInterval;
 
 public final class LinearPattern extends Element{
 
 	private final Element[] _elements;
 
-	public LinearPattern(String name, TimeInterval timeInterval, Bundle extras, Element[] elements){
-		super(LINEAR_PATTERN, name, timeInterval, extras);
+	public LinearPattern(String name, int id, TimeInterval timeInterval, Element[] elements){
+		super(LINEAR_PATTERN, name, id, timeInterval, null);
 		_elements = elements;
+		addParents(elements);
 	}
 
 	@Override
@@ -21,25 +22,24 @@ public final class LinearPattern extends Element{
 	}
 
 	@Override
-	public Map toNetProtectElement(){
-		Map m = super.toNetProtectElement();
-		m.put(ELEMENT_TYPE, "PATTERN");
-		m.put(ELEMENT_VALUE, "true");
-		return m;
+	protected String getNetProtectType(){
+		return "PATTERN";
+	}
+
+	@Override
+	protected Object getNetProtectValue(){
+		return "true";
 	}
 
 	
 	@Override
-	public void toNetProtectElement(List<Map> elements){
-		elements.add(toNetProtectElement());
-		for (Element e : _elements){
-			e.toNetProtectElement(elements);
-		}
+	protected void addNetProtectParents(List<Element> parents){
+		parents.addAll(Arrays.asList(_elements));
 	}
 	
 	@Override
 	public String toString(){
-		Bundle extras = getExtras();
+		Extras extras = getExtras();
 		return  super.toString() + ((extras == null || extras.isEmpty()) ? "" : " " + extras);		
 	}
 }
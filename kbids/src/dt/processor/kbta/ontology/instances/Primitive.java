@@ -3,10 +3,7 @@
  */
 package dt.processor.kbta.ontology.instances;
 
-import java.util.List;
-import java.util.Map;
-
-import android.os.Bundle;
+import dt.processor.kbta.util.Extras;
 
 /**
  * @author
@@ -14,8 +11,8 @@ import android.os.Bundle;
 public final class Primitive extends Element{
 	private final double _value;
 
-	public Primitive(String name, double value, long start, long end, Bundle extras){
-		super(PRIMITIVE, name, start, end, extras);
+	public Primitive(String name, int id, double value, long start, long end, Extras extras){
+		super(PRIMITIVE, name, id, start, end, extras);
 		_value = value;
 	}
 
@@ -31,24 +28,32 @@ public final class Primitive extends Element{
 	@Override
 	public int compareTo(Element another) {
 		if (another.getClass().equals(Primitive.class)){
-				double result=_value-((Primitive) another).getValue();
-				if (result==0){
-					return 0;
-					
-				}
-				else if (result>0){
-					return 1;
-				}
-				else if (result<0){
-					return -1;
-				}
-				
+			return compareValues((Primitive)another);
 		}
 		return 0;
 	}
+
+	/**
+	 * Compares the values of the primitives, incomparable values being considered equal
+	 */
+	public int compareValues(Primitive another){
+		double result = _value - another._value;
+		return (result > 0) ? 1 : ((result < 0) ? -1 : 0);
+	}
 	
 	@Override
-	public void toNetProtectElement(List<Map> elements){
+	protected boolean isSentToNetProtect(){
 		// Not sending primitives to NetProtect
+		return false;
+	}
+
+	@Override
+	protected String getNetProtectType(){
+		return "PRIMITIVE";
+	}
+
+	@Override
+	protected Object getNetProtectValue(){
+		return String.valueOf(_value);
 	}
 }
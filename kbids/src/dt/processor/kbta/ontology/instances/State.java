@@ -3,10 +3,10 @@
  */
 package dt.processor.kbta.ontology.instances;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
-import android.os.Bundle;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
 import dt.processor.kbta.util.TimeInterval;
 
 /**
@@ -16,34 +16,26 @@ public final class State extends Abstraction{
 	private Element[] _contexts;
 	private Element[] _abstractedFrom;
 	
-	public State(String name, String value, TimeInterval timeInterval, Bundle extras){
-		super(STATE, name, value, timeInterval, extras);
+	public State(String name, int id, SymbolicDomain domain, int value,
+		TimeInterval timeInterval){
+		super(STATE, name, id, domain, value, timeInterval);
 	}
 
 	@Override
 	public int compareTo(Element another) {
 		if (another.getClass().equals(State.class)){
-			String result=((State) another).getValue();
-			if (result.equals(_value)){
-				return 0;
-
-			}
-			else if (_value.equalsIgnoreCase("High")){
-				return 1;
-			}
-			else if (result.equalsIgnoreCase("High")){
-				return -1;
-			}
-			else if (result.equalsIgnoreCase("Low")){
-				return 1;
-			}
-			else{
-				return -1;
-			}	
+			return compareValues((State)another);
 		}
 		return 0;
 	}
-		
+
+	/**
+	 * Compares the values of the states by their positions in the declared orders of
+	 * their definitions' domains
+	 */
+	public int compareValues(State another){
+		return (_value < another._value) ? -1 : ((_value == another._value) ? 0 : 1);
+	}
 
 	public void setContextsAndAbstractedFrom(Element[] contexts, Element[] abstractedFrom){
 		_contexts = contexts;
@@ -51,23 +43,19 @@ public final class State extends Abstraction{
 	}
 	
 	@Override
-	public void toNetProtectElement(List<Map> elements){
-		elements.add(toNetProtectElement());
-
-		for (Element e : _contexts){
-			e.toNetProtectElement(elements);
-		}
-		for (Element e : _abstractedFrom){
-			e.toNetProtectElement(elements);
-		}
+	protected void addNetProtectParents(List<Element> parents){
+		parents.addAll(Arrays.asList(_contexts));
+		parents.addAll(Arrays.asList(_abstractedFrom));
 	}
 	
 	@Override
-	protected Map toNetProtectElement(){
-		Map m = super.toNetProtectElement();
-		m.put(ELEMENT_TYPE, "STATE");
-		m.put(ELEMENT_VALUE, _value);
-		return m;
+	protected String getNetProtectType(){
+		return "STATE";
+	}
+
+	@Override
+	protected Object getNetProtectValue(){
+		return getValue();
 	}
 	
 	
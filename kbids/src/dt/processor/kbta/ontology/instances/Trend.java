@@ -3,24 +3,35 @@
  */
 package dt.processor.kbta.ontology.instances;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
 
-import android.os.Bundle;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
+import dt.processor.kbta.ontology.defs.abstractions.trend.TrendRegression;
 import dt.processor.kbta.util.TimeInterval;
 
 /**
  * @author
  */
 public final class Trend extends Abstraction{
+	/** The ordinals of the values of trends */
+	public static final int DECREASING = 0, SAME = 1, INCREASING = 2;
+
+	/** The values of trends, which are the same for all of the trend definitions */
+	public static final SymbolicDomain DOMAIN = new SymbolicDomain("Decreasing", "Same",
+			"Increasing");
+
 	private final Primitive _first;
 	private Primitive _last;	
 
 	private Element[] _contexts;
 
-	public Trend(String name, String value, TimeInterval timeInterval, Bundle extras,
+	/** The least-squares line through the primitives, if the trend's mode uses it */
+	private TrendRegression _regression;
+
+	public Trend(String name, int id, int value, TimeInterval timeInterval,
 		Primitive first, Primitive last){
-		super(TREND, name, value, timeInterval, extras);
+		super(TREND, name, id, DOMAIN, value, timeInterval);
 		_first = first;
 		_last = last;
 	}
@@ -37,6 +48,14 @@ public final class Trend extends Abstraction{
 		return _first;
 	}
 
+	public TrendRegression getRegression(){
+		return _regression;
+	}
+
+	public void setRegression(TrendRegression regression){
+		_regression = regression;
+	}
+
 	@Override
 	public int compareTo(Element another) {
 		return 0;
@@ -47,25 +66,23 @@ public final class Trend extends Abstraction{
 	}
 	
 	@Override
-	public void toNetProtectElement(List<Map> elements){
-		elements.add(toNetProtectElement());
-
-		for (Element e : _contexts){
-			e.toNetProtectElement(elements);
-		}
+	protected void addNetProtectParents(List<Element> parents){
+		parents.addAll(Arrays.asList(_contexts));
 	}
 	
 	@Override
-	protected Map toNetProtectElement(){
-		Map m = super.toNetProtectElement();
-		m.put(ELEMENT_TYPE, "GRADIENT");
+	protected String getNetProtectType(){
+		return "GRADIENT";
+	}
+
+	@Override
+	protected Object getNetProtectValue(){
 		String value = "SAME";
-		if ("Increasing".equalsIgnoreCase(_value)){
+		if (_value == INCREASING){
 			value = "INC";
-		}else if ("Decreasing".equalsIgnoreCase(_value)){
+		}else if (_value == DECREASING){
 			value = "DEC";
 		}
-		m.put(ELEMENT_VALUE, value);
-		return m;
+		return value;
 	}
 }
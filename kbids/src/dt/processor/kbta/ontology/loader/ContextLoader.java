@@ -8,7 +8,6 @@ import java.util.ArrayList;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import android.util.Log;
 import dt.processor.kbta.ontology.defs.NumericRange;
 import dt.processor.kbta.ontology.defs.context.ContextDef;
 import dt.processor.kbta.ontology.defs.context.Destruction;
@@ -21,7 +20,7 @@ import dt.processor.kbta.ontology.defs.context.StateDestruction;
 import dt.processor.kbta.ontology.defs.context.StateInduction;
 import dt.processor.kbta.ontology.defs.context.TrendDestruction;
 import dt.processor.kbta.ontology.defs.context.TrendInduction;
-import dt.processor.kbta.util.ISODuration;
+import dt.processor.kbta.util.Log;
 import dt.processor.kbta.util.XmlParser;
 
 public class ContextLoader{
@@ -167,13 +166,7 @@ public class ContextLoader{
 				// Parsing the ends tag
 				if ("Ends".equalsIgnoreCase(tag)){
 					try{
-						String gapStr = xpp.getAttributeValue(null, "gap");
-						if ("*".equals(gapStr)){
-							gap = Long.MAX_VALUE;
-						}else{
-							gap = new ISODuration(gapStr)
-							.toMillis();
-						}						
+						gap = XmlParser.parseDuration(xpp, "gap", Long.MAX_VALUE);
 					}catch(Exception e){
 						Log.e(TAG,
 							"Invalid \"ends\" tag (gap attribute) in induction for context: "
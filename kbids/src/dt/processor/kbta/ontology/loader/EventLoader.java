@@ -8,9 +8,9 @@ import java.util.HashMap;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import android.text.TextUtils;
-import android.util.Log;
 import dt.processor.kbta.ontology.defs.EventDef;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.TextUtils;
 
 public class EventLoader{
 	private final HashMap<String, EventDef> _events;
@@ -1,34 +1,35 @@
 package dt.processor.kbta.ontology.loader;
 
-import static android.text.TextUtils.isEmpty;
+import static dt.processor.kbta.util.TextUtils.isEmpty;
 import static org.xmlpull.v1.XmlPullParser.END_DOCUMENT;
 import static org.xmlpull.v1.XmlPullParser.START_TAG;
 
-import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.HashMap;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserFactory;
 
-import android.content.Context;
-import android.util.Log;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.EventDef;
 import dt.processor.kbta.ontology.defs.PrimitiveDef;
 import dt.processor.kbta.ontology.defs.abstractions.state.StateDef;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef;
 import dt.processor.kbta.ontology.defs.abstractions.trend.TrendDef;
 import dt.processor.kbta.ontology.defs.context.ContextDef;
 import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef;
-import dt.processor.kbta.settings.Model;
-import dt.processor.kbta.util.FileChangeTracker;
-import dt.processor.kbta.util.ISODuration;
-import dt.processor.kbta.util.FileChangeTracker.ChangeInfo;
+import dt.processor.kbta.util.AssetSource;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.XmlParser;
 
 public class OntologyLoader{
 	public static final String TAG = "OntologyLoader";
 
+	/** The name of the ontology xml file */
+	public static final String ONTOLOGY = "ontology.xml";
+
 	private static final String DEFAULT_NAME = "Android";
 
 	private static final String DEFAULT_VERSION = "0";
@@ -39,6 +40,8 @@ public class OntologyLoader{
 
 	private final HashMap<String, EventDef> _events;
 
+	private final HashMap<String, StatisticDef> _statistics;
+
 	private final ArrayList<ContextDef> _contexts;
 
 	private final ArrayList<StateDef> _states;
@@ -56,36 +59,51 @@ public class OntologyLoader{
 	public OntologyLoader(){
 		_primitives = new HashMap<String, PrimitiveDef>();
 		_events = new HashMap<String, EventDef>();
+		_statistics = new HashMap<String, StatisticDef>();
 		_contexts = new ArrayList<ContextDef>();
 		_states = new ArrayList<StateDef>();
 		_trends = new ArrayList<TrendDef>();
 		_patterns = new ArrayList<LinearPatternDef>();
 	}
 
-	public Ontology loadOntology(Context context){
+	public Ontology loadOntology(AssetSource assets){
+		Reader reader;
 		try{
-			// Checking whether the default ontology has changed
-			FileChangeTracker fct = FileChangeTracker.getFileChangeTracker(context);
-			ChangeInfo ci = fct.hasBeenModified(context, Model.ONTOLOGY, Model.ONTOLOGY);
-
-			File ontologyFile = Model.getOntologyModelFile(context);
-			// Overriding the model file with the default one
-			// in case it hasn't been copied to the private storage yet
-			// or the default model (inside the apk) has been modified and
-			// it is not the first time the model is being loaded
-			if (!ontologyFile.exists() || (!ci.firstTimeTracked && !ci.hasntBeenModified)){
-				Log.i(TAG, "Loading default ontology model");
-				if (!Model.copyDefaultModelFile(context, ontologyFile)){
-					Log.e(TAG, "Unable to load the default Threats");
-					return null;
-				}
-			}
-			fct.updateFileStatus(ci);
+			reader = assets.open(ONTOLOGY);
+		}catch(IOException e){
+			Log.e(TAG, "Unable to open the ontology", e);
+			return null;
+		}
+		try{
+			return loadOntology(reader);
+		}finally{
+			try{
+				reader.close();
+			}catch(IOException e){}
+		}
+	}
 
+	public Ontology loadOntology(Reader reader){
+		XmlPullParser xpp;
+		try{
 			XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-			XmlPullParser xpp = factory.newPullParser();
-			xpp.setInput(new FileReader(ontologyFile));
+			xpp = factory.newPullParser();
+			xpp.setInput(reader);
+		}catch(Exception e){
+			Log.e(TAG, "Error while loading Ontology", e);
+			return null;
+		}
+		return loadOntology(xpp);
+	}
 
+	/**
+	 * Loads the ontology from a parser of its xml (or of its compiled form)
+	 * 
+	 * @param xpp The parser, at the start of the document
+	 * @return The ontology, or null if it can not be loaded
+	 */
+	public Ontology loadOntology(XmlPullParser xpp){
+		try{
 			for (int eventType = xpp.getEventType(); eventType != END_DOCUMENT; eventType = xpp
 					.next()){
 				String tag;
@@ -99,6 +117,8 @@ public class OntologyLoader{
 					new PrimitiveLoader(_primitives).parsePrimitives(xpp);
 				}else if (tag.equalsIgnoreCase("Events")){
 					new EventLoader(_events).parseEvents(xpp);
+				}else if (tag.equalsIgnoreCase("Statistics")){
+					new StatisticLoader(_statistics).parseStatistics(xpp);
 				}else if (tag.equalsIgnoreCase("Contexts")){
 					new ContextLoader(_contexts).parseContexts(xpp);
 				}else if (tag.equalsIgnoreCase("States")){
@@ -131,7 +151,7 @@ public class OntologyLoader{
 				_version = DEFAULT_VERSION;
 			}
 
-			return new Ontology(_primitives, _events, _contexts, _states, _trends,
+			return new Ontology(_primitives, _events, _statistics, _contexts, _states, _trends,
 					_patterns, _elementTimeout, _ontologyName, _version);
 		}catch(Exception e){
 			Log.e(TAG, "Error while loading Ontology", e);
@@ -145,8 +165,7 @@ public class OntologyLoader{
 		_version = xpp.getAttributeValue(null, "version");
 
 		try{
-			long elementTimeout = new ISODuration(xpp.getAttributeValue(null,
-				"elementTimeout")).toMillis();
+			long elementTimeout = XmlParser.parseDuration(xpp, "elementTimeout");
 			if (elementTimeout > 1000){
 				_elementTimeout = elementTimeout;
 			}else{
@@ -10,11 +10,10 @@ import java.util.HashMap;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import android.text.TextUtils;
-import android.util.Log;
 import dt.processor.kbta.ontology.defs.NumericRange;
 import dt.processor.kbta.ontology.defs.patterns.BeforeTemporalCondition;
 import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef;
+import dt.processor.kbta.ontology.defs.patterns.LinearPatternDef.MatchSemantics;
 import dt.processor.kbta.ontology.defs.patterns.OverlapTemporalCondition;
 import dt.processor.kbta.ontology.defs.patterns.PairWiseCondition;
 import dt.processor.kbta.ontology.defs.patterns.TemporalCondition;
@@ -27,6 +26,8 @@ import dt.processor.kbta.ontology.defs.patterns.patternElements.PatternElementTr
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.threats.DurationCondition;
 import dt.processor.kbta.threats.SymbolicValueCondition;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.TextUtils;
 import dt.processor.kbta.util.XmlParser;
 
 public class PatternLoader{
@@ -64,6 +65,33 @@ public class PatternLoader{
 			return null;
 		}
 
+		MatchSemantics semantics = MatchSemantics.MOST_RECENT;
+		String match = xpp.getAttributeValue(null, "match");
+		if (!TextUtils.isEmpty(match)){
+			try{
+				semantics = MatchSemantics.valueOf(match.toUpperCase());
+			}catch(IllegalArgumentException e){
+				Log.e(TAG, "Invalid match semantics for the pattern " + patternName + ": "
+						+ match);
+				return null;
+			}
+		}
+
+		int maxMatches = LinearPatternDef.DEFAULT_MAX_MATCHES;
+		String maxMatchesStr = xpp.getAttributeValue(null, "maxMatches");
+		if (!TextUtils.isEmpty(maxMatchesStr)){
+			try{
+				maxMatches = Integer.parseInt(maxMatchesStr);
+			}catch(NumberFormatException e){
+				maxMatches = 0;
+			}
+			if (maxMatches <= 0){
+				Log.e(TAG, "Invalid maximal number of matches for the pattern "
+						+ patternName + ": " + maxMatchesStr);
+				return null;
+			}
+		}
+
 		while ((eventType = xpp.next()) != XmlPullParser.END_TAG
 				|| !xpp.getName().equalsIgnoreCase("LinearPattern")){
 			String name = xpp.getName();
@@ -86,7 +114,8 @@ public class PatternLoader{
 			}
 		}
 
-		return new LinearPatternDef(patternName, pairWiseConditions, elements);
+		return new LinearPatternDef(patternName, pairWiseConditions, elements, semantics,
+			maxMatches);
 	}
 
 	private ArrayList<PairWiseCondition> parsePairWiseConditions(XmlPullParser xpp,
@@ -116,12 +145,13 @@ public class PatternLoader{
 			IOException{
 		int first;
 		int second;
+		int comparedType;
 		boolean comparable = false;
 		Integer valueCondition = null;
 		TemporalCondition temporalCondition = null;
 		try{
-			first = Integer.parseInt(xpp.getAttributeValue(null, "first"));
-			second = Integer.parseInt(xpp.getAttributeValue(null, "second"));
+			first = XmlParser.parseInt(xpp, "first");
+			second = XmlParser.parseInt(xpp, "second");
 			PatternElement firstElement = elements.get(first);
 			PatternElement secondElement = elements.get(second);
 			if (firstElement == null || secondElement == null){
@@ -129,7 +159,7 @@ public class PatternLoader{
 						+ " second=" + second);
 				return null;
 			}
-			int comparedType = firstElement.getType();
+			comparedType = firstElement.getType();
 			comparable = (comparedType == secondElement.getType())
 					&& (comparedType == Element.PRIMITIVE || comparedType == Element.STATE);
 		}catch(NumberFormatException e){
@@ -144,7 +174,8 @@ public class PatternLoader{
 			return null;
 		}
 
-		return new PairWiseCondition(first, second, valueCondition, temporalCondition);
+		return new PairWiseCondition(first, second, valueCondition, comparedType,
+			temporalCondition);
 	}
 
 	private TemporalCondition parseTemporalPairWiseCondition(XmlPullParser xpp){
@@ -167,7 +198,8 @@ public class PatternLoader{
 					return null;
 				}
 				temporalCondition = new BeforeTemporalCondition(new DurationCondition(
-						minGap, maxGap));
+						XmlParser.parseDuration(xpp, "minGap", 0), XmlParser.parseDuration(
+							xpp, "maxGap", Long.MAX_VALUE)));
 			}else if (temporal.equalsIgnoreCase("Overlap")){
 				String minLength = xpp.getAttributeValue(null, "minLength");
 				if (TextUtils.isEmpty(minLength)){
@@ -192,8 +224,11 @@ public class PatternLoader{
 					return null;
 				}
 				temporalCondition = new OverlapTemporalCondition(new DurationCondition(
-						minLength, maxLength), new DurationCondition(minStartingDistance,
-						maxStartingDistance));
+						XmlParser.parseDuration(xpp, "minLength", 0), XmlParser
+								.parseDuration(xpp, "maxLength", Long.MAX_VALUE)),
+						new DurationCondition(XmlParser.parseDuration(xpp,
+							"minStartingDistance", 0), XmlParser.parseDuration(xpp,
+							"maxStartingDistance", Long.MAX_VALUE)));
 			}
 
 		}catch(Exception e){
@@ -246,8 +281,7 @@ public class PatternLoader{
 						|| "Context".equalsIgnoreCase(stringTypeElement)){
 					PatternElement patternElement = null;
 
-					int ordinal = Integer
-							.parseInt(xpp.getAttributeValue(null, "ordinal"));
+					int ordinal = XmlParser.parseInt(xpp, "ordinal");
 					String nameElement = xpp.getAttributeValue(null, "name");
 					if (TextUtils.isEmpty(nameElement)){
 						Log.e(TAG, "Missing name for nameElement");
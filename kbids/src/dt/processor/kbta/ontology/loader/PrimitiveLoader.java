@@ -8,10 +8,10 @@ import java.util.HashMap;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import android.text.TextUtils;
-import android.util.Log;
 import dt.processor.kbta.ontology.defs.NumericRange;
 import dt.processor.kbta.ontology.defs.PrimitiveDef;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.TextUtils;
 import dt.processor.kbta.util.XmlParser;
 
 public class PrimitiveLoader{
@@ -37,7 +37,17 @@ public class PrimitiveLoader{
 					Log.e(TAG, "Invalid numeric range for the primitive " + name);
 					continue;
 				}
-				PrimitiveDef pd = new PrimitiveDef(name, range);
+				long historyHorizon = PrimitiveDef.NO_HISTORY;
+				String history = xpp.getAttributeValue(null, "history");
+				if (!TextUtils.isEmpty(history)){
+					try{
+						historyHorizon = XmlParser.parseDuration(xpp, "history");
+					}catch(Exception e){
+						Log.e(TAG, "Corrupt history horizon for the primitive " + name, e);
+						continue;
+					}
+				}
+				PrimitiveDef pd = new PrimitiveDef(name, range, historyHorizon);
 				_primitives.put(pd.getName(), pd);
 			}
 		}
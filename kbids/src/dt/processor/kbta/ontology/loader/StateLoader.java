@@ -1,17 +1,18 @@
 package dt.processor.kbta.ontology.loader;
 
-import static android.text.TextUtils.isEmpty;
+import static dt.processor.kbta.util.TextUtils.isEmpty;
 import static dt.processor.kbta.ontology.loader.OntologyLoader.TAG;
 
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import android.util.Log;
 import dt.processor.kbta.ontology.defs.NumericRange;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
 import dt.processor.kbta.ontology.defs.abstractions.state.AbstractedFrom;
 import dt.processor.kbta.ontology.defs.abstractions.state.AbstractionCondition;
 import dt.processor.kbta.ontology.defs.abstractions.state.ElementCondition;
@@ -21,7 +22,7 @@ import dt.processor.kbta.ontology.defs.abstractions.state.StateDef;
 import dt.processor.kbta.ontology.defs.abstractions.state.StateMappingFunction;
 import dt.processor.kbta.ontology.defs.abstractions.state.StateMappingFunctionEntry;
 import dt.processor.kbta.ontology.instances.Element;
-import dt.processor.kbta.util.ISODuration;
+import dt.processor.kbta.util.Log;
 import dt.processor.kbta.util.XmlParser;
 
 public class StateLoader{
@@ -51,7 +52,7 @@ public class StateLoader{
 		ArrayList<AbstractedFrom> abstractedFrom = null;
 		ArrayList<String> necessaryContexts = null;
 		StateMappingFunction mappingFunction = null;
-		InterpolationFunction interpolationFunction = null;
+		HashMap<String, Long> maxGaps = null;
 		String name = null;
 
 		name = xpp.getAttributeValue(null, "name");
@@ -65,13 +66,18 @@ public class StateLoader{
 				}else if ("MappingFunction".equalsIgnoreCase(xpp.getName())){
 					mappingFunction = parseMappingFunction(xpp, abstractedFrom);
 				}else if ("InterpolationFunction".equalsIgnoreCase(xpp.getName())){
-					interpolationFunction = parseInterpolationFunction(xpp);
+					maxGaps = parseInterpolationFunction(xpp);
 				}
 			}
 		}
 
 		if (abstractedFrom == null || necessaryContexts == null
-				|| mappingFunction == null || interpolationFunction == null){
+				|| mappingFunction == null || maxGaps == null){
+			return null;
+		}
+		InterpolationFunction interpolationFunction = createInterpolationFunction(name,
+			mappingFunction.getDomain(), maxGaps);
+		if (interpolationFunction == null){
 			return null;
 		}
 		return new StateDef(name, abstractedFrom, necessaryContexts, mappingFunction,
@@ -79,7 +85,7 @@ public class StateLoader{
 
 	}
 
-	private InterpolationFunction parseInterpolationFunction(XmlPullParser xpp)
+	private HashMap<String, Long> parseInterpolationFunction(XmlPullParser xpp)
 			throws XmlPullParserException, IOException{
 		int eventType;
 		HashMap<String, Long> interpolationFunctionHash = new HashMap<String, Long>();
@@ -90,12 +96,12 @@ public class StateLoader{
 			if (eventType == XmlPullParser.START_TAG
 					&& xpp.getName().equalsIgnoreCase("Value")){
 
-				String maxGap = xpp.getAttributeValue(null, "maxGap");
 				long maxGapLong;
 				try{
-					maxGapLong = new ISODuration(maxGap).toMillis();
+					maxGapLong = XmlParser.parseDuration(xpp, "maxGap");
 				}catch(Exception e){
-					Log.e(TAG, "Corrupt maxgap value " + maxGap, e);
+					Log.e(TAG, "Corrupt maxgap value "
+							+ xpp.getAttributeValue(null, "maxGap"), e);
 					return null;
 				}
 
@@ -105,11 +111,36 @@ public class StateLoader{
 
 		}
 		if (!interpolationFunctionHash.isEmpty()){
-			return new InterpolationFunction(interpolationFunctionHash);
+			return interpolationFunctionHash;
 		}
 		return null;
 	}
 
+	/**
+	 * Creates the interpolation function of the state, indexing the maximal gaps by the
+	 * ordinals of the values in the state's domain
+	 */
+	private InterpolationFunction createInterpolationFunction(String name,
+		SymbolicDomain domain, HashMap<String, Long> maxGaps){
+		long[] maxGapsByOrdinal = new long[domain.size()];
+		boolean[] declared = new boolean[domain.size()];
+		for (Map.Entry<String, Long> entry : maxGaps.entrySet()){
+			int ordinal = domain.getOrdinal(entry.getKey());
+			if (ordinal >= 0){
+				maxGapsByOrdinal[ordinal] = entry.getValue();
+				declared[ordinal] = true;
+			}
+		}
+		for (int i = 0; i < declared.length; ++i){
+			if (!declared[i]){
+				Log.e(TAG, "Missing maxGap for the value " + domain.getValue(i)
+						+ " of the state " + name);
+				return null;
+			}
+		}
+		return new InterpolationFunction(domain, maxGapsByOrdinal);
+	}
+
 	private ArrayList<AbstractedFrom> parseAbstractedFrom(XmlPullParser xpp)
 			throws XmlPullParserException, IOException{
 		int eventType;
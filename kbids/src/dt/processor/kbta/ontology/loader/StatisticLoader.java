@@ -0,0 +1,126 @@
+package dt.processor.kbta.ontology.loader;
+
+import static dt.processor.kbta.ontology.loader.OntologyLoader.TAG;
+
+import java.io.IOException;
+import java.util.HashMap;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef.Function;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef.WindowType;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.TextUtils;
+import dt.processor.kbta.util.XmlParser;
+
+public class StatisticLoader{
+	private final HashMap<String, StatisticDef> _statistics;
+
+	public StatisticLoader(HashMap<String, StatisticDef> statistics){
+		_statistics = statistics;
+	}
+
+	public void parseStatistics(XmlPullParser xpp) throws XmlPullParserException,
+			IOException{
+		int eventType;
+		while ((eventType = xpp.next()) != XmlPullParser.END_TAG
+				|| !xpp.getName().equalsIgnoreCase("Statistics")){
+			if (eventType == XmlPullParser.START_TAG
+					&& "Statistic".equalsIgnoreCase(xpp.getName())){
+
+				StatisticDef statisticDef = parseStatistic(xpp);
+				if (statisticDef != null){
+					_statistics.put(statisticDef.getName(), statisticDef);
+				}
+			}
+		}
+	}
+
+	private StatisticDef parseStatistic(XmlPullParser xpp) throws XmlPullParserException,
+			IOException{
+		int eventType;
+		String abstractedFrom = null;
+		Function function = null;
+		double quantile = 0;
+		WindowType windowType = null;
+		long length = 0;
+
+		String name = xpp.getAttributeValue(null, "name");
+		if (TextUtils.isEmpty(name)){
+			Log.e(TAG, "Missing name for statistic");
+			return null;
+		}
+
+		while ((eventType = xpp.next()) != XmlPullParser.END_TAG
+				|| !xpp.getName().equalsIgnoreCase("Statistic")){
+			if (eventType == XmlPullParser.START_TAG){
+				if ("AbstractedFrom".equalsIgnoreCase(xpp.getName())){
+					abstractedFrom = xpp.getAttributeValue(null, "name");
+					if (TextUtils.isEmpty(abstractedFrom)){
+						Log.e(TAG, "Missing name for an abstracted-from in the statistic: "
+								+ name);
+						return null;
+					}
+				}else if ("Function".equalsIgnoreCase(xpp.getName())){
+					String functionStr = xpp.getAttributeValue(null, "name");
+					try{
+						function = Function.valueOf(functionStr.toUpperCase());
+					}catch(Exception e){
+						Log.e(TAG, "Missing/invalid function for the statistic: " + name
+								+ ": " + functionStr);
+						return null;
+					}
+					if (function == Function.QUANTILE){
+						try{
+							quantile = Double.parseDouble(xpp.getAttributeValue(null,
+								"quantile"));
+						}catch(Exception e){
+							Log.e(TAG, "Missing/corrupt quantile for the statistic: "
+									+ name, e);
+							return null;
+						}
+						if (!(quantile >= 0 && quantile <= 1)){
+							Log.e(TAG, "The quantile must be between 0 and 1 for the statistic: "
+									+ name);
+							return null;
+						}
+					}
+				}else if ("Window".equalsIgnoreCase(xpp.getName())){
+					windowType = WindowType.SLIDING;
+					String typeStr = xpp.getAttributeValue(null, "type");
+					if (!TextUtils.isEmpty(typeStr)){
+						try{
+							windowType = WindowType.valueOf(typeStr.toUpperCase());
+						}catch(IllegalArgumentException e){
+							Log.e(TAG, "Invalid window type for the statistic: " + name
+									+ ": " + typeStr);
+							return null;
+						}
+					}
+					try{
+						length = XmlParser.parseDuration(xpp, "length");
+					}catch(Exception e){
+						Log.e(TAG, "Missing/corrupt window length for the statistic: "
+								+ name, e);
+						return null;
+					}
+					if (length <= 0){
+						Log.e(TAG, "The window length must be positive for the statistic: "
+								+ name);
+						return null;
+					}
+				}
+			}
+		}
+
+		if (abstractedFrom == null || function == null || windowType == null){
+			Log.e(TAG, "Missing abstracted-from, function or window for the statistic: "
+					+ name);
+			return null;
+		}
+		return new StatisticDef(name, abstractedFrom, function, quantile, windowType,
+				length);
+	}
+}
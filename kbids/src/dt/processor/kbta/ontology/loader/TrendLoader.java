@@ -8,11 +8,11 @@ import java.util.ArrayList;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import android.text.TextUtils;
-import android.util.Log;
 import dt.processor.kbta.ontology.defs.abstractions.trend.TrendDef;
 import dt.processor.kbta.ontology.defs.abstractions.trend.TrendMappingFunction;
-import dt.processor.kbta.util.ISODuration;
+import dt.processor.kbta.ontology.defs.abstractions.trend.TrendMappingFunction.Mode;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.TextUtils;
 import dt.processor.kbta.util.XmlParser;
 
 public class TrendLoader{
@@ -63,18 +63,33 @@ public class TrendLoader{
 				}else if ("NecessaryContexts".equalsIgnoreCase(xpp.getName())){
 					necessaryContexts = XmlParser.parseNecessaryContexts(xpp);
 				}else if ("MappingFunction".equalsIgnoreCase(xpp.getName())){
+					Mode mode = Mode.ENDPOINTS;
+					String modeStr = xpp.getAttributeValue(null, "mode");
+					if (!TextUtils.isEmpty(modeStr)){
+						try{
+							mode = Mode.valueOf(modeStr.toUpperCase());
+						}catch(IllegalArgumentException e){
+							Log.e(TAG, "Invalid mode in the mapping function for the trend: "
+									+ name + ": " + modeStr);
+							return null;
+						}
+					}
 					try{
 						double threshold = Double.parseDouble(xpp.getAttributeValue(null,
 							"threshold"));
-						double angle = Double.parseDouble(xpp.getAttributeValue(null,
-							"angle"));
-						long maxGap = new ISODuration(xpp.getAttributeValue(null,
-							"maxGap")).toMillis();
+						// The angle isn't used in the regression mode
+						String angleStr = xpp.getAttributeValue(null, "angle");
+						double angle = (mode == Mode.REGRESSION && TextUtils
+								.isEmpty(angleStr)) ? 180 : Double.parseDouble(angleStr);
+						String minFitStr = xpp.getAttributeValue(null, "minFit");
+						double minFit = TextUtils.isEmpty(minFitStr) ? 0 : Double
+								.parseDouble(minFitStr);
+						long maxGap = XmlParser.parseDuration(xpp, "maxGap");
 						mappingFunction = new TrendMappingFunction(threshold, angle,
-								maxGap);
+								maxGap, mode, minFit);
 					}catch(NumberFormatException e){
 						Log.e(TAG,
-							"Corrupt treshold or angle in the mapping function for the trend: "
+							"Corrupt treshold, angle or minFit in the mapping function for the trend: "
 									+ name, e);
 						return null;
 					}catch(Exception e){
@@ -1,4 +1,4 @@
-package dt.processor.kbta.util;
+package dt.processor.kbta.settings;
 
 import java.io.ByteArrayOutputStream;
 import java.io.File;
@@ -58,17 +58,39 @@ public class FileChangeTracker{
 	 * Updates the status of the file in the FileChangeTracker's data (saves the current
 	 * hash)
 	 * 
-	 * @param ci The ChangeInfo object obtained from a previous call to hasBeenModified
-	 * @throws IOException 
+	 * @param fileId The id of the file (unique identifier for the FileChangeTracker)
+	 * @param file The file to be hashed
+	 * @throws IOException If the file can not be read
 	 */
 	public synchronized void updateFileStatus(String fileId, File file)
 			throws IOException{
-		String currentHash = md5Hash(readFully(new FileInputStream(file)));
+		String currentHash = md5Hash(file);
 		Editor editor = _prefs.edit();
 		editor.putString(fileId, currentHash);
 		editor.commit();
 	}
 
+	/**
+	 * Returns the hash saved by the last update of the file's status
+	 * 
+	 * @param fileId The id of the file
+	 * @return The saved hash, or null if the file isn't tracked
+	 */
+	public synchronized String getSavedHash(String fileId){
+		return _prefs.getString(fileId, null);
+	}
+
+	/**
+	 * Stops tracking the file (e.g. before it's overwritten)
+	 * 
+	 * @param fileId The id of the file
+	 */
+	public synchronized void forget(String fileId){
+		Editor editor = _prefs.edit();
+		editor.remove(fileId);
+		editor.commit();
+	}
+
 	/**
 	 * A getter for the single instance.
 	 */
@@ -112,6 +134,17 @@ public class FileChangeTracker{
 		}
 	}
 
+	/**
+	 * Hashes the contents of the given file using MD5
+	 * 
+	 * @param file The file to be hashed
+	 * @return The hash (32 hex chars)
+	 * @throws IOException If the file can not be read
+	 */
+	public static String md5Hash(File file) throws IOException{
+		return md5Hash(readFully(new FileInputStream(file)));
+	}
+
 	/**
 	 * Hashes the given bytes using MD5 and returns a 32 hex characters representing the
 	 * hash
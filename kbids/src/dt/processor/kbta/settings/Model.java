@@ -31,6 +31,8 @@ import android.preference.Preference.OnPreferenceChangeListener;
 import android.util.Log;
 import android.widget.Toast;
 import dt.processor.kbta.Env;
+import dt.processor.kbta.ontology.loader.OntologyLoader;
+import dt.processor.kbta.threats.ThreatAssessmentLoader;
 import dt.processor.kbta.util.Pair;
 
 public abstract class Model{
@@ -39,10 +41,16 @@ public abstract class Model{
 	private final DateFormat DF = new SimpleDateFormat("HH:mm:ss dd/MM/yyyy");
 
 	/** The name of the threat assessments xml file */
-	public static final String THREAT_ASSESSMENTS = "threat_assessments.xml";
+	public static final String THREAT_ASSESSMENTS = ThreatAssessmentLoader.THREAT_ASSESSMENTS;
 
 	/** The name of the ontology xml file */
-	public static final String ONTOLOGY = "ontology.xml";
+	public static final String ONTOLOGY = OntologyLoader.ONTOLOGY;
+
+	/**
+	 * The suffix of the ids of the model files in the {@link FileChangeTracker}, the ids
+	 * of the default models (the assets) are their names
+	 */
+	private static final String MODEL_FILE_ID_SUFFIX = "_model_file";
 
 	private Preference _details;
 
@@ -178,7 +186,7 @@ public abstract class Model{
 	private void onCompatibleModelLoading() throws IllegalStateException{
 		// Setting the initial monitored state of all elements
 		// according to the new threat assessments
-		Env.getThreatAssessor().setInitiallyMonitoredThreats(Env.getOntology());
+		Env.setInitiallyMonitoredThreats();
 
 		// Refreshing the monitored threats preferences
 		_monitoredThreats.removeAll();
@@ -313,10 +321,24 @@ public abstract class Model{
 		}
 	}
 
+	/**
+	 * Returns the id by which the hash of the model file (in the private storage) is
+	 * tracked, the file is hashed whenever it's copied so its hash is never computed when
+	 * loading it (see {@link ModelCache})
+	 */
+	static String getModelFileId(File modelFile){
+		return modelFile.getName() + MODEL_FILE_ID_SUFFIX;
+	}
+
 	static void copyModelFile(Context context, File destination, InputStream src)
 			throws IOException{
 		final File bak = new File(destination.getAbsoluteFile() + ".bak");
 		final boolean exists = destination.exists();
+		final FileChangeTracker fct = FileChangeTracker.getFileChangeTracker(context);
+		final String fileId = getModelFileId(destination);
+
+		// The saved hash no longer applies, whether or not the copy succeeds
+		fct.forget(fileId);
 
 		// Backing up the existing model if one exists
 		if (exists){
@@ -355,6 +377,13 @@ public abstract class Model{
 				}
 			}catch(IOException ee){};
 		}
+
+		try{
+			fct.updateFileStatus(fileId, destination);
+		}catch(IOException e){
+			// It'll be hashed when it's loaded
+			Log.w(TAG, "Unable to hash the model: " + destination.getName(), e);
+		}
 	}
 
 	public static File getThreatsModelFile(Context context){
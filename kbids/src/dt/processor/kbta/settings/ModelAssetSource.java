@@ -0,0 +1,65 @@
+package dt.processor.kbta.settings;
+
+import static dt.processor.kbta.Env.TAG;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+import android.content.Context;
+import android.util.Log;
+import dt.processor.kbta.Env;
+import dt.processor.kbta.settings.FileChangeTracker.ChangeInfo;
+import dt.processor.kbta.util.AssetSource;
+
+/**
+ * Reads the models from the private storage of the application, where they are copied
+ * to from the assets (the default models) or the SD-Card
+ */
+public final class ModelAssetSource implements AssetSource{
+	private final Context _context;
+
+	public ModelAssetSource(Context context){
+		_context = context;
+	}
+
+	@Override
+	public Reader open(String name) throws IOException{
+		return new FileReader(getModelFile(name));
+	}
+
+	/**
+	 * Makes sure the given model is in the private storage, copying the default one to it
+	 * if needed
+	 * 
+	 * @param name The name of the model file
+	 * @return The model file
+	 * @throws IOException If the default model can not be copied
+	 */
+	public File getModelFile(String name) throws IOException{
+		// Checking whether the default model has changed
+		FileChangeTracker fct = FileChangeTracker.getFileChangeTracker(_context);
+		ChangeInfo ci = fct.hasBeenModified(_context, name, name);
+
+		File modelFile = new File(_context.getFilesDir(), name);
+		// Overriding the model file with the default one
+		// in case it hasn't been copied to the private storage yet
+		// or the default model (inside the apk) has been modified and
+		// it is not the first time the model is being loaded
+		boolean changed = !ci.firstTimeTracked && !ci.hasntBeenModified;
+		if (!modelFile.exists() || changed){
+			if (changed && Model.THREAT_ASSESSMENTS.equals(name)){
+				// The monitored threats of the previous model no longer apply
+				Env.getSharedPreferences().edit().clear().commit();
+			}
+			Log.i(TAG, "Loading default model: " + name);
+			if (!Model.copyDefaultModelFile(_context, modelFile)){
+				throw new IOException("Unable to load the default model: " + name);
+			}
+		}
+		fct.updateFileStatus(ci);
+
+		return modelFile;
+	}
+}
@@ -0,0 +1,139 @@
+package dt.processor.kbta.settings;
+
+import static dt.processor.kbta.Env.TAG;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import android.content.Context;
+import android.util.Log;
+import dt.processor.kbta.util.CompiledXml;
+
+/**
+ * Keeps the models compiled (see {@link CompiledXml}) in the private storage, next to the
+ * model files, so loading a model that hasn't changed skips parsing its xml. A compiled
+ * model is used only if it was compiled from the current model file (by its MD5 hash) by
+ * the current format, otherwise it is compiled again. The hash is the one tracked when the
+ * model file was copied (see {@link FileChangeTracker}), so the model file isn't read at
+ * all when its compiled form is used
+ */
+public final class ModelCache{
+	/** The suffix of the compiled model files */
+	private static final String COMPILED = ".compiled";
+
+	private final Context _context;
+
+	private final ModelAssetSource _models;
+
+	public ModelCache(Context context){
+		_context = context;
+		_models = new ModelAssetSource(context);
+	}
+
+	/**
+	 * Opens the compiled form of the given model, compiling it if needed
+	 *
+	 * @param name The name of the model file
+	 * @return A parser of the model, or null if the model can not be compiled (in which
+	 *         case it should be loaded from its xml)
+	 */
+	public XmlPullParser open(String name){
+		try{
+			File modelFile = _models.getModelFile(name);
+			String hash = getHash(modelFile);
+			File compiledFile = new File(_context.getFilesDir(), name + COMPILED);
+
+			if (compiledFile.exists()){
+				try{
+					XmlPullParser xpp = CompiledXml.open(map(compiledFile), hash);
+					if (xpp != null){
+						return xpp;
+					}
+					Log.i(TAG, "The compiled model is out of date: " + name);
+				}catch(Exception e){
+					Log.w(TAG, "Unable to read the compiled model: " + name, e);
+				}
+			}
+
+			Log.i(TAG, "Compiling model: " + name);
+			byte[] compiled = compile(modelFile, hash);
+			save(compiledFile, compiled);
+			return CompiledXml.open(ByteBuffer.wrap(compiled), hash);
+		}catch(Exception e){
+			Log.e(TAG, "Unable to compile the model: " + name, e);
+			return null;
+		}
+	}
+
+	/**
+	 * Returns the hash of the model file tracked when it was copied, hashing it only if
+	 * it isn't tracked (e.g. it was copied by an older version)
+	 */
+	private String getHash(File modelFile) throws IOException{
+		FileChangeTracker fct = FileChangeTracker.getFileChangeTracker(_context);
+		String fileId = Model.getModelFileId(modelFile);
+		String hash = fct.getSavedHash(fileId);
+		if (hash == null){
+			fct.updateFileStatus(fileId, modelFile);
+			hash = fct.getSavedHash(fileId);
+		}
+		return hash;
+	}
+
+	private static ByteBuffer map(File file) throws IOException{
+		FileInputStream in = new FileInputStream(file);
+		try{
+			FileChannel channel = in.getChannel();
+			// The mapping remains valid after the channel is closed
+			return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		}finally{
+			in.close();
+		}
+	}
+
+	private static byte[] compile(File modelFile, String hash) throws Exception{
+		Reader reader = new FileReader(modelFile);
+		try{
+			XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+			xpp.setInput(reader);
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int)modelFile.length());
+			CompiledXml.compile(xpp, hash, out);
+			return out.toByteArray();
+		}finally{
+			reader.close();
+		}
+	}
+
+	/**
+	 * Saves the compiled model, a failure only means it'll be compiled again next time
+	 */
+	private static void save(File compiledFile, byte[] compiled){
+		// Writing to a temporary file first so a partially written
+		// compiled model is never mistaken for a complete one
+		File tempFile = new File(compiledFile.getPath() + ".tmp");
+		try{
+			FileOutputStream out = new FileOutputStream(tempFile);
+			try{
+				out.write(compiled);
+			}finally{
+				out.close();
+			}
+			if (!tempFile.renameTo(compiledFile)){
+				throw new IOException("Unable to rename " + tempFile);
+			}
+		}catch(IOException e){
+			Log.w(TAG, "Unable to save the compiled model: " + compiledFile.getName(), e);
+			tempFile.delete();
+		}
+	}
+}
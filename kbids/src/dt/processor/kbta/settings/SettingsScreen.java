@@ -7,6 +7,7 @@ import android.content.Context;
 import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.preference.CheckBoxPreference;
+import android.preference.ListPreference;
 import android.preference.Preference;
 import android.preference.PreferenceActivity;
 import android.preference.PreferenceCategory;
@@ -62,6 +63,98 @@ public class SettingsScreen extends PreferenceActivity{
 		sendElementsToNetProtect.setPersistent(true);
 		cc.addPreference(sendElementsToNetProtect);
 
+		PreferenceCategory pc = new PreferenceCategory(this);
+		pc.setTitle("Processing Settings");
+		root.addPreference(pc);
+		CheckBoxPreference incrementalEvaluation = new CheckBoxPreference(this);
+		incrementalEvaluation.setTitle("Incremental evaluation");
+		incrementalEvaluation.setSummary("Evaluate only the elements affected by the "
+				+ "monitored data of each batch");
+		incrementalEvaluation.setKey(Env.INCREMENTAL_EVALUATION);
+		incrementalEvaluation.setPersistent(true);
+		incrementalEvaluation.setEnabled(!_isServiceRunning);
+		pc.addPreference(incrementalEvaluation);
+		ListPreference overflowPolicy = new ListPreference(this);
+		overflowPolicy.setTitle("Queue overflow policy");
+		overflowPolicy.setSummary("What to do with monitored data arriving "
+				+ "while the processing queue is full");
+		overflowPolicy.setKey(Env.QUEUE_OVERFLOW_POLICY);
+		overflowPolicy.setPersistent(true);
+		overflowPolicy.setEntries(new CharSequence[]{"Wait", "Drop oldest",
+				"Coalesce by feature"});
+		overflowPolicy.setEntryValues(new CharSequence[]{"BLOCK", "DROP_OLDEST",
+				"COALESCE"});
+		overflowPolicy.setDefaultValue("BLOCK");
+		overflowPolicy.setEnabled(!_isServiceRunning);
+		pc.addPreference(overflowPolicy);
+		ListPreference batchesPerPass = new ListPreference(this);
+		batchesPerPass.setTitle("Batches per computation");
+		batchesPerPass.setSummary("The maximal number of queued batches of monitored "
+				+ "data merged into a single computation");
+		batchesPerPass.setKey(Env.QUEUE_BATCHES_PER_PASS);
+		batchesPerPass.setPersistent(true);
+		batchesPerPass.setEntries(new CharSequence[]{"1", "2", "4", "8", "16"});
+		batchesPerPass.setEntryValues(new CharSequence[]{"1", "2", "4", "8", "16"});
+		batchesPerPass.setDefaultValue("1");
+		batchesPerPass.setEnabled(!_isServiceRunning);
+		pc.addPreference(batchesPerPass);
+		ListPreference historyCapacity = new ListPreference(this);
+		historyCapacity.setTitle("History capacity");
+		historyCapacity.setSummary("The maximal number of old elements kept per "
+				+ "element, in addition to the ontology's element timeout");
+		historyCapacity.setKey(Env.HISTORY_CAPACITY);
+		historyCapacity.setPersistent(true);
+		historyCapacity.setEntries(new CharSequence[]{"Unbounded", "100", "1000",
+				"10000"});
+		historyCapacity.setEntryValues(new CharSequence[]{"0", "100", "1000", "10000"});
+		historyCapacity.setDefaultValue("0");
+		historyCapacity.setEnabled(!_isServiceRunning);
+		pc.addPreference(historyCapacity);
+		ListPreference engineClock = new ListPreference(this);
+		engineClock.setTitle("Engine clock");
+		engineClock.setSummary("Whether the elements time out by the wall clock or by "
+				+ "the latest time in the monitored data");
+		engineClock.setKey(Env.ENGINE_CLOCK);
+		engineClock.setPersistent(true);
+		engineClock.setEntries(new CharSequence[]{"Wall clock", "Event time"});
+		engineClock.setEntryValues(new CharSequence[]{"WALL_CLOCK", "EVENT_TIME"});
+		engineClock.setDefaultValue("WALL_CLOCK");
+		engineClock.setEnabled(!_isServiceRunning);
+		pc.addPreference(engineClock);
+		CheckBoxPreference recordMonitoredData = new CheckBoxPreference(this);
+		recordMonitoredData.setTitle("Record monitored data");
+		recordMonitoredData.setSummary("Record the batches of monitored data so they "
+				+ "can be replayed offline");
+		recordMonitoredData.setKey(Env.RECORD_MONITORED_DATA);
+		recordMonitoredData.setPersistent(true);
+		recordMonitoredData.setEnabled(!_isServiceRunning);
+		pc.addPreference(recordMonitoredData);
+		ListPreference threatCoolDown = new ListPreference(this);
+		threatCoolDown.setTitle("Threat cool-down");
+		threatCoolDown.setSummary("How long a threat that is still assessed for the same "
+				+ "element isn't reported again");
+		threatCoolDown.setKey(Env.THREAT_COOL_DOWN);
+		threatCoolDown.setPersistent(true);
+		threatCoolDown.setEntries(new CharSequence[]{"None (every batch)", "1 minute",
+				"5 minutes", "15 minutes", "Forever"});
+		threatCoolDown.setEntryValues(new CharSequence[]{"0", "60000", "300000",
+				"900000", String.valueOf(Long.MAX_VALUE)});
+		threatCoolDown.setDefaultValue("0");
+		threatCoolDown.setEnabled(!_isServiceRunning);
+		pc.addPreference(threatCoolDown);
+		ListPreference certaintyThreshold = new ListPreference(this);
+		certaintyThreshold.setTitle("Certainty change threshold");
+		certaintyThreshold.setSummary("The change of certainty for which a threat is "
+				+ "reported again during its cool-down");
+		certaintyThreshold.setKey(Env.THREAT_CERTAINTY_THRESHOLD);
+		certaintyThreshold.setPersistent(true);
+		certaintyThreshold.setEntries(new CharSequence[]{"Any change", "5%", "10%",
+				"25%"});
+		certaintyThreshold.setEntryValues(new CharSequence[]{"1", "5", "10", "25"});
+		certaintyThreshold.setDefaultValue("1");
+		certaintyThreshold.setEnabled(!_isServiceRunning);
+		pc.addPreference(certaintyThreshold);
+
 		// Load the ontology and threat assessments
 		// Starting the initialization process
 		Env.initialize(this, new InitializationCallback(), false);
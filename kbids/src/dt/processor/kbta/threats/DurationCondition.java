@@ -2,16 +2,14 @@ package dt.processor.kbta.threats;
 
 import java.text.SimpleDateFormat;
 
-import dt.processor.kbta.util.ISODuration;
-
 public final class DurationCondition{
 	private final long _min;
 
 	private final long _max;
 
-	public DurationCondition(String min, String max) throws Exception{
-		_min = (min.equals("*") ? 0 : new ISODuration(min).toMillis());
-		_max = (max.equals("*") ? Long.MAX_VALUE : new ISODuration(max).toMillis());
+	public DurationCondition(long min, long max){
+		_min = min;
+		_max = max;
 	}
 
 	public boolean check(long duration){
@@ -25,7 +23,25 @@ public final class DurationCondition{
 		// return " Duration=[" + _min + ", " + _max + "]";
 	}
 
+	@Override
+	public int hashCode(){
+		return 31 * (int)(_min ^ (_min >>> 32)) + (int)(_max ^ (_max >>> 32));
+	}
+
+	@Override
+	public boolean equals(Object obj){
+		if (!(obj instanceof DurationCondition)){
+			return false;
+		}
+		DurationCondition other = (DurationCondition)obj;
+		return _min == other._min && _max == other._max;
+	}
+
 	public long getMinDuration(){
 		return _min;
 	}
+
+	public long getMaxDuration(){
+		return _max;
+	}
 }
@@ -1,5 +1,7 @@
 package dt.processor.kbta.threats;
 
+import java.util.List;
+
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
@@ -7,6 +9,7 @@ import dt.processor.kbta.ontology.instances.Element;
 
 public abstract class GeneratedFrom {
 	protected final String _elementName;
+	protected int _elementId;
 	protected final SymbolicValueCondition _symbolicValueCondition;
 	protected final DurationCondition _durationCondition;
 
@@ -18,7 +21,28 @@ public abstract class GeneratedFrom {
 		_durationCondition = durationCondition;
 	}
 	
+	/**
+	 * Sets the id of the element definition the threat is generated from, must be called
+	 * before locating matching elements
+	 * 
+	 * @param elementDef The element definition
+	 */
+	public void resolveId(ElementDef elementDef){
+		_elementId = elementDef.getId();
+	}
+
 	public abstract Element locateMatchingElement(AllInstanceContainer allInstances);
+
+	/**
+	 * Adds the other matching elements found along with the matching element (e.g. the
+	 * other matches of a pattern reporting all of its matches), which are reported once
+	 * 
+	 * @param others The list the other matching elements are added to
+	 */
+	public void addOtherMatchingElements(AllInstanceContainer allInstances,
+		List<Element> others){
+	}
+
 	public abstract ElementDef getElementDef(Ontology ontology);
 
 	public final String getName() {
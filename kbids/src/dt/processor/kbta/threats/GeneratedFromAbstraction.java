@@ -1,6 +1,8 @@
 package dt.processor.kbta.threats;
 
 import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.ontology.defs.ElementDef;
+import dt.processor.kbta.ontology.defs.abstractions.AbstractionDef;
 import dt.processor.kbta.ontology.instances.Abstraction;
 import dt.processor.kbta.ontology.instances.Element;
 
@@ -12,19 +14,26 @@ public abstract class GeneratedFromAbstraction extends GeneratedFrom{
 
 	}
 
-	protected abstract Abstraction getCurrentAbstraction(AllInstanceContainer allInstances, String name);
+	@Override
+	public void resolveId(ElementDef elementDef){
+		super.resolveId(elementDef);
+		if (_symbolicValueCondition != null){
+			_symbolicValueCondition.resolveValues(((AbstractionDef)elementDef).getDomain());
+		}
+	}
+
+	protected abstract Abstraction getCurrentAbstraction(AllInstanceContainer allInstances, int id);
 	
 	@Override
 	public Element locateMatchingElement(AllInstanceContainer allInstances){
-		Abstraction abstraction = getCurrentAbstraction(allInstances, _elementName);
+		Abstraction abstraction = getCurrentAbstraction(allInstances, _elementId);
 		if (abstraction == null){
 			return null;
 		}
 
-		String value = abstraction.getValue();
 		long dur = abstraction.getTimeInterval().getDuration();
 		if ((_symbolicValueCondition == null ? true : _symbolicValueCondition
-				.check(value))
+				.check(abstraction))
 			&& _durationCondition.check(dur)){
 			return abstraction;
 		}else{
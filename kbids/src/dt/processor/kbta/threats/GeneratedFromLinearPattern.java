@@ -1,5 +1,8 @@
 package dt.processor.kbta.threats;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.container.ComplexContainer;
 import dt.processor.kbta.ontology.Ontology;
@@ -17,7 +20,7 @@ public final class GeneratedFromLinearPattern extends GeneratedFrom{
 	@Override
 	public Element locateMatchingElement(AllInstanceContainer allInstances){
 		ComplexContainer<LinearPattern> linearPatterns = allInstances.getLinearPatterns();
-		LinearPattern pattern = linearPatterns.getCurrentElement(_elementName);
+		LinearPattern pattern = linearPatterns.getCurrentElement(_elementId);
 		if (pattern == null){
 			return null;
 		}
@@ -27,6 +30,20 @@ public final class GeneratedFromLinearPattern extends GeneratedFrom{
 		return _durationCondition.check(dur) ? pattern : null;
 	}
 
+	@Override
+	public void addOtherMatchingElements(AllInstanceContainer allInstances,
+		List<Element> others){
+		ArrayList<LinearPattern> otherMatches = allInstances.getOtherMatches(_elementId);
+		if (otherMatches == null){
+			return;
+		}
+		for (LinearPattern pattern : otherMatches){
+			if (_durationCondition.check(pattern.getTimeInterval().getDuration())){
+				others.add(pattern);
+			}
+		}
+	}
+
 	@Override
 	public String toString(){
 		return "LinearPattern: " + super.toString();
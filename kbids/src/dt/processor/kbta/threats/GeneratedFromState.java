@@ -26,9 +26,9 @@ public class GeneratedFromState extends GeneratedFromAbstraction{
 	}
 
 	@Override
-	protected Abstraction getCurrentAbstraction(AllInstanceContainer allInstances, String name){
+	protected Abstraction getCurrentAbstraction(AllInstanceContainer allInstances, int id){
 		ComplexContainer<State> states = allInstances.getStates();
-		return states.getCurrentElement(_elementName);
+		return states.getCurrentElement(id);
 	}
 
 	@Override
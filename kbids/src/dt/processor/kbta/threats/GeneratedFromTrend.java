@@ -27,9 +27,9 @@ public class GeneratedFromTrend extends GeneratedFromAbstraction{
 	}
 
 	@Override
-	protected Abstraction getCurrentAbstraction(AllInstanceContainer allInstances, String name){
+	protected Abstraction getCurrentAbstraction(AllInstanceContainer allInstances, int id){
 		ComplexContainer<Trend> trends = allInstances.getTrends();
-		return trends.getCurrentElement(_elementName);
+		return trends.getCurrentElement(id);
 	}
 	
 	@Override
@@ -1,17 +1,53 @@
 package dt.processor.kbta.threats;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashSet;
 
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
+import dt.processor.kbta.ontology.instances.Abstraction;
+
 public final class SymbolicValueCondition{
 	private final HashSet<String> _symbolicValueConditions;
 
+	/** The ordinals of the values in the abstraction's domain */
+	private BitSet _ordinals;
+
 	public SymbolicValueCondition(HashSet<String> symbolicValueConditions){
 		_symbolicValueConditions = symbolicValueConditions;
 	}
 
-	public boolean check(String elementValue){
-		return _symbolicValueConditions.contains(elementValue);
+	/**
+	 * Resolves the ordinals of the values, must be called before checking abstractions.
+	 * Values that aren't in the domain are never matched
+	 *
+	 * @param domain The domain of the abstraction the condition is on
+	 */
+	public void resolveValues(SymbolicDomain domain){
+		BitSet ordinals = new BitSet(domain.size());
+		for (String value : _symbolicValueConditions){
+			int ordinal = domain.getOrdinal(value);
+			if (ordinal >= 0){
+				ordinals.set(ordinal);
+			}
+		}
+		_ordinals = ordinals;
+	}
+
+	public boolean check(Abstraction abstraction){
+		return _ordinals.get(abstraction.getOrdinal());
+	}
+
+	@Override
+	public int hashCode(){
+		return _symbolicValueConditions.hashCode();
+	}
+
+	@Override
+	public boolean equals(Object obj){
+		return (obj instanceof SymbolicValueCondition)
+				&& _symbolicValueConditions
+						.equals(((SymbolicValueCondition)obj)._symbolicValueConditions);
 	}
 
 	@Override
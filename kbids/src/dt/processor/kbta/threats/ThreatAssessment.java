@@ -1,7 +1,5 @@
 package dt.processor.kbta.threats;
 
-import android.content.SharedPreferences;
-import dt.processor.kbta.Env;
 import dt.processor.kbta.ontology.Ontology;
 import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.instances.Element;
@@ -46,16 +44,16 @@ public final class ThreatAssessment{
 		return _generatedFrom;
 	}
 
-	public void setInitiallyMonitoredThreat(Ontology ontology, SharedPreferences.Editor spe) throws IllegalStateException{
+	public void setInitiallyMonitoredThreat(Ontology ontology, boolean isMonitored) throws IllegalStateException{
 		ElementDef elementDef = _generatedFrom.getElementDef(ontology);
 		if (elementDef == null){
 			throw new IllegalStateException("Undefined element: " + _generatedFrom.getElementDefDescription());
 		}
-		_isMonitored = Env.getSharedPreferences().getBoolean(_title, _isMonitored);
+		_generatedFrom.resolveId(elementDef);
+		_isMonitored = isMonitored;
 		if (_isMonitored){
 			// There is only a point in traversing the elements if they are
 			// monitored, otherwise they will remain unmonitored by default
-			spe.putBoolean(_title, true);
 			elementDef.setInitiallyMonitored(ontology);
 		}
 	}
@@ -1,30 +1,29 @@
 package dt.processor.kbta.threats;
 
-import static android.text.TextUtils.isEmpty;
+import static dt.processor.kbta.util.TextUtils.isEmpty;
 import static dt.processor.kbta.util.XmlParser.parseSymbolicValueCondition;
 import static org.xmlpull.v1.XmlPullParser.END_DOCUMENT;
 import static org.xmlpull.v1.XmlPullParser.END_TAG;
 import static org.xmlpull.v1.XmlPullParser.START_TAG;
 
-import java.io.File;
-import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.TreeMap;
 
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserFactory;
 
-import android.content.Context;
-import android.text.TextUtils;
-import android.util.Log;
-import dt.processor.kbta.Env;
-import dt.processor.kbta.settings.Model;
-import dt.processor.kbta.util.FileChangeTracker;
+import dt.processor.kbta.util.AssetSource;
+import dt.processor.kbta.util.Log;
+import dt.processor.kbta.util.TextUtils;
 import dt.processor.kbta.util.XmlParser;
-import dt.processor.kbta.util.FileChangeTracker.ChangeInfo;
 
 public class ThreatAssessmentLoader{
 	private static final String TAG = "ThreatAssessmentLoader";
 
+	/** The name of the threat assessments xml file */
+	public static final String THREAT_ASSESSMENTS = "threat_assessments.xml";
+
 	private static final String DEFAULT_NAME = "Android";
 
 	private static final String DEFAULT_VERSION = "0";
@@ -39,35 +38,44 @@ public class ThreatAssessmentLoader{
 		_assessments = new TreeMap<String, ThreatAssessment>();
 	}
 
-	public ThreatAssessor loadThreatAssessments(Context context){
+	public ThreatAssessor loadThreatAssessments(AssetSource assets){
+		Reader reader;
 		try{
-			// Checking whether the default threat assessment model has changed
-			FileChangeTracker fct = FileChangeTracker.getFileChangeTracker(context);
-			ChangeInfo ci = fct.hasBeenModified(context, Model.THREAT_ASSESSMENTS,
-				Model.THREAT_ASSESSMENTS);
-
-			File threatsFile = Model.getThreatsModelFile(context);
-			// Overriding the model file with the default one
-			// in case it hasn't been copied to the private storage yet
-			// or the default model (inside the apk) has been modified and
-			// it is not the first time the model is being loaded
-			boolean changed = !ci.firstTimeTracked && !ci.hasntBeenModified;
-			if (!threatsFile.exists() || (changed)){
-				if (changed){
-					Env.getSharedPreferences().edit().clear().commit();
-				}
-				Log.i(TAG, "Loading default threat assessment model");
-				if (!Model.copyDefaultModelFile(context, threatsFile)){
-					Log.e(TAG, "Unable to load the default Threats");
-					return null;
-				}
-			}
-			fct.updateFileStatus(ci);
+			reader = assets.open(THREAT_ASSESSMENTS);
+		}catch(IOException e){
+			Log.e(TAG, "Unable to open the threat assessments", e);
+			return null;
+		}
+		try{
+			return loadThreatAssessments(reader);
+		}finally{
+			try{
+				reader.close();
+			}catch(IOException e){}
+		}
+	}
 
+	public ThreatAssessor loadThreatAssessments(Reader reader){
+		XmlPullParser xpp;
+		try{
 			XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
-			XmlPullParser xpp = factory.newPullParser();
-			xpp.setInput(new FileReader(threatsFile));
+			xpp = factory.newPullParser();
+			xpp.setInput(reader);
+		}catch(Exception e){
+			Log.e(TAG, "Error while loading Threat assessments", e);
+			return null;
+		}
+		return loadThreatAssessments(xpp);
+	}
 
+	/**
+	 * Loads the threat assessments from a parser of their xml (or of its compiled form)
+	 * 
+	 * @param xpp The parser, at the start of the document
+	 * @return The threat assessor, or null if the assessments can not be loaded
+	 */
+	public ThreatAssessor loadThreatAssessments(XmlPullParser xpp){
+		try{
 			for (int eventType = xpp.getEventType(); eventType != END_DOCUMENT; eventType = xpp
 					.next()){
 				if (eventType == START_TAG){
@@ -1,19 +1,57 @@
 package dt.processor.kbta.threats;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.TreeMap;
 
-import android.content.SharedPreferences;
-import dt.processor.kbta.Env;
 import dt.processor.kbta.container.AllInstanceContainer;
 import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.ElementDef;
 import dt.processor.kbta.ontology.instances.Element;
 import dt.processor.kbta.util.Pair;
 
+/**
+ * Assesses the threats according to the elements they are generated from. Each threat is
+ * checked only after its element has changed (see {@link #elementChanged(ElementDef)}),
+ * the threats whose elements haven't changed keep the result of their previous check, so
+ * the time spent assessing depends on the number of changed elements rather than on the
+ * number of threats.<br>
+ * A check may find other matching elements along with the matching element (see
+ * {@link GeneratedFrom#addOtherMatchingElements(AllInstanceContainer, List)}), these are
+ * assessed once, by the assessment following the check
+ */
 public class ThreatAssessor{
 	private final TreeMap<String, ThreatAssessment> _assessments;
 
+	/** The assessments in the order of their titles, indexed by the bits below */
+	private final ThreatAssessment[] _ordered;
+
+	/** The indexes of the assessments generated from each element definition */
+	private final HashMap<ElementDef, int[]> _subscriptions;
+
+	/** The matching elements found by the latest check of each assessment */
+	private final Element[] _matches;
+
+	private final BitSet _matched;
+
+	/** The assessments to be checked on the next assessment */
+	private final BitSet _dirty;
+
+	/** The other matching elements found by the checks of the current assessment */
+	private final ArrayList<Element> _others;
+
+	/** The range of each checked assessment's other matching elements */
+	private final int[] _othersStart;
+
+	private final int[] _othersEnd;
+
+	private final BitSet _hasOthers;
+
 	private final String _threatsName;
 
 	private final String _version;
@@ -23,32 +61,128 @@ public class ThreatAssessor{
 		_assessments = assessments;
 		_threatsName = threatsName;
 		_version = version;
+		_ordered = assessments.values().toArray(new ThreatAssessment[assessments.size()]);
+		_subscriptions = new HashMap<ElementDef, int[]>();
+		_matches = new Element[_ordered.length];
+		_matched = new BitSet(_ordered.length);
+		_dirty = new BitSet(_ordered.length);
+		_others = new ArrayList<Element>();
+		_othersStart = new int[_ordered.length];
+		_othersEnd = new int[_ordered.length];
+		_hasOthers = new BitSet(_ordered.length);
+		invalidate();
 	}
 
+	/**
+	 * Assesses the monitored threats whose elements currently match their conditions,
+	 * checking only the threats whose elements have changed since the previous assessment
+	 * 
+	 * @param allInstances The instances of the elements
+	 * @return The threats (in the order of their titles) along with the elements they
+	 *         were assessed for, the other matching elements of a threat precede its
+	 *         matching element
+	 */
 	public Collection<Pair<ThreatAssessment, Element>> assess(
 		AllInstanceContainer allInstances){
-		Collection<Pair<ThreatAssessment, Element>> assessments = new ArrayList<Pair<ThreatAssessment, Element>>();
+		for (int i = _dirty.nextSetBit(0); i >= 0; i = _dirty.nextSetBit(i + 1)){
+			// Unmonitored threats are checked as well, so their results are up to date
+			// once they're monitored again
+			GeneratedFrom generatedFrom = _ordered[i].getGeneratedFrom();
+			Element element = generatedFrom.locateMatchingElement(allInstances);
+			_matches[i] = element;
+			_matched.set(i, element != null);
 
-		for (ThreatAssessment ta : _assessments.values()){
+			int start = _others.size();
+			generatedFrom.addOtherMatchingElements(allInstances, _others);
+			if (_others.size() > start){
+				_othersStart[i] = start;
+				_othersEnd[i] = _others.size();
+				_hasOthers.set(i);
+			}
+		}
+		_dirty.clear();
+
+		BitSet assessed = _matched;
+		if (!_hasOthers.isEmpty()){
+			assessed = (BitSet)_matched.clone();
+			assessed.or(_hasOthers);
+		}
+		Collection<Pair<ThreatAssessment, Element>> assessments = new ArrayList<Pair<ThreatAssessment, Element>>();
+		for (int i = assessed.nextSetBit(0); i >= 0; i = assessed.nextSetBit(i + 1)){
+			ThreatAssessment ta = _ordered[i];
 			if (!ta.isMonitored()){
 				continue;
 			}
-			GeneratedFrom gf = ta.getGeneratedFrom();
-			Element element = gf.locateMatchingElement(allInstances);
-			if (element != null){
-				assessments.add(new Pair<ThreatAssessment, Element>(ta, element));
+			if (_hasOthers.get(i)){
+				for (int j = _othersStart[i]; j < _othersEnd[i]; ++j){
+					assessments.add(new Pair<ThreatAssessment, Element>(ta, _others.get(j)));
+				}
+			}
+			if (_matched.get(i)){
+				assessments.add(new Pair<ThreatAssessment, Element>(ta, _matches[i]));
 			}
 		}
+		// The other matching elements are assessed once
+		_others.clear();
+		_hasOthers.clear();
 
 		return assessments;
 	}
 
-	public void setInitiallyMonitoredThreats(Ontology ontology){
-		SharedPreferences.Editor spe = Env.getSharedPreferences().edit();
+	/**
+	 * Notifies of a change to the elements of the given definition (an element created,
+	 * prolonged or removed), so the threats generated from it are checked on the next
+	 * assessment
+	 */
+	public void elementChanged(ElementDef elementDef){
+		int[] indexes = _subscriptions.get(elementDef);
+		if (indexes != null){
+			for (int i : indexes){
+				_dirty.set(i);
+			}
+		}
+	}
+
+	/**
+	 * Discards the results of the previous checks so all of the threats are checked on
+	 * the next assessment, e.g. when assessing the elements of another engine
+	 */
+	public void invalidate(){
+		Arrays.fill(_matches, null);
+		_matched.clear();
+		_dirty.set(0, _ordered.length);
+	}
+
+	/**
+	 * Sets the initially monitored threats (and so the elements they are generated from)
+	 * 
+	 * @param ontology The ontology
+	 * @param preferences The persisted choice of monitored threats, mapping the titles of
+	 *        the threats to whether they are monitored. Threats not in the map keep their
+	 *        default
+	 * @throws IllegalStateException If a threat is generated from an undefined element
+	 */
+	public void setInitiallyMonitoredThreats(Ontology ontology, Map<String, ?> preferences){
 		for (ThreatAssessment ta : _assessments.values()){
-			ta.setInitiallyMonitoredThreat(ontology, spe);
+			Object isMonitored = preferences.get(ta.getTitle());
+			ta.setInitiallyMonitoredThreat(ontology,
+				(isMonitored instanceof Boolean) ? (Boolean)isMonitored : ta.isMonitored());
+		}
+
+		// Subscribing each assessment to the definition of its element
+		_subscriptions.clear();
+		for (int i = 0; i < _ordered.length; ++i){
+			ElementDef elementDef = _ordered[i].getGeneratedFrom().getElementDef(ontology);
+			int[] indexes = _subscriptions.get(elementDef);
+			if (indexes == null){
+				indexes = new int[]{i};
+			}else{
+				indexes = Arrays.copyOf(indexes, indexes.length + 1);
+				indexes[indexes.length - 1] = i;
+			}
+			_subscriptions.put(elementDef, indexes);
 		}
-		spe.commit();
+		invalidate();
 	}
 	
 	@Override
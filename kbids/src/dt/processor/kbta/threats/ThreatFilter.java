@@ -0,0 +1,149 @@
+package dt.processor.kbta.threats;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.util.Pair;
+
+/**
+ * Suppresses the repeated reports of threats. The assessor reports a threat on every
+ * batch for as long as its element matches (and may report it for several elements in a
+ * batch), a threat is passed on for an element only if it hasn't been reported for that
+ * element yet, if its certainty has changed by at least the threshold since, or once the
+ * cool-down since its last report for that element has passed.<br>
+ * The elements are identified by the ids of their definitions and their start times, as
+ * an interpolated element keeps its start time and a pattern that is recreated on each
+ * batch is the same element as far as the threat is concerned. The reports of the
+ * elements a threat isn't assessed for in a batch (which no longer match) are forgotten
+ */
+public final class ThreatFilter{
+	/** A cool-down with which the threats are reported on every batch (none are filtered) */
+	public static final long EVERY_BATCH = 0;
+
+	/** A cool-down with which unchanged threats are never reported again */
+	public static final long NEVER = Long.MAX_VALUE;
+
+	private final int _certaintyThreshold;
+
+	private final long _coolDown;
+
+	/** The last reports of the threats for the elements they were assessed for */
+	private HashMap<Key, Report> _lastReports;
+
+	/**
+	 * @param certaintyThreshold The change of certainty (in percent) for which a threat is
+	 *        reported again for the same element
+	 * @param coolDown The time (in milliseconds) after which a threat is reported again for
+	 *        the same element even if its certainty hasn't changed, {@link #EVERY_BATCH} or
+	 *        {@link #NEVER}
+	 */
+	public ThreatFilter(int certaintyThreshold, long coolDown){
+		_certaintyThreshold = Math.max(1, certaintyThreshold);
+		_coolDown = coolDown;
+		_lastReports = new HashMap<Key, Report>();
+	}
+
+	/**
+	 * @param threats The assessed threats along with the elements they were assessed for
+	 * @param now The current time, against which the cool-downs pass
+	 * @return The reports of the threats that are to be reported, in the given order
+	 */
+	public List<Report> filter(Collection<Pair<ThreatAssessment, Element>> threats, long now){
+		List<Report> reports = new ArrayList<Report>(threats.size());
+		if (_coolDown == EVERY_BATCH){
+			for (Pair<ThreatAssessment, Element> p : threats){
+				reports.add(new Report(p.first, p.second, p.first.getCertainty(p.second), now));
+			}
+			return reports;
+		}
+
+		// Only the reports of the elements assessed in this batch are kept
+		HashMap<Key, Report> lastReports = new HashMap<Key, Report>();
+		for (Pair<ThreatAssessment, Element> p : threats){
+			ThreatAssessment ta = p.first;
+			Element element = p.second;
+			int certainty = ta.getCertainty(element);
+			Key key = new Key(ta, element);
+			Report last = lastReports.get(key);
+			if (last == null){
+				last = _lastReports.get(key);
+			}
+			if (last != null && Math.abs(certainty - last.certainty) < _certaintyThreshold
+					&& (_coolDown == NEVER || now - last.time < _coolDown)){
+				lastReports.put(key, last);
+				continue;
+			}
+			Report report = new Report(ta, element, certainty, now);
+			lastReports.put(key, report);
+			reports.add(report);
+		}
+		_lastReports = lastReports;
+		return reports;
+	}
+
+	/**
+	 * Forgets the previous reports, so all of the threats are reported again
+	 */
+	public void reset(){
+		_lastReports.clear();
+	}
+
+	/**
+	 * A threat to be reported
+	 */
+	public static final class Report{
+		public final ThreatAssessment threat;
+
+		/** The element the threat was assessed for */
+		public final Element element;
+
+		public final int certainty;
+
+		/** The time the threat was reported at */
+		public final long time;
+
+		Report(ThreatAssessment threat, Element element, int certainty, long time){
+			this.threat = threat;
+			this.element = element;
+			this.certainty = certainty;
+			this.time = time;
+		}
+	}
+
+	/**
+	 * Identifies a threat along with the element it was assessed for
+	 */
+	private static final class Key{
+		private final ThreatAssessment _threat;
+
+		/** The id of the element's definition */
+		private final int _id;
+
+		private final long _startTime;
+
+		Key(ThreatAssessment threat, Element element){
+			_threat = threat;
+			_id = element.getId();
+			_startTime = element.getTimeInterval().getStartTime();
+		}
+
+		@Override
+		public int hashCode(){
+			int hash = 31 * System.identityHashCode(_threat) + _id;
+			return 31 * hash + (int)(_startTime ^ (_startTime >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj){
+			if (!(obj instanceof Key)){
+				return false;
+			}
+			Key other = (Key)obj;
+			return _threat == other._threat && _id == other._id
+					&& _startTime == other._startTime;
+		}
+	}
+}
@@ -0,0 +1,23 @@
+package dt.processor.kbta.upload;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The server the elements are uploaded to
+ */
+public interface ElementGateway{
+	/**
+	 * @return Whether the elements can currently be sent (e.g. the network is connected
+	 *         and the agent is registered), the uploader waits until they can
+	 */
+	public boolean isAvailable();
+
+	/**
+	 * Sends a batch of elements in a single call
+	 *
+	 * @param elements The elements, as maps of their properties
+	 * @throws Exception If the elements could not be sent, they are retried later
+	 */
+	public void send(List<Map<String, Object>> elements) throws Exception;
+}
@@ -0,0 +1,312 @@
+package dt.processor.kbta.upload;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+
+import dt.processor.kbta.util.Log;
+
+/**
+ * The records (the encoded elements) waiting to be uploaded, kept in memory and in a file
+ * so they survive restarts. The file is an append-only log and each record has a sequence
+ * number, the records are removed by advancing the head (the sequence number of the
+ * oldest record that hasn't been removed), which is persisted in a file of its own. The
+ * log is compacted (rewritten with its live records only) once most of it has been
+ * removed, so appending and removing a record costs amortized constant time.<br>
+ * The log starts with the sequence number of its first record, followed by the records,
+ * each prefixed by its length:
+ *
+ * <pre>
+ * long FIRST, int LENGTH, byte[LENGTH] RECORD, int LENGTH, byte[LENGTH] RECORD ...
+ * </pre>
+ *
+ * A record cut short (e.g. when the process is killed while appending it) is discarded
+ * when the spool is loaded.<br>
+ * The spool is thread safe
+ */
+public final class ElementSpool{
+	private static final String TAG = "ElementSpool";
+
+	/** The size of the log's header (the sequence number of its first record) */
+	private static final int HEADER_SIZE = 8;
+
+	/** The size of a record's length */
+	private static final int LENGTH_SIZE = 4;
+
+	/** The minimal size of the removed records before the log is compacted */
+	private static final long MIN_COMPACTION = 64 * 1024;
+
+	private final File _file;
+
+	private final File _headFile;
+
+	private final long _capacity;
+
+	/** The live records, the first of which is the head */
+	private final ArrayDeque<byte[]> _records;
+
+	/** The sequence number of the head */
+	private long _head;
+
+	/** The offset of the head in the log */
+	private long _headOffset;
+
+	/** The size of the log */
+	private long _logSize;
+
+	/** The total size of the live records */
+	private long _size;
+
+	/** Whether the log is missing records (an append has failed), it's then rewritten */
+	private boolean _stale;
+
+	private int _droppedRecords;
+
+	/**
+	 * @param file The file of the spool's log, the records in it are loaded
+	 * @param capacity The maximal total size of the spooled records, in bytes, the oldest
+	 *        are dropped beyond it
+	 */
+	public ElementSpool(File file, long capacity){
+		_file = file;
+		_headFile = new File(file.getPath() + ".head");
+		_capacity = Math.max(1, capacity);
+		_records = new ArrayDeque<byte[]>();
+		_head = 0;
+		_headOffset = HEADER_SIZE;
+		_logSize = HEADER_SIZE;
+		_size = 0;
+		_stale = false;
+		_droppedRecords = 0;
+		boolean loaded = load();
+		if (trim() || !loaded){
+			compact();
+		}
+	}
+
+	/**
+	 * Appends the records to the spool, should be called from a worker thread as it
+	 * writes to the log
+	 */
+	public synchronized void append(List<byte[]> records){
+		if (records.isEmpty()){
+			return;
+		}
+		for (byte[] record : records){
+			_records.addLast(record);
+			_size += record.length;
+		}
+		if (_stale){
+			compact();
+		}else{
+			try{
+				DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(_file, true)));
+				try{
+					for (byte[] record : records){
+						out.writeInt(record.length);
+						out.write(record);
+						_logSize += LENGTH_SIZE + record.length;
+					}
+				}finally{
+					out.close();
+				}
+			}catch(IOException e){
+				Log.e(TAG, "Unable to spool the records, they're kept in memory", e);
+				_stale = true;
+			}
+		}
+		if (trim()){
+			Log.w(TAG, "The spool is full, dropped the oldest records (" + _droppedRecords
+					+ " so far)");
+			removed();
+		}
+	}
+
+	/**
+	 * Adds the oldest spooled records (which remain in the spool) to the list
+	 *
+	 * @return The sequence number of the first of the records, see {@link #remove(long)}
+	 */
+	public synchronized long peek(int count, List<byte[]> records){
+		Iterator<byte[]> it = _records.iterator();
+		for (int i = 0; i < count && it.hasNext(); ++i){
+			records.add(it.next());
+		}
+		return _head;
+	}
+
+	/**
+	 * Removes the records before the given sequence number (e.g. once they have been
+	 * uploaded), the records that have already been removed (or dropped meanwhile) are
+	 * skipped
+	 */
+	public synchronized void remove(long end){
+		if (end <= _head){
+			return;
+		}
+		while (_head < end && !_records.isEmpty()){
+			removeHead();
+		}
+		removed();
+	}
+
+	/**
+	 * @return The number of spooled records
+	 */
+	public synchronized int size(){
+		return _records.size();
+	}
+
+	/**
+	 * @return The sequence number the next record appended is given
+	 */
+	public synchronized long getEnd(){
+		return _head + _records.size();
+	}
+
+	private void removeHead(){
+		byte[] record = _records.removeFirst();
+		_size -= record.length;
+		_headOffset += LENGTH_SIZE + record.length;
+		++_head;
+	}
+
+	private boolean trim(){
+		boolean trimmed = false;
+		while (_size > _capacity && _records.size() > 1){
+			removeHead();
+			++_droppedRecords;
+			trimmed = true;
+		}
+		return trimmed;
+	}
+
+	/**
+	 * Persists the head after records have been removed, compacting the log if most of
+	 * it has been removed
+	 */
+	private void removed(){
+		if (_stale || (_headOffset >= MIN_COMPACTION && _headOffset >= _logSize / 2)){
+			compact();
+			return;
+		}
+		try{
+			writeHead();
+		}catch(IOException e){
+			Log.e(TAG, "Unable to save the head of the spool", e);
+		}
+	}
+
+	/**
+	 * Rewrites the log with the live records only, the head is persisted first so the
+	 * head and the log agree whichever of them a crash leaves
+	 */
+	private void compact(){
+		File temp = new File(_file.getPath() + ".tmp");
+		try{
+			writeHead();
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+					new FileOutputStream(temp, false)));
+			long size = HEADER_SIZE;
+			try{
+				out.writeLong(_head);
+				for (byte[] record : _records){
+					out.writeInt(record.length);
+					out.write(record);
+					size += LENGTH_SIZE + record.length;
+				}
+			}finally{
+				out.close();
+			}
+			if (!temp.renameTo(_file)){
+				throw new IOException("Unable to replace " + _file);
+			}
+			_headOffset = HEADER_SIZE;
+			_logSize = size;
+			_stale = false;
+		}catch(IOException e){
+			Log.e(TAG, "Unable to save the spooled records", e);
+			_stale = true;
+		}
+	}
+
+	private void writeHead() throws IOException{
+		RandomAccessFile head = new RandomAccessFile(_headFile, "rw");
+		try{
+			head.writeLong(_head);
+		}finally{
+			head.close();
+		}
+	}
+
+	/**
+	 * Loads the records from the head onwards
+	 *
+	 * @return Whether the log was read as a whole, if not it's to be rewritten
+	 */
+	private boolean load(){
+		if (!_file.exists()){
+			return false;
+		}
+		long head = 0;
+		try{
+			if (_headFile.exists()){
+				RandomAccessFile in = new RandomAccessFile(_headFile, "r");
+				try{
+					head = in.readLong();
+				}finally{
+					in.close();
+				}
+			}
+		}catch(IOException e){
+			Log.e(TAG, "Unable to load the head of the spool, loading the whole log", e);
+		}
+
+		try{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(
+					new FileInputStream(_file)));
+			try{
+				_head = in.readLong();
+				long remaining = _file.length() - HEADER_SIZE;
+				while (remaining >= LENGTH_SIZE){
+					int length = in.readInt();
+					if (length < 0 || length > remaining - LENGTH_SIZE){
+						Log.w(TAG, "Discarding a spooled record cut short");
+						return false;
+					}
+					byte[] record = new byte[length];
+					in.readFully(record);
+					remaining -= LENGTH_SIZE + length;
+					_logSize += LENGTH_SIZE + length;
+					if (_head < head){
+						++_head;
+						_headOffset += LENGTH_SIZE + length;
+					}else{
+						_records.addLast(record);
+						_size += length;
+					}
+				}
+				return remaining == 0;
+			}finally{
+				in.close();
+			}
+		}catch(EOFException e){
+			Log.w(TAG, "Discarding a corrupt spool");
+			return false;
+		}catch(IOException e){
+			Log.e(TAG, "Unable to load the spooled records", e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,203 @@
+package dt.processor.kbta.upload;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import dt.processor.kbta.ontology.instances.LineageSerializer;
+import dt.processor.kbta.util.Log;
+
+/**
+ * Uploads elements through a gateway from a worker thread, so the threads adding the
+ * elements never wait on the network or on the disk: the elements are queued in memory
+ * (in their compact encoding, see {@link LineageSerializer#toCompact()}) and the worker
+ * appends them to the spool. The elements (of any number of threats) are decoded just
+ * before they are sent in batches, a batch that fails is retried with an exponential backoff and is
+ * dropped after a bounded number of attempts. A batch is removed from the spool by the
+ * sequence numbers of its records, so the records added (or dropped as the spool fills)
+ * while it's being sent are never removed in its place. While the gateway isn't available
+ * the elements stay spooled, the worker resumes once woken (see {@link #wake()})
+ */
+public final class ElementUploader implements Runnable{
+	private static final String TAG = "ElementUploader";
+
+	/** The delay before retrying a failed batch for the first time, in milliseconds */
+	private static final long INITIAL_BACKOFF = 5 * 1000;
+
+	/** The maximal delay before retrying a failed batch, in milliseconds */
+	private static final long MAX_BACKOFF = 10 * 60 * 1000;
+
+	/** The number of attempts to send a batch before it's dropped */
+	private static final int MAX_ATTEMPTS = 8;
+
+	private final ElementGateway _gateway;
+
+	private final ElementSpool _spool;
+
+	private final int _batchSize;
+
+	private final long _initialBackoff;
+
+	/** The encoded elements added and not yet spooled */
+	private List<byte[]> _added;
+
+	private Thread _thread;
+
+	/** The time before which the failed batch isn't retried */
+	private long _retryTime;
+
+	private int _attempts;
+
+	/**
+	 * @param gateway The gateway the elements are sent through
+	 * @param spool The spool of the elements waiting to be uploaded
+	 * @param batchSize The maximal number of elements sent in a single call (unless a
+	 *        single encoding has more)
+	 */
+	public ElementUploader(ElementGateway gateway, ElementSpool spool, int batchSize){
+		this(gateway, spool, batchSize, INITIAL_BACKOFF);
+	}
+
+	/**
+	 * @param initialBackoff The delay before retrying a failed batch for the first time,
+	 *        in milliseconds
+	 */
+	ElementUploader(ElementGateway gateway, ElementSpool spool, int batchSize,
+		long initialBackoff){
+		_gateway = gateway;
+		_spool = spool;
+		_batchSize = Math.max(1, batchSize);
+		_initialBackoff = initialBackoff;
+		_added = new ArrayList<byte[]>();
+		_retryTime = 0;
+		_attempts = 0;
+	}
+
+	public void start(){
+		_thread = new Thread(this, "KBTA Element Uploader Thread");
+		_thread.start();
+	}
+
+	/**
+	 * Stops the worker, the elements not yet uploaded remain spooled
+	 */
+	public void stop(){
+		if (_thread != null){
+			_thread.interrupt();
+			_thread = null;
+		}
+	}
+
+	/**
+	 * Queues the elements to be spooled and uploaded by the worker
+	 *
+	 * @param elements The compact encoding of the elements, see
+	 *        {@link LineageSerializer#toCompact()}
+	 */
+	public synchronized void upload(byte[] elements){
+		_added.add(elements);
+		notifyAll();
+	}
+
+	/**
+	 * Wakes the worker, should be called when the gateway may have become available (e.g.
+	 * the network is connected)
+	 */
+	public synchronized void wake(){
+		notifyAll();
+	}
+
+	@Override
+	public void run(){
+		List<byte[]> records = new ArrayList<byte[]>();
+		List<Map<String, Object>> batch = new ArrayList<Map<String, Object>>();
+		while (true){
+			List<byte[]> added;
+			try{
+				added = awaitWork();
+			}catch(InterruptedException e){
+				// The elements added meanwhile are kept for the next run
+				_spool.append(takeAdded());
+				return;
+			}
+			if (!added.isEmpty()){
+				_spool.append(added);
+				continue;
+			}
+
+			// The records that fit in the batch, the ids of each record's elements
+			// follow those of the previous records
+			long first = _spool.peek(_batchSize, records);
+			int taken = 0;
+			for (byte[] record : records){
+				List<Map<String, Object>> elements;
+				try{
+					elements = LineageSerializer.fromCompact(record, batch.size());
+				}catch(IOException e){
+					Log.w(TAG, "Skipping corrupt spooled elements", e);
+					++taken;
+					continue;
+				}
+				if (batch.size() + elements.size() > _batchSize && !batch.isEmpty()){
+					break;
+				}
+				batch.addAll(elements);
+				++taken;
+			}
+			long end = first + taken;
+			try{
+				if (!batch.isEmpty()){
+					_gateway.send(batch);
+				}
+				_spool.remove(end);
+				_attempts = 0;
+			}catch(Exception e){
+				if (++_attempts >= MAX_ATTEMPTS){
+					Log.e(TAG, "Dropping " + batch.size() + " elements after " + _attempts
+							+ " failed attempts", e);
+					_spool.remove(end);
+					_attempts = 0;
+				}else{
+					long backoff = Math.min(MAX_BACKOFF, _initialBackoff << (_attempts - 1));
+					Log.w(TAG, "Unable to upload the elements, retrying in " + backoff
+							+ " millis", e);
+					synchronized (this){
+						_retryTime = System.currentTimeMillis() + backoff;
+					}
+				}
+			}
+			records.clear();
+			batch.clear();
+		}
+	}
+
+	/**
+	 * Waits until elements have been added, or until there are spooled elements, the
+	 * gateway is available and the backoff (if any) has passed
+	 *
+	 * @return The elements added (to be spooled), or an empty list if a batch is to be
+	 *         sent
+	 */
+	private synchronized List<byte[]> awaitWork() throws InterruptedException{
+		while (true){
+			if (!_added.isEmpty()){
+				return takeAdded();
+			}
+			long delay = _retryTime - System.currentTimeMillis();
+			if (delay > 0){
+				wait(delay);
+			}else if (_spool.size() == 0 || !_gateway.isAvailable()){
+				wait();
+			}else{
+				return new ArrayList<byte[]>(0);
+			}
+		}
+	}
+
+	private synchronized List<byte[]> takeAdded(){
+		List<byte[]> added = _added;
+		_added = new ArrayList<byte[]>();
+		return added;
+	}
+}
@@ -0,0 +1,73 @@
+package dt.processor.kbta.upload;
+
+import java.util.List;
+import java.util.Map;
+
+import org.kxmlrpc.XmlRpcClient;
+
+/**
+ * Sends the elements to NetProtect's XML-RPC server, on behalf of a registered agent. The
+ * server's URL and the agent's credentials are set by the owner of the gateway (e.g. when
+ * the preferences change) and read by the uploader's worker
+ */
+public final class NetProtectGateway implements ElementGateway{
+	public static final String SEND_CALCULATED_DATA = "bgu.dt.netprotect.external.CalculatedDataGateway.sendCalculatedData";
+
+	private XmlRpcClient _server;
+
+	private String _agentId;
+
+	private String _secret;
+
+	private boolean _connected;
+
+	public NetProtectGateway(){
+		_server = null;
+		_agentId = null;
+		_secret = null;
+		_connected = false;
+	}
+
+	/**
+	 * @param serverURL The URL of the server, null if not set
+	 * @param agentId The id of the agent, null if not registered
+	 * @param secret The secret of the agent, null if not registered
+	 */
+	public synchronized void setServer(String serverURL, String agentId, String secret){
+		if (serverURL == null){
+			_server = null;
+		}else if (_server == null || !serverURL.equals(_server.getURL())){
+			_server = new XmlRpcClient(serverURL);
+		}
+		_agentId = agentId;
+		_secret = secret;
+	}
+
+	/**
+	 * @param connected Whether the network the elements are sent over is connected
+	 */
+	public synchronized void setConnected(boolean connected){
+		_connected = connected;
+	}
+
+	@Override
+	public synchronized boolean isAvailable(){
+		return _connected && _server != null && _agentId != null && _secret != null;
+	}
+
+	@Override
+	public void send(List<Map<String, Object>> elements) throws Exception{
+		XmlRpcClient server;
+		String agentId;
+		String secret;
+		synchronized (this){
+			server = _server;
+			agentId = _agentId;
+			secret = _secret;
+		}
+		if (server == null){
+			throw new IllegalStateException("The server URL is not set");
+		}
+		server.execute(SEND_CALCULATED_DATA, agentId, secret, elements);
+	}
+}
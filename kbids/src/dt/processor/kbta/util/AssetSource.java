@@ -0,0 +1,18 @@
+package dt.processor.kbta.util;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The source the models (the ontology and threat assessments) are read from
+ */
+public interface AssetSource{
+	/**
+	 * Opens the given model for reading
+	 * 
+	 * @param name The name of the model file
+	 * @return A reader of the model, to be closed by the caller
+	 * @throws IOException If the model can not be opened
+	 */
+	public Reader open(String name) throws IOException;
+}
@@ -0,0 +1,190 @@
+package dt.processor.kbta.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.TreeSet;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * A compact binary form of a model's xml, so the model can be loaded again without
+ * parsing the xml. Only the tags and their attributes are kept (the models hold no text),
+ * the names and values are written once to a string table and the tags refer to them by
+ * their indexes. The values that are durations or integers (e.g. the ordinals of the
+ * patterns' elements) are parsed when compiling and written next to the string table, so
+ * the loaders read them without parsing them again (see
+ * {@link XmlParser#parseDuration(XmlPullParser, String)} and
+ * {@link XmlParser#parseInt(XmlPullParser, String)}). The compiled form starts with the
+ * format version and the hash of the xml it was compiled from, so it is only used for the
+ * same xml by the same format:
+ *
+ * <pre>
+ * magic, version, hash, strings, parsed values (string kind value)*,
+ * (START_TAG name attributes (name value)* | END_TAG name)*, END_DOCUMENT
+ * </pre>
+ *
+ * See {@link CompiledXmlParser} for reading it
+ */
+public final class CompiledXml{
+	static final int MAGIC = 0x4b425441;
+
+	/** Must be incremented whenever the format changes */
+	static final int VERSION = 2;
+
+	/** The kind of a string parsed as an ISO 8601 duration, its value is in milliseconds */
+	static final byte DURATION = 1;
+
+	/** The kind of a string parsed as an integer */
+	static final byte INTEGER = 2;
+
+	private CompiledXml(){
+	}
+
+	/**
+	 * Compiles the xml read by the parser
+	 *
+	 * @param xpp The parser, at the start of the document
+	 * @param hash The hash of the xml, which the compiled form must match to be opened
+	 * @param out The stream the compiled form is written to (not closed)
+	 */
+	public static void compile(XmlPullParser xpp, String hash, OutputStream out)
+			throws XmlPullParserException, IOException{
+		HashMap<String, Integer> indexes = new HashMap<String, Integer>();
+		ArrayList<String> strings = new ArrayList<String>();
+		TreeSet<Integer> values = new TreeSet<Integer>();
+		ByteArrayOutputStream eventBytes = new ByteArrayOutputStream();
+		DataOutputStream events = new DataOutputStream(eventBytes);
+		for (int eventType = xpp.getEventType(); eventType != XmlPullParser.END_DOCUMENT; eventType = xpp
+				.next()){
+			if (eventType == XmlPullParser.START_TAG){
+				events.writeByte(XmlPullParser.START_TAG);
+				events.writeInt(intern(indexes, strings, xpp.getName()));
+				int count = xpp.getAttributeCount();
+				events.writeInt(count);
+				for (int i = 0; i < count; ++i){
+					events.writeInt(intern(indexes, strings, xpp.getAttributeName(i)));
+					int value = intern(indexes, strings, xpp.getAttributeValue(i));
+					events.writeInt(value);
+					values.add(value);
+				}
+			}else if (eventType == XmlPullParser.END_TAG){
+				events.writeByte(XmlPullParser.END_TAG);
+				events.writeInt(intern(indexes, strings, xpp.getName()));
+			}
+		}
+		events.writeByte(XmlPullParser.END_DOCUMENT);
+		events.flush();
+
+		DataOutputStream dos = new DataOutputStream(out);
+		dos.writeInt(MAGIC);
+		dos.writeInt(VERSION);
+		writeString(dos, hash);
+		dos.writeInt(strings.size());
+		for (String s : strings){
+			writeString(dos, s);
+		}
+		ByteArrayOutputStream parsedBytes = new ByteArrayOutputStream();
+		DataOutputStream parsed = new DataOutputStream(parsedBytes);
+		int parsedCount = 0;
+		for (int index : values){
+			String s = strings.get(index);
+			byte kind;
+			long value;
+			try{
+				if (s.startsWith("P") || s.startsWith("-P")){
+					value = new ISODuration(s).toMillis();
+					kind = DURATION;
+				}else{
+					value = Integer.parseInt(s);
+					kind = INTEGER;
+				}
+			}catch(Exception e){
+				// Neither, read as text only
+				continue;
+			}
+			parsed.writeInt(index);
+			parsed.writeByte(kind);
+			parsed.writeLong(value);
+			++parsedCount;
+		}
+		parsed.flush();
+		dos.writeInt(parsedCount);
+		parsedBytes.writeTo(dos);
+		eventBytes.writeTo(dos);
+		dos.flush();
+	}
+
+	/**
+	 * Opens the compiled form of an xml
+	 *
+	 * @param buffer The compiled form (e.g. a mapped file), read from its position
+	 * @param hash The hash of the xml
+	 * @return A parser of the xml, or null if the compiled form is of another version or
+	 *         another xml
+	 * @throws XmlPullParserException If the compiled form is corrupt
+	 */
+	public static XmlPullParser open(ByteBuffer buffer, String hash)
+			throws XmlPullParserException{
+		try{
+			if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION
+					|| !hash.equals(readString(buffer))){
+				return null;
+			}
+			String[] strings = new String[buffer.getInt()];
+			for (int i = 0; i < strings.length; ++i){
+				strings[i] = readString(buffer);
+			}
+			byte[] kinds = new byte[strings.length];
+			long[] parsed = new long[strings.length];
+			for (int i = buffer.getInt(); i > 0; --i){
+				int index = buffer.getInt();
+				byte kind = buffer.get();
+				if (index < 0 || index >= strings.length
+						|| (kind != DURATION && kind != INTEGER)){
+					throw new XmlPullParserException("Corrupt compiled xml, unknown value: "
+							+ index);
+				}
+				kinds[index] = kind;
+				parsed[index] = buffer.getLong();
+			}
+			return new CompiledXmlParser(buffer.slice(), strings, kinds, parsed);
+		}catch(RuntimeException e){
+			// Thrown by the buffer when reading past its end
+			throw new XmlPullParserException("Corrupt compiled xml: " + e);
+		}
+	}
+
+	private static int intern(HashMap<String, Integer> indexes, ArrayList<String> strings,
+		String s){
+		Integer index = indexes.get(s);
+		if (index == null){
+			index = strings.size();
+			indexes.put(s, index);
+			strings.add(s);
+		}
+		return index;
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException{
+		byte[] bytes = s.getBytes("UTF-8");
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(ByteBuffer buffer){
+		byte[] bytes = new byte[buffer.getInt()];
+		buffer.get(bytes);
+		try{
+			return new String(bytes, "UTF-8");
+		}catch(java.io.UnsupportedEncodingException e){
+			// UTF-8 is always supported
+			throw new IllegalStateException(e);
+		}
+	}
+}
@@ -0,0 +1,362 @@
+package dt.processor.kbta.util;
+
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+/**
+ * Reads the compiled form of an xml (see {@link CompiledXml}) as the tags and attributes
+ * of the xml, so the models can be loaded by the same code whether they are compiled or
+ * not. Namespaces, text and the features of the parser aren't supported, the input is
+ * set when the parser is opened. The values parsed when compiling are read by
+ * {@link #getAttributeDuration(String)} and {@link #getAttributeInt(String)}
+ */
+final class CompiledXmlParser implements XmlPullParser{
+	private static final int[] NO_ATTRIBUTES = new int[0];
+
+	private final ByteBuffer _events;
+
+	private final String[] _strings;
+
+	/** The kinds of the strings (see {@link CompiledXml#DURATION}), 0 if not parsed */
+	private final byte[] _kinds;
+
+	/** The values of the strings parsed when compiling, by their kinds */
+	private final long[] _parsed;
+
+	private int _eventType;
+
+	private int _depth;
+
+	/** The index of the name of the current tag */
+	private int _name;
+
+	/** The indexes of the names and the values of the current tag's attributes, in turn */
+	private int[] _attributes;
+
+	CompiledXmlParser(ByteBuffer events, String[] strings, byte[] kinds, long[] parsed){
+		_events = events;
+		_strings = strings;
+		_kinds = kinds;
+		_parsed = parsed;
+		_eventType = START_DOCUMENT;
+		_depth = 0;
+		_name = -1;
+		_attributes = NO_ATTRIBUTES;
+	}
+
+	@Override
+	public int next() throws XmlPullParserException{
+		if (_eventType == END_DOCUMENT){
+			throw new XmlPullParserException("The end of the document has been reached");
+		}
+		if (_eventType == END_TAG){
+			--_depth;
+		}
+		try{
+			_eventType = _events.get();
+			switch (_eventType){
+				case START_TAG:
+					++_depth;
+					_name = readIndex();
+					int count = _events.getInt();
+					if (count < 0 || count > _events.remaining() / 8){
+						throw new XmlPullParserException("Corrupt compiled xml");
+					}
+					_attributes = (count == 0) ? NO_ATTRIBUTES : new int[2 * count];
+					for (int i = 0; i < _attributes.length; ++i){
+						_attributes[i] = readIndex();
+					}
+					break;
+				case END_TAG:
+					_name = readIndex();
+					_attributes = NO_ATTRIBUTES;
+					break;
+				case END_DOCUMENT:
+					_name = -1;
+					_attributes = NO_ATTRIBUTES;
+					break;
+				default:
+					throw new XmlPullParserException("Corrupt compiled xml, unknown event: "
+							+ _eventType);
+			}
+		}catch(RuntimeException e){
+			// Thrown by the buffer when reading past its end
+			throw new XmlPullParserException("Corrupt compiled xml: " + e);
+		}
+		return _eventType;
+	}
+
+	private int readIndex() throws XmlPullParserException{
+		int index = _events.getInt();
+		if (index < 0 || index >= _strings.length){
+			throw new XmlPullParserException("Corrupt compiled xml, unknown string: " + index);
+		}
+		return index;
+	}
+
+	@Override
+	public int nextToken() throws XmlPullParserException{
+		return next();
+	}
+
+	@Override
+	public int nextTag() throws XmlPullParserException{
+		int eventType = next();
+		if (eventType != START_TAG && eventType != END_TAG){
+			throw new XmlPullParserException("Expected a start or an end tag", this, null);
+		}
+		return eventType;
+	}
+
+	@Override
+	public String nextText() throws XmlPullParserException{
+		if (_eventType != START_TAG){
+			throw new XmlPullParserException("Expected a start tag", this, null);
+		}
+		if (next() != END_TAG){
+			throw new XmlPullParserException("Expected an end tag", this, null);
+		}
+		return "";
+	}
+
+	@Override
+	public void require(int type, String namespace, String name)
+			throws XmlPullParserException{
+		if (type != _eventType || (namespace != null && !namespace.equals(getNamespace()))
+				|| (name != null && !name.equals(getName()))){
+			throw new XmlPullParserException("Expected " + TYPES[type] + " " + name, this,
+				null);
+		}
+	}
+
+	@Override
+	public int getEventType(){
+		return _eventType;
+	}
+
+	@Override
+	public int getDepth(){
+		return _depth;
+	}
+
+	@Override
+	public String getName(){
+		return (_name < 0) ? null : _strings[_name];
+	}
+
+	@Override
+	public String getNamespace(){
+		return (_name < 0) ? null : NO_NAMESPACE;
+	}
+
+	@Override
+	public String getPrefix(){
+		return null;
+	}
+
+	@Override
+	public boolean isEmptyElementTag() throws XmlPullParserException{
+		if (_eventType != START_TAG){
+			throw new XmlPullParserException("Not at a start tag", this, null);
+		}
+		// Empty tags aren't told apart from tags with no content
+		return false;
+	}
+
+	@Override
+	public int getAttributeCount(){
+		return (_eventType == START_TAG) ? _attributes.length / 2 : -1;
+	}
+
+	@Override
+	public String getAttributeName(int index){
+		return _strings[_attributes[2 * checkAttribute(index)]];
+	}
+
+	@Override
+	public String getAttributeValue(int index){
+		return _strings[_attributes[2 * checkAttribute(index) + 1]];
+	}
+
+	@Override
+	public String getAttributeValue(String namespace, String name){
+		if (namespace != null && namespace.length() != 0){
+			return null;
+		}
+		int value = indexOfValue(name);
+		return (value < 0) ? null : _strings[value];
+	}
+
+	/**
+	 * @return The attribute's duration, as parsed when compiling
+	 * @throws InvalidDateException If the attribute is missing or isn't a duration
+	 */
+	long getAttributeDuration(String name) throws InvalidDateException{
+		int value = indexOfValue(name);
+		if (value < 0){
+			throw new InvalidDateException("Missing duration: " + name);
+		}
+		// A value that isn't a duration is parsed again for the error
+		return (_kinds[value] == CompiledXml.DURATION) ? _parsed[value] : new ISODuration(
+				_strings[value]).toMillis();
+	}
+
+	/**
+	 * @return The attribute's integer, as parsed when compiling
+	 * @throws NumberFormatException If the attribute is missing or isn't an integer
+	 */
+	int getAttributeInt(String name){
+		int value = indexOfValue(name);
+		if (value >= 0 && _kinds[value] == CompiledXml.INTEGER){
+			return (int)_parsed[value];
+		}
+		// Parsed again for the error
+		return Integer.parseInt((value < 0) ? null : _strings[value]);
+	}
+
+	/**
+	 * @return The index of the attribute's value in the string table, or -1 if the current
+	 *         tag has no such attribute
+	 */
+	private int indexOfValue(String name){
+		for (int i = 0; i < _attributes.length; i += 2){
+			if (_strings[_attributes[i]].equals(name)){
+				return _attributes[i + 1];
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public String getAttributeNamespace(int index){
+		checkAttribute(index);
+		return NO_NAMESPACE;
+	}
+
+	@Override
+	public String getAttributePrefix(int index){
+		checkAttribute(index);
+		return null;
+	}
+
+	@Override
+	public String getAttributeType(int index){
+		checkAttribute(index);
+		return "CDATA";
+	}
+
+	@Override
+	public boolean isAttributeDefault(int index){
+		checkAttribute(index);
+		return false;
+	}
+
+	private int checkAttribute(int index){
+		if (index < 0 || 2 * index >= _attributes.length){
+			throw new IndexOutOfBoundsException("No attribute " + index);
+		}
+		return index;
+	}
+
+	@Override
+	public String getText(){
+		return null;
+	}
+
+	@Override
+	public char[] getTextCharacters(int[] holderForStartAndLength){
+		holderForStartAndLength[0] = -1;
+		holderForStartAndLength[1] = -1;
+		return null;
+	}
+
+	@Override
+	public boolean isWhitespace() throws XmlPullParserException{
+		throw new XmlPullParserException("The compiled xml holds no text", this, null);
+	}
+
+	@Override
+	public int getNamespaceCount(int depth){
+		return 0;
+	}
+
+	@Override
+	public String getNamespacePrefix(int pos) throws XmlPullParserException{
+		throw new XmlPullParserException("The compiled xml holds no namespaces", this, null);
+	}
+
+	@Override
+	public String getNamespaceUri(int pos) throws XmlPullParserException{
+		throw new XmlPullParserException("The compiled xml holds no namespaces", this, null);
+	}
+
+	@Override
+	public String getNamespace(String prefix){
+		return null;
+	}
+
+	@Override
+	public String getPositionDescription(){
+		return TYPES[_eventType] + ((_name < 0) ? "" : " " + _strings[_name])
+				+ " (compiled xml)";
+	}
+
+	@Override
+	public int getLineNumber(){
+		return -1;
+	}
+
+	@Override
+	public int getColumnNumber(){
+		return -1;
+	}
+
+	@Override
+	public void setFeature(String name, boolean state) throws XmlPullParserException{
+		if (state){
+			throw new XmlPullParserException("Unsupported feature: " + name);
+		}
+	}
+
+	@Override
+	public boolean getFeature(String name){
+		return false;
+	}
+
+	@Override
+	public void setProperty(String name, Object value) throws XmlPullParserException{
+		throw new XmlPullParserException("Unsupported property: " + name);
+	}
+
+	@Override
+	public Object getProperty(String name){
+		return null;
+	}
+
+	@Override
+	public void setInput(Reader in){
+		throw new UnsupportedOperationException(
+				"The input of a compiled xml is set when it's opened");
+	}
+
+	@Override
+	public void setInput(InputStream inputStream, String inputEncoding){
+		throw new UnsupportedOperationException(
+				"The input of a compiled xml is set when it's opened");
+	}
+
+	@Override
+	public String getInputEncoding(){
+		return null;
+	}
+
+	@Override
+	public void defineEntityReplacementText(String entityName, String replacementText)
+			throws XmlPullParserException{
+		throw new XmlPullParserException("The compiled xml holds no entities");
+	}
+}
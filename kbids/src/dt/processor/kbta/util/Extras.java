@@ -0,0 +1,40 @@
+package dt.processor.kbta.util;
+
+/**
+ * The extras (attributes) attached to an element, the actual type of the extras depends
+ * on the platform the engine runs on. Extras created by the engine itself (e.g. when
+ * summing up the extras of the elements an abstraction is created from) are created by
+ * the pluggable factory, see {@link #setFactory(Factory)}
+ */
+public abstract class Extras{
+	private static volatile Factory _factory = new Factory(){
+		@Override
+		public Extras create(){
+			return new MapExtras();
+		}
+	};
+
+	public static void setFactory(Factory factory){
+		_factory = factory;
+	}
+
+	/**
+	 * @return New empty extras of the type produced by the current factory
+	 */
+	public static Extras create(){
+		return _factory.create();
+	}
+
+	/**
+	 * Inserts all of the mappings of the given extras into these extras
+	 * 
+	 * @param src Extras created by the same factory as these extras
+	 */
+	public abstract void putAll(Extras src);
+
+	public abstract boolean isEmpty();
+
+	public interface Factory{
+		public Extras create();
+	}
+}
@@ -0,0 +1,22 @@
+package dt.processor.kbta.util;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads the models from the files of a directory
+ */
+public class FileAssetSource implements AssetSource{
+	private final File _directory;
+
+	public FileAssetSource(File directory){
+		_directory = directory;
+	}
+
+	@Override
+	public Reader open(String name) throws IOException{
+		return new FileReader(new File(_directory, name));
+	}
+}
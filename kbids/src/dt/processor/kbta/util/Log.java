@@ -0,0 +1,68 @@
+package dt.processor.kbta.util;
+
+/**
+ * The logging facade of the engine, so the engine itself doesn't depend on the platform
+ * it runs on. By default messages are printed to the standard error stream, a different
+ * destination (such as the Android log) can be plugged in using
+ * {@link #setLogger(Logger)}
+ */
+public final class Log{
+	public static final int DEBUG = 0, INFO = 1, WARN = 2, ERROR = 3;
+
+	private static final String[] PRIORITIES = {"D", "I", "W", "E"};
+
+	private static volatile Logger _logger = new Logger(){
+		@Override
+		public void log(int priority, String tag, String msg, Throwable t){
+			if (priority < INFO){
+				return;
+			}
+			System.err.println(PRIORITIES[priority] + "/" + tag + ": " + msg);
+			if (t != null){
+				t.printStackTrace();
+			}
+		}
+	};
+
+	private Log(){
+	}
+
+	public static void setLogger(Logger logger){
+		_logger = logger;
+	}
+
+	public static void d(String tag, String msg){
+		_logger.log(DEBUG, tag, msg, null);
+	}
+
+	public static void i(String tag, String msg){
+		_logger.log(INFO, tag, msg, null);
+	}
+
+	public static void w(String tag, String msg){
+		_logger.log(WARN, tag, msg, null);
+	}
+
+	public static void w(String tag, String msg, Throwable t){
+		_logger.log(WARN, tag, msg, t);
+	}
+
+	public static void e(String tag, String msg){
+		_logger.log(ERROR, tag, msg, null);
+	}
+
+	public static void e(String tag, String msg, Throwable t){
+		_logger.log(ERROR, tag, msg, t);
+	}
+
+	public interface Logger{
+		/**
+		 * @param priority One of {@link Log#DEBUG}, {@link Log#INFO}, {@link Log#WARN} or
+		 *        {@link Log#ERROR}
+		 * @param tag The source of the message
+		 * @param msg The message
+		 * @param t The exception to log (may be null)
+		 */
+		public void log(int priority, String tag, String msg, Throwable t);
+	}
+}
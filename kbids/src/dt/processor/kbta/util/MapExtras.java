@@ -0,0 +1,37 @@
+package dt.processor.kbta.util;
+
+import java.util.HashMap;
+
+/**
+ * The default, platform independent, extras backed by a map
+ */
+public class MapExtras extends Extras{
+	private final HashMap<String, Object> _map;
+
+	public MapExtras(){
+		_map = new HashMap<String, Object>();
+	}
+
+	public void put(String key, Object value){
+		_map.put(key, value);
+	}
+
+	public Object get(String key){
+		return _map.get(key);
+	}
+
+	@Override
+	public void putAll(Extras src){
+		_map.putAll(((MapExtras)src)._map);
+	}
+
+	@Override
+	public boolean isEmpty(){
+		return _map.isEmpty();
+	}
+
+	@Override
+	public String toString(){
+		return _map.toString();
+	}
+}
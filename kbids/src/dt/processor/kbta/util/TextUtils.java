@@ -0,0 +1,25 @@
+package dt.processor.kbta.util;
+
+public final class TextUtils{
+	private TextUtils(){
+	}
+
+	/**
+	 * @return Whether the string is null or of zero length
+	 */
+	public static boolean isEmpty(CharSequence str){
+		return str == null || str.length() == 0;
+	}
+
+	/**
+	 * @return Whether the string contains only digits
+	 */
+	public static boolean isDigitsOnly(CharSequence str){
+		for (int i = 0; i < str.length(); ++i){
+			if (!Character.isDigit(str.charAt(i))){
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -156,6 +156,19 @@ public class TimeInterval{
 		}
 	}
 
+	/**
+	 * Returns the duration of the overlap of this interval and the other interval,
+	 * without creating the overlap
+	 * 
+	 * @param other The other interval
+	 * @return The duration of the overlap of this and other, -1 if there is none
+	 */
+	public long getOverlapDuration(TimeInterval other){
+		long start = Math.max(getStartTime(), other.getStartTime());
+		long end = Math.min(getEndTime(), other.getEndTime());
+		return (end >= start) ? end - start : -1;
+	}
+
 	public void setEndTime(long end){
 		_endTime=end;		
 	}
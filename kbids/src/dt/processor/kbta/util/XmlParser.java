@@ -1,6 +1,6 @@
 package dt.processor.kbta.util;
 
-import static android.text.TextUtils.isEmpty;
+import static dt.processor.kbta.util.TextUtils.isEmpty;
 import static org.xmlpull.v1.XmlPullParser.END_TAG;
 import static org.xmlpull.v1.XmlPullParser.START_TAG;
 
@@ -11,7 +11,6 @@ import java.util.HashSet;
 import org.xmlpull.v1.XmlPullParser;
 import org.xmlpull.v1.XmlPullParserException;
 
-import android.util.Log;
 import dt.processor.kbta.ontology.defs.NumericRange;
 import dt.processor.kbta.threats.DurationCondition;
 import dt.processor.kbta.threats.SymbolicValueCondition;
@@ -86,19 +85,62 @@ public class XmlParser{
 
 	public static DurationCondition parseDurationCondition(XmlPullParser xpp, String TAG){
 		DurationCondition durationCondition;
-		String min = null;
-		String max = null;
 		try{
-			durationCondition = new DurationCondition(min = xpp.getAttributeValue(null,
-				"min"), max = xpp.getAttributeValue(null, "max"));
+			durationCondition = new DurationCondition(parseDuration(xpp, "min", 0),
+					parseDuration(xpp, "max", Long.MAX_VALUE));
 		}catch(Exception e){
-			Log.e(TAG, "Improper duration in duration condition, min = " + min
-					+ ", max = " + max, e);
+			Log.e(TAG, "Improper duration in duration condition, min = "
+					+ xpp.getAttributeValue(null, "min") + ", max = "
+					+ xpp.getAttributeValue(null, "max"), e);
 			return null;
 		}
 		return durationCondition;
 	}
 
+	/**
+	 * Parses the attribute as an ISO 8601 duration, the durations of a compiled xml (see
+	 * {@link CompiledXml}) have been parsed when it was compiled
+	 * 
+	 * @return The duration in milliseconds
+	 * @throws InvalidDateException If the attribute is missing or isn't a duration
+	 */
+	public static long parseDuration(XmlPullParser xpp, String name)
+			throws InvalidDateException{
+		if (xpp instanceof CompiledXmlParser){
+			return ((CompiledXmlParser)xpp).getAttributeDuration(name);
+		}
+		String value = xpp.getAttributeValue(null, name);
+		if (value == null){
+			throw new InvalidDateException("Missing duration: " + name);
+		}
+		return new ISODuration(value).toMillis();
+	}
+
+	/**
+	 * Parses the attribute as an ISO 8601 duration or as "*"
+	 * 
+	 * @param any The duration "*" stands for
+	 * @see #parseDuration(XmlPullParser, String)
+	 */
+	public static long parseDuration(XmlPullParser xpp, String name, long any)
+			throws InvalidDateException{
+		return "*".equals(xpp.getAttributeValue(null, name)) ? any : parseDuration(xpp,
+			name);
+	}
+
+	/**
+	 * Parses the attribute as an integer, the integers of a compiled xml (see
+	 * {@link CompiledXml}) have been parsed when it was compiled
+	 * 
+	 * @throws NumberFormatException If the attribute is missing or isn't an integer
+	 */
+	public static int parseInt(XmlPullParser xpp, String name){
+		if (xpp instanceof CompiledXmlParser){
+			return ((CompiledXmlParser)xpp).getAttributeInt(name);
+		}
+		return Integer.parseInt(xpp.getAttributeValue(null, name));
+	}
+
 	public static SymbolicValueCondition parseSymbolicValueCondition(XmlPullParser xpp)
 			throws XmlPullParserException, IOException{
 		int eventType;
@@ -0,0 +1,132 @@
+package dt.processor.kbta.container;
+
+import java.io.StringReader;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.engine.EngineClock;
+import dt.processor.kbta.engine.KBTAEngine;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.PrimitiveDef;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef;
+import dt.processor.kbta.ontology.loader.OntologyLoader;
+
+/**
+ * Checks that the samples of the primitives' histories are kept for their horizons and
+ * evicted on the clock's tick, whether or not new samples arrive
+ */
+public class PrimitiveHistoryTest extends TestCase{
+	private static final long START = 1300000000000L;
+
+	private static final String ONTOLOGY = "<Ontology name=\"Test\" version=\"0\" elementTimeout=\"PT10M\">"
+			+ "<Primitives>"
+			+ "<Primitive name=\"CPU_Usage\" minE=\"0\" maxE=\"100\" history=\"PT1M\" />"
+			+ "<Primitive name=\"Context_Switches\" minE=\"0\" maxE=\"*\" />"
+			+ "</Primitives>"
+			+ "<Statistics>"
+			+ "<Statistic name=\"Context_Switches_Mean\">"
+			+ "<AbstractedFrom name=\"Context_Switches\" />"
+			+ "<Function name=\"Mean\" />"
+			+ "<Window type=\"Sliding\" length=\"PT30S\" />"
+			+ "</Statistic>"
+			+ "</Statistics>"
+			+ "<Events><Event name=\"Tick\" /></Events>"
+			+ "</Ontology>";
+
+	public void testEviction(){
+		PrimitiveHistory history = new PrimitiveHistory(10000);
+		for (int i = 0; i < 100; ++i){
+			history.add(START + 1000 * i, i);
+		}
+		// Appending doesn't evict
+		assertEquals(100, history.size());
+		assertEquals(0, history.getFirstSequence());
+		assertEquals(100, history.getEndSequence());
+
+		history.evict(START + 99000);
+		assertEquals(11, history.size());
+		assertEquals(START + 89000, history.getTime(0));
+		assertEquals(89.0, history.getValue(0));
+		assertEquals(89, history.getFirstSequence());
+		assertEquals(100, history.getEndSequence());
+		assertEquals(0, history.indexOf(89));
+		assertEquals(10, history.indexOf(99));
+
+		// Without new samples, the rest are evicted as the clock advances
+		history.evict(START + 105000);
+		assertEquals(5, history.size());
+		history.evict(START + 200000);
+		assertTrue(history.isEmpty());
+		assertEquals(100, history.getFirstSequence());
+		assertEquals(100, history.getEndSequence());
+
+		history.add(START + 200000, 1);
+		assertEquals(100, history.getFirstSequence());
+		assertEquals(1, history.size());
+	}
+
+	public void testReadsAfterEviction(){
+		PrimitiveHistory history = new PrimitiveHistory(5000);
+		for (int i = 0; i < 40; ++i){
+			history.add(START + 1000 * i, i);
+			history.evict(START + 1000 * i);
+		}
+		assertEquals(6, history.size());
+
+		long[] times = new long[10];
+		double[] values = new double[10];
+		assertEquals(3, history.copy(START + 36000, START + 38000, times, values));
+		assertEquals(START + 36000, times[0]);
+		assertEquals(38.0, values[2]);
+
+		PrimitiveHistory.Cursor cursor = history.cursor(START + 37000);
+		double sum = 0;
+		while (cursor.next()){
+			sum += cursor.getValue();
+		}
+		assertEquals(37.0 + 38 + 39, sum);
+	}
+
+	public void testEngineEvictsOnTick(){
+		Ontology ontology = new OntologyLoader().loadOntology(new StringReader(ONTOLOGY));
+		assertNotNull(ontology);
+		PrimitiveDef cpu = ontology.getPrimitiveDef("CPU_Usage");
+		PrimitiveDef switches = ontology.getPrimitiveDef("Context_Switches");
+		StatisticDef mean = ontology.getStatisticDefs()[0];
+		// The history of a statistic's primitive keeps the samples of its window
+		assertEquals(30000, switches.getHistoryHorizon());
+		assertEquals(60000, cpu.getHistoryHorizon());
+		cpu.setInitiallyMonitored(ontology);
+		mean.setInitiallyMonitored(ontology);
+		ontology.getEventDefs()[0].setInitiallyMonitored(ontology);
+
+		KBTAEngine engine = new KBTAEngine(ontology, null, true, ElementHistory.UNBOUNDED,
+				EngineClock.create(EngineClock.Mode.EVENT_TIME));
+		PrimitiveContainer primitives = engine.getInstances().getPrimitives();
+		PrimitiveHistory cpuHistory = primitives.getHistory(cpu.getId());
+		PrimitiveHistory switchesHistory = primitives.getHistory(switches.getId());
+		for (int i = 0; i < 10; ++i){
+			Date time = new Date(START + 10000 * i);
+			engine.addPrimitive("CPU_Usage", time, 50, null);
+			engine.addPrimitive("Context_Switches", time, i, null);
+			engine.compute();
+		}
+		assertEquals(7, cpuHistory.size());
+		assertEquals(4, switchesHistory.size());
+		assertEquals(START + 60000, switchesHistory.getTime(0));
+		// The mean of the samples of (60s, 90s]
+		assertEquals(8.0, primitives.getOldPrimitive(mean.getId()).getValue());
+
+		// Only the clock advances, the histories are evicted all the same
+		engine.addEvents("Tick", new long[]{START + 125000}, null);
+		engine.compute();
+		assertEquals(START + 70000, cpuHistory.getTime(0));
+		assertEquals(3, cpuHistory.size());
+		assertTrue(switchesHistory.isEmpty());
+
+		// The window starts over with the new samples
+		engine.addPrimitive("Context_Switches", new Date(START + 130000), 100, null);
+		engine.compute();
+		assertEquals(100.0, primitives.getOldPrimitive(mean.getId()).getValue());
+	}
+}
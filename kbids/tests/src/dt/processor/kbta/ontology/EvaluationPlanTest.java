@@ -0,0 +1,89 @@
+package dt.processor.kbta.ontology;
+
+import java.io.StringReader;
+import java.util.Date;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.container.ElementHistory;
+import dt.processor.kbta.engine.EngineClock;
+import dt.processor.kbta.engine.KBTAEngine;
+import dt.processor.kbta.ontology.defs.context.ContextDef;
+import dt.processor.kbta.ontology.loader.OntologyLoader;
+
+/**
+ * Checks that a context destroyed by a state derived from it (a cyclic destruction) is
+ * destroyed by the incremental evaluation as by the full one, on the iteration following
+ * the state's change, even if nothing else changes the context
+ */
+public class EvaluationPlanTest extends TestCase{
+	private static final long START = 1300000000000L;
+
+	private static final String ONTOLOGY = "<Ontology name=\"Test\" version=\"0\" elementTimeout=\"PT10M\">"
+			+ "<Primitives>"
+			+ "<Primitive name=\"CPU_Usage\" minE=\"0\" maxE=\"100\" />"
+			+ "</Primitives>"
+			+ "<Events><Event name=\"Activity_Start\" /></Events>"
+			+ "<Contexts>"
+			+ "<Context name=\"Busy\"><Inductions><Induction>"
+			+ "<Event name=\"Activity_Start\" /><Ends relativeTo=\"start\" gap=\"*\" />"
+			+ "</Induction></Inductions>"
+			+ "<Destructions><State name=\"CPU_State\" value=\"Low\" /></Destructions></Context>"
+			+ "</Contexts>"
+			+ "<States>"
+			+ "<State name=\"CPU_State\">"
+			+ "<AbstractedFrom><Primitive name=\"CPU_Usage\" /></AbstractedFrom>"
+			+ "<NecessaryContexts><Context name=\"Busy\" /></NecessaryContexts>"
+			+ "<MappingFunction>"
+			+ "<Value name=\"Low\"><Primitive name=\"CPU_Usage\" minE=\"0\" max=\"50\" /></Value>"
+			+ "<Value name=\"High\"><Primitive name=\"CPU_Usage\" minE=\"50\" maxE=\"100\" /></Value>"
+			+ "</MappingFunction>"
+			+ "<InterpolationFunction>"
+			+ "<Value name=\"Low\" maxGap=\"PT1M\" />"
+			+ "<Value name=\"High\" maxGap=\"PT1M\" />"
+			+ "</InterpolationFunction>"
+			+ "</State>"
+			+ "</States>"
+			+ "</Ontology>";
+
+	public void testIncrementalCyclicDestruction(){
+		checkCyclicDestruction(true);
+	}
+
+	public void testFullCyclicDestruction(){
+		checkCyclicDestruction(false);
+	}
+
+	private void checkCyclicDestruction(boolean incremental){
+		Ontology ontology = new OntologyLoader().loadOntology(new StringReader(ONTOLOGY));
+		assertNotNull(ontology);
+		ContextDef busy = ontology.getContextDefs()[0];
+		// The context precedes the state destroying it in the plan
+		assertSame(busy, ontology.getEvaluationPlan().getDefs()[0]);
+		ontology.getStateDefs()[0].setInitiallyMonitored(ontology);
+		busy.setInitiallyMonitored(ontology);
+
+		KBTAEngine engine = new KBTAEngine(ontology, null, incremental,
+				ElementHistory.UNBOUNDED, EngineClock.create(EngineClock.Mode.EVENT_TIME));
+		engine.addEvents("Activity_Start", new long[]{START}, null);
+		engine.compute();
+		assertNotNull(currentBusy(engine, busy));
+
+		engine.addPrimitive("CPU_Usage", new Date(START + 1000), 90, null);
+		engine.compute();
+		assertNotNull(currentBusy(engine, busy));
+
+		// The state becomes low after the context has been evaluated
+		engine.addPrimitive("CPU_Usage", new Date(START + 2000), 10, null);
+		engine.compute();
+		assertNotNull(currentBusy(engine, busy));
+
+		// Only the state's primitive arrives, the context is destroyed all the same
+		engine.addPrimitive("CPU_Usage", new Date(START + 3000), 10, null);
+		engine.compute();
+		assertNull(currentBusy(engine, busy));
+	}
+
+	private static Object currentBusy(KBTAEngine engine, ContextDef busy){
+		return engine.getInstances().getContexts().getCurrentElement(busy.getId());
+	}
+}
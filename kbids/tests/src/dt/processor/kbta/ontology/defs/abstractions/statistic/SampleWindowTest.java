@@ -0,0 +1,180 @@
+package dt.processor.kbta.ontology.defs.abstractions.statistic;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.container.PrimitiveHistory;
+import dt.processor.kbta.ontology.defs.abstractions.statistic.StatisticDef.Function;
+
+/**
+ * Checks the statistics computed incrementally by the windows against the statistics
+ * computed over all of the samples of each window. The estimated quantiles are checked
+ * by their rank among the samples, as the error of a quantile sketch is bounded by rank
+ * (rather than by value)
+ */
+public class SampleWindowTest extends TestCase{
+	private static final long START = 1300000000000L;
+
+	private static final long LENGTH = 60000;
+
+	/** Long enough for a few hundred samples, which the quantile estimates need */
+	private static final long QUANTILE_LENGTH = 600000;
+
+	private static final int SAMPLES = 10000;
+
+	public void testSlidingMoments(){
+		// Large values with a small spread, which raw sums of squares lose to cancellation
+		double[] values = values(1, 1e9, 3);
+		check(Function.MEAN, 0, true, LENGTH, values, 1e-4);
+		check(Function.VARIANCE, 0, true, LENGTH, values, 1e-5);
+		check(Function.STDDEV, 0, true, LENGTH, values, 1e-5);
+	}
+
+	public void testTumblingMoments(){
+		double[] values = values(2, 1e9, 3);
+		check(Function.MEAN, 0, false, LENGTH, values, 1e-5);
+		check(Function.VARIANCE, 0, false, LENGTH, values, 1e-5);
+	}
+
+	public void testExtrema(){
+		double[] values = values(3, 0, 100);
+		check(Function.MIN, 0, true, LENGTH, values, 0);
+		check(Function.MAX, 0, true, LENGTH, values, 0);
+		check(Function.MIN, 0, false, LENGTH, values, 0);
+		check(Function.MAX, 0, false, LENGTH, values, 0);
+	}
+
+	public void testTumblingQuantile(){
+		double[] values = values(4, 50, 10);
+		check(Function.QUANTILE, 0.5, false, QUANTILE_LENGTH, values, 0.02);
+		check(Function.QUANTILE, 0.95, false, QUANTILE_LENGTH, values, 0.02);
+	}
+
+	public void testSlidingQuantile(){
+		// The periods of a sliding window are estimated from fewer values each
+		double[] values = values(5, 50, 10);
+		check(Function.QUANTILE, 0.5, true, QUANTILE_LENGTH, values, 0.05);
+		check(Function.QUANTILE, 0.95, true, QUANTILE_LENGTH, values, 0.05);
+	}
+
+	public void testSlidingQuantileOfShiftingValues(){
+		// The values step up halfway, the quantile must follow as the old ones leave
+		double[] values = values(6, 10, 1);
+		for (int i = values.length / 2; i < values.length; ++i){
+			values[i] += 100;
+		}
+		check(Function.QUANTILE, 0.5, true, QUANTILE_LENGTH, values, 0.08);
+		check(Function.QUANTILE, 0.95, true, QUANTILE_LENGTH, values, 0.05);
+	}
+
+	/**
+	 * Adds the samples (a second or so apart) to the history of a window, ticking the
+	 * clock at each sample, and compares each statistic computed to the one computed over
+	 * the samples of the window
+	 *
+	 * @param tolerance The maximal error of the statistic, or of its rank (as a fraction
+	 *        of the samples) for a quantile
+	 */
+	private static void check(Function function, double quantile, boolean sliding,
+		long length, double[] values, double tolerance){
+		PrimitiveHistory history = new PrimitiveHistory(sliding ? length : 1);
+		SampleWindow window = new SampleWindow(history, length, sliding, Aggregate.create(
+			function, quantile, sliding, length));
+		Random random = new Random(values.length);
+		long[] times = new long[values.length];
+		long time = START;
+		int statistics = 0;
+		int first = 0;
+		for (int i = 0; i < values.length; ++i){
+			time += 500 + random.nextInt(1000);
+			times[i] = time;
+			history.add(time, values[i]);
+			boolean computed = window.update();
+			window.evict(time);
+			history.evict(time);
+			if (!computed){
+				continue;
+			}
+			++statistics;
+			int from;
+			int to;
+			if (sliding){
+				while (times[first] <= time - length){
+					++first;
+				}
+				from = first;
+				to = i + 1;
+			}else{
+				// The period that has just ended
+				from = first;
+				to = i;
+				first = i;
+			}
+			String message = function + " of " + from + ".." + to;
+			if (function == Function.QUANTILE){
+				double rank = rank(values, from, to, window.getValue());
+				assertEquals(message, quantile, rank, tolerance + 1.0 / (to - from));
+			}else{
+				double expected = statistic(function, quantile, values, from, to);
+				assertEquals(message, expected, window.getValue(), tolerance);
+			}
+			assertEquals(message, times[from], window.getStartTime());
+			assertEquals(message, times[to - 1], window.getEndTime());
+		}
+		assertTrue(statistics >= (sliding ? values.length : values.length / (length / 500)));
+	}
+
+	private static double statistic(Function function, double quantile, double[] values,
+		int from, int to){
+		int n = to - from;
+		double[] window = Arrays.copyOfRange(values, from, to);
+		switch (function){
+			case MIN:{
+				Arrays.sort(window);
+				return window[0];
+			}
+			case MAX:{
+				Arrays.sort(window);
+				return window[n - 1];
+			}
+			default:
+				double mean = 0;
+				for (double v : window){
+					mean += v;
+				}
+				mean /= n;
+				if (function == Function.MEAN){
+					return mean;
+				}
+				double m2 = 0;
+				for (double v : window){
+					m2 += (v - mean) * (v - mean);
+				}
+				double variance = (n > 1) ? m2 / (n - 1) : 0;
+				return (function == Function.VARIANCE) ? variance : Math.sqrt(variance);
+		}
+	}
+
+	/**
+	 * @return The fraction of the values of the window that are less than the given one
+	 */
+	private static double rank(double[] values, int from, int to, double value){
+		int below = 0;
+		for (int i = from; i < to; ++i){
+			if (values[i] < value){
+				++below;
+			}
+		}
+		return (double)below / (to - from);
+	}
+
+	private static double[] values(long seed, double mean, double deviation){
+		Random random = new Random(seed);
+		double[] values = new double[SAMPLES];
+		for (int i = 0; i < values.length; ++i){
+			values[i] = mean + deviation * random.nextGaussian();
+		}
+		return values;
+	}
+}
@@ -0,0 +1,114 @@
+package dt.processor.kbta.ontology.defs.abstractions.trend;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.ontology.instances.Primitive;
+import dt.processor.kbta.ontology.instances.Trend;
+import dt.processor.kbta.util.TimeInterval;
+
+/**
+ * Checks the angle of the endpoints mode against the angle computed from the norms, and
+ * the regression mode's slope and goodness-of-fit against a two-pass least-squares fit
+ */
+public class TrendMappingFunctionTest extends TestCase{
+	private static final long START = 1300000000000L;
+
+	private static final double[] ANGLES = {-1, 0, 1, 30, 45, 89.5, 90, 120, 179.5, 180};
+
+	public void testAngle(){
+		Random random = new Random(1);
+		int checked = 0;
+		for (double angle : ANGLES){
+			TrendMappingFunction tmf = new TrendMappingFunction(0.1, angle, 60000);
+			double cosAngle = Math.cos(Math.toRadians(angle));
+			for (int i = 0; i < 20000; ++i){
+				Primitive first = primitive(0, random.nextInt(21) - 10);
+				Primitive last = primitive(1000L * random.nextInt(20), random.nextInt(21) - 10);
+				Primitive next = primitive(last.getTimeInterval().getEndTime() - START + 1000L
+						* random.nextInt(20), random.nextInt(21) - 10);
+				Trend trend = new Trend("T", 0, Trend.SAME, new TimeInterval(START, last
+						.getTimeInterval().getEndTime()), first, last);
+
+				double dtLF = (last.getTimeInterval().getEndTime() - START) / 1000;
+				double dtNL = (next.getTimeInterval().getEndTime() - last.getTimeInterval()
+						.getEndTime()) / 1000;
+				double dvLF = last.getValue() - first.getValue();
+				double dvNL = next.getValue() - last.getValue();
+				double cosAlpha = (dtLF * dtNL + dvLF * dvNL)
+						/ Math.sqrt((dtLF * dtLF + dvLF * dvLF) * (dtNL * dtNL + dvNL * dvNL));
+				if (Math.abs(cosAlpha - cosAngle) < 1e-9 || Math.abs(cosAlpha - 1) < 1e-9){
+					// Decided by rounding either way
+					continue;
+				}
+				boolean expected = (angle < 0) ? false : (angle >= 180) ? !Double
+						.isNaN(cosAlpha) : cosAlpha >= cosAngle && cosAlpha <= 1;
+				assertEquals("angle " + angle + " cos " + cosAlpha, expected, tmf
+						.isInIterpolationRange(trend, next));
+				++checked;
+			}
+		}
+		assertTrue(checked > ANGLES.length * 10000);
+	}
+
+	public void testRegressionOnLongTrend(){
+		// A day of primitives a second apart, with large values
+		checkRegression(86400, 1000, 1e7, 0.05, 2);
+	}
+
+	public void testRegressionOfSameValues(){
+		checkRegression(5000, 15000, 1e9, 0, 0);
+	}
+
+	private static void checkRegression(int count, long step, double base, double slope,
+		double noise){
+		Random random = new Random(2);
+		Primitive[] primitives = new Primitive[count + 1];
+		for (int i = 0; i < primitives.length; ++i){
+			double t = i * step / 1000.0;
+			primitives[i] = primitive(i * step, base + slope * t + noise
+					* random.nextGaussian());
+		}
+		TrendRegression regression = new TrendRegression(primitives[0], primitives[1]);
+		for (int i = 2; i < count; ++i){
+			regression.add(primitives[i]);
+		}
+		Primitive extra = primitives[count];
+
+		double[] expected = fit(primitives, count);
+		assertEquals(expected[0], regression.getSlope(null), 1e-9 + 1e-9 * Math.abs(slope));
+		assertEquals(expected[1], regression.getFit(null), 1e-9);
+		expected = fit(primitives, count + 1);
+		assertEquals(expected[0], regression.getSlope(extra), 1e-9 + 1e-9 * Math.abs(slope));
+		assertEquals(expected[1], regression.getFit(extra), 1e-9);
+	}
+
+	/**
+	 * @return The slope and the goodness-of-fit of the first primitives, by two passes
+	 */
+	private static double[] fit(Primitive[] primitives, int count){
+		double meanT = 0;
+		double meanV = 0;
+		for (int i = 0; i < count; ++i){
+			meanT += primitives[i].getTimeInterval().getEndTime() / 1000.0;
+			meanV += primitives[i].getValue();
+		}
+		meanT /= count;
+		meanV /= count;
+		double mTT = 0;
+		double mTV = 0;
+		double mVV = 0;
+		for (int i = 0; i < count; ++i){
+			double dt = primitives[i].getTimeInterval().getEndTime() / 1000.0 - meanT;
+			double dv = primitives[i].getValue() - meanV;
+			mTT += dt * dt;
+			mTV += dt * dv;
+			mVV += dv * dv;
+		}
+		return new double[]{mTV / mTT, (mVV <= 0) ? 1 : mTV * mTV / (mTT * mVV)};
+	}
+
+	private static Primitive primitive(long offset, double value){
+		return new Primitive("P", 0, value, START + offset, START + offset, null);
+	}
+}
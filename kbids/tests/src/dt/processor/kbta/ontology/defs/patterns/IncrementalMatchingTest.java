@@ -0,0 +1,181 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import java.io.StringReader;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.container.AllInstanceContainer;
+import dt.processor.kbta.engine.EngineClock;
+import dt.processor.kbta.engine.KBTAEngine;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.defs.patterns.patternElements.PatternElement;
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.ontology.loader.OntologyLoader;
+
+/**
+ * Checks that matching the patterns incrementally (keeping the valid elements and the
+ * matches across evaluations) yields the same matches as matching them from scratch on
+ * every evaluation, while the elements time out and are evicted from the histories
+ */
+public class IncrementalMatchingTest extends TestCase{
+	private static final String[] EVENTS = {"Package_Addition", "Activity_Start",
+			"SDCard_Access", "USB_Connection"};
+
+	private static final String ONTOLOGY = "<Ontology name=\"Test\" version=\"0\" elementTimeout=\"PT1M\">"
+			+ "<Events>"
+			+ "<Event name=\"Package_Addition\" />"
+			+ "<Event name=\"Activity_Start\" />"
+			+ "<Event name=\"SDCard_Access\" />"
+			+ "<Event name=\"USB_Connection\" />"
+			+ "</Events>"
+			+ "<Contexts>"
+			+ "<Context name=\"Access_to_SDCard\"><Inductions><Induction>"
+			+ "<Event name=\"SDCard_Access\" /><Ends relativeTo=\"end\" gap=\"PT15S\" />"
+			+ "</Induction></Inductions><Destructions /></Context>"
+			+ "</Contexts>"
+			+ "<Patterns>"
+			+ "<LinearPattern name=\"Install_Then_Run\"><Elements>"
+			+ "<Event name=\"Package_Addition\" ordinal=\"0\" />"
+			+ "<Event name=\"Activity_Start\" ordinal=\"1\" />"
+			+ "</Elements><PairWiseConditions>"
+			+ "<PairWiseCondition first=\"0\" second=\"1\" value=\"*\" temporal=\"Before\" minGap=\"PT0S\" maxGap=\"PT40S\" />"
+			+ "</PairWiseConditions></LinearPattern>"
+			+ "<LinearPattern name=\"Install_Access_Run\"><Elements>"
+			+ "<Event name=\"Package_Addition\" ordinal=\"0\" />"
+			+ "<Event name=\"SDCard_Access\" ordinal=\"1\" />"
+			+ "<Event name=\"Activity_Start\" ordinal=\"2\" />"
+			+ "</Elements><PairWiseConditions>"
+			+ "<PairWiseCondition first=\"0\" second=\"1\" value=\"*\" temporal=\"Before\" minGap=\"PT0S\" maxGap=\"PT60S\" />"
+			+ "<PairWiseCondition first=\"1\" second=\"2\" value=\"*\" temporal=\"Before\" minGap=\"PT0S\" maxGap=\"PT60S\" />"
+			+ "</PairWiseConditions></LinearPattern>"
+			+ "<LinearPattern name=\"Run_During_Access\"><Elements>"
+			+ "<Context name=\"Access_to_SDCard\" ordinal=\"0\" />"
+			+ "<Event name=\"Activity_Start\" ordinal=\"1\" />"
+			+ "<Event name=\"USB_Connection\" ordinal=\"2\" />"
+			+ "</Elements><PairWiseConditions>"
+			+ "<PairWiseCondition first=\"0\" second=\"1\" value=\"*\" temporal=\"Overlap\" minLength=\"*\" maxLength=\"*\" minStartingDistance=\"*\" maxStartingDistance=\"*\" />"
+			+ "</PairWiseConditions></LinearPattern>"
+			+ "<LinearPattern name=\"Usb_Then_Install\" match=\"First\" maxMatches=\"2\"><Elements>"
+			+ "<Event name=\"USB_Connection\" ordinal=\"0\" />"
+			+ "<Event name=\"Package_Addition\" ordinal=\"1\" />"
+			+ "</Elements><PairWiseConditions>"
+			+ "<PairWiseCondition first=\"0\" second=\"1\" value=\"*\" temporal=\"Before\" minGap=\"PT0S\" maxGap=\"PT2M\" />"
+			+ "</PairWiseConditions></LinearPattern>"
+			+ "</Patterns>"
+			+ "</Ontology>";
+
+	private static final int ITERATIONS = 400;
+
+	private static final int HISTORY_CAPACITY = 6;
+
+	public void testUnboundedHistory(){
+		checkMatches(1, 0);
+	}
+
+	public void testBoundedHistory(){
+		checkMatches(2, HISTORY_CAPACITY);
+	}
+
+	private void checkMatches(long seed, int historyCapacity){
+		Ontology ontology = new OntologyLoader().loadOntology(new StringReader(ONTOLOGY));
+		assertNotNull(ontology);
+		LinearPatternDef[] defs = ontology.getLinearPatternDefs();
+		for (LinearPatternDef lpd : defs){
+			lpd.setInitiallyMonitored(ontology);
+		}
+		KBTAEngine engine = new KBTAEngine(ontology, null, true, historyCapacity,
+				EngineClock.create(EngineClock.Mode.EVENT_TIME));
+		AllInstanceContainer instances = engine.getInstances();
+
+		// A matcher of each pattern kept across the evaluations, checked after each one
+		// against a matcher starting from scratch
+		IncrementalMatcher[] incremental = new IncrementalMatcher[defs.length];
+		for (int i = 0; i < defs.length; ++i){
+			incremental[i] = new IncrementalMatcher(defs[i]);
+		}
+
+		Random random = new Random(seed);
+		long now = 1300000000000L;
+		int matched = 0;
+		for (int iteration = 1; iteration <= ITERATIONS; ++iteration){
+			now += 2000 + random.nextInt(3000);
+			for (String event : EVENTS){
+				if (random.nextInt(5) == 0){
+					engine.addEvents(event, new long[]{now - random.nextInt(1000)}, null);
+				}
+			}
+			engine.compute();
+
+			for (int i = 0; i < defs.length; ++i){
+				LinearPatternDef lpd = defs[i];
+				Element[] expected = matchFromScratch(lpd, instances);
+				Element[] actual = incremental[i].match(instances, iteration);
+				assertSameElements(lpd.getName() + " #" + iteration, expected, actual);
+				if (expected != null){
+					++matched;
+				}
+			}
+		}
+		assertTrue(matched > ITERATIONS);
+	}
+
+	private static Element[] matchFromScratch(LinearPatternDef lpd,
+		AllInstanceContainer instances){
+		PatternElement[] elements = lpd.getPatternElements();
+		ElementNode[] nodes = new ElementNode[elements.length];
+		for (PatternElement pe : elements){
+			ElementNode node = new ElementNode(pe);
+			node.update(instances, 0);
+			if (node.isEmpty()){
+				return null;
+			}
+			nodes[pe.getOrdinal()] = node;
+		}
+		PairWiseCondition[] pwcs = lpd.getPairWiseConditions();
+		return new PatternMatcher(elements.length, pwcs, nodes, new JoinNode[pwcs.length],
+				lpd.getMatchSemantics(), lpd.getMaxMatches()).match(null);
+	}
+
+	private static void assertSameElements(String message, Element[] expected,
+		Element[] actual){
+		if (expected == null || actual == null){
+			assertTrue(message, expected == actual);
+			return;
+		}
+		assertEquals(message, expected.length, actual.length);
+		for (int i = 0; i < expected.length; ++i){
+			assertTrue(message + " [" + i + "]", expected[i] == actual[i]);
+		}
+	}
+
+	/**
+	 * Matches a pattern by nodes and a matcher of its own, kept across the evaluations
+	 */
+	private static final class IncrementalMatcher{
+		private final ElementNode[] _nodes;
+
+		private final PatternMatcher _matcher;
+
+		public IncrementalMatcher(LinearPatternDef lpd){
+			PatternElement[] elements = lpd.getPatternElements();
+			_nodes = new ElementNode[elements.length];
+			for (PatternElement pe : elements){
+				_nodes[pe.getOrdinal()] = new ElementNode(pe);
+			}
+			PairWiseCondition[] pwcs = lpd.getPairWiseConditions();
+			_matcher = new PatternMatcher(elements.length, pwcs, _nodes,
+					new JoinNode[pwcs.length], lpd.getMatchSemantics(), lpd.getMaxMatches());
+		}
+
+		public Element[] match(AllInstanceContainer instances, int iteration){
+			for (ElementNode node : _nodes){
+				node.update(instances, iteration);
+				if (node.isEmpty()){
+					_matcher.reset();
+					return null;
+				}
+			}
+			return _matcher.match(null);
+		}
+	}
+}
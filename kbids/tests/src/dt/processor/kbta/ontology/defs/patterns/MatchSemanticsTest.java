@@ -0,0 +1,134 @@
+package dt.processor.kbta.ontology.defs.patterns;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.container.ElementHistory;
+import dt.processor.kbta.engine.EngineClock;
+import dt.processor.kbta.engine.KBTAEngine;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.ontology.loader.OntologyLoader;
+import dt.processor.kbta.threats.ThreatAssessment;
+import dt.processor.kbta.threats.ThreatAssessmentLoader;
+import dt.processor.kbta.threats.ThreatAssessor;
+import dt.processor.kbta.util.Pair;
+
+/**
+ * Checks the threats reported for the matches of a pattern by its match semantics: a
+ * pattern matching first reports its earliest match only, while a pattern matching all
+ * reports each of its other matches once along with its latest match
+ */
+public class MatchSemanticsTest extends TestCase{
+	private static final String ONTOLOGY = "<Ontology name=\"Test\" version=\"0\" elementTimeout=\"PT10M\">"
+			+ "<Events>"
+			+ "<Event name=\"Package_Addition\" />"
+			+ "<Event name=\"Activity_Start\" />"
+			+ "</Events>"
+			+ "<Patterns>"
+			+ "<LinearPattern name=\"Install_Then_Run\" match=\"%s\" maxMatches=\"%d\"><Elements>"
+			+ "<Event name=\"Package_Addition\" ordinal=\"0\" />"
+			+ "<Event name=\"Activity_Start\" ordinal=\"1\" />"
+			+ "</Elements><PairWiseConditions>"
+			+ "<PairWiseCondition first=\"0\" second=\"1\" value=\"*\" temporal=\"Before\" minGap=\"PT0S\" maxGap=\"PT1M\" />"
+			+ "</PairWiseConditions></LinearPattern>"
+			+ "</Patterns>"
+			+ "</Ontology>";
+
+	private static final String THREATS = "<Assessments name=\"Test\" version=\"0\">"
+			+ "<Assessment title=\"Install Then Run\" description=\"\" baseCertainty=\"50\" monitored=\"true\">"
+			+ "<LinearPattern name=\"Install_Then_Run\">"
+			+ "<DurationCondition min=\"PT0S\" max=\"*\" />"
+			+ "</LinearPattern>"
+			+ "</Assessment>"
+			+ "</Assessments>";
+
+	private static final long START = 1300000000000L;
+
+	public void testFirst(){
+		for (boolean incremental : new boolean[]{false, true}){
+			KBTAEngine engine = createEngine("First", 10, incremental);
+			addEvent(engine, "Package_Addition", 1000);
+			addEvent(engine, "Package_Addition", 2000);
+			assertTrue(startTimes(engine.compute()).isEmpty());
+
+			addEvent(engine, "Activity_Start", 5000);
+			assertEquals(Collections.singletonList(START + 1000), startTimes(engine.compute()));
+		}
+	}
+
+	public void testAll(){
+		for (boolean incremental : new boolean[]{false, true}){
+			KBTAEngine engine = createEngine("All", 10, incremental);
+			addEvent(engine, "Package_Addition", 1000);
+			addEvent(engine, "Package_Addition", 2000);
+			assertTrue(startTimes(engine.compute()).isEmpty());
+
+			// The other match precedes the latest one
+			addEvent(engine, "Activity_Start", 5000);
+			assertEquals(list(START + 1000, START + 2000), startTimes(engine.compute()));
+
+			// The matches have been reported, at most the latest one is reported again
+			addEvent(engine, "Package_Addition", 6000);
+			ArrayList<Long> times = startTimes(engine.compute());
+			assertFalse(times.contains(START + 1000));
+
+			// Only the new matches are reported, the formerly latest one isn't reported
+			// again as another match
+			addEvent(engine, "Activity_Start", 8000);
+			assertEquals(list(START + 1000, START + 2000, START + 6000), startTimes(engine
+					.compute()));
+		}
+	}
+
+	public void testAllUpToMaxMatches(){
+		KBTAEngine engine = createEngine("All", 2, true);
+		for (int i = 1; i <= 4; ++i){
+			addEvent(engine, "Package_Addition", 1000 * i);
+		}
+		engine.compute();
+		addEvent(engine, "Activity_Start", 10000);
+		assertEquals(2, startTimes(engine.compute()).size());
+		assertTrue(engine.getOntology().getLinearPatternDefs()[0].getOverflowCount() > 0);
+	}
+
+	private static KBTAEngine createEngine(String match, int maxMatches, boolean incremental){
+		Ontology ontology = new OntologyLoader().loadOntology(new StringReader(String
+				.format(ONTOLOGY, match, maxMatches)));
+		assertNotNull(ontology);
+		ThreatAssessor threatAssessor = new ThreatAssessmentLoader()
+				.loadThreatAssessments(new StringReader(THREATS));
+		assertNotNull(threatAssessor);
+		threatAssessor.setInitiallyMonitoredThreats(ontology, Collections
+				.<String, Object> emptyMap());
+		return new KBTAEngine(ontology, threatAssessor, incremental,
+				ElementHistory.UNBOUNDED, EngineClock.create(EngineClock.Mode.EVENT_TIME));
+	}
+
+	private static void addEvent(KBTAEngine engine, String name, long offset){
+		engine.addEvents(name, new long[]{START + offset}, null);
+	}
+
+	/**
+	 * @return The start times of the patterns the threat was reported for, in order
+	 */
+	private static ArrayList<Long> startTimes(
+		Collection<Pair<ThreatAssessment, Element>> threats){
+		ArrayList<Long> times = new ArrayList<Long>();
+		for (Pair<ThreatAssessment, Element> p : threats){
+			times.add(p.second.getTimeInterval().getStartTime());
+		}
+		return times;
+	}
+
+	private static ArrayList<Long> list(long... times){
+		ArrayList<Long> ans = new ArrayList<Long>();
+		for (long time : times){
+			ans.add(time);
+		}
+		return ans;
+	}
+}
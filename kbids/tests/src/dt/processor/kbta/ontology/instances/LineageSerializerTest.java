@@ -0,0 +1,134 @@
+package dt.processor.kbta.ontology.instances;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
+import dt.processor.kbta.util.TimeInterval;
+
+/**
+ * Round-trips patterns sharing their lineage through the compact encoding, checking that
+ * each element is encoded once with references to its parents and decodes to the
+ * properties NetProtect expects
+ */
+public class LineageSerializerTest extends TestCase{
+	private static final long START = 1300000000000L;
+
+	private static final SymbolicDomain LEVELS = new SymbolicDomain("Low", "High");
+
+	private LinearPattern _pattern;
+
+	private LinearPattern _otherPattern;
+
+	@Override
+	protected void setUp(){
+		Event install = new Event("Package_Addition", 0, START, START, null);
+		Context postInstall = new Context("Post_Install", 0, new TimeInterval(START,
+				Long.MAX_VALUE), install, true);
+		Primitive cpu = new Primitive("CPU_Usage", 0, 90, START + 1000, START + 1000, null);
+		Element[] contexts = {postInstall};
+		State cpuState = new State("CPU_State", 0, LEVELS, 1, new TimeInterval(START + 1000,
+				START + 5000));
+		cpuState.setContextsAndAbstractedFrom(contexts, new Element[]{cpu});
+		State memoryState = new State("Memory_State", 1, LEVELS, 0, new TimeInterval(
+				START + 2000, START + 6000));
+		memoryState.setContextsAndAbstractedFrom(contexts, new Element[0]);
+		Trend trend = new Trend("CPU_Trend", 0, Trend.INCREASING, new TimeInterval(
+				START + 1000, START + 4000), cpu, cpu);
+		trend.setContexts(contexts);
+		_pattern = new LinearPattern("Busy_After_Install", 0, new TimeInterval(START,
+				START + 6000), new Element[]{cpuState, memoryState, trend});
+		Event start = new Event("Activity_Start", 1, START + 3000, START + 3000, null);
+		_otherPattern = new LinearPattern("Run_While_Busy", 1, new TimeInterval(
+				START + 1000, START + 5000), new Element[]{cpuState, start});
+	}
+
+	public void testSharedLineage() throws IOException{
+		LineageSerializer serializer = new LineageSerializer();
+		assertEquals(0, serializer.add(_pattern));
+		int other = serializer.add(_otherPattern);
+		// The patterns' states, trend and context, the context's event and the other
+		// pattern's event (the primitive isn't sent), the shared ones once
+		assertEquals(8, serializer.size());
+		assertEquals(other, serializer.add(_otherPattern));
+		assertEquals(8, serializer.size());
+
+		List<Map<String, Object>> maps = LineageSerializer.fromCompact(serializer
+				.toCompact(), 0);
+		assertEquals(8, maps.size());
+		Map<String, Map<String, Object>> byName = new HashMap<String, Map<String, Object>>();
+		for (int i = 0; i < maps.size(); ++i){
+			Map<String, Object> m = maps.get(i);
+			assertEquals(i, m.get(LineageSerializer.ELEMENT_ID));
+			assertNull(byName.put((String)m.get(Element.ELEMENT_NAME), m));
+		}
+
+		assertElement(byName, "Busy_After_Install", "PATTERN", "true", 0, 6000,
+			"CPU_State", "Memory_State", "CPU_Trend");
+		assertElement(byName, "Run_While_Busy", "PATTERN", "true", 1000, 5000,
+			"CPU_State", "Activity_Start_Event");
+		assertElement(byName, "CPU_State", "STATE", "High", 1000, 5000, "Post_Install");
+		assertElement(byName, "Memory_State", "STATE", "Low", 2000, 6000, "Post_Install");
+		assertElement(byName, "CPU_Trend", "GRADIENT", "INC", 1000, 4000, "Post_Install");
+		// A context that hasn't ended is sent as ending 10 minutes after its start
+		assertElement(byName, "Post_Install", "CONTEXT", "DEFAULT_SYMBOLIC_VALUE", 0,
+			10 * 60 * 1000, "Package_Addition_Event");
+		assertElement(byName, "Package_Addition_Event", "EVENT", 1, 0, 0);
+		assertElement(byName, "Activity_Start_Event", "EVENT", 1, 3000, 3000);
+	}
+
+	public void testIdsOffset() throws IOException{
+		LineageSerializer serializer = new LineageSerializer();
+		serializer.add(_otherPattern);
+		byte[] compact = serializer.toCompact();
+		List<Map<String, Object>> maps = LineageSerializer.fromCompact(compact, 100);
+		assertEquals(LineageSerializer.fromCompact(compact, 0).size(), maps.size());
+		for (int i = 0; i < maps.size(); ++i){
+			Map<String, Object> m = maps.get(i);
+			assertEquals(100 + i, m.get(LineageSerializer.ELEMENT_ID));
+			for (Object parent : (List<?>)m.get(LineageSerializer.ELEMENT_PARENTS)){
+				assertTrue((Integer)parent > 100 + i && (Integer)parent < 100 + maps.size());
+			}
+		}
+	}
+
+	public void testCorruptEncoding(){
+		LineageSerializer serializer = new LineageSerializer();
+		serializer.add(_pattern);
+		byte[] compact = serializer.toCompact();
+		for (int length = 0; length < compact.length; ++length){
+			try{
+				LineageSerializer.fromCompact(Arrays.copyOf(compact, length), 0);
+				fail("Decoded an encoding cut to " + length + " bytes");
+			}catch(IOException e){
+				// Expected
+			}
+		}
+	}
+
+	private static void assertElement(Map<String, Map<String, Object>> byName, String name,
+		String type, Object value, long start, long end, String... parents){
+		Map<String, Object> m = byName.get(name);
+		assertNotNull(name, m);
+		assertEquals(name, type, m.get(Element.ELEMENT_TYPE));
+		assertEquals(name, value, m.get(Element.ELEMENT_VALUE));
+		assertEquals(name, new Date(START + start), m.get(Element.ELEMENT_START_TIME));
+		assertEquals(name, new Date(START + end), m.get(Element.ELEMENT_END_TIME));
+
+		HashSet<String> parentNames = new HashSet<String>();
+		for (Object parent : (List<?>)m.get(LineageSerializer.ELEMENT_PARENTS)){
+			for (Map<String, Object> p : byName.values()){
+				if (parent.equals(p.get(LineageSerializer.ELEMENT_ID))){
+					parentNames.add((String)p.get(Element.ELEMENT_NAME));
+				}
+			}
+		}
+		assertEquals(name, new HashSet<String>(Arrays.asList(parents)), parentNames);
+	}
+}
@@ -0,0 +1,103 @@
+package dt.processor.kbta.threats;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.ontology.defs.abstractions.SymbolicDomain;
+import dt.processor.kbta.ontology.instances.Element;
+import dt.processor.kbta.ontology.instances.State;
+import dt.processor.kbta.util.Pair;
+import dt.processor.kbta.util.TimeInterval;
+
+/**
+ * Checks that the repeated reports of a threat are suppressed for each of the elements it
+ * is assessed for, including several elements matching at once
+ */
+public class ThreatFilterTest extends TestCase{
+	private static final long START = 1300000000000L;
+
+	private static final SymbolicDomain LEVELS = new SymbolicDomain("Low", "High");
+
+	private ThreatAssessment _threat;
+
+	@Override
+	protected void setUp(){
+		_threat = new ThreatAssessment("Overload", "Overloading", 50, true,
+				new GeneratedFromState("CPU_State", null, new DurationCondition(100000,
+						Long.MAX_VALUE)));
+	}
+
+	public void testConcurrentMatches(){
+		ThreatFilter filter = new ThreatFilter(10, ThreatFilter.NEVER);
+		State first = state(0, 0, 10000);
+		State second = state(0, 5000, 10000);
+		assertEquals(2, filter.filter(batch(first, second), START + 10000).size());
+		// Neither is reported again while they keep matching
+		for (int i = 1; i < 5; ++i){
+			assertEquals(0, filter.filter(batch(first, second), START + 10000 + i).size());
+		}
+
+		// Prolonged enough to change its certainty
+		State prolonged = state(0, 5000, 50000);
+		List<ThreatFilter.Report> reports = filter.filter(batch(first, prolonged),
+			START + 20000);
+		assertEquals(1, reports.size());
+		assertSame(prolonged, reports.get(0).element);
+		assertEquals(0, filter.filter(batch(first, prolonged), START + 30000).size());
+	}
+
+	public void testElementsIdentifiedByDefinition(){
+		ThreatFilter filter = new ThreatFilter(10, ThreatFilter.NEVER);
+		// The same start time, of another definition
+		State state = state(0, 0, 10000);
+		State other = state(1, 0, 10000);
+		assertEquals(1, filter.filter(batch(state), START).size());
+		assertEquals(1, filter.filter(batch(state, other), START).size());
+		assertEquals(0, filter.filter(batch(state, other), START).size());
+	}
+
+	public void testForgetsElementsNoLongerMatching(){
+		ThreatFilter filter = new ThreatFilter(10, ThreatFilter.NEVER);
+		State first = state(0, 0, 10000);
+		State second = state(0, 5000, 10000);
+		assertEquals(2, filter.filter(batch(first, second), START).size());
+		assertEquals(0, filter.filter(batch(first), START).size());
+		// The second stopped matching, so it's reported once it matches again
+		assertEquals(1, filter.filter(batch(first, second), START).size());
+	}
+
+	public void testCoolDown(){
+		ThreatFilter filter = new ThreatFilter(10, 60000);
+		State first = state(0, 0, 10000);
+		State second = state(0, 5000, 10000);
+		assertEquals(2, filter.filter(batch(first, second), START).size());
+		assertEquals(0, filter.filter(batch(first, second), START + 59999).size());
+		assertEquals(2, filter.filter(batch(first, second), START + 60000).size());
+
+		filter.reset();
+		assertEquals(2, filter.filter(batch(first, second), START + 60001).size());
+	}
+
+	public void testEveryBatch(){
+		ThreatFilter filter = new ThreatFilter(10, ThreatFilter.EVERY_BATCH);
+		State first = state(0, 0, 10000);
+		State second = state(0, 5000, 10000);
+		for (int i = 0; i < 3; ++i){
+			assertEquals(2, filter.filter(batch(first, second), START).size());
+		}
+	}
+
+	private static State state(int id, long start, long duration){
+		return new State("CPU_State", id, LEVELS, 1, new TimeInterval(START + start, START
+				+ start + duration));
+	}
+
+	private List<Pair<ThreatAssessment, Element>> batch(Element... elements){
+		List<Pair<ThreatAssessment, Element>> threats = new ArrayList<Pair<ThreatAssessment, Element>>();
+		for (Element element : elements){
+			threats.add(new Pair<ThreatAssessment, Element>(_threat, element));
+		}
+		return threats;
+	}
+}
@@ -0,0 +1,126 @@
+package dt.processor.kbta.upload;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that the spooled records survive reloading, that records are removed by their
+ * sequence numbers (so the records dropped as the spool fills while a batch is being sent
+ * don't shift the removal onto unsent records) and that the log stays compact
+ */
+public class ElementSpoolTest extends TestCase{
+	private File _file;
+
+	@Override
+	protected void setUp() throws IOException{
+		_file = File.createTempFile("spool", null);
+		_file.delete();
+	}
+
+	@Override
+	protected void tearDown(){
+		for (String suffix : new String[]{"", ".head", ".tmp"}){
+			new File(_file.getPath() + suffix).delete();
+		}
+	}
+
+	public void testReload(){
+		ElementSpool spool = new ElementSpool(_file, 1024 * 1024);
+		spool.append(records(0, 10));
+		spool.remove(4);
+		spool.append(records(10, 5));
+		assertEquals(11, spool.size());
+
+		spool = new ElementSpool(_file, 1024 * 1024);
+		assertEquals(11, spool.size());
+		assertEquals(15, spool.getEnd());
+		assertRecords(spool, 4, 15);
+	}
+
+	public void testTrimWhileUploading(){
+		// Room for 10 records
+		ElementSpool spool = new ElementSpool(_file, 10 * record(0).length);
+		spool.append(records(0, 10));
+		List<byte[]> batch = new ArrayList<byte[]>();
+		long first = spool.peek(4, batch);
+		assertEquals(0, first);
+
+		// The spool fills while the batch is sent, dropping the batch and the 2 records
+		// after it
+		spool.append(records(10, 6));
+		assertEquals(10, spool.size());
+		assertEquals(6, spool.peek(1, new ArrayList<byte[]>()));
+
+		// Removing the sent batch removes none of the records that haven't been sent
+		spool.remove(first + batch.size());
+		assertEquals(10, spool.size());
+		assertRecords(spool, 6, 16);
+
+		// Nor does removing a batch that was partly dropped
+		first = spool.peek(3, batch);
+		spool.append(records(16, 1));
+		spool.remove(first + 3);
+		assertRecords(spool, 9, 17);
+		assertRecords(new ElementSpool(_file, 10 * record(0).length), 9, 17);
+	}
+
+	public void testRecordCutShort() throws IOException{
+		ElementSpool spool = new ElementSpool(_file, 1024 * 1024);
+		spool.append(records(0, 3));
+		// A record whose appending was cut short
+		FileOutputStream out = new FileOutputStream(_file, true);
+		out.write(new byte[]{0, 0, 0, 100, 1, 2, 3});
+		out.close();
+
+		spool = new ElementSpool(_file, 1024 * 1024);
+		assertRecords(spool, 0, 3);
+		spool.append(records(3, 2));
+		assertRecords(new ElementSpool(_file, 1024 * 1024), 0, 5);
+	}
+
+	public void testCompaction(){
+		ElementSpool spool = new ElementSpool(_file, 1024 * 1024);
+		long maxLength = 0;
+		for (int i = 0; i < 2000; ++i){
+			spool.append(records(10 * i, 10));
+			spool.remove(10 * i + 8);
+			maxLength = Math.max(maxLength, _file.length());
+		}
+		// The log has been compacted rather than growing with the removed records
+		assertTrue(maxLength < 200 * 1024);
+		assertTrue(_file.length() < 100 * 1024);
+		assertRecords(spool, 19998, 20000);
+		assertRecords(new ElementSpool(_file, 1024 * 1024), 19998, 20000);
+	}
+
+	/**
+	 * Checks that the spooled records are those of the given sequence numbers
+	 */
+	private static void assertRecords(ElementSpool spool, long first, long end){
+		List<byte[]> records = new ArrayList<byte[]>();
+		long head = spool.peek(Integer.MAX_VALUE, records);
+		assertEquals(first, head);
+		assertEquals(end - first, records.size());
+		for (int i = 0; i < records.size(); ++i){
+			assertTrue("record " + (head + i), Arrays.equals(record(head + i), records.get(i)));
+		}
+	}
+
+	private static List<byte[]> records(long first, int count){
+		List<byte[]> records = new ArrayList<byte[]>();
+		for (int i = 0; i < count; ++i){
+			records.add(record(first + i));
+		}
+		return records;
+	}
+
+	private static byte[] record(long sequence){
+		return String.format("record %08d", sequence).getBytes();
+	}
+}
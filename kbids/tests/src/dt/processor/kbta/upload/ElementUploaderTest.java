@@ -0,0 +1,292 @@
+package dt.processor.kbta.upload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.ontology.instances.Event;
+import dt.processor.kbta.ontology.instances.LineageSerializer;
+
+/**
+ * Uploads elements to a local stand-in for NetProtect's XML-RPC server, checking that
+ * they're sent in batches, retried when the server fails and kept spooled (across a
+ * restart) while the network is disconnected
+ */
+public class ElementUploaderTest extends TestCase{
+	private static final long START = 1300000000000L;
+
+	private static final long TIMEOUT = 20000;
+
+	private File _file;
+
+	private StandInServer _server;
+
+	private NetProtectGateway _gateway;
+
+	@Override
+	protected void setUp() throws IOException{
+		_file = File.createTempFile("spool", null);
+		_file.delete();
+		_server = new StandInServer();
+		_gateway = new NetProtectGateway();
+		_gateway.setServer(_server.getURL(), "agent", "secret");
+	}
+
+	@Override
+	protected void tearDown() throws IOException{
+		_server.close();
+		for (String suffix : new String[]{"", ".head", ".tmp"}){
+			new File(_file.getPath() + suffix).delete();
+		}
+	}
+
+	public void testUploadInBatches() throws InterruptedException{
+		_gateway.setConnected(true);
+		ElementUploader uploader = new ElementUploader(_gateway, new ElementSpool(_file,
+				1024 * 1024), 10);
+		uploader.start();
+		try{
+			for (int i = 0; i < 5; ++i){
+				uploader.upload(elements(7 * i, 7));
+			}
+			_server.await(35);
+		}finally{
+			uploader.stop();
+		}
+		assertEquals(names(0, 35), _server.getNames());
+		// The elements of a single encoding are sent together
+		for (int size : _server.getBatchSizes()){
+			assertEquals(7, size);
+		}
+		assertEquals("agent", _server.getAgentId());
+	}
+
+	public void testRetryFailedBatch() throws InterruptedException{
+		_gateway.setConnected(true);
+		_server.failCalls(2);
+		ElementUploader uploader = new ElementUploader(_gateway, new ElementSpool(_file,
+				1024 * 1024), 10, 50);
+		uploader.start();
+		try{
+			uploader.upload(elements(0, 8));
+			uploader.upload(elements(8, 7));
+			_server.await(15);
+		}finally{
+			uploader.stop();
+		}
+		assertEquals(names(0, 15), _server.getNames());
+		assertTrue(_server.getCalls() >= 4);
+	}
+
+	public void testSpooledWhileDisconnected() throws InterruptedException{
+		ElementSpool spool = new ElementSpool(_file, 1024 * 1024);
+		ElementUploader uploader = new ElementUploader(_gateway, spool, 10);
+		uploader.start();
+		uploader.upload(elements(0, 6));
+		uploader.upload(elements(6, 6));
+		long timeout = System.currentTimeMillis() + TIMEOUT;
+		while (spool.size() < 2 && System.currentTimeMillis() < timeout){
+			Thread.sleep(10);
+		}
+		uploader.stop();
+		assertEquals(2, spool.size());
+		assertEquals(0, _server.getCalls());
+
+		// Restarting, the spooled elements are drained once connected
+		uploader = new ElementUploader(_gateway, new ElementSpool(_file, 1024 * 1024), 10);
+		uploader.start();
+		try{
+			_gateway.setConnected(true);
+			uploader.wake();
+			_server.await(12);
+		}finally{
+			uploader.stop();
+		}
+		assertEquals(names(0, 12), _server.getNames());
+	}
+
+	/**
+	 * @return The compact encoding of events
+	 */
+	private static byte[] elements(int first, int count){
+		LineageSerializer serializer = new LineageSerializer();
+		for (int i = first; i < first + count; ++i){
+			serializer.add(new Event("Element\t" + i, i, START + 1000 * i, START + 1000 * i,
+					null));
+		}
+		return serializer.toCompact();
+	}
+
+	private static List<String> names(int first, int count){
+		List<String> names = new ArrayList<String>();
+		for (int i = first; i < first + count; ++i){
+			names.add("Element\t" + i + "_Event");
+		}
+		return names;
+	}
+
+	/**
+	 * A minimal HTTP server answering the XML-RPC calls, recording the names of the
+	 * elements sent
+	 */
+	private static final class StandInServer implements Runnable{
+		private static final Pattern PARAM = Pattern
+				.compile("<param><value><string>([^<]*)</string></value></param>");
+
+		private static final Pattern NAME = Pattern
+				.compile("<member><name>Name</name><value><string>([^<]*)</string></value></member>");
+
+		private static final String SUCCESS = "<?xml version=\"1.0\"?><methodResponse><params>"
+				+ "<param><value><boolean>1</boolean></value></param></params></methodResponse>";
+
+		private static final String FAULT = "<?xml version=\"1.0\"?><methodResponse><fault>"
+				+ "<value><struct><member><name>faultCode</name><value><int>1</int></value></member>"
+				+ "<member><name>faultString</name><value><string>Unavailable</string></value>"
+				+ "</member></struct></value></fault></methodResponse>";
+
+		private final ServerSocket _socket;
+
+		private final List<String> _names;
+
+		private final List<Integer> _batchSizes;
+
+		private String _agentId;
+
+		private int _calls;
+
+		private int _failures;
+
+		StandInServer() throws IOException{
+			_socket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+			_names = new ArrayList<String>();
+			_batchSizes = new ArrayList<Integer>();
+			Thread thread = new Thread(this, "Stand-in XML-RPC Server");
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		String getURL(){
+			return "http://127.0.0.1:" + _socket.getLocalPort() + "/xmlrpc";
+		}
+
+		void close() throws IOException{
+			_socket.close();
+		}
+
+		synchronized void failCalls(int failures){
+			_failures = failures;
+		}
+
+		synchronized void await(int count) throws InterruptedException{
+			long timeout = System.currentTimeMillis() + TIMEOUT;
+			while (_names.size() < count && System.currentTimeMillis() < timeout){
+				wait(100);
+			}
+		}
+
+		synchronized List<String> getNames(){
+			return new ArrayList<String>(_names);
+		}
+
+		synchronized List<Integer> getBatchSizes(){
+			return new ArrayList<Integer>(_batchSizes);
+		}
+
+		synchronized String getAgentId(){
+			return _agentId;
+		}
+
+		synchronized int getCalls(){
+			return _calls;
+		}
+
+		@Override
+		public void run(){
+			while (true){
+				try{
+					Socket socket = _socket.accept();
+					try{
+						serve(socket);
+					}finally{
+						socket.close();
+					}
+				}catch(IOException e){
+					if (_socket.isClosed()){
+						return;
+					}
+				}
+			}
+		}
+
+		private void serve(Socket socket) throws IOException{
+			String request = read(socket.getInputStream());
+			String response;
+			synchronized (this){
+				++_calls;
+				if (_failures > 0){
+					--_failures;
+					response = FAULT;
+				}else{
+					Matcher m = PARAM.matcher(request);
+					if (m.find()){
+						_agentId = m.group(1);
+					}
+					m = NAME.matcher(request);
+					int count = 0;
+					while (m.find()){
+						_names.add(m.group(1).replace("&#9;", "\t"));
+						++count;
+					}
+					_batchSizes.add(count);
+					response = SUCCESS;
+					notifyAll();
+				}
+			}
+			byte[] body = response.getBytes("UTF-8");
+			OutputStream out = socket.getOutputStream();
+			out.write(("HTTP/1.1 200 OK\r\nContent-Type: text/xml\r\nContent-Length: "
+					+ body.length + "\r\nConnection: close\r\n\r\n").getBytes("UTF-8"));
+			out.write(body);
+			out.flush();
+		}
+
+		/**
+		 * @return The body of the HTTP request
+		 */
+		private static String read(InputStream in) throws IOException{
+			ByteArrayOutputStream header = new ByteArrayOutputStream();
+			int matched = 0;
+			while (matched < 4){
+				int b = in.read();
+				if (b < 0){
+					throw new IOException("The request was cut short");
+				}
+				header.write(b);
+				matched = (b == "\r\n\r\n".charAt(matched)) ? matched + 1 : (b == '\r') ? 1
+						: 0;
+			}
+			Matcher m = Pattern.compile("(?i)Content-Length:\\s*(\\d+)").matcher(
+				header.toString("UTF-8"));
+			int length = m.find() ? Integer.parseInt(m.group(1)) : 0;
+			byte[] body = new byte[length];
+			for (int read = 0; read < length;){
+				int n = in.read(body, read, length - read);
+				if (n < 0){
+					throw new IOException("The request was cut short");
+				}
+				read += n;
+			}
+			return new String(body, "UTF-8");
+		}
+	}
+}
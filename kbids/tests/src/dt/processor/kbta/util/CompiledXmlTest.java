@@ -0,0 +1,280 @@
+package dt.processor.kbta.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import junit.framework.TestCase;
+import dt.processor.kbta.ontology.Ontology;
+import dt.processor.kbta.ontology.loader.OntologyLoader;
+import dt.processor.kbta.threats.ThreatAssessmentLoader;
+import dt.processor.kbta.threats.ThreatAssessor;
+
+/**
+ * Checks that the models loaded from their compiled form are the same as those loaded
+ * from their xml, field by field, including the durations and the integers read as
+ * parsed when compiling
+ */
+public class CompiledXmlTest extends TestCase{
+	private static final String HASH = "0123456789abcdef0123456789abcdef";
+
+	private static final String ONTOLOGY = "<Ontology name=\"Test\" version=\"1\" elementTimeout=\"PT10M\">"
+			+ "<Primitives>"
+			+ "<Primitive name=\"CPU_Usage\" minE=\"0\" maxE=\"100\" history=\"PT2M\" />"
+			+ "<Primitive name=\"Camera\" minE=\"0\" maxE=\"*\" />"
+			+ "</Primitives>"
+			+ "<Statistics>"
+			+ "<Statistic name=\"CPU_Usage_P95\">"
+			+ "<AbstractedFrom name=\"CPU_Usage\" />"
+			+ "<Function name=\"Quantile\" quantile=\"0.95\" />"
+			+ "<Window type=\"Sliding\" length=\"PT5M\" />"
+			+ "</Statistic>"
+			+ "</Statistics>"
+			+ "<Events>"
+			+ "<Event name=\"Activity_Start\" />"
+			+ "<Event name=\"USB_Connection\" />"
+			+ "<Event name=\"USB_Disconnection\" />"
+			+ "</Events>"
+			+ "<Contexts>"
+			+ "<Context name=\"Post_Application_Run\"><Inductions><Induction>"
+			+ "<Event name=\"Activity_Start\" /><Ends relativeTo=\"end\" gap=\"PT5M\" />"
+			+ "</Induction></Inductions><Destructions /></Context>"
+			+ "<Context name=\"Connected_to_USB\"><Inductions><Induction>"
+			+ "<Event name=\"USB_Connection\" /><Ends relativeTo=\"start\" gap=\"*\" />"
+			+ "</Induction></Inductions>"
+			+ "<Destructions><Event name=\"USB_Disconnection\" /></Destructions></Context>"
+			+ "</Contexts>"
+			+ "<States>"
+			+ "<State name=\"CPU_Usage_State\">"
+			+ "<AbstractedFrom><Primitive name=\"CPU_Usage\" /></AbstractedFrom>"
+			+ "<NecessaryContexts><Context name=\"Post_Application_Run\" /></NecessaryContexts>"
+			+ "<MappingFunction>"
+			+ "<Value name=\"Normal\"><Primitive name=\"CPU_Usage\" minE=\"0\" maxE=\"50\" /></Value>"
+			+ "<Value name=\"High\"><Primitive name=\"CPU_Usage\" min=\"50\" maxE=\"*\" /></Value>"
+			+ "</MappingFunction>"
+			+ "<InterpolationFunction>"
+			+ "<Value name=\"Normal\" maxGap=\"PT1H\" />"
+			+ "<Value name=\"High\" maxGap=\"PT30M\" />"
+			+ "</InterpolationFunction>"
+			+ "</State>"
+			+ "</States>"
+			+ "<Trends>"
+			+ "<Trend name=\"Pictures_Taken_Trend\">"
+			+ "<AbstractedFrom name=\"Camera\" />"
+			+ "<NecessaryContexts><Context name=\"Connected_to_USB\" /></NecessaryContexts>"
+			+ "<MappingFunction threshold=\"0.01\" angle=\"45\" maxGap=\"PT1H\" />"
+			+ "</Trend>"
+			+ "</Trends>"
+			+ "<Patterns>"
+			+ "<LinearPattern name=\"Camera_Abuse_Pattern\" maxMatches=\"3\"><Elements>"
+			+ "<State name=\"CPU_Usage_State\" ordinal=\"0\">"
+			+ "<SymbolicValueCondition><Value name=\"High\" /></SymbolicValueCondition>"
+			+ "<DurationCondition min=\"PT6S\" max=\"*\" />"
+			+ "</State>"
+			+ "<Trend name=\"Pictures_Taken_Trend\" ordinal=\"1\">"
+			+ "<SymbolicValueCondition><Value name=\"Increasing\" /></SymbolicValueCondition>"
+			+ "<DurationCondition min=\"PT10S\" max=\"PT1H\" />"
+			+ "</Trend>"
+			+ "<Event name=\"Activity_Start\" ordinal=\"2\" />"
+			+ "</Elements><PairWiseConditions>"
+			+ "<PairWiseCondition first=\"0\" second=\"1\" value=\"*\" temporal=\"Overlap\" minLength=\"PT8S\" maxLength=\"*\" minStartingDistance=\"*\" maxStartingDistance=\"PT30S\" />"
+			+ "<PairWiseCondition first=\"2\" second=\"1\" value=\"*\" temporal=\"Before\" minGap=\"PT1S\" maxGap=\"PT30S\" />"
+			+ "</PairWiseConditions></LinearPattern>"
+			+ "</Patterns>"
+			+ "</Ontology>";
+
+	private static final String THREAT_ASSESSMENTS = "<Assessments name=\"Test\" version=\"1\">"
+			+ "<Assessment title=\"Camera Abuse\" description=\"Taking pictures\" baseCertainty=\"70\" monitored=\"true\">"
+			+ "<LinearPattern name=\"Camera_Abuse_Pattern\"><DurationCondition min=\"PT10S\" max=\"*\" /></LinearPattern>"
+			+ "</Assessment>"
+			+ "<Assessment title=\"System Overload\" description=\"Overloading\" baseCertainty=\"80\" monitored=\"false\">"
+			+ "<State name=\"CPU_Usage_State\">"
+			+ "<SymbolicValueCondition><Value name=\"High\" /></SymbolicValueCondition>"
+			+ "<DurationCondition min=\"PT15S\" max=\"P8D\" />"
+			+ "</State>"
+			+ "</Assessment>"
+			+ "</Assessments>";
+
+	public void testCompiledOntology() throws Exception{
+		Ontology expected = new OntologyLoader().loadOntology(new StringReader(ONTOLOGY));
+		Ontology actual = new OntologyLoader().loadOntology(compile(ONTOLOGY));
+		assertNotNull(expected);
+		assertNotNull(actual);
+		assertEquals(1, expected.getLinearPatternDefs().length);
+		assertEquals(600000, actual.getElementTimeout());
+		assertEquivalent("ontology", expected, actual,
+			new IdentityHashMap<Object, Object>());
+	}
+
+	public void testCompiledThreatAssessments() throws Exception{
+		ThreatAssessor expected = new ThreatAssessmentLoader()
+				.loadThreatAssessments(new StringReader(THREAT_ASSESSMENTS));
+		ThreatAssessor actual = new ThreatAssessmentLoader()
+				.loadThreatAssessments(compile(THREAT_ASSESSMENTS));
+		assertNotNull(expected);
+		assertNotNull(actual);
+		assertEquals(2, expected.getThreatAssessments().size());
+		assertEquivalent("threatAssessments", expected, actual,
+			new IdentityHashMap<Object, Object>());
+	}
+
+	public void testParsedValues() throws Exception{
+		XmlPullParser xpp = compile("<Tag duration=\"PT1M30S\" any=\"*\" number=\"42\" "
+				+ "text=\"P-Value\" negative=\"-7\" />");
+		assertEquals(XmlPullParser.START_TAG, xpp.next());
+		assertEquals(90000, XmlParser.parseDuration(xpp, "duration"));
+		assertEquals(Long.MAX_VALUE, XmlParser.parseDuration(xpp, "any", Long.MAX_VALUE));
+		assertEquals(42, XmlParser.parseInt(xpp, "number"));
+		assertEquals(-7, XmlParser.parseInt(xpp, "negative"));
+		// The parsed values are still read as text
+		assertEquals("42", xpp.getAttributeValue(null, "number"));
+		assertEquals("PT1M30S", xpp.getAttributeValue(null, "duration"));
+
+		// Failing as when parsing the xml
+		for (String name : new String[]{"text", "number", "missing"}){
+			try{
+				XmlParser.parseDuration(xpp, name);
+				fail("Parsed " + name + " as a duration");
+			}catch(InvalidDateException e){
+				// Expected
+			}
+		}
+		for (String name : new String[]{"text", "duration", "missing"}){
+			try{
+				XmlParser.parseInt(xpp, name);
+				fail("Parsed " + name + " as an integer");
+			}catch(NumberFormatException e){
+				// Expected
+			}
+		}
+	}
+
+	public void testOtherHash() throws Exception{
+		assertNull(CompiledXml.open(ByteBuffer.wrap(compileBytes(ONTOLOGY)),
+			"fedcba9876543210fedcba9876543210"));
+	}
+
+	private static XmlPullParser compile(String xml) throws Exception{
+		XmlPullParser xpp = CompiledXml.open(ByteBuffer.wrap(compileBytes(xml)), HASH);
+		assertNotNull(xpp);
+		return xpp;
+	}
+
+	private static byte[] compileBytes(String xml) throws Exception{
+		XmlPullParser xpp = XmlPullParserFactory.newInstance().newPullParser();
+		xpp.setInput(new StringReader(xml));
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		CompiledXml.compile(xpp, HASH, out);
+		return out.toByteArray();
+	}
+
+	/**
+	 * Compares the object graphs field by field, the objects shared in one graph must be
+	 * shared in the other
+	 */
+	private static void assertEquivalent(String path, Object expected, Object actual,
+		IdentityHashMap<Object, Object> visited) throws IllegalAccessException{
+		if (expected == null || actual == null){
+			assertSame(path, expected, actual);
+			return;
+		}
+		assertEquals(path, expected.getClass(), actual.getClass());
+		if (isValue(expected)){
+			assertEquals(path, expected, actual);
+			return;
+		}
+		if (visited.containsKey(expected)){
+			assertSame(path, visited.get(expected), actual);
+			return;
+		}
+		visited.put(expected, actual);
+
+		if (expected.getClass().isArray()){
+			assertEquals(path, Array.getLength(expected), Array.getLength(actual));
+			for (int i = 0; i < Array.getLength(expected); ++i){
+				assertEquivalent(path + "[" + i + "]", Array.get(expected, i), Array.get(
+					actual, i), visited);
+			}
+		}else if (expected instanceof Map){
+			Map<?, ?> expectedMap = (Map<?, ?>)expected;
+			Map<?, ?> actualMap = (Map<?, ?>)actual;
+			assertEquals(path, expectedMap.size(), actualMap.size());
+			for (Map.Entry<?, ?> entry : expectedMap.entrySet()){
+				Object key = counterpart(path, entry.getKey(), actualMap.keySet(), visited);
+				assertEquivalent(path + ".key", entry.getKey(), key, visited);
+				assertEquivalent(path + "." + key, entry.getValue(), actualMap.get(key),
+					visited);
+			}
+		}else if (expected instanceof Set){
+			Set<?> actualSet = (Set<?>)actual;
+			assertEquals(path, ((Set<?>)expected).size(), actualSet.size());
+			for (Object element : (Set<?>)expected){
+				assertEquivalent(path + "." + element, element, counterpart(path, element,
+					actualSet, visited), visited);
+			}
+		}else if (expected instanceof Collection){
+			Collection<?> expectedCollection = (Collection<?>)expected;
+			Collection<?> actualCollection = (Collection<?>)actual;
+			assertEquals(path, expectedCollection.size(), actualCollection.size());
+			Iterator<?> it = actualCollection.iterator();
+			int i = 0;
+			for (Object element : expectedCollection){
+				assertEquivalent(path + "[" + i++ + "]", element, it.next(), visited);
+			}
+		}else if (expected.getClass().getName().startsWith("java.")){
+			// Compared by their own equality (e.g. bit sets)
+			assertEquals(path, expected, actual);
+		}else{
+			for (Class<?> c = expected.getClass(); c != Object.class; c = c.getSuperclass()){
+				for (Field f : c.getDeclaredFields()){
+					if (!Modifier.isStatic(f.getModifiers())){
+						f.setAccessible(true);
+						assertEquivalent(path + "." + f.getName(), f.get(expected), f
+								.get(actual), visited);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the counterpart of a key (or an element of a set) among the actual ones, not
+	 * relying on the iteration order of the keys hashed by their identity
+	 */
+	private static Object counterpart(String path, Object expected, Collection<?> actual,
+		IdentityHashMap<Object, Object> visited){
+		if (isValue(expected)){
+			assertTrue(path + " " + expected, actual.contains(expected));
+			return expected;
+		}
+		if (visited.containsKey(expected)){
+			return visited.get(expected);
+		}
+		Object counterpart = null;
+		for (Object o : actual){
+			if (o != null && o.getClass() == expected.getClass()
+					&& o.toString().equals(expected.toString())){
+				assertNull(path + " ambiguous " + expected, counterpart);
+				counterpart = o;
+			}
+		}
+		assertNotNull(path + " " + expected, counterpart);
+		return counterpart;
+	}
+
+	private static boolean isValue(Object o){
+		return o instanceof String || o instanceof Number || o instanceof Boolean
+				|| o instanceof Character || o instanceof Enum;
+	}
+}